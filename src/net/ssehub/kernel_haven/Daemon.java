@@ -0,0 +1,549 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.ssehub.kernel_haven.analysis.IAnalysis;
+import net.ssehub.kernel_haven.build_model.BuildModel;
+import net.ssehub.kernel_haven.code_model.SourceFile;
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.provider.MemoryResultCache;
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.StaticClassLoader;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+
+/**
+ * A long-running KernelHaven process that executes many analyses, without paying the start-up costs for each of them.
+ * The plugins are only loaded once. The variability model, the build model and the most recently used source files
+ * are kept in memory between the executions (see {@link MemoryResultCache}); they are discarded if any property that
+ * may influence the extractors changes (i.e. all properties except the analysis, logging, output and archiving
+ * settings). Just like the cache on disk, the models kept in memory are only used if reading the cache is enabled for
+ * the respective provider (e.g. {@link DefaultSettings#VARIABILITY_PROVIDER_CACHE_READ}).
+ * <p>
+ * The daemon listens on {@link DefaultSettings#DAEMON_PORT} of the loopback interface. When it starts, it writes a
+ * random token to {@link DefaultSettings#DAEMON_TOKEN_FILE}, which only the user that started the daemon can read. A
+ * client first sends this token as a single line, followed by a single command line per connection:
+ * </p>
+ * <ul>
+ *      <li><code>run &lt;properties file&gt;</code>: executes the pipeline defined by the given properties file (just
+ *      like {@link Run}). The log output of the execution is streamed back, followed by a line
+ *      <code>RESULT &lt;absolute path&gt;</code> for each output file of the analysis.</li>
+ *      <li><code>status</code>: returns the number of executions and the state of the in-memory caches.</li>
+ *      <li><code>stop</code>: stops the daemon.</li>
+ * </ul>
+ * <p>
+ * Requests with a wrong token are rejected. The last line of each response is either <code>DONE</code> or
+ * <code>ERROR &lt;message&gt;</code>. Requests are
+ * handled one after another; while an analysis runs, other clients wait for their connection to be accepted. Clients
+ * that don't send their token and command within {@link DefaultSettings#DAEMON_REQUEST_TIMEOUT} are disconnected.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class Daemon implements Closeable {
+    
+    private static final Logger LOGGER = Logger.get();
+    
+    /**
+     * Prefixes of property keys that don't influence the extractors. Changing these does not discard the models that
+     * are kept in memory.
+     */
+    private static final @NonNull String @NonNull [] NON_EXTRACTION_PREFIXES = {
+        "analysis.", "log.", "archive", "output_dir", "plugins_dir", "performance_probes.", "daemon.",
+    };
+    
+    private @NonNull Configuration baseConfig;
+    
+    private @NonNull ServerSocket serverSocket;
+    
+    private @NonNull File tokenFile;
+    
+    private byte @NonNull [] token;
+    
+    private int requestTimeout;
+    
+    /**
+     * The properties that may influence the extractors, of the configuration that the caches were created for.
+     */
+    private @Nullable String extractionKey;
+    
+    private @Nullable MemoryResultCache<VariabilityModel> vmCache;
+    
+    private @Nullable MemoryResultCache<BuildModel> bmCache;
+    
+    private @Nullable MemoryResultCache<SourceFile<?>> cmCache;
+    
+    private int numRuns;
+    
+    private volatile boolean stopped;
+    
+    /**
+     * Creates a daemon. Opens the server socket and loads the plugins specified in the given configuration.
+     * 
+     * @param baseConfig The configuration of the daemon itself. Specifies the port, the plugins directory and the
+     *      logging between executions.
+     * 
+     * @throws SetUpException If opening the server socket or writing the token file fails.
+     */
+    public Daemon(@NonNull Configuration baseConfig) throws SetUpException {
+        this.baseConfig = baseConfig;
+        
+        int port = baseConfig.getValue(DefaultSettings.DAEMON_PORT);
+        try {
+            this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new SetUpException("Can't listen on port " + port, e);
+        }
+        
+        this.requestTimeout = baseConfig.getValue(DefaultSettings.DAEMON_REQUEST_TIMEOUT);
+        this.tokenFile = baseConfig.getValue(DefaultSettings.DAEMON_TOKEN_FILE);
+        try {
+            this.token = createToken(tokenFile);
+        } catch (IOException e) {
+            close();
+            throw new SetUpException("Can't write token file " + tokenFile, e);
+        }
+        
+        PipelineConfigurator configurator = new PipelineConfigurator();
+        configurator.init(baseConfig);
+        configurator.loadPlugins();
+    }
+    
+    /**
+     * Returns the port that this daemon listens on. Useful if {@link DefaultSettings#DAEMON_PORT} is 0.
+     * 
+     * @return The local port of the server socket.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Returns the file that contains the token that clients must send with each request.
+     * 
+     * @return The token file.
+     */
+    public @NonNull File getTokenFile() {
+        return tokenFile;
+    }
+    
+    /**
+     * Creates a random token and writes it to the given file. The file is only readable and writable by the owner. An
+     * existing file is replaced.
+     * 
+     * @param tokenFile The file to write the token to.
+     * 
+     * @return The bytes of the token, as they are sent by the clients.
+     * 
+     * @throws IOException If writing the file fails.
+     */
+    private static byte @NonNull [] createToken(@NonNull File tokenFile) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+        
+        Path path = tokenFile.toPath();
+        Files.deleteIfExists(path);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+            tokenFile.setReadable(false, false);
+            tokenFile.setWritable(false, false);
+            tokenFile.setReadable(true, true);
+            tokenFile.setWritable(true, true);
+        }
+        
+        byte[] result = token.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(path, result);
+        return result;
+    }
+    
+    /**
+     * Handles requests until the daemon is stopped, either by a <code>stop</code> command or by {@link #close()}.
+     */
+    public void serve() {
+        LOGGER.logInfo("Daemon listening on port " + getPort());
+        
+        while (!stopped) {
+            try (Socket socket = serverSocket.accept()) {
+                handle(socket);
+                
+            } catch (IOException e) {
+                if (!stopped) {
+                    LOGGER.logException("Exception while handling daemon request", e);
+                }
+            }
+        }
+        
+        LOGGER.logInfo("Daemon stopped");
+    }
+    
+    /**
+     * Reads and executes the command of a single client.
+     * 
+     * @param socket The connection to the client.
+     * 
+     * @throws IOException If communicating with the client fails.
+     */
+    private void handle(@NonNull Socket socket) throws IOException {
+        // a silent client must not block the daemon; only reading the request is limited, not the execution
+        socket.setSoTimeout(requestTimeout);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+        
+        String clientToken = in.readLine();
+        if (clientToken != null && MessageDigest.isEqual(token, clientToken.getBytes(StandardCharsets.UTF_8))) {
+            String command = in.readLine();
+            try {
+                handleCommand(command, out);
+                
+                // CHECKSTYLE:OFF
+            } catch (RuntimeException e) {
+                // CHECKSTYLE:ON
+                // a faulty plugin must not stop the daemon
+                LOGGER.logException("Exception while executing daemon request", e);
+                out.println("ERROR " + e.getClass().getName() + ": " + e.getMessage());
+            }
+        } else {
+            LOGGER.logWarning("Rejected daemon request with an invalid token");
+            out.println("ERROR Invalid token");
+        }
+        
+        out.flush();
+    }
+    
+    /**
+     * Executes the command of a client that sent the correct token.
+     * 
+     * @param line The command line sent by the client; may be <code>null</code>.
+     * @param out The stream to the client.
+     */
+    private void handleCommand(@Nullable String line, @NonNull PrintStream out) {
+        String command = line != null ? line.trim() : "";
+        
+        if (command.startsWith("run ")) {
+            run(new File(command.substring("run ".length()).trim()), out);
+            
+        } else if (command.equals("status")) {
+            printStatus(out);
+            out.println("DONE");
+            
+        } else if (command.equals("stop")) {
+            out.println("DONE");
+            close();
+            
+        } else {
+            out.println("ERROR Unknown command: " + command);
+        }
+    }
+    
+    /**
+     * Executes the pipeline defined by the given properties file. The log output is streamed to the client.
+     * 
+     * @param propertiesFile The properties file of the pipeline.
+     * @param out The stream to the client.
+     */
+    private void run(@NonNull File propertiesFile, @NonNull PrintStream out) {
+        Configuration config;
+        try {
+            config = new Configuration(propertiesFile);
+            DefaultSettings.registerAllSettings(config);
+            LOGGER.setup(config);
+            
+        } catch (SetUpException e) {
+            config = null;
+            restoreLogger(out);
+            out.println("ERROR Invalid configuration: " + e.getMessage());
+        }
+        
+        if (config != null) {
+            LOGGER.addTarget(out);
+            LOGGER.logInfo("Start executing KernelHaven with configuration file " + propertiesFile.getPath()
+                    + " in daemon");
+            
+            List<@NonNull String> response = new ArrayList<>();
+            try {
+                IAnalysis analysis = execute(config);
+                
+                if (analysis != null) {
+                    for (File file : analysis.getOutputFiles()) {
+                        response.add("RESULT " + file.getAbsolutePath());
+                    }
+                    response.add("DONE");
+                } else {
+                    response.add("ERROR Setting up the pipeline failed");
+                }
+                
+            } catch (SetUpException e) {
+                response.add("ERROR Setting up the pipeline failed: " + e.getMessage());
+                
+            } finally {
+                restoreLogger(out);
+            }
+            
+            // only write the response after the log is detached, so that no log line of a still running thread (e.g.
+            // a ProgressLogger) follows the last line
+            for (String line : response) {
+                out.println(line);
+            }
+        }
+    }
+    
+    /**
+     * Executes the pipeline for the given configuration, using the plugins and models that are kept in memory.
+     * 
+     * @param config The configuration of the pipeline.
+     * 
+     * @return The executed analysis; <code>null</code> if setting up the pipeline failed.
+     * 
+     * @throws SetUpException If the configuration is not valid.
+     */
+    private @Nullable IAnalysis execute(@NonNull Configuration config) throws SetUpException {
+        String key = getExtractionKey(config);
+        if (!key.equals(extractionKey)) {
+            if (extractionKey != null) {
+                LOGGER.logInfo("Extractor configuration changed; discarding models kept in memory");
+            }
+            File sourceTree = config.getValue(DefaultSettings.SOURCE_TREE);
+            // the models are extracted from the whole source tree; detect changes of the files they are read from
+            vmCache = new MemoryResultCache<>(sourceTree, 1,
+                    config.getValue(DefaultSettings.VARIABILITY_EXTRACTOR_FILE_REGEX));
+            bmCache = new MemoryResultCache<>(sourceTree, 1,
+                    config.getValue(DefaultSettings.BUILD_EXTRACTOR_FILE_REGEX));
+            cmCache = new MemoryResultCache<>(sourceTree,
+                    baseConfig.getValue(DefaultSettings.DAEMON_CODE_MODEL_CACHE_SIZE));
+            extractionKey = key;
+        }
+        
+        StaticClassLoader.initializeLoadedClasses(config);
+        
+        PipelineConfigurator configurator = new PipelineConfigurator();
+        configurator.init(config);
+        configurator.setMemoryCaches(vmCache, bmCache, cmCache);
+        configurator.execute(false);
+        numRuns++;
+        
+        return configurator.getAnalysis();
+    }
+    
+    /**
+     * Creates a string of all properties that may influence the extractors.
+     * 
+     * @param config The configuration to get the properties from.
+     * 
+     * @return A string that is equal for two configurations, if the extractors are configured equally.
+     */
+    private static @NonNull String getExtractionKey(@NonNull Configuration config) {
+        Map<String, String> relevant = new TreeMap<>();
+        for (Map.Entry<Object, Object> property : config.copyProperties().entrySet()) {
+            String key = property.getKey().toString();
+            boolean isRelevant = true;
+            for (String prefix : NON_EXTRACTION_PREFIXES) {
+                if (key.startsWith(prefix)) {
+                    isRelevant = false;
+                }
+            }
+            if (isRelevant) {
+                relevant.put(key, property.getValue().toString());
+            }
+        }
+        return relevant.toString();
+    }
+    
+    /**
+     * Removes the given stream from the log targets and sets the logger up for the base configuration again.
+     * 
+     * @param out The stream to the client.
+     */
+    private void restoreLogger(@NonNull PrintStream out) {
+        List<@NonNull OutputStream> targets = LOGGER.getTargets();
+        for (int i = 0; i < targets.size(); i++) {
+            if (targets.get(i) == out) {
+                LOGGER.removeTarget(i);
+                break;
+            }
+        }
+        
+        try {
+            LOGGER.setup(baseConfig);
+        } catch (SetUpException e) {
+            LOGGER.logException("Can't set up logger for daemon configuration", e);
+        }
+    }
+    
+    /**
+     * Prints the number of executions and the state of the in-memory caches.
+     * 
+     * @param out The stream to the client.
+     */
+    private void printStatus(@NonNull PrintStream out) {
+        out.println("Executions: " + numRuns);
+        printCacheStatus(out, "Variability model", vmCache);
+        printCacheStatus(out, "Build model", bmCache);
+        printCacheStatus(out, "Code model", cmCache);
+    }
+    
+    /**
+     * Prints the state of the given cache.
+     * 
+     * @param out The stream to the client.
+     * @param name The name of the model.
+     * @param cache The cache for the model; may be <code>null</code> if nothing has been executed yet.
+     */
+    private static void printCacheStatus(@NonNull PrintStream out, @NonNull String name,
+            @Nullable MemoryResultCache<?> cache) {
+        
+        if (cache != null) {
+            out.println(name + ": " + cache.size() + " in memory, " + cache.getHits() + " hits, "
+                    + cache.getMisses() + " misses");
+        } else {
+            out.println(name + ": not loaded");
+        }
+    }
+    
+    /**
+     * Stops the daemon and deletes the token file. A currently running execution is finished first.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.logExceptionDebug("Exception while closing server socket", e);
+        }
+        tokenFile.delete();
+    }
+    
+    /**
+     * Sends a command to a daemon and copies its response to the given stream.
+     * 
+     * @param port The port of the daemon.
+     * @param tokenFile The token file written by the daemon (see {@link DefaultSettings#DAEMON_TOKEN_FILE}).
+     * @param command The command line to send (e.g. <code>run analysis.properties</code>).
+     * @param out The stream to copy the response to.
+     * 
+     * @return Whether the daemon reported success (i.e. its last line was <code>DONE</code>).
+     * 
+     * @throws IOException If reading the token file or communicating with the daemon fails.
+     */
+    public static boolean sendCommand(int port, @NonNull File tokenFile, @NonNull String command,
+            @NonNull PrintStream out) throws IOException {
+        
+        String token = new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8).trim();
+        
+        String last = null;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            PrintStream request = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+            request.println(token);
+            request.println(command);
+            
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.println(line);
+                last = line;
+            }
+        }
+        return "DONE".equals(last);
+    }
+    
+    /**
+     * Starts a daemon, or sends a command to a running daemon. Usage:
+     * <ul>
+     *      <li><code>Daemon &lt;daemon properties&gt;</code> starts a daemon.</li>
+     *      <li><code>Daemon --send &lt;daemon properties&gt; &lt;command&gt;</code> sends the command to the daemon
+     *      and prints the response.</li>
+     * </ul>
+     * 
+     * @param args The command line arguments.
+     */
+    public static void main(String... args) {
+        Thread.setDefaultUncaughtExceptionHandler((Thread thread, Throwable exc) -> {
+            LOGGER.logException("Unhandled exception in thread " + thread.getName(), exc);
+        });
+        
+        boolean success = false;
+        if (args.length == 1) {
+            try {
+                Configuration config = new Configuration(new File(args[0]));
+                DefaultSettings.registerAllSettings(config);
+                LOGGER.setup(config);
+                
+                try (Daemon daemon = new Daemon(config)) {
+                    daemon.serve();
+                }
+                success = true;
+                
+            } catch (SetUpException e) {
+                LOGGER.logException("Can't start daemon", e);
+            }
+            
+        } else if (args.length >= 3 && args[0].equals("--send")) {
+            StringBuilder command = new StringBuilder(args[2]);
+            for (int i = 3; i < args.length; i++) {
+                command.append(' ').append(args[i]);
+            }
+            
+            try {
+                Configuration config = new Configuration(new File(args[1]));
+                DefaultSettings.registerAllSettings(config);
+                success = sendCommand(config.getValue(DefaultSettings.DAEMON_PORT),
+                        config.getValue(DefaultSettings.DAEMON_TOKEN_FILE), command.toString(), System.out);
+                
+            } catch (SetUpException | IOException e) {
+                LOGGER.logException("Can't send command to daemon", e);
+            }
+            
+        } else {
+            LOGGER.logError("Usage: Daemon <daemon properties> | Daemon --send <daemon properties> <command>");
+        }
+        
+        if (!success) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -31,12 +31,15 @@ import java.util.Set;
 
 import net.ssehub.kernel_haven.analysis.IAnalysis;
 import net.ssehub.kernel_haven.build_model.AbstractBuildModelExtractor;
+import net.ssehub.kernel_haven.build_model.BuildModel;
 import net.ssehub.kernel_haven.build_model.BuildModelProvider;
 import net.ssehub.kernel_haven.code_model.AbstractCodeModelExtractor;
 import net.ssehub.kernel_haven.code_model.CodeModelProvider;
+import net.ssehub.kernel_haven.code_model.SourceFile;
 import net.ssehub.kernel_haven.config.Configuration;
 import net.ssehub.kernel_haven.config.DefaultSettings;
 import net.ssehub.kernel_haven.provider.AbstractExtractor;
+import net.ssehub.kernel_haven.provider.MemoryResultCache;
 import net.ssehub.kernel_haven.util.KernelHavenClassLoader;
 import net.ssehub.kernel_haven.util.Logger;
 import net.ssehub.kernel_haven.util.PerformanceProbe;
@@ -46,6 +49,7 @@ import net.ssehub.kernel_haven.util.ZipArchive;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
 import net.ssehub.kernel_haven.variability_model.AbstractVariabilityModelExtractor;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
 import net.ssehub.kernel_haven.variability_model.VariabilityModelProvider;
 
 /**
@@ -78,6 +82,12 @@ public class PipelineConfigurator {
     private CodeModelProvider cmProvider;
 
     private IAnalysis analysis;
+    
+    private @Nullable MemoryResultCache<VariabilityModel> vmMemoryCache;
+    
+    private @Nullable MemoryResultCache<BuildModel> bmMemoryCache;
+    
+    private @Nullable MemoryResultCache<SourceFile<?>> cmMemoryCache;
 
     /**
      * Constructor; package because this class is a singleton. Only used by test
@@ -171,6 +181,23 @@ public class PipelineConfigurator {
         return analysis;
     }
 
+    /**
+     * Sets the in-memory caches that the providers created by {@link #createProviders()} should use. Used by the
+     * {@link Daemon} to keep the models between multiple executions.
+     * 
+     * @param vmMemoryCache The cache for the variability model; may be <code>null</code>.
+     * @param bmMemoryCache The cache for the build model; may be <code>null</code>.
+     * @param cmMemoryCache The cache for the code model; may be <code>null</code>.
+     */
+    void setMemoryCaches(@Nullable MemoryResultCache<VariabilityModel> vmMemoryCache,
+            @Nullable MemoryResultCache<BuildModel> bmMemoryCache,
+            @Nullable MemoryResultCache<SourceFile<?>> cmMemoryCache) {
+        
+        this.vmMemoryCache = vmMemoryCache;
+        this.bmMemoryCache = bmMemoryCache;
+        this.cmMemoryCache = cmMemoryCache;
+    }
+
     /**
      * Adds jar to the class path. After it is added, all of its classes can be
      * accessed via reflection-api.
@@ -352,16 +379,19 @@ public class PipelineConfigurator {
         vmProvider = new VariabilityModelProvider();
         vmProvider.setExtractor(vmExtractor);
         vmProvider.setConfig(config);
+        vmProvider.setMemoryCache(vmMemoryCache);
         LOGGER.logInfo("Created variability provider");
 
         bmProvider = new BuildModelProvider();
         bmProvider.setExtractor(bmExtractor);
         bmProvider.setConfig(config);
+        bmProvider.setMemoryCache(bmMemoryCache);
         LOGGER.logInfo("Created build provider");
 
         cmProvider = new CodeModelProvider();
         cmProvider.setExtractor(cmExtractor);
         cmProvider.setConfig(config);
+        cmProvider.setMemoryCache(cmMemoryCache);
         LOGGER.logInfo("Created code provider");
     }
     
@@ -456,13 +486,25 @@ public class PipelineConfigurator {
      * Executes the process defined in this instance of PipelineConfigurator.
      */
     public void execute() {
+        execute(true);
+    }
+    
+    /**
+     * Executes the process defined in this instance of PipelineConfigurator.
+     * 
+     * @param loadPlugins Whether the plugins should be loaded. <code>false</code> if they are already loaded by a
+     *      previous execution in this JVM (see {@link Daemon}).
+     */
+    void execute(boolean loadPlugins) {
         LOGGER.logInfo("Start setting up pipeline...");
         if (config != null) {
             PerformanceProbe.initialize(config);
         }
         
         try {
-            loadPlugins();
+            if (loadPlugins) {
+                loadPlugins();
+            }
             instantiateExtractors();
             createProviders();
             runPreparation();
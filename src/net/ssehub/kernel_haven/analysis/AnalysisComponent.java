@@ -15,7 +15,21 @@
  */
 package net.ssehub.kernel_haven.analysis;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -168,6 +182,23 @@ public abstract class AnalysisComponent<O> {
     
     private static final ResultSizeLogger RESULZ_SIZE_LOGGER;
     
+    /**
+     * Marks the end of a complete memoization file: the file ends with this value and the length of the serialized
+     * results (see {@link #isMemoizationFileComplete(File)}).
+     */
+    private static final long MEMO_END_MARKER = 0x4b484d454d4f454eL;
+    
+    /**
+     * The size of the trailer at the end of a complete memoization file: {@link #MEMO_END_MARKER} and the length.
+     */
+    private static final int MEMO_TRAILER_SIZE = 2 * Long.BYTES;
+    
+    /**
+     * The component that is executed by the current thread. Used to notify a component if one of the input
+     * components that it reads from failed (see {@link #getNextResult()}).
+     */
+    private static final @NonNull ThreadLocal<AnalysisComponent<?>> CURRENT = new ThreadLocal<>();
+    
     static {
         RESULZ_SIZE_LOGGER = new ResultSizeLogger();
         RESULZ_SIZE_LOGGER.start();
@@ -177,12 +208,60 @@ public abstract class AnalysisComponent<O> {
     
     private boolean logResults;
     
+    /**
+     * The analysis that created this component; this is where intermediate results are written to. Needed if multiple
+     * analyses run at the same time (see {@link BatchPipelineAnalysis}).
+     */
+    private @Nullable PipelineAnalysis analysis;
+    
     private ITableWriter out;
     
+    /**
+     * The file that the results of this component are memoized in; <code>null</code> if memoization is disabled.
+     */
+    private @Nullable File memoFile;
+    
+    private @Nullable File memoTmpFile;
+    
+    private @Nullable ObjectOutputStream memoOut;
+    
+    /**
+     * The stream below {@link #memoOut}; used to write the trailer of the memoization file.
+     */
+    private @Nullable OutputStream memoRawOut;
+    
+    /**
+     * Whether this component replays the results from {@link #memoFile} instead of calling {@link #execute()}.
+     */
+    private boolean replay;
+    
+    /**
+     * Whether {@link #execute()} (or replaying the memoized results) returned normally.
+     */
+    private boolean finished;
+    
+    /**
+     * Whether the results of this component are incomplete, because it failed (see {@link #fail(String, Throwable)}),
+     * replaying its results failed, {@link #execute()} threw an exception or one of its inputs failed. Set before the
+     * end of the results is signaled to the next component.
+     */
+    private volatile boolean failed;
+    
+    /**
+     * Whether an input component that this component read from failed (see {@link #getNextResult()}).
+     */
+    private volatile boolean inputFailed;
+    
     private boolean started;
     
     private long tStart;
     
+    /**
+     * The value of {@link DefaultSettings#ANALYSIS_SPILL_DIR}; used by {@link #getSpillDir()} if this component was
+     * not created by a running {@link PipelineAnalysis}.
+     */
+    private @Nullable File configuredSpillDir;
+    
     /**
      * Creates a new analysis component.
      * 
@@ -191,13 +270,15 @@ public abstract class AnalysisComponent<O> {
     public AnalysisComponent(@NonNull Configuration config) {
         results = new BlockingQueue<>();
         RESULZ_SIZE_LOGGER.registerComponent(this);
+        analysis = PipelineAnalysis.getInstance();
+        configuredSpillDir = config.getValue(DefaultSettings.ANALYSIS_SPILL_DIR);
         
         setLogResults(config.getValue(DefaultSettings.ANALYSIS_COMPONENTS_LOG).contains(getClass().getSimpleName()));
     }
     
     /**
      * Changes whether this component should log its results or not. Results are logged to console and to the 
-     * {@link ITableCollection} provided by the {@link PipelineAnalysis#getInstance()}.
+     * {@link ITableCollection} provided by the {@link PipelineAnalysis} that created this component.
      * This method should not be called once this component has started.
      * 
      * @param logResults Whether to log results or not.
@@ -206,6 +287,92 @@ public abstract class AnalysisComponent<O> {
         this.logResults = logResults;
     }
     
+    /**
+     * Closes the given resource once the {@link PipelineAnalysis} that created this component is done, i.e. once all
+     * components consumed their input. Components use this to release temporary files of results that they pass to
+     * the next component (e.g. a {@link net.ssehub.kernel_haven.util.DiskSpillingList}). If this component was not
+     * created by a {@link PipelineAnalysis}, the resource is not closed.
+     * 
+     * @param resource The resource to close.
+     */
+    protected final void closeWhenPipelineDone(@NonNull Closeable resource) {
+        PipelineAnalysis analysis = this.analysis;
+        if (analysis != null) {
+            analysis.addPipelineResource(resource);
+        }
+    }
+    
+    /**
+     * Returns the directory that this component should write its temporary files to. This is the spill directory of
+     * the {@link PipelineAnalysis} that created this component, which is deleted with all files left in it once the
+     * pipeline is done. If this component was not created by a running {@link PipelineAnalysis},
+     * {@link DefaultSettings#ANALYSIS_SPILL_DIR} is used.
+     * 
+     * @return The directory for temporary files. <code>null</code> for the temporary directory of the system.
+     */
+    protected final @Nullable File getSpillDir() {
+        PipelineAnalysis analysis = this.analysis;
+        File result = analysis != null ? analysis.getSpillDir() : null;
+        if (result == null) {
+            result = configuredSpillDir;
+        }
+        return result;
+    }
+    
+    /**
+     * Enables memoization of the results of this component. If the given file exists, the results are read from it
+     * instead of calling {@link #execute()}; thus, the input components are never started. The file is checked to
+     * be complete by this method already; if it is not (e.g. because it is truncated), it is deleted and the
+     * component is executed normally. Otherwise, the results are written to the file once {@link #execute()} finished
+     * without an exception and all input components that this component read until their end completed cleanly. All
+     * results must be {@link Serializable}; if one is not, the file is not written. This method should not be called
+     * once this component has started.
+     * 
+     * @param memoFile The file to store the results in.
+     */
+    public final void setMemoizationFile(@NonNull File memoFile) {
+        this.memoFile = memoFile;
+        this.replay = memoFile.isFile() && isMemoizationFileComplete(memoFile);
+    }
+    
+    /**
+     * Returns whether this component replays memoized results instead of executing (see
+     * {@link #setMemoizationFile(File)}). If it does, its input components are never started.
+     * 
+     * @return Whether this component replays memoized results.
+     */
+    final boolean isReplaying() {
+        return replay;
+    }
+    
+    /**
+     * Checks that the given memoization file was written completely, by checking the trailer at its end (see
+     * {@link #closeMemoizationFile(boolean)}). This does not read the results. Deletes the file if it is incomplete.
+     * 
+     * @param memoFile The file to check.
+     * 
+     * @return Whether the file contains a complete list of results.
+     */
+    private boolean isMemoizationFileComplete(@NonNull File memoFile) {
+        boolean complete = false;
+        try (RandomAccessFile in = new RandomAccessFile(memoFile, "r")) {
+            long length = in.length();
+            if (length >= MEMO_TRAILER_SIZE) {
+                in.seek(length - MEMO_TRAILER_SIZE);
+                complete = in.readLong() == MEMO_END_MARKER && in.readLong() == length - MEMO_TRAILER_SIZE;
+            }
+        } catch (IOException e) {
+            LOGGER.logExceptionWarning("Can't read memoized results of " + getClass().getSimpleName(), e);
+        }
+        
+        if (!complete) {
+            LOGGER.logWarning("Memoized results of " + getClass().getSimpleName() + " are incomplete; deleting "
+                    + memoFile + " and executing the component again");
+            memoFile.delete();
+        }
+        return complete;
+    }
+    
     /**
      * Starts a new thread that executes this analysis component. Only the first call to this method will start this
      * component. Subsequent calls do nothing.
@@ -214,7 +381,11 @@ public abstract class AnalysisComponent<O> {
         if (!started) {
             if (logResults) {
                 try {
-                    out = PipelineAnalysis.getInstance().getResultCollection().getWriter(getResultName());
+                    PipelineAnalysis analysis = this.analysis;
+                    if (analysis == null) {
+                        analysis = PipelineAnalysis.getInstance();
+                    }
+                    out = analysis.getResultCollection().getWriter(getResultName());
                 } catch (IOException e) {
                     LOGGER.logExceptionWarning("Can't create intermediate output file", e);
                 }
@@ -225,8 +396,9 @@ public abstract class AnalysisComponent<O> {
                     LOGGER.logInfo("Analysis component " + getClass().getSimpleName() + " starting");
                 }
                 
+                CURRENT.set(this);
                 try {
-                    execute();
+                    executeOrReplay();
                 } finally {
                     done();
                 }
@@ -241,15 +413,80 @@ public abstract class AnalysisComponent<O> {
         }
     }
     
+    /**
+     * Executes this component, or replays the memoized results if they are available (see
+     * {@link #setMemoizationFile(File)}).
+     */
+    private void executeOrReplay() {
+        File memoFile = this.memoFile;
+        if (memoFile != null && replay) {
+            LOGGER.logInfo("Analysis component " + getClass().getSimpleName() + " replays memoized results from "
+                    + memoFile);
+            replayMemoizedResults(memoFile);
+            
+        } else {
+            if (memoFile != null) {
+                File memoTmpFile = new File(memoFile.getPath() + ".tmp");
+                try {
+                    OutputStream memoRawOut = new BufferedOutputStream(new FileOutputStream(memoTmpFile));
+                    memoOut = new ObjectOutputStream(memoRawOut);
+                    this.memoRawOut = memoRawOut;
+                    this.memoTmpFile = memoTmpFile;
+                } catch (IOException e) {
+                    LOGGER.logExceptionWarning("Can't create file for memoized results", e);
+                }
+            }
+            
+            execute();
+        }
+        finished = true;
+    }
+    
+    /**
+     * Reads the results from the given memoization file and passes them to the next component. The trailer of the
+     * file was already checked by {@link #setMemoizationFile(File)}; if reading the results fails anyway (e.g. because
+     * the file is corrupt), the file is deleted and this component is marked as failed, so that the components after
+     * it don't memoize their incomplete results.
+     * 
+     * @param memoFile The file to read the results from.
+     */
+    @SuppressWarnings("unchecked")
+    private void replayMemoizedResults(@NonNull File memoFile) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(memoFile)))) {
+            Object result;
+            while ((result = in.readObject()) != null) {
+                addResult((@NonNull O) result);
+            }
+            
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.logException("Can't read memoized results of " + getClass().getSimpleName()
+                    + "; results are incomplete, deleting " + memoFile, e);
+            memoFile.delete();
+            failed = true;
+        }
+    }
+    
     /**
      * Retrieves the next result that this component creates. If none is currently available, this method blocks until
      * the result is ready.
+     * <p>
+     * If this component failed, the component that reads the end of the results (i.e. the component executed by the
+     * calling thread) is marked as failed, too. Thus, it does not memoize its results, which are based on incomplete
+     * input.
+     * </p>
      * 
      * @return The next result. <code>null</code> if this analysis is done and does not produce any results anymore.
      */
     public final @Nullable O getNextResult() {
         start(); // make sure we are started
-        return results.get();
+        O result = results.get();
+        if (result == null && failed) {
+            AnalysisComponent<?> reader = CURRENT.get();
+            if (reader != null && reader != this) {
+                reader.inputFailed = true;
+            }
+        }
+        return result;
     }
     
     /**
@@ -260,6 +497,18 @@ public abstract class AnalysisComponent<O> {
     protected final void addResult(@NonNull O result) {
         results.add(result);
         
+        ObjectOutputStream memoOut = this.memoOut;
+        if (memoOut != null) {
+            try {
+                memoOut.writeObject(result);
+                // don't keep references to all written results
+                memoOut.reset();
+            } catch (IOException e) {
+                LOGGER.logExceptionWarning("Can't memoize results of " + getClass().getSimpleName(), e);
+                closeMemoizationFile(false);
+            }
+        }
+        
         if (logResults) {
             LOGGER.logDebug("Analysis component " + getClass().getSimpleName() + " intermediate result: " + result);
             
@@ -273,6 +522,34 @@ public abstract class AnalysisComponent<O> {
         }
     }
     
+    /**
+     * Reports that this component can't produce all of its results, e.g. because a temporary file can't be read. The
+     * results passed to the next component so far are kept, but they are not memoized (see
+     * {@link #setMemoizationFile(File)}). {@link #execute()} should return after calling this.
+     * 
+     * @param message A description of the failure.
+     * @param cause The exception that caused the failure.
+     */
+    protected final void fail(@NonNull String message, @NonNull Throwable cause) {
+        LOGGER.logException("Analysis component " + getClass().getSimpleName() + " failed; its results are incomplete: "
+                + message, cause);
+        failed = true;
+        closeMemoizationFile(false);
+    }
+    
+    /**
+     * Reads all remaining results of the given input component and discards them. Used after {@link #fail(String,
+     * Throwable)}, so that the results of the input are not kept until the pipeline is done.
+     * 
+     * @param input The input component to read the remaining results of.
+     */
+    protected static void drain(@NonNull AnalysisComponent<?> input) {
+        Object result;
+        do {
+            result = input.getNextResult();
+        } while (result != null);
+    }
+    
     /**
      * Signal the next component that this component is done and will not produce any more results.
      */
@@ -283,6 +560,16 @@ public abstract class AnalysisComponent<O> {
                     "Execution took " + Util.formatDurationMs(duration));
         }
         
+        if (inputFailed) {
+            LOGGER.logWarning("An input of analysis component " + getClass().getSimpleName() + " failed; its results "
+                    + "are incomplete and not memoized");
+        }
+        if (!finished || inputFailed) {
+            failed = true;
+        }
+        
+        // finish the memoization file first, so that it is complete once the next component sees the end
+        closeMemoizationFile(!failed);
         results.end();
         if (out != null) {
             try {
@@ -295,6 +582,48 @@ public abstract class AnalysisComponent<O> {
         RESULZ_SIZE_LOGGER.removeComponent(this);
     }
     
+    /**
+     * Closes the file that the results are memoized in, if it is open. A complete file ends with a <code>null</code>
+     * object, followed by a trailer of {@link #MEMO_END_MARKER} and the length of the serialized data (both 8 bytes),
+     * so that its completeness can be checked without reading it (see {@link #isMemoizationFileComplete(File)}).
+     * 
+     * @param complete Whether all results have been written. If <code>true</code>, the file is moved to its final
+     *      location; otherwise, it is deleted.
+     */
+    private void closeMemoizationFile(boolean complete) {
+        ObjectOutputStream memoOut = this.memoOut;
+        OutputStream memoRawOut = this.memoRawOut;
+        File memoTmpFile = this.memoTmpFile;
+        File memoFile = this.memoFile;
+        if (memoOut != null && memoRawOut != null && memoTmpFile != null && memoFile != null) {
+            this.memoOut = null;
+            this.memoRawOut = null;
+            boolean success = false;
+            try {
+                if (complete) {
+                    memoOut.writeObject(null);
+                    memoOut.flush();
+                    
+                    DataOutputStream trailer = new DataOutputStream(memoRawOut);
+                    trailer.writeLong(MEMO_END_MARKER);
+                    trailer.writeLong(memoTmpFile.length());
+                    trailer.flush();
+                }
+                memoOut.close();
+                if (complete) {
+                    Files.move(memoTmpFile.toPath(), memoFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    success = true;
+                }
+            } catch (IOException e) {
+                LOGGER.logExceptionWarning("Can't write memoized results of " + getClass().getSimpleName(), e);
+            }
+            
+            if (!success) {
+                memoTmpFile.delete();
+            }
+        }
+    }
+    
     /**
      * Executes this component.
      */
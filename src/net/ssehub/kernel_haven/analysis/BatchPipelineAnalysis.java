@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.build_model.BuildModel;
+import net.ssehub.kernel_haven.code_model.SourceFile;
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+
+/**
+ * Runs several {@link PipelineAnalysis}es on a single extraction. The analyses are listed in
+ * {@link DefaultSettings#ANALYSIS_BATCH_CLASSES}. The extractors are only started once; their results are duplicated
+ * to the pipelines of all analyses. Each analysis writes its own result collection; the simple class name of the
+ * analysis is appended to the name of its output file(s).
+ * 
+ * @author Adam
+ */
+public class BatchPipelineAnalysis extends AbstractAnalysis {
+    
+    /**
+     * Creates a new {@link BatchPipelineAnalysis}.
+     * 
+     * @param config The global configuration.
+     */
+    public BatchPipelineAnalysis(@NonNull Configuration config) {
+        super(config);
+    }
+    
+    /**
+     * Instantiates the analyses listed in {@link DefaultSettings#ANALYSIS_BATCH_CLASSES}.
+     * 
+     * @return The analyses to run; the providers and output directory are already set.
+     * 
+     * @throws SetUpException If an analysis can not be instantiated.
+     */
+    private @NonNull List<@NonNull PipelineAnalysis> createAnalyses() throws SetUpException {
+        List<@NonNull String> classNames = config.getValue(DefaultSettings.ANALYSIS_BATCH_CLASSES);
+        if (classNames.isEmpty()) {
+            throw new SetUpException("No analyses specified in " + DefaultSettings.ANALYSIS_BATCH_CLASSES.getKey());
+        }
+        
+        String baseName = config.getValue(DefaultSettings.ANALYSIS_RESULT_NAME);
+        Set<@NonNull String> usedNames = new HashSet<>();
+        
+        List<@NonNull PipelineAnalysis> analyses = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            PipelineAnalysis analysis;
+            try {
+                Class<? extends PipelineAnalysis> analysisClass = ClassLoader.getSystemClassLoader()
+                        .loadClass(className).asSubclass(PipelineAnalysis.class);
+                analysis = analysisClass.getConstructor(Configuration.class).newInstance(config);
+                
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new SetUpException("Can't instantiate analysis " + className, e);
+            }
+            
+            analysis.setVariabilityModelProvider(vmProvider);
+            analysis.setBuildModelProvider(bmProvider);
+            analysis.setCodeModelProvider(cmProvider);
+            File outputDir = getOutputDir();
+            if (outputDir != null) {
+                analysis.setOutputDir(outputDir);
+            }
+            
+            // the same analysis may be listed multiple times
+            String name = baseName + "_" + analysis.getClass().getSimpleName();
+            String uniqueName = name;
+            for (int i = 2; !usedNames.add(uniqueName); i++) {
+                uniqueName = name + i;
+            }
+            analysis.setResultName(uniqueName);
+            
+            analyses.add(analysis);
+        }
+        
+        return analyses;
+    }
+    
+    @Override
+    public void run() {
+        Thread.currentThread().setName("AnalysisPipelineController");
+        try {
+            List<@NonNull PipelineAnalysis> analyses = createAnalyses();
+            
+            PipelineAnalysis.ExtractorDataDuplicator<VariabilityModel> vmStarter
+                    = new PipelineAnalysis.ExtractorDataDuplicator<>(vmProvider, false, "VM");
+            PipelineAnalysis.ExtractorDataDuplicator<BuildModel> bmStarter
+                    = new PipelineAnalysis.ExtractorDataDuplicator<>(bmProvider, false, "BM");
+            PipelineAnalysis.ExtractorDataDuplicator<SourceFile<?>> cmStarter
+                    = new PipelineAnalysis.ExtractorDataDuplicator<>(cmProvider, true, "CM");
+            
+            // the pipelines have to be created one after another, since the components are associated with the
+            // current PipelineAnalysis instance
+            List<@NonNull AnalysisComponent<?>> mainComponents = new ArrayList<>(analyses.size());
+            for (PipelineAnalysis analysis : analyses) {
+                mainComponents.add(analysis.setUpPipeline(vmStarter, bmStarter, cmStarter));
+            }
+            
+            // the duplicators copy the data to all starting components created so far, i.e. those of all pipelines
+            if (config.getValue(DefaultSettings.ANALYSIS_PIPELINE_START_EXTRACTORS)) {
+                vmStarter.start();
+                bmStarter.start();
+                cmStarter.start();
+            }
+            
+            runPipelines(analyses, mainComponents);
+            
+            for (PipelineAnalysis analysis : analyses) {
+                for (File file : analysis.getOutputFiles()) {
+                    addOutputFile(file);
+                }
+            }
+            
+        } catch (SetUpException e) {
+            LOGGER.logException("Exception while setting up", e);
+        }
+    }
+    
+    /**
+     * Runs the given pipelines in parallel and waits until all of them are done. Since all pipelines get their data
+     * from the same extractors, running them one after another would keep all extractor data in memory until the
+     * last pipeline is done.
+     * 
+     * @param analyses The analyses.
+     * @param mainComponents The main component of each analysis.
+     */
+    private void runPipelines(@NonNull List<@NonNull PipelineAnalysis> analyses,
+            @NonNull List<@NonNull AnalysisComponent<?>> mainComponents) {
+        
+        List<Thread> threads = new ArrayList<>(analyses.size());
+        for (int i = 0; i < analyses.size(); i++) {
+            PipelineAnalysis analysis = analyses.get(i);
+            AnalysisComponent<?> mainComponent = mainComponents.get(i);
+            
+            Thread th = new Thread(() -> analysis.runPipeline(mainComponent),
+                    "AnalysisPipelineController-" + analysis.getClass().getSimpleName());
+            threads.add(th);
+            th.setDaemon(true);
+            th.start();
+        }
+        
+        boolean interrupted = false;
+        for (Thread th : threads) {
+            // keep waiting if interrupted; the pipelines can't be aborted and their results are still needed
+            boolean joined = false;
+            while (!joined) {
+                try {
+                    th.join();
+                    joined = true;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
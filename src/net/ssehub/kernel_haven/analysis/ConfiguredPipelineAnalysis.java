@@ -17,22 +17,62 @@ package net.ssehub.kernel_haven.analysis;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import net.ssehub.kernel_haven.SetUpException;
 import net.ssehub.kernel_haven.config.Configuration;
 import net.ssehub.kernel_haven.config.DefaultSettings;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * A {@link PipelineAnalysis} that reads the pipeline configuration from the user properties file and instantiates it
  * via reflection.
+ * <p>
+ * The results of the components listed in {@link DefaultSettings#ANALYSIS_MEMOIZE_COMPONENTS} are memoized (see
+ * {@link AnalysisComponent#setMemoizationFile(File)}). The memoization key of a component consists of its part of the
+ * pipeline string (i.e. its class and its input components, recursively) and all properties that may influence the
+ * results of the components.
+ * </p>
  * 
  * @author Adam
  */
 public class ConfiguredPipelineAnalysis extends PipelineAnalysis {
+    
+    /**
+     * Prefixes of property keys that don't influence the results of the analysis components. The pipeline string
+     * itself is part of the key of each component.
+     */
+    private static final @NonNull String @NonNull [] NON_RESULT_PREFIXES = {
+        "analysis.pipeline", "analysis.output.", "analysis.memoize.", "analysis.class", "analysis.batch.", "log.",
+        "archive", "output_dir", "cache_dir", "plugins", "performance_probes.", "daemon.",
+    };
+    
+    /**
+     * The part of the pipeline string that created each component, normalized.
+     */
+    private @NonNull Map<AnalysisComponent<?>, @NonNull String> componentKeys = new IdentityHashMap<>();
+    
+    /**
+     * The input components of each created component.
+     */
+    private @NonNull Map<AnalysisComponent<?>, @NonNull List<AnalysisComponent<?>>> componentInputs
+            = new IdentityHashMap<>();
+    
+    private @Nullable String propertiesKey;
 
     /**
      * Creates a new {@link ConfiguredPipelineAnalysis}.
@@ -46,7 +86,35 @@ public class ConfiguredPipelineAnalysis extends PipelineAnalysis {
     @Override
     protected @NonNull AnalysisComponent<?> createPipeline() throws SetUpException {
         String configurationString = config.getValue(DefaultSettings.ANALYSIS_PIPELINE);
-        return createComponent(configurationString);
+        AnalysisComponent<?> mainComponent = createComponent(configurationString);
+        discardUnusedComponents(mainComponent);
+        return mainComponent;
+    }
+    
+    /**
+     * Discards the extractor components that are only used by components that replay memoized results (see
+     * {@link #discardExtractorComponent(AnalysisComponent)}). This way, the extractors are not started and their
+     * results are not kept for components that never read them.
+     * 
+     * @param mainComponent The main component of the pipeline.
+     */
+    private void discardUnusedComponents(@NonNull AnalysisComponent<?> mainComponent) {
+        Set<AnalysisComponent<?>> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<AnalysisComponent<?>> todo = new ArrayDeque<>();
+        todo.add(mainComponent);
+        while (!todo.isEmpty()) {
+            AnalysisComponent<?> component = todo.remove();
+            // the inputs of a replaying component are never started
+            if (used.add(component) && !component.isReplaying()) {
+                todo.addAll(componentInputs.getOrDefault(component, Collections.emptyList()));
+            }
+        }
+        
+        for (AnalysisComponent<?> component : componentInputs.keySet()) {
+            if (!used.contains(component)) {
+                discardExtractorComponent(component);
+            }
+        }
     }
     
     /**
@@ -75,6 +143,7 @@ public class ConfiguredPipelineAnalysis extends PipelineAnalysis {
         
         String className = configuration.substring(0, openingBracket).trim();
         List<AnalysisComponent<?>> parameters = new ArrayList<>();
+        StringBuilder key = new StringBuilder(className).append('(');
         
         String parameterString = configuration.substring(openingBracket + 1, closingBracket).trim();
         
@@ -82,9 +151,15 @@ public class ConfiguredPipelineAnalysis extends PipelineAnalysis {
             List<String> parameterParts = getParameterParts(parameterString);
             
             for (String param : parameterParts) {
-                parameters.add(createComponent(param));
+                AnalysisComponent<?> parameter = createComponent(param);
+                if (!parameters.isEmpty()) {
+                    key.append(',');
+                }
+                key.append(componentKeys.get(parameter));
+                parameters.add(parameter);
             }
         }
+        key.append(')');
         
         AnalysisComponent<?> result;
         if (parameters.isEmpty() && className.equals("cmComponent")) {
@@ -97,30 +172,120 @@ public class ConfiguredPipelineAnalysis extends PipelineAnalysis {
             result = getVmComponent();
             
         } else {
-            try {
-                @SuppressWarnings("unchecked")
-                Class<? extends AnalysisComponent<?>> componentClass =
-                        (Class<? extends AnalysisComponent<?>>) ClassLoader.getSystemClassLoader().loadClass(className);
-                
-                Object[] parameterValues = new Object[1 + parameters.size()];
-                Class<?>[] parameterTypes = new Class[1 + parameters.size()];
-                parameterTypes[0] = Configuration.class;
-                parameterValues[0] = config;
-                for (int i = 1; i < parameterTypes.length; i++) {
-                    parameterTypes[i] = AnalysisComponent.class;
-                    parameterValues[i] = parameters.get(i - 1);
-                }
-                
-                result = notNull(componentClass.getConstructor(parameterTypes).newInstance(parameterValues));
-                
-            } catch (ReflectiveOperationException | ClassCastException | IllegalArgumentException e) {
-                throw new SetUpException(e);
-            }
+            result = instantiateComponent(className, parameters);
+            configureMemoization(result, notNull(key.toString()));
         }
         
+        componentKeys.put(result, notNull(key.toString()));
+        componentInputs.put(result, parameters);
+        return result;
+    }
+    
+    /**
+     * Creates an instance of the given component class via reflection.
+     * 
+     * @param className The fully qualified name of the component class.
+     * @param parameters The input components to pass to the constructor (after the configuration).
+     * 
+     * @return The created component.
+     * 
+     * @throws SetUpException If creating the component fails.
+     */
+    private @NonNull AnalysisComponent<?> instantiateComponent(@NonNull String className,
+            @NonNull List<AnalysisComponent<?>> parameters) throws SetUpException {
+        
+        AnalysisComponent<?> result;
+        try {
+            @SuppressWarnings("unchecked")
+            Class<? extends AnalysisComponent<?>> componentClass =
+                    (Class<? extends AnalysisComponent<?>>) ClassLoader.getSystemClassLoader().loadClass(className);
+            
+            Object[] parameterValues = new Object[1 + parameters.size()];
+            Class<?>[] parameterTypes = new Class[1 + parameters.size()];
+            parameterTypes[0] = Configuration.class;
+            parameterValues[0] = config;
+            for (int i = 1; i < parameterTypes.length; i++) {
+                parameterTypes[i] = AnalysisComponent.class;
+                parameterValues[i] = parameters.get(i - 1);
+            }
+            
+            result = notNull(componentClass.getConstructor(parameterTypes).newInstance(parameterValues));
+            
+        } catch (ReflectiveOperationException | ClassCastException | IllegalArgumentException e) {
+            throw new SetUpException(e);
+        }
         return result;
     }
     
+    /**
+     * Enables memoization for the given component, if it is configured for it.
+     * 
+     * @param component The component.
+     * @param key The normalized part of the pipeline string that created the component.
+     * 
+     * @throws SetUpException If the configured memoization directory is invalid.
+     */
+    private void configureMemoization(@NonNull AnalysisComponent<?> component, @NonNull String key)
+            throws SetUpException {
+        
+        File memoDir = config.getValue(DefaultSettings.ANALYSIS_MEMOIZE_DIR);
+        String name = component.getClass().getSimpleName();
+        if (memoDir != null && config.getValue(DefaultSettings.ANALYSIS_MEMOIZE_COMPONENTS).contains(name)) {
+            String propertiesKey = this.propertiesKey;
+            if (propertiesKey == null) {
+                propertiesKey = getPropertiesKey();
+                this.propertiesKey = propertiesKey;
+            }
+            
+            File memoFile = new File(memoDir, name + "_" + hash(propertiesKey + "\n" + key) + ".memo");
+            LOGGER.logDebug("Memoizing results of " + name + " in " + memoFile);
+            component.setMemoizationFile(memoFile);
+        }
+    }
+    
+    /**
+     * Creates a string of all properties that may influence the results of the analysis components.
+     * 
+     * @return A string that is equal for two configurations, if the components will produce the same results.
+     */
+    private @NonNull String getPropertiesKey() {
+        Map<String, String> relevant = new TreeMap<>();
+        for (Map.Entry<Object, Object> property : config.copyProperties().entrySet()) {
+            String key = property.getKey().toString();
+            boolean isRelevant = true;
+            for (String prefix : NON_RESULT_PREFIXES) {
+                if (key.startsWith(prefix)) {
+                    isRelevant = false;
+                }
+            }
+            if (isRelevant) {
+                relevant.put(key, property.getValue().toString());
+            }
+        }
+        return notNull(relevant.toString());
+    }
+    
+    /**
+     * Creates a SHA-256 hash of the given string.
+     * 
+     * @param str The string to hash.
+     * 
+     * @return The hash as a hexadecimal string.
+     * 
+     * @throws SetUpException If SHA-256 is not available.
+     */
+    private static @NonNull String hash(@NonNull String str) throws SetUpException {
+        StringBuilder result = new StringBuilder();
+        try {
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(str.getBytes(StandardCharsets.UTF_8))) {
+                result.append(String.format("%02x", b));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new SetUpException(e);
+        }
+        return notNull(result.toString());
+    }
+    
     /**
      * Splits the given string at each ',' that is not nested inside brackets.
      * 
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.io.TableElement;
+import net.ssehub.kernel_haven.util.io.TableRow;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A component that groups the results of the previous component by a key. For each distinct key, one {@link Group}
+ * with all results that have this key is created; the groups are ordered by the first occurrence of their key. Results
+ * with a <code>null</code> key form a group, too.
+ * <p>
+ * If the heap usage exceeds {@link DefaultSettings#ANALYSIS_SPILL_HEAP_USAGE} while collecting the results, they are
+ * distributed to partitions on disk by the hash of their key and each partition is grouped on its own. This requires
+ * that the results are serializable; the order of the groups is not kept in this case. If a result is not
+ * serializable, all results are read back into memory. If a partition can't be read, the component fails (see
+ * {@link #fail(String, Throwable)}).
+ * </p>
+ * <p>
+ * When created from a pipeline configuration, the key is read from the results via
+ * {@link DefaultSettings#ANALYSIS_GROUP_BY_KEY} (see {@link KeyExtractor}).
+ * </p>
+ * 
+ * @param <T> The type of results to group.
+ * 
+ * @author Adam
+ */
+public class GroupByComponent<T> extends AnalysisComponent<GroupByComponent.Group<T>> {
+    
+    private @NonNull AnalysisComponent<T> previousComponent;
+    
+    private @NonNull Function<? super T, ?> key;
+    
+    private @Nullable File spillDir;
+    
+    private double maxHeapUsage;
+    
+    /**
+     * Creates a group-by component that reads the key as configured by {@link DefaultSettings#ANALYSIS_GROUP_BY_KEY}.
+     * 
+     * @param config The pipeline configuration.
+     * @param previousComponent The component to group the results of.
+     */
+    public GroupByComponent(@NonNull Configuration config, @NonNull AnalysisComponent<T> previousComponent) {
+        this(config, previousComponent, new KeyExtractor(config.getValue(DefaultSettings.ANALYSIS_GROUP_BY_KEY)));
+    }
+    
+    /**
+     * Creates a group-by component with the given key function.
+     * 
+     * @param config The pipeline configuration.
+     * @param previousComponent The component to group the results of.
+     * @param key Extracts the key from the results of the previous component.
+     */
+    public GroupByComponent(@NonNull Configuration config, @NonNull AnalysisComponent<T> previousComponent,
+            @NonNull Function<? super T, ?> key) {
+        super(config);
+        this.previousComponent = previousComponent;
+        this.key = key;
+        this.maxHeapUsage = config.getValue(DefaultSettings.ANALYSIS_SPILL_HEAP_USAGE) / 100.0;
+    }
+    
+    @Override
+    protected void execute() {
+        spillDir = getSpillDir();
+        try (SpillingGroupMap<T> groups = new SpillingGroupMap<>(key, spillDir, maxHeapUsage)) {
+            T result;
+            while ((result = previousComponent.getNextResult()) != null) {
+                groups.add(result);
+            }
+            
+            if (groups.isSpilled()) {
+                LOGGER.logInfo("Heap usage exceeded while grouping; grouping partitions from disk");
+            }
+            
+            for (int i = 0; i < groups.getNumPartitions(); i++) {
+                for (Map.Entry<@Nullable Object, @NonNull List<@NonNull T>> entry : groups.getPartition(i).entrySet()) {
+                    addResult(new Group<>(entry.getKey(), entry.getValue()));
+                }
+            }
+            
+        } catch (IOException e) {
+            fail("Can't read partitions from disk", e);
+            drain(previousComponent);
+        }
+    }
+    
+    @Override
+    public @NonNull String getResultName() {
+        return previousComponent.getResultName() + " Groups";
+    }
+    
+    /**
+     * All results with the same key.
+     * 
+     * @param <T> The type of results.
+     */
+    @TableRow
+    public static class Group<T> implements Serializable {
+        
+        private static final long serialVersionUID = 2868187413522419360L;
+        
+        private @Nullable Object key;
+        
+        private @NonNull List<@NonNull T> elements;
+        
+        /**
+         * Creates a group.
+         * 
+         * @param key The key of the results in this group; may be <code>null</code>.
+         * @param elements The results with this key.
+         */
+        public Group(@Nullable Object key, @NonNull List<@NonNull T> elements) {
+            this.key = key;
+            this.elements = elements;
+        }
+        
+        /**
+         * Returns the key of the results in this group.
+         * 
+         * @return The key; may be <code>null</code>.
+         */
+        @TableElement(index = 0, name = "Key")
+        public @Nullable Object getKey() {
+            return key;
+        }
+        
+        /**
+         * Returns the results with this key.
+         * 
+         * @return The results of this group.
+         */
+        @TableElement(index = 1, name = "Elements")
+        public @NonNull List<@NonNull T> getElements() {
+            return elements;
+        }
+        
+        @Override
+        public @NonNull String toString() {
+            return "Group[key=" + key + ", elements=" + elements + "]";
+        }
+        
+    }
+
+}
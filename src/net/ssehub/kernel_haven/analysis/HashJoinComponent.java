@@ -0,0 +1,295 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.io.TableElement;
+import net.ssehub.kernel_haven.util.io.TableRow;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A component that joins the results of two components by a key (an inner join). For each pair of a left and a right
+ * result with equal keys, a {@link JoinResult} is created. Results with a <code>null</code> key are not joined.
+ * <p>
+ * All results of the right component are read into a hash map first; the results of the left component are then
+ * looked up in this map. Thus, the right component should be the one with fewer results. If the heap usage exceeds
+ * {@link DefaultSettings#ANALYSIS_SPILL_HEAP_USAGE} while building the map, both inputs are distributed to partitions
+ * on disk by the hash of their key and each partition is joined on its own (a "grace hash join"). This requires that
+ * the results are serializable; the order of the joined results is not kept in this case. If a result is not
+ * serializable, the right results are read back into memory and the join is done in memory. If a partition can't be
+ * read, the component fails (see {@link #fail(String, Throwable)}).
+ * </p>
+ * <p>
+ * When created from a pipeline configuration, the keys are read from the results via
+ * {@link DefaultSettings#ANALYSIS_JOIN_LEFT_KEY} and {@link DefaultSettings#ANALYSIS_JOIN_RIGHT_KEY} (see
+ * {@link KeyExtractor}).
+ * </p>
+ * 
+ * @param <L> The type of results of the left component.
+ * @param <R> The type of results of the right component.
+ * 
+ * @author Adam
+ */
+public class HashJoinComponent<L, R> extends AnalysisComponent<HashJoinComponent.JoinResult<L, R>> {
+    
+    private @NonNull AnalysisComponent<L> left;
+    
+    private @NonNull AnalysisComponent<R> right;
+    
+    private @NonNull Function<? super L, ?> leftKey;
+    
+    private @NonNull Function<? super R, ?> rightKey;
+    
+    private @Nullable File spillDir;
+    
+    private double maxHeapUsage;
+    
+    /**
+     * Creates a join component that reads the keys as configured by {@link DefaultSettings#ANALYSIS_JOIN_LEFT_KEY}
+     * and {@link DefaultSettings#ANALYSIS_JOIN_RIGHT_KEY}.
+     * 
+     * @param config The pipeline configuration.
+     * @param left The left input component.
+     * @param right The right input component. All results of this are held in memory (or spilled to disk).
+     */
+    public HashJoinComponent(@NonNull Configuration config, @NonNull AnalysisComponent<L> left,
+            @NonNull AnalysisComponent<R> right) {
+        this(config, left, right, new KeyExtractor(config.getValue(DefaultSettings.ANALYSIS_JOIN_LEFT_KEY)),
+                new KeyExtractor(config.getValue(DefaultSettings.ANALYSIS_JOIN_RIGHT_KEY)));
+    }
+    
+    /**
+     * Creates a join component with the given key functions.
+     * 
+     * @param config The pipeline configuration.
+     * @param left The left input component.
+     * @param right The right input component. All results of this are held in memory (or spilled to disk).
+     * @param leftKey Extracts the key from the results of the left component.
+     * @param rightKey Extracts the key from the results of the right component.
+     */
+    public HashJoinComponent(@NonNull Configuration config, @NonNull AnalysisComponent<L> left,
+            @NonNull AnalysisComponent<R> right, @NonNull Function<? super L, ?> leftKey,
+            @NonNull Function<? super R, ?> rightKey) {
+        super(config);
+        this.left = left;
+        this.right = right;
+        this.leftKey = leftKey;
+        this.rightKey = rightKey;
+        this.maxHeapUsage = config.getValue(DefaultSettings.ANALYSIS_SPILL_HEAP_USAGE) / 100.0;
+    }
+    
+    @Override
+    protected void execute() {
+        spillDir = getSpillDir();
+        try (SpillingGroupMap<R> rightGroups = new SpillingGroupMap<>(rightKey, spillDir, maxHeapUsage)) {
+            R rightResult;
+            while ((rightResult = right.getNextResult()) != null) {
+                rightGroups.add(rightResult);
+            }
+            
+            if (rightGroups.isSpilled()) {
+                LOGGER.logInfo("Heap usage exceeded while reading right input; joining partitions from disk");
+                joinPartitioned(rightGroups);
+                
+            } else {
+                probeRemaining(rightGroups.getPartition(0));
+            }
+            
+        } catch (IOException e) {
+            fail("Can't read partitions from disk", e);
+            drain(right);
+            drain(left);
+        }
+    }
+    
+    /**
+     * Distributes the left results to the same partitions as the spilled right results and joins each partition. If
+     * a left result can't be written to its partition (e.g. because it is not serializable), the right results are
+     * read back into memory and the left results are joined in memory instead.
+     * 
+     * @param rightGroups The spilled right results.
+     * 
+     * @throws IOException If reading the partitions fails.
+     */
+    private void joinPartitioned(@NonNull SpillingGroupMap<R> rightGroups) throws IOException {
+        try (SpilledPartitions<L> leftPartitions = new SpilledPartitions<>(spillDir, rightGroups.getNumPartitions())) {
+            L unpartitioned = null;
+            L leftResult;
+            while (unpartitioned == null && (leftResult = left.getNextResult()) != null) {
+                if (!addToPartition(leftPartitions, leftResult)) {
+                    unpartitioned = leftResult;
+                }
+            }
+            leftPartitions.finishWriting();
+            
+            if (unpartitioned == null) {
+                for (int i = 0; i < rightGroups.getNumPartitions(); i++) {
+                    Map<@Nullable Object, @NonNull List<@NonNull R>> map = rightGroups.getPartition(i);
+                    leftPartitions.read(i, (element) -> probe(map, element));
+                }
+                
+            } else {
+                rightGroups.readBack();
+                Map<@Nullable Object, @NonNull List<@NonNull R>> map = rightGroups.getPartition(0);
+                for (int i = 0; i < leftPartitions.getNumPartitions(); i++) {
+                    leftPartitions.read(i, (element) -> probe(map, element));
+                }
+                probe(map, unpartitioned);
+                probeRemaining(map);
+            }
+        }
+    }
+    
+    /**
+     * Writes a left result to its partition. Results with a <code>null</code> key are skipped.
+     * 
+     * @param leftPartitions The partitions of the left results.
+     * @param leftResult The left result to write.
+     * 
+     * @return Whether the result was written (or skipped); <code>false</code> if writing it failed.
+     */
+    private boolean addToPartition(@NonNull SpilledPartitions<L> leftPartitions, @NonNull L leftResult) {
+        boolean success = true;
+        Object key = leftKey.apply(leftResult);
+        if (key != null) {
+            try {
+                if (!(leftResult instanceof Serializable)) {
+                    // don't corrupt the partition by a failed write
+                    throw new NotSerializableException(leftResult.getClass().getName());
+                }
+                leftPartitions.add(key, leftResult);
+                
+            } catch (IOException e) {
+                LOGGER.logExceptionWarning("Can't write left input to disk; joining in memory", e);
+                success = false;
+            }
+        }
+        return success;
+    }
+    
+    /**
+     * Joins all remaining left results with the given right results.
+     * 
+     * @param rightGroups The right results, grouped by key.
+     */
+    private void probeRemaining(@NonNull Map<@Nullable Object, @NonNull List<@NonNull R>> rightGroups) {
+        L leftResult;
+        while ((leftResult = left.getNextResult()) != null) {
+            probe(rightGroups, leftResult);
+        }
+    }
+    
+    /**
+     * Adds a {@link JoinResult} for each right result with the same key as the given left result.
+     * 
+     * @param rightGroups The right results, grouped by key.
+     * @param leftResult The left result to join.
+     */
+    private void probe(@NonNull Map<@Nullable Object, @NonNull List<@NonNull R>> rightGroups, @NonNull L leftResult) {
+        Object key = leftKey.apply(leftResult);
+        if (key != null) {
+            List<@NonNull R> matches = rightGroups.get(key);
+            if (matches != null) {
+                for (R match : matches) {
+                    addResult(new JoinResult<>(key, leftResult, match));
+                }
+            }
+        }
+    }
+    
+    @Override
+    public @NonNull String getResultName() {
+        return left.getResultName() + " joined with " + right.getResultName();
+    }
+    
+    /**
+     * A pair of a left and a right result with the same key.
+     * 
+     * @param <L> The type of the left result.
+     * @param <R> The type of the right result.
+     */
+    @TableRow
+    public static class JoinResult<L, R> implements Serializable {
+        
+        private static final long serialVersionUID = -5420951637258103672L;
+        
+        private @NonNull Object key;
+        
+        private @NonNull L left;
+        
+        private @NonNull R right;
+        
+        /**
+         * Creates a join result.
+         * 
+         * @param key The key that the results are joined by.
+         * @param left The left result.
+         * @param right The right result.
+         */
+        public JoinResult(@NonNull Object key, @NonNull L left, @NonNull R right) {
+            this.key = key;
+            this.left = left;
+            this.right = right;
+        }
+        
+        /**
+         * Returns the key that the results are joined by.
+         * 
+         * @return The key.
+         */
+        @TableElement(index = 0, name = "Key")
+        public @NonNull Object getKey() {
+            return key;
+        }
+        
+        /**
+         * Returns the result of the left component.
+         * 
+         * @return The left result.
+         */
+        @TableElement(index = 1, name = "Left")
+        public @NonNull L getLeft() {
+            return left;
+        }
+        
+        /**
+         * Returns the result of the right component.
+         * 
+         * @return The right result.
+         */
+        @TableElement(index = 2, name = "Right")
+        public @NonNull R getRight() {
+            return right;
+        }
+        
+        @Override
+        public @NonNull String toString() {
+            return "JoinResult[key=" + key + ", left=" + left + ", right=" + right + "]";
+        }
+        
+    }
+
+}
@@ -31,7 +31,7 @@ public interface IAnalysisObserver {
      * Will be called after the last result was produced.
      * 
      * @param analysisResults Contains all produced results, the list will be of type of the input/output types of
-     *     the observed analysis
+     *     the observed analysis. It is cleared once the analysis pipeline is done; copy it to keep the results longer.
      */
     public void notifyFinished(@NonNull List<@NonNull ?> analysisResults);
 
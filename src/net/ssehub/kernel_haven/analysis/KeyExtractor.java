@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+
+import net.ssehub.kernel_haven.util.io.TableElement;
+import net.ssehub.kernel_haven.util.io.TableRow;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Extracts a key from an object by following a path of properties, e.g. <code>sourceFile.path</code>. Used to
+ * configure the keys of the {@link HashJoinComponent} and the {@link GroupByComponent} in the user configuration.
+ * Each property name in the path is resolved (in this order) as:
+ * <ol>
+ *      <li>the name of a {@link TableElement}, if the class is a {@link TableRow} (case insensitive),</li>
+ *      <li>a public getter without parameters: <code>get&lt;Name&gt;()</code>, <code>is&lt;Name&gt;()</code> or
+ *      <code>&lt;name&gt;()</code>,</li>
+ *      <li>a public field.</li>
+ * </ol>
+ * An empty path uses the object itself as the key. If a property on the path is <code>null</code>, the key is
+ * <code>null</code>.
+ * 
+ * @author Adam
+ */
+public class KeyExtractor implements Function<Object, @Nullable Object> {
+    
+    private @NonNull String path;
+    
+    private @NonNull String @NonNull [] properties;
+    
+    /**
+     * The cached accessors for each property in {@link #properties}, at the same index.
+     */
+    private @NonNull AccessorCache @NonNull [] accessors;
+    
+    /**
+     * Creates a key extractor for the given property path.
+     * 
+     * @param path The properties to follow, separated by dots. An empty string uses the object itself as the key.
+     * 
+     * @throws IllegalArgumentException If a property name in the path is empty (e.g. <code>a..b</code>).
+     */
+    public KeyExtractor(@NonNull String path) throws IllegalArgumentException {
+        this.path = path.trim();
+        this.properties = this.path.isEmpty() ? new @NonNull String[0] : this.path.split("\\.", -1);
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = properties[i].trim();
+            if (properties[i].isEmpty()) {
+                throw new IllegalArgumentException("Empty property name in key path \"" + this.path + "\"");
+            }
+        }
+        this.accessors = new @NonNull AccessorCache[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            accessors[i] = new AccessorCache(properties[i]);
+        }
+    }
+    
+    /**
+     * Extracts the key from the given object.
+     * 
+     * @param object The object to extract the key from.
+     * 
+     * @return The key; may be <code>null</code>.
+     * 
+     * @throws IllegalArgumentException If a property on the path does not exist or can't be read.
+     */
+    @Override
+    public @Nullable Object apply(Object object) throws IllegalArgumentException {
+        Object current = object;
+        for (int i = 0; i < properties.length && current != null; i++) {
+            current = getProperty(current, accessors[i]);
+        }
+        return current;
+    }
+    
+    /**
+     * Reads a single property of the given object.
+     * 
+     * @param object The object to read the property from.
+     * @param cache The accessors of the property.
+     * 
+     * @return The value of the property.
+     * 
+     * @throws IllegalArgumentException If the property does not exist or can't be read.
+     */
+    private static @Nullable Object getProperty(@NonNull Object object, @NonNull AccessorCache cache)
+            throws IllegalArgumentException {
+        
+        Class<?> clazz = object.getClass();
+        AccessibleObject accessor = cache.get(clazz);
+        
+        try {
+            Object result;
+            if (accessor instanceof Method) {
+                result = ((Method) accessor).invoke(object);
+            } else {
+                result = ((Field) accessor).get(object);
+            }
+            return result;
+            
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't read property " + cache.property + " of " + clazz.getName(), e);
+        }
+    }
+    
+    /**
+     * Caches the method or field to read a single property for each class. Since the accessors are stored per
+     * {@link Class} object, classes with the same name from different class loaders don't share an accessor, and
+     * looking up an accessor does not allocate.
+     */
+    private static class AccessorCache extends ClassValue<@NonNull AccessibleObject> {
+        
+        private @NonNull String property;
+        
+        /**
+         * Creates the cache for the given property.
+         * 
+         * @param property The name of the property.
+         */
+        AccessorCache(@NonNull String property) {
+            this.property = property;
+        }
+        
+        @Override
+        protected @NonNull AccessibleObject computeValue(Class<?> type) throws IllegalArgumentException {
+            return findAccessor(type, property);
+        }
+        
+    }
+    
+    /**
+     * Finds the method or field to read the given property of the given class.
+     * 
+     * @param clazz The class to find the property in.
+     * @param property The name of the property.
+     * 
+     * @return The method or field to read the property.
+     * 
+     * @throws IllegalArgumentException If the class has no such property.
+     */
+    private static @NonNull AccessibleObject findAccessor(@NonNull Class<?> clazz, @NonNull String property)
+            throws IllegalArgumentException {
+        
+        String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        Method tableElement = null;
+        Method getter = null;
+        for (Method method : clazz.getMethods()) {
+            if (method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers())) {
+                TableElement annotation = method.getAnnotation(TableElement.class);
+                if (annotation != null && clazz.isAnnotationPresent(TableRow.class)
+                        && annotation.name().equalsIgnoreCase(property)) {
+                    tableElement = method;
+                }
+                String name = method.getName();
+                if (getter == null && (name.equals("get" + capitalized) || name.equals("is" + capitalized)
+                        || name.equals(property))) {
+                    getter = method;
+                }
+            }
+        }
+        
+        AccessibleObject result = tableElement != null ? tableElement : getter;
+        if (result == null) {
+            try {
+                result = clazz.getField(property);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException("Class " + clazz.getName() + " has no property " + property);
+            }
+        }
+        // public members of non-public classes (e.g. anonymous or private nested classes) are not accessible otherwise
+        result.setAccessible(true);
+        return result;
+    }
+    
+    @Override
+    public @NonNull String toString() {
+        return "KeyExtractor[" + path + "]";
+    }
+
+}
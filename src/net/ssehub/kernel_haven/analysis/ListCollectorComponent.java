@@ -15,14 +15,18 @@
  */
 package net.ssehub.kernel_haven.analysis;
 
-import java.util.LinkedList;
 import java.util.List;
 
 import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.DiskSpillingList;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 
 /**
- * A component that collects all results from the previous component into one list.
+ * A component that collects all results from the previous component into one list. If the heap usage exceeds
+ * {@link DefaultSettings#ANALYSIS_SPILL_HEAP_USAGE}, the collected results are written to disk (see
+ * {@link DiskSpillingList}). The temporary files are deleted once the {@link PipelineAnalysis} is done; thus, the list
+ * must not be used afterwards.
  * 
  * @param <T> The type of result to collect into one list.
  * 
@@ -32,6 +36,8 @@ public class ListCollectorComponent<T> extends AnalysisComponent<List<T>> {
 
     private @NonNull AnalysisComponent<T> previousComponent;
     
+    private @NonNull Configuration config;
+    
     /**
      * Creates anew {@link ListCollectorComponent} for the given previous component.
      * 
@@ -41,11 +47,14 @@ public class ListCollectorComponent<T> extends AnalysisComponent<List<T>> {
     public ListCollectorComponent(@NonNull Configuration config, @NonNull AnalysisComponent<T> previousComponent) {
         super(config);
         this.previousComponent = previousComponent;
+        this.config = config;
     }
 
     @Override
     protected void execute() {
-        List<T> collected = new LinkedList<>();
+        DiskSpillingList<T> collected = new DiskSpillingList<>(getSpillDir(), config);
+        // delete the temporary files once the next component is done with the list
+        closeWhenPipelineDone(collected);
         
         T result;
         while ((result = previousComponent.getNextResult()) != null) {
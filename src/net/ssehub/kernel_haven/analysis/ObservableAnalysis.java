@@ -19,6 +19,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.DiskSpillingList;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
@@ -26,6 +28,11 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
  * An {@link AnalysisComponent} which does not produce any results, instead it will pass the received results to
  * observers. This component is intended to serve as an interface between KernelHaven and other tools, which want to
  * use KernelHaven as some kind of input source.
+ * <p>
+ * If the heap usage exceeds {@link DefaultSettings#ANALYSIS_SPILL_HEAP_USAGE}, the results that are collected for the
+ * observers are written to disk (see {@link DiskSpillingList}). The temporary files are deleted once the
+ * {@link PipelineAnalysis} is done; observers that need the results afterwards have to copy the list.
+ * </p>
  * 
  * @param <I> The result type of the analysis.
  * 
@@ -37,6 +44,8 @@ public class ObservableAnalysis<I> extends AnalysisComponent<I> {
 
     private @NonNull AnalysisComponent<I> previousComponent;
     
+    private @NonNull Configuration config;
+    
     /**
      * Creates a new analysis component.
      * 
@@ -46,11 +55,13 @@ public class ObservableAnalysis<I> extends AnalysisComponent<I> {
     public ObservableAnalysis(@NonNull Configuration config, @NonNull AnalysisComponent<I> previousComponent) {
         super(config);
         this.previousComponent = previousComponent;
+        this.config = config;
     }
 
     @Override
     protected void execute() {
-        List<@NonNull I> previousResults = new ArrayList<>();
+        DiskSpillingList<@NonNull I> previousResults = new DiskSpillingList<>(getSpillDir(), config);
+        closeWhenPipelineDone(previousResults);
         
         @Nullable I input;
         while ((input = previousComponent.getNextResult()) != null) {
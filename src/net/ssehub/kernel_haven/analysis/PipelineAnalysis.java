@@ -15,8 +15,10 @@
  */
 package net.ssehub.kernel_haven.analysis;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,11 +31,13 @@ import net.ssehub.kernel_haven.config.DefaultSettings;
 import net.ssehub.kernel_haven.provider.AbstractProvider;
 import net.ssehub.kernel_haven.util.ExtractorException;
 import net.ssehub.kernel_haven.util.Timestamp;
+import net.ssehub.kernel_haven.util.Util;
 import net.ssehub.kernel_haven.util.io.ITableCollection;
 import net.ssehub.kernel_haven.util.io.ITableWriter;
 import net.ssehub.kernel_haven.util.io.TableCollectionWriterFactory;
 import net.ssehub.kernel_haven.util.io.csv.CsvFileCollection;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 import net.ssehub.kernel_haven.variability_model.VariabilityModel;
 
 /**
@@ -53,6 +57,36 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
     
     private ExtractorDataDuplicator<SourceFile<?>> cmStarter;
     
+    /**
+     * Resources of the components (e.g. temporary files of collected results) that are closed once the pipeline is
+     * done. See {@link AnalysisComponent#closeWhenPipelineDone(Closeable)}.
+     */
+    private @NonNull List<@NonNull Closeable> pipelineResources = new ArrayList<>();
+    
+    /**
+     * Whether the pipeline is set up and not done yet. Only while this is <code>true</code>, {@link #getSpillDir()}
+     * creates a spill directory.
+     */
+    private boolean pipelineRunning;
+    
+    /**
+     * The directory that the components of this pipeline write their temporary files to; created by
+     * {@link #getSpillDir()} and deleted once the pipeline is done. <code>null</code> if not created yet.
+     */
+    private @Nullable File spillDir;
+    
+    /**
+     * Deletes {@link #spillDir} if the JVM exits before the pipeline is done. <code>null</code> if no spill directory
+     * was created.
+     */
+    private @Nullable Thread spillDirDeleter;
+    
+    /**
+     * The name prefix of the result collection; if <code>null</code>, {@link DefaultSettings#ANALYSIS_RESULT_NAME} is
+     * used.
+     */
+    private @Nullable String resultName;
+    
     /**
      * Creates a new {@link PipelineAnalysis}.
      * 
@@ -99,6 +133,21 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
         return cmStarter.createNewStartingComponent(config);
     }
     
+    /**
+     * Discards the given component, if it is one of the components that provide the extractor data (see
+     * {@link #getVmComponent()}, {@link #getBmComponent()} and {@link #getCmComponent()}). No extractor data is passed
+     * to it anymore, and the extractor is not started preemptively if all of its components are discarded. This is
+     * used for components that are never started, e.g. because the component that uses them replays memoized results.
+     * Must be called before the pipeline is started.
+     * 
+     * @param component The component to discard. Other components are ignored.
+     */
+    void discardExtractorComponent(@NonNull AnalysisComponent<?> component) {
+        if (component instanceof StartingComponent) {
+            ((StartingComponent<?>) component).discard();
+        }
+    }
+    
     /**
      * The collection that {@link AnalysisComponent}s should write their intermediate output to.
      *  
@@ -108,6 +157,16 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
         return resultCollection;
     }
     
+    /**
+     * Sets the name prefix of the result collection. By default, {@link DefaultSettings#ANALYSIS_RESULT_NAME} is used.
+     * The {@link BatchPipelineAnalysis} uses this, so that the analyses of a batch don't write to the same file.
+     * 
+     * @param resultName The name prefix for the output file(s).
+     */
+    void setResultName(@NonNull String resultName) {
+        this.resultName = resultName;
+    }
+    
     /**
      * Creates the result collection from the user settings.
      * 
@@ -117,8 +176,11 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
      */
     private ITableCollection createResultCollection() throws SetUpException {
         String outputSuffix = config.getValue(DefaultSettings.ANALYSIS_RESULT);
-        File outputFile = new File(getOutputDir(), Timestamp.INSTANCE.getFilename(
-                config.getValue(DefaultSettings.ANALYSIS_RESULT_NAME), outputSuffix));
+        String name = resultName;
+        if (name == null) {
+            name = config.getValue(DefaultSettings.ANALYSIS_RESULT_NAME);
+        }
+        File outputFile = new File(getOutputDir(), Timestamp.INSTANCE.getFilename(name, outputSuffix));
         
         try {
             return TableCollectionWriterFactory.INSTANCE.createCollection(outputFile);
@@ -140,23 +202,12 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
     public void run() {
         Thread.currentThread().setName("AnalysisPipelineController");
         try {
-            vmStarter = new ExtractorDataDuplicator<>(vmProvider, false, "VM");
-            bmStarter = new ExtractorDataDuplicator<>(bmProvider, false, "BM");
-            cmStarter = new ExtractorDataDuplicator<>(cmProvider, true, "CM");
+            ExtractorDataDuplicator<VariabilityModel> vmStarter
+                    = new ExtractorDataDuplicator<>(vmProvider, false, "VM");
+            ExtractorDataDuplicator<BuildModel> bmStarter = new ExtractorDataDuplicator<>(bmProvider, false, "BM");
+            ExtractorDataDuplicator<SourceFile<?>> cmStarter = new ExtractorDataDuplicator<>(cmProvider, true, "CM");
             
-            try {
-                resultCollection = createResultCollection();
-            } catch (SetUpException e) {
-                LOGGER.logException("Couldn't create output collection based on user configuration; "
-                        + "falling back to CSV", e);
-                
-                resultCollection = new CsvFileCollection(new File(getOutputDir(), 
-                        "Analysis_" + Timestamp.INSTANCE.getFileTimestamp()));
-            }
-            
-            instance = this;
-        
-            AnalysisComponent<?> mainComponent = createPipeline();
+            AnalysisComponent<?> mainComponent = setUpPipeline(vmStarter, bmStarter, cmStarter);
             
             if (config.getValue(DefaultSettings.ANALYSIS_PIPELINE_START_EXTRACTORS)) {
                 // start all extractors; this is needed here because the analysis components will most likely poll them
@@ -166,31 +217,163 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
                 cmStarter.start();
             }
             
-            if (mainComponent instanceof JoinComponent) {
-                joinSplitComponentFull((JoinComponent) mainComponent);
-                
-            } else {
-                pollAndWriteOutput(mainComponent);
-            }
+            runPipeline(mainComponent);
+            
+        } catch (SetUpException e) {
+            LOGGER.logException("Exception while setting up", e);
+        }
+    }
+    
+    /**
+     * Part of {@link #run()}: creates the result collection and the pipeline. The extractor data is taken from the
+     * given duplicators, which may be shared with other analyses (see {@link BatchPipelineAnalysis}). Afterwards,
+     * this is the current {@link #getInstance()}.
+     * 
+     * @param vmStarter The duplicator for the variability model.
+     * @param bmStarter The duplicator for the build model.
+     * @param cmStarter The duplicator for the code model.
+     * 
+     * @return The "main" (i.e. the last) component of the pipeline.
+     * 
+     * @throws SetUpException If setting up the pipeline fails.
+     */
+    @NonNull AnalysisComponent<?> setUpPipeline(@NonNull ExtractorDataDuplicator<VariabilityModel> vmStarter,
+            @NonNull ExtractorDataDuplicator<BuildModel> bmStarter,
+            @NonNull ExtractorDataDuplicator<SourceFile<?>> cmStarter) throws SetUpException {
+        
+        this.vmStarter = vmStarter;
+        this.bmStarter = bmStarter;
+        this.cmStarter = cmStarter;
+        
+        try {
+            resultCollection = createResultCollection();
+        } catch (SetUpException e) {
+            LOGGER.logException("Couldn't create output collection based on user configuration; "
+                    + "falling back to CSV", e);
             
-            LOGGER.logDebug("Analysis components done");
+            resultCollection = new CsvFileCollection(new File(getOutputDir(), 
+                    "Analysis_" + Timestamp.INSTANCE.getFileTimestamp()));
+        }
+        
+        synchronized (this) {
+            pipelineRunning = true;
+        }
+        instance = this;
+        
+        return createPipeline();
+    }
+    
+    /**
+     * Part of {@link #run()}: writes all output of the given main component to the result collection and closes the
+     * result collection afterwards.
+     * 
+     * @param mainComponent The main component of the pipeline created by this analysis.
+     */
+    void runPipeline(@NonNull AnalysisComponent<?> mainComponent) {
+        if (mainComponent instanceof JoinComponent) {
+            joinSplitComponentFull((JoinComponent) mainComponent);
             
+        } else {
+            pollAndWriteOutput(mainComponent);
+        }
+        
+        LOGGER.logDebug("Analysis components done");
+        
+        closePipelineResources();
+        
+        try {
+            LOGGER.logDebug("Closing result collection");
+            resultCollection.close();
+            
+            for (File file : resultCollection.getFiles()) {
+                addOutputFile(file);
+            }
+        } catch (IOException e) {
+            LOGGER.logException("Exception while closing output file", e);
+        }
+    }
+
+    /**
+     * Registers a resource of a component of this pipeline that is closed once the pipeline is done.
+     * 
+     * @param resource The resource to close.
+     */
+    synchronized void addPipelineResource(@NonNull Closeable resource) {
+        pipelineResources.add(resource);
+    }
+    
+    /**
+     * Returns the directory that the components of this pipeline write their temporary files to. The directory is
+     * created in {@link DefaultSettings#ANALYSIS_SPILL_DIR} on the first call and deleted, together with all files
+     * left in it, once the pipeline is done (or if the JVM exits before that). Thus, temporary files don't need to be
+     * deleted on exit individually.
+     * 
+     * @return The spill directory. <code>null</code> if the pipeline is not running or the directory can't be
+     *      created; components fall back to {@link DefaultSettings#ANALYSIS_SPILL_DIR} in that case.
+     */
+    synchronized @Nullable File getSpillDir() {
+        if (spillDir == null && pipelineRunning) {
+            File parent = config.getValue(DefaultSettings.ANALYSIS_SPILL_DIR);
             try {
-                LOGGER.logDebug("Closing result collection");
-                resultCollection.close();
+                File dir = (parent != null ? Files.createTempDirectory(parent.toPath(), "spill_")
+                        : Files.createTempDirectory("spill_")).toFile();
+                Thread deleter = new Thread(() -> deleteSpillDir(dir), "SpillDirDeleter");
+                Runtime.getRuntime().addShutdownHook(deleter);
+                spillDirDeleter = deleter;
+                spillDir = dir;
                 
-                for (File file : resultCollection.getFiles()) {
-                    addOutputFile(file);
-                }
             } catch (IOException e) {
-                LOGGER.logException("Exception while closing output file", e);
+                LOGGER.logExceptionWarning("Can't create spill directory for pipeline", e);
+                pipelineRunning = false;
             }
-            
-        } catch (SetUpException e) {
-            LOGGER.logException("Exception while setting up", e);
         }
+        return spillDir;
     }
-
+    
+    /**
+     * Deletes the given spill directory with all files in it.
+     * 
+     * @param dir The directory to delete.
+     */
+    private static void deleteSpillDir(@NonNull File dir) {
+        try {
+            Util.deleteFolder(dir);
+        } catch (IOException e) {
+            LOGGER.logExceptionWarning("Can't delete spill directory " + dir, e);
+        }
+    }
+    
+    /**
+     * Closes all resources registered via {@link #addPipelineResource(Closeable)} and deletes the spill directory
+     * (see {@link #getSpillDir()}).
+     */
+    private synchronized void closePipelineResources() {
+        for (Closeable resource : pipelineResources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                LOGGER.logExceptionWarning("Can't close resource of analysis component", e);
+            }
+        }
+        pipelineResources.clear();
+        
+        pipelineRunning = false;
+        File spillDir = this.spillDir;
+        if (spillDir != null) {
+            deleteSpillDir(spillDir);
+            this.spillDir = null;
+        }
+        Thread spillDirDeleter = this.spillDirDeleter;
+        if (spillDirDeleter != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(spillDirDeleter);
+            } catch (IllegalStateException e) {
+                // JVM is already shutting down
+            }
+            this.spillDirDeleter = null;
+        }
+    }
+    
     /**
      * Part of {@link #run()} to handle {@link JoinComponent}s. This method joins all components in parallel.
      * 
@@ -243,7 +426,7 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
      * 
      * @param <T> The type of model to duplicate.
      */
-    private static class ExtractorDataDuplicator<T> implements Runnable {
+    static class ExtractorDataDuplicator<T> implements Runnable {
         
         private @NonNull AbstractProvider<T> provider;
         
@@ -253,6 +436,11 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
         
         private boolean started;
         
+        /**
+         * Whether any starting component was discarded (see {@link #removeStartingComponent(StartingComponent)}).
+         */
+        private boolean discarded;
+        
         private @NonNull String type;
         
         /**
@@ -283,6 +471,16 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
             return component;
         }
         
+        /**
+         * Removes the given starting component; no data is passed to it anymore.
+         * 
+         * @param component The component to remove.
+         */
+        private synchronized void removeStartingComponent(@NonNull StartingComponent<T> component) {
+            startingComponents.remove(component);
+            discarded = true;
+        }
+        
         /**
          * Adds the given data element to all starting components.
          * 
@@ -296,11 +494,15 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
         
         /**
          * Starts a new thread that copies the extractor data to all stating components created up until now.
-         * This method ensures that this thread is only started once, no matter how often this method is called.
+         * This method ensures that this thread is only started once, no matter how often this method is called. If
+         * all starting components are discarded, the thread is not started, since nobody needs the data. (If no
+         * starting component was created at all, the extractor is still started, since the analysis may use the
+         * provider directly.)
          */
         public void start() {
             synchronized (this) {
-                if (!started) {
+                boolean allDiscarded = discarded && startingComponents.isEmpty();
+                if (!started && !allDiscarded) {
                     new Thread(this, "ExtractorDataDuplicator").start();
                     started = true;
                 }
@@ -386,6 +588,18 @@ public abstract class PipelineAnalysis extends AbstractAnalysis {
             this.name = type + " StartingComponent";
         }
 
+        /**
+         * Discards this component. It is removed from the duplicator and ends without any results if it is
+         * started.
+         */
+        private void discard() {
+            duplicator.removeStartingComponent(this);
+            synchronized (this) {
+                done = true;
+                notifyAll();
+            }
+        }
+
         @Override
         protected void execute() {
             duplicator.start();
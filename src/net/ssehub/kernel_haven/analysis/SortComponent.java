@@ -0,0 +1,528 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Semaphore;
+
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.OrderPreservingParallelizer;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A component that sorts the results of the previous component (an external merge sort). The sort is stable.
+ * <p>
+ * The results are collected in chunks of at most {@link DefaultSettings#ANALYSIS_SORT_CHUNK_SIZE} elements; a chunk is
+ * also finished early if the heap usage exceeds {@link DefaultSettings#ANALYSIS_SPILL_HEAP_USAGE}. If all results fit
+ * into a single chunk, they are simply sorted in memory. Otherwise, the chunks are sorted in parallel and written as
+ * sorted runs to temporary files in {@link DefaultSettings#ANALYSIS_SPILL_DIR}; at most one chunk per thread is held
+ * in memory at a time. After all results are read, the runs are merged and passed on one element at a time. At most
+ * {@link #MAX_MERGE_FAN_IN} runs are merged at once; if there are more, groups of runs are first merged into larger
+ * runs on disk (in multiple passes, if needed).
+ * </p>
+ * <p>
+ * Writing the runs requires that the results are serializable. If a run can't be written, the component explicitly
+ * falls back to sorting in memory: a warning is logged, the runs that are already written are read back into memory
+ * and no further runs are written to disk. If a run can't be read, the component fails (see
+ * {@link #fail(String, Throwable)}).
+ * </p>
+ * <p>
+ * When created from a pipeline configuration, the results are compared by the keys in
+ * {@link DefaultSettings#ANALYSIS_SORT_KEYS} (see {@link #createComparator(List)}).
+ * </p>
+ * 
+ * @param <T> The type of results to sort.
+ * 
+ * @author Adam
+ */
+public class SortComponent<T> extends AnalysisComponent<T> {
+    
+    /**
+     * The maximum number of runs on disk that are merged at once.
+     */
+    static final int MAX_MERGE_FAN_IN = 64;
+    
+    /**
+     * The number of added elements after which the heap usage is checked again.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+    
+    private @NonNull AnalysisComponent<T> previousComponent;
+    
+    private @NonNull Comparator<? super T> comparator;
+    
+    private int chunkSize;
+    
+    private @Nullable File spillDir;
+    
+    private double maxHeapUsage;
+    
+    /**
+     * Whether writing a sorted run failed; if so, all runs are kept in memory.
+     */
+    private volatile boolean spillingFailed;
+    
+    /**
+     * Creates a sort component that compares the results by the keys configured in
+     * {@link DefaultSettings#ANALYSIS_SORT_KEYS}.
+     * 
+     * @param config The pipeline configuration.
+     * @param previousComponent The component to sort the results of.
+     */
+    public SortComponent(@NonNull Configuration config, @NonNull AnalysisComponent<T> previousComponent) {
+        this(config, previousComponent, createComparator(config.getValue(DefaultSettings.ANALYSIS_SORT_KEYS)));
+    }
+    
+    /**
+     * Creates a sort component with the given comparator.
+     * 
+     * @param config The pipeline configuration.
+     * @param previousComponent The component to sort the results of.
+     * @param comparator The comparator that defines the order of the results. Must be thread-safe.
+     */
+    public SortComponent(@NonNull Configuration config, @NonNull AnalysisComponent<T> previousComponent,
+            @NonNull Comparator<? super T> comparator) {
+        super(config);
+        this.previousComponent = previousComponent;
+        this.comparator = comparator;
+        this.chunkSize = Math.max(1, config.getValue(DefaultSettings.ANALYSIS_SORT_CHUNK_SIZE));
+        this.maxHeapUsage = config.getValue(DefaultSettings.ANALYSIS_SPILL_HEAP_USAGE) / 100.0;
+    }
+    
+    /**
+     * Creates a comparator that compares objects by the given keys. The keys are property paths (see
+     * {@link KeyExtractor}); objects are compared by the first key, objects with an equal first key by the second key,
+     * and so on. Key values of different classes are ordered by the name of their class. Key values of the same class
+     * are compared by their natural order if they are {@link Comparable}, otherwise by their string representation.
+     * <code>null</code> is sorted first. An empty list compares the objects themselves.
+     * 
+     * @param keys The property paths of the keys to compare by.
+     * 
+     * @return A comparator for the given keys.
+     */
+    public static @NonNull Comparator<Object> createComparator(@NonNull List<@NonNull String> keys) {
+        List<@NonNull String> paths = keys.isEmpty() ? Collections.singletonList("") : keys;
+        
+        Comparator<Object> result = null;
+        for (String path : paths) {
+            KeyExtractor extractor = new KeyExtractor(path);
+            Comparator<Object> keyComparator = (o1, o2) -> compareKeys(extractor.apply(o1), extractor.apply(o2));
+            result = result == null ? keyComparator : result.thenComparing(keyComparator);
+        }
+        return result;
+    }
+    
+    /**
+     * Compares two key values, see {@link #createComparator(List)}.
+     * 
+     * @param key1 The first key value.
+     * @param key2 The second key value.
+     * 
+     * @return The result of the comparison.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareKeys(@Nullable Object key1, @Nullable Object key2) {
+        int result;
+        if (key1 == null || key2 == null) {
+            result = key1 == null ? (key2 == null ? 0 : -1) : 1;
+        } else if (key1.getClass() != key2.getClass()) {
+            // ordering by class first keeps the order transitive for mixed classes
+            result = key1.getClass().getName().compareTo(key2.getClass().getName());
+        } else if (key1 instanceof Comparable) {
+            result = ((Comparable) key1).compareTo(key2);
+        } else {
+            result = key1.toString().compareTo(key2.toString());
+        }
+        return result;
+    }
+    
+    @Override
+    protected void execute() {
+        spillDir = getSpillDir();
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        // limits the number of chunks that are read but not yet written to disk
+        Semaphore chunksInMemory = new Semaphore(numThreads);
+        List<@NonNull SortedRun<T>> runs = Collections.synchronizedList(new ArrayList<>());
+        OrderPreservingParallelizer<@NonNull List<T>, @NonNull SortedRun<T>> sorter = null;
+        
+        try {
+            List<T> chunk = new ArrayList<>();
+            T result;
+            while ((result = previousComponent.getNextResult()) != null) {
+                chunk.add(result);
+                
+                if (chunk.size() >= chunkSize || (!spillingFailed && chunk.size() % CHECK_INTERVAL == 0
+                        && Util.isHeapUsageExceeded(maxHeapUsage))) {
+                    if (sorter == null) {
+                        sorter = new OrderPreservingParallelizer<>((elements) -> {
+                            try {
+                                return sortAndWrite(elements);
+                            } finally {
+                                chunksInMemory.release();
+                            }
+                        }, runs::add, numThreads);
+                    }
+                    chunksInMemory.acquireUninterruptibly();
+                    sorter.add(chunk);
+                    chunk = new ArrayList<>();
+                }
+            }
+            
+            if (sorter == null) {
+                // everything fits into memory
+                chunk.sort(comparator);
+                for (T element : chunk) {
+                    addResult(element);
+                }
+                
+            } else {
+                if (!chunk.isEmpty()) {
+                    chunksInMemory.acquireUninterruptibly();
+                    sorter.add(chunk);
+                }
+                sorter.end();
+                sorter.join();
+                LOGGER.logInfo("Merging " + runs.size() + " sorted runs");
+                merge(runs);
+            }
+            
+        } catch (IOException e) {
+            fail("Can't read sorted runs from disk", e);
+            drain(previousComponent);
+            
+        } finally {
+            for (SortedRun<T> run : runs) {
+                run.close();
+            }
+        }
+    }
+    
+    /**
+     * Sorts a chunk and writes it to a temporary file. Called in parallel.
+     * 
+     * @param chunk The chunk to sort.
+     * 
+     * @return The sorted run. Keeps the chunk in memory if writing it fails (or failed for a previous chunk).
+     */
+    private @NonNull SortedRun<T> sortAndWrite(@NonNull List<T> chunk) {
+        chunk.sort(comparator);
+        
+        SortedRun<T> result = new SortedRun<>(chunk, null);
+        if (!spillingFailed) {
+            File file = null;
+            try {
+                file = File.createTempFile("sorted_run", ".run", spillDir);
+                Iterator<T> iterator = chunk.iterator();
+                writeRun(file, () -> iterator.hasNext() ? iterator.next() : null);
+                result = new SortedRun<>(null, file);
+                
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (!spillingFailed) {
+                        LOGGER.logExceptionWarning("Can't write sorted run to disk; sorting all results in memory", e);
+                        spillingFailed = true;
+                    }
+                }
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Writes the given sorted elements to a file, followed by <code>null</code>.
+     * 
+     * @param file The file to write to.
+     * @param elements The sorted elements.
+     * 
+     * @throws IOException If reading the elements or writing them fails, e.g. because an element is not
+     *      serializable.
+     */
+    private static void writeRun(@NonNull File file, @NonNull ElementSource<?> elements) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            Object element;
+            while ((element = elements.next()) != null) {
+                out.writeObject(element);
+                // don't keep references to all written elements
+                out.reset();
+            }
+            out.writeObject(null);
+        }
+    }
+    
+    /**
+     * Merges the given sorted runs and adds the elements as results. If writing a run failed, the runs on disk are
+     * read back into memory first. Otherwise, if there are more than {@link #MAX_MERGE_FAN_IN} runs, groups of
+     * consecutive runs are merged into larger runs on disk first, until few enough runs are left.
+     * 
+     * @param runs The sorted runs, in the order of the chunks in the input. Runs created by intermediate merges are
+     *      added to this list, so that they are deleted together with the others.
+     * 
+     * @throws IOException If reading or writing a run fails.
+     */
+    private void merge(@NonNull List<@NonNull SortedRun<T>> runs) throws IOException {
+        List<@NonNull SortedRun<T>> current = new ArrayList<>(runs);
+        
+        if (spillingFailed) {
+            for (SortedRun<T> run : current) {
+                run.load();
+            }
+        }
+        
+        // runs in memory don't keep files open, so they can all be merged at once
+        while (!spillingFailed && current.size() > MAX_MERGE_FAN_IN) {
+            LOGGER.logDebug("Merging " + current.size() + " sorted runs into "
+                    + ((current.size() + MAX_MERGE_FAN_IN - 1) / MAX_MERGE_FAN_IN) + " larger runs");
+            List<@NonNull SortedRun<T>> next = new ArrayList<>();
+            for (int i = 0; i < current.size(); i += MAX_MERGE_FAN_IN) {
+                List<@NonNull SortedRun<T>> group = current.subList(i, Math.min(i + MAX_MERGE_FAN_IN, current.size()));
+                
+                File file = File.createTempFile("sorted_run", ".run", spillDir);
+                SortedRun<T> merged = new SortedRun<>(null, file);
+                runs.add(merged);
+                writeRun(file, new RunMerger<>(group, comparator));
+                next.add(merged);
+                
+                for (SortedRun<T> run : group) {
+                    run.close();
+                }
+            }
+            current = next;
+        }
+        
+        RunMerger<T> merger = new RunMerger<>(current, comparator);
+        T element;
+        while ((element = merger.next()) != null) {
+            addResult(element);
+        }
+    }
+    
+    @Override
+    public @NonNull String getResultName() {
+        return previousComponent.getResultName() + " (sorted)";
+    }
+    
+    /**
+     * A source of elements that may fail with an {@link IOException}.
+     * 
+     * @param <T> The type of elements.
+     */
+    @FunctionalInterface
+    private interface ElementSource<T> {
+        
+        /**
+         * Returns the next element.
+         * 
+         * @return The next element; <code>null</code> if there are no more elements.
+         * 
+         * @throws IOException If reading the element fails.
+         */
+        public @Nullable T next() throws IOException;
+        
+    }
+    
+    /**
+     * Merges sorted runs into a single sorted sequence. Equal elements are taken from the earlier run first, which
+     * keeps the sort stable.
+     * 
+     * @param <T> The type of elements.
+     */
+    private static final class RunMerger<T> implements ElementSource<T> {
+        
+        private @NonNull PriorityQueue<@NonNull SortedRun<T>> queue;
+        
+        /**
+         * Starts reading the given runs.
+         * 
+         * @param runs The sorted runs, in the order of the chunks in the input.
+         * @param comparator The comparator that the runs are sorted by.
+         * 
+         * @throws IOException If reading a run fails.
+         */
+        private RunMerger(@NonNull List<@NonNull SortedRun<T>> runs, @NonNull Comparator<? super T> comparator)
+                throws IOException {
+            
+            this.queue = new PriorityQueue<>(Math.max(1, runs.size()), (r1, r2) -> {
+                int result = comparator.compare(r1.head, r2.head);
+                if (result == 0) {
+                    result = Integer.compare(r1.index, r2.index);
+                }
+                return result;
+            });
+            
+            for (int i = 0; i < runs.size(); i++) {
+                SortedRun<T> run = runs.get(i);
+                run.index = i;
+                if (run.open()) {
+                    queue.add(run);
+                }
+            }
+        }
+        
+        @Override
+        public @Nullable T next() throws IOException {
+            T result = null;
+            SortedRun<T> run = queue.poll();
+            if (run != null) {
+                result = run.head;
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * A sorted chunk of the input. The elements are either kept in memory or stored in a file.
+     * 
+     * @param <T> The type of elements.
+     */
+    private static final class SortedRun<T> implements Closeable {
+        
+        private @Nullable List<T> elements;
+        
+        private @Nullable File file;
+        
+        private @Nullable Iterator<T> iterator;
+        
+        private @Nullable ObjectInputStream in;
+        
+        private T head;
+        
+        private int index;
+        
+        /**
+         * Creates a sorted run. Exactly one of the parameters is not <code>null</code>.
+         * 
+         * @param elements The sorted elements, if they are kept in memory.
+         * @param file The file that the sorted elements are written to.
+         */
+        private SortedRun(@Nullable List<T> elements, @Nullable File file) {
+            this.elements = elements;
+            this.file = file;
+        }
+        
+        /**
+         * Reads the elements of this run into memory and deletes the file, if the run is stored in a file.
+         * 
+         * @throws IOException If reading the file fails.
+         */
+        @SuppressWarnings("unchecked")
+        private void load() throws IOException {
+            File file = this.file;
+            if (file != null) {
+                List<T> elements = new ArrayList<>();
+                try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    Object element;
+                    while ((element = in.readObject()) != null) {
+                        elements.add((T) element);
+                    }
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+                this.elements = elements;
+                this.file = null;
+                file.delete();
+            }
+        }
+        
+        /**
+         * Starts reading this run and reads the first element.
+         * 
+         * @return Whether this run contains any element.
+         * 
+         * @throws IOException If reading the file fails.
+         */
+        private boolean open() throws IOException {
+            List<T> elements = this.elements;
+            if (elements != null) {
+                iterator = elements.iterator();
+            } else {
+                in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            }
+            return advance();
+        }
+        
+        /**
+         * Reads the next element into {@link #head}.
+         * 
+         * @return Whether there was another element.
+         * 
+         * @throws IOException If reading the file fails.
+         */
+        @SuppressWarnings("unchecked")
+        private boolean advance() throws IOException {
+            Iterator<T> iterator = this.iterator;
+            ObjectInputStream in = this.in;
+            T next = null;
+            if (iterator != null) {
+                next = iterator.hasNext() ? iterator.next() : null;
+            } else if (in != null) {
+                try {
+                    next = (T) in.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            }
+            head = next;
+            return next != null;
+        }
+        
+        /**
+         * Closes and deletes the file of this run.
+         */
+        @Override
+        public void close() {
+            ObjectInputStream in = this.in;
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore, file is deleted anyway
+                }
+                this.in = null;
+            }
+            File file = this.file;
+            if (file != null) {
+                file.delete();
+            }
+            elements = null;
+        }
+        
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Temporary files that elements are distributed to by the hash of their key. Used by components that need all
+ * elements with the same key at once (e.g. {@link HashJoinComponent} and {@link GroupByComponent}), if these don't fit
+ * into memory: each partition is then processed on its own. The elements must be serializable.
+ * 
+ * @param <T> The type of elements.
+ * 
+ * @author Adam
+ */
+class SpilledPartitions<T> implements Closeable {
+    
+    /**
+     * The default number of partitions.
+     */
+    static final int DEFAULT_NUM_PARTITIONS = 16;
+    
+    private @NonNull File @NonNull [] files;
+    
+    private @Nullable ObjectOutputStream @NonNull [] outputs;
+    
+    /**
+     * Creates the temporary files for the partitions.
+     * 
+     * @param dir The directory to create the files in. <code>null</code> for the temporary directory of the system.
+     * @param numPartitions The number of partitions.
+     * 
+     * @throws IOException If creating the files fails.
+     */
+    SpilledPartitions(@Nullable File dir, int numPartitions) throws IOException {
+        this.files = new @NonNull File[numPartitions];
+        this.outputs = new @Nullable ObjectOutputStream[numPartitions];
+        
+        try {
+            for (int i = 0; i < numPartitions; i++) {
+                File file = File.createTempFile("partition_" + i + "_", ".partition", dir);
+                files[i] = file;
+                outputs[i] = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns the number of partitions.
+     * 
+     * @return The number of partitions.
+     */
+    int getNumPartitions() {
+        return files.length;
+    }
+    
+    /**
+     * Returns the partition for the given key.
+     * 
+     * @param key The key; may be <code>null</code>.
+     * 
+     * @return The index of the partition that elements with this key belong in.
+     */
+    int getPartition(@Nullable Object key) {
+        int hash = Objects.hashCode(key);
+        return Math.floorMod(hash ^ (hash >>> 16), files.length);
+    }
+    
+    /**
+     * Writes an element to the partition of the given key.
+     * 
+     * @param key The key of the element.
+     * @param element The element to write.
+     * 
+     * @throws IOException If writing the element fails, e.g. because it is not serializable.
+     */
+    void add(@Nullable Object key, @NonNull T element) throws IOException {
+        ObjectOutputStream out = outputs[getPartition(key)];
+        if (out == null) {
+            throw new IOException("Partitions are already finished");
+        }
+        out.writeObject(element);
+        // don't keep references to all written elements
+        out.reset();
+    }
+    
+    /**
+     * Finishes writing the partitions. Must be called before the partitions are read.
+     * 
+     * @throws IOException If writing fails.
+     */
+    void finishWriting() throws IOException {
+        for (int i = 0; i < outputs.length; i++) {
+            ObjectOutputStream out = outputs[i];
+            if (out != null) {
+                out.writeObject(null);
+                out.close();
+                outputs[i] = null;
+            }
+        }
+    }
+    
+    /**
+     * Reads all elements of a single partition.
+     * 
+     * @param partition The index of the partition to read.
+     * @param consumer The consumer for the elements.
+     * 
+     * @throws IOException If reading the partition fails.
+     */
+    @SuppressWarnings("unchecked")
+    void read(int partition, @NonNull Consumer<@NonNull T> consumer) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(files[partition])))) {
+            
+            Object element;
+            while ((element = in.readObject()) != null) {
+                consumer.accept((@NonNull T) element);
+            }
+            
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+    
+    /**
+     * Closes and deletes all partition files.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < files.length; i++) {
+            ObjectOutputStream out = outputs[i];
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore, file is deleted anyway
+                }
+                outputs[i] = null;
+            }
+            File file = files[i];
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+}
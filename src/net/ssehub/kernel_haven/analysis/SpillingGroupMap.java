@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Groups elements by their key. As long as the used heap is below the given limit, the groups are kept in a map in
+ * memory. Once it is exceeded, all elements are distributed to {@link SpilledPartitions} by the hash of their key, so
+ * that each partition can be grouped in memory on its own. If writing an element fails (e.g. because it is not
+ * serializable), all elements are read back into memory.
+ * <p>
+ * Groups are ordered by the first occurrence of their key; this order is only kept for a single partition.
+ * </p>
+ * 
+ * @param <T> The type of elements.
+ * 
+ * @author Adam
+ */
+class SpillingGroupMap<T> implements Closeable {
+    
+    /**
+     * The number of added elements after which the heap usage is checked again.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+    
+    private static final Logger LOGGER = Logger.get();
+    
+    private @NonNull Function<? super T, ?> keyExtractor;
+    
+    private @Nullable File spillDir;
+    
+    private double maxHeapUsage;
+    
+    private @NonNull Map<@Nullable Object, @NonNull List<@NonNull T>> groups;
+    
+    private @Nullable SpilledPartitions<T> partitions;
+    
+    private boolean spillingFailed;
+    
+    private int numAdded;
+    
+    /**
+     * Creates an empty group map.
+     * 
+     * @param keyExtractor Extracts the key from the elements.
+     * @param spillDir The directory to write the partitions to. <code>null</code> for the temporary directory of the
+     *      system.
+     * @param maxHeapUsage The fraction of the maximum heap size; if the used heap exceeds this, all elements are
+     *      written to partitions.
+     */
+    SpillingGroupMap(@NonNull Function<? super T, ?> keyExtractor, @Nullable File spillDir, double maxHeapUsage) {
+        this.keyExtractor = keyExtractor;
+        this.spillDir = spillDir;
+        this.maxHeapUsage = maxHeapUsage;
+        this.groups = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Adds an element to the group of its key.
+     * 
+     * @param element The element to add.
+     * 
+     * @throws IOException If writing the element fails and the elements that are already spilled can't be read back.
+     */
+    void add(@NonNull T element) throws IOException {
+        Object key = keyExtractor.apply(element);
+        SpilledPartitions<T> partitions = this.partitions;
+        
+        if (partitions != null) {
+            try {
+                if (!(element instanceof Serializable)) {
+                    // don't corrupt the partition by a failed write
+                    throw new NotSerializableException(element.getClass().getName());
+                }
+                partitions.add(key, element);
+            } catch (IOException e) {
+                LOGGER.logExceptionWarning("Can't write partition to disk; keeping all elements in memory", e);
+                readBack();
+                addToMemory(key, element);
+            }
+            
+        } else {
+            addToMemory(key, element);
+            if (++numAdded % CHECK_INTERVAL == 0 && !spillingFailed && Util.isHeapUsageExceeded(maxHeapUsage)) {
+                spill();
+            }
+        }
+    }
+    
+    /**
+     * Adds an element to the in-memory group of its key.
+     * 
+     * @param key The key of the element.
+     * @param element The element to add.
+     */
+    private void addToMemory(@Nullable Object key, @NonNull T element) {
+        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(element);
+    }
+    
+    /**
+     * Writes all elements that are currently in memory to newly created partitions.
+     */
+    private void spill() {
+        SpilledPartitions<T> partitions = null;
+        try {
+            partitions = new SpilledPartitions<>(spillDir, SpilledPartitions.DEFAULT_NUM_PARTITIONS);
+            for (Map.Entry<@Nullable Object, @NonNull List<@NonNull T>> entry : groups.entrySet()) {
+                for (T element : entry.getValue()) {
+                    partitions.add(entry.getKey(), element);
+                }
+            }
+            groups.clear();
+            this.partitions = partitions;
+            
+        } catch (IOException e) {
+            LOGGER.logExceptionWarning("Can't write partitions to disk; keeping all elements in memory", e);
+            spillingFailed = true;
+            if (partitions != null) {
+                partitions.close();
+            }
+        }
+    }
+    
+    /**
+     * Reads all spilled elements back into memory and deletes the partitions. Afterwards, {@link #isSpilled()} is
+     * <code>false</code> and no further elements are spilled.
+     * 
+     * @throws IOException If reading a partition fails.
+     */
+    void readBack() throws IOException {
+        int numPartitions = getNumPartitions();
+        for (int i = 0; i < numPartitions; i++) {
+            groups.putAll(getPartition(i));
+        }
+        close();
+        spillingFailed = true;
+    }
+    
+    /**
+     * Returns whether the elements have been written to partitions on disk.
+     * 
+     * @return Whether the elements have been spilled.
+     */
+    boolean isSpilled() {
+        return partitions != null;
+    }
+    
+    /**
+     * Returns the number of partitions that {@link #getPartition(int)} can be called for. This is 1, if all elements
+     * are kept in memory.
+     * 
+     * @return The number of partitions.
+     */
+    int getNumPartitions() {
+        SpilledPartitions<T> partitions = this.partitions;
+        return partitions != null ? partitions.getNumPartitions() : 1;
+    }
+    
+    /**
+     * Returns the partition index that elements with the given key belong in.
+     * 
+     * @param key The key.
+     * 
+     * @return The index of the partition.
+     */
+    int getPartitionIndex(@Nullable Object key) {
+        SpilledPartitions<T> partitions = this.partitions;
+        return partitions != null ? partitions.getPartition(key) : 0;
+    }
+    
+    /**
+     * Returns the groups of the given partition. If the elements are spilled, the partition is read from disk (and
+     * must thus fit into memory). Must be called after all elements are added.
+     * 
+     * @param partition The index of the partition, see {@link #getNumPartitions()}.
+     * 
+     * @return The groups in the given partition.
+     * 
+     * @throws IOException If reading the partition fails.
+     */
+    @NonNull Map<@Nullable Object, @NonNull List<@NonNull T>> getPartition(int partition) throws IOException {
+        
+        SpilledPartitions<T> partitions = this.partitions;
+        Map<@Nullable Object, @NonNull List<@NonNull T>> result;
+        if (partitions == null) {
+            result = groups;
+            
+        } else {
+            result = new LinkedHashMap<>();
+            Map<@Nullable Object, @NonNull List<@NonNull T>> finalResult = result;
+            partitions.finishWriting();
+            partitions.read(partition, (element) -> {
+                finalResult.computeIfAbsent(keyExtractor.apply(element), k -> new ArrayList<>()).add(element);
+            });
+        }
+        return result;
+    }
+    
+    /**
+     * Deletes the partitions on disk, if the elements were spilled.
+     */
+    @Override
+    public void close() {
+        SpilledPartitions<T> partitions = this.partitions;
+        if (partitions != null) {
+            partitions.close();
+            this.partitions = null;
+        }
+    }
+
+}
@@ -18,8 +18,10 @@ package net.ssehub.kernel_haven.build_model;
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 
@@ -40,6 +42,12 @@ public class BuildModel implements Iterable<@NonNull File> {
     
     private @NonNull Map<@NonNull File, Formula> fileFormulaMapping;
     
+    /**
+     * An index of the paths in {@link #fileFormulaMapping}, used for fast look-ups. Lazily (re-)created if
+     * the case-sensitivity of the descriptor changes; see {@link #getIndex()}.
+     */
+    private volatile @Nullable PathIndex index;
+    
     /**
      * A custom {@link File} that does equality checks based on the case-sensitive setting in the descriptor.
      */
@@ -86,6 +94,279 @@ public class BuildModel implements Iterable<@NonNull File> {
         
     }
     
+    /**
+     * A node of the {@link PathIndex}. Each node represents one segment (i.e. a file or directory name) of a path. The
+     * children are stored in a small open-addressing hash table, which can be probed with a range of a path string;
+     * this allows look-ups without creating sub-strings.
+     */
+    private static final class PathNode {
+        
+        private @NonNull String segment;
+        
+        private @Nullable Formula pc;
+        
+        private @Nullable PathNode @Nullable [] children;
+        
+        private int numChildren;
+        
+        /**
+         * Creates a new node.
+         * 
+         * @param segment The path segment that this node represents.
+         */
+        public PathNode(@NonNull String segment) {
+            this.segment = segment;
+        }
+        
+        /**
+         * Finds the child for the given segment.
+         * 
+         * @param path The path string that contains the segment.
+         * @param start The start index of the segment in the path string.
+         * @param end The end index (exclusive) of the segment in the path string.
+         * @param caseSensitive Whether to compare the segment names case-sensitive.
+         * 
+         * @return The child node, or <code>null</code> if no child for the segment exists.
+         */
+        public @Nullable PathNode getChild(@NonNull String path, int start, int end, boolean caseSensitive) {
+            PathNode[] children = this.children;
+            PathNode result = null;
+            
+            if (children != null) {
+                int mask = children.length - 1;
+                for (int i = hash(path, start, end, caseSensitive) & mask; children[i] != null; i = (i + 1) & mask) {
+                    PathNode child = notNull(children[i]);
+                    if (child.segment.length() == end - start
+                            && child.segment.regionMatches(!caseSensitive, 0, path, start, end - start)) {
+                        result = child;
+                        break;
+                    }
+                }
+            }
+            
+            return result;
+        }
+        
+        /**
+         * Finds the child for the given segment, or creates it if it does not exist yet.
+         * 
+         * @param path The path string that contains the segment.
+         * @param start The start index of the segment in the path string.
+         * @param end The end index (exclusive) of the segment in the path string.
+         * @param caseSensitive Whether to compare the segment names case-sensitive.
+         * 
+         * @return The child node.
+         */
+        public @NonNull PathNode getOrCreateChild(@NonNull String path, int start, int end, boolean caseSensitive) {
+            PathNode result = getChild(path, start, end, caseSensitive);
+            if (result == null) {
+                PathNode[] children = this.children;
+                if (children == null || (numChildren + 1) * 4 > children.length * 3) {
+                    children = resize(caseSensitive);
+                }
+                
+                result = new PathNode(notNull(path.substring(start, end)));
+                insert(children, result, caseSensitive);
+                numChildren++;
+            }
+            return result;
+        }
+        
+        /**
+         * Doubles the size of the child table.
+         * 
+         * @param caseSensitive Whether the segment names are case-sensitive.
+         * 
+         * @return The new child table.
+         */
+        private @Nullable PathNode @NonNull [] resize(boolean caseSensitive) {
+            PathNode[] old = this.children;
+            PathNode[] children = new PathNode[old == null ? 2 : old.length * 2];
+            if (old != null) {
+                for (PathNode child : old) {
+                    if (child != null) {
+                        insert(children, child, caseSensitive);
+                    }
+                }
+            }
+            this.children = children;
+            return children;
+        }
+        
+        /**
+         * Inserts the given node into the given child table.
+         * 
+         * @param children The child table. Must have at least one free slot.
+         * @param child The child to insert.
+         * @param caseSensitive Whether the segment names are case-sensitive.
+         */
+        private static void insert(@Nullable PathNode @NonNull [] children, @NonNull PathNode child,
+                boolean caseSensitive) {
+            
+            int mask = children.length - 1;
+            int i = hash(child.segment, 0, child.segment.length(), caseSensitive) & mask;
+            while (children[i] != null) {
+                i = (i + 1) & mask;
+            }
+            children[i] = child;
+        }
+        
+        /**
+         * Calculates the hash of a segment in a path string.
+         * 
+         * @param path The path string that contains the segment.
+         * @param start The start index of the segment in the path string.
+         * @param end The end index (exclusive) of the segment in the path string.
+         * @param caseSensitive Whether the hash should be case-sensitive.
+         * 
+         * @return The hash of the segment.
+         */
+        private static int hash(@NonNull String path, int start, int end, boolean caseSensitive) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                char c = path.charAt(i);
+                if (!caseSensitive) {
+                    // same folding as String.regionMatches(true, ...); fast path for ASCII
+                    if (c >= 'A' && c <= 'Z') {
+                        c += 'a' - 'A';
+                    } else if (c >= 128) {
+                        c = Character.toLowerCase(Character.toUpperCase(c));
+                    }
+                }
+                hash = 31 * hash + c;
+            }
+            return hash ^ (hash >>> 16);
+        }
+        
+    }
+    
+    /**
+     * A trie of the path segments of all keys in this build model. Allows answering the look-ups for all
+     * {@link KeyType}s in a single descent along the path. Additionally, the nodes are stored by their exact path
+     * strings; this allows answering look-ups for exactly matching paths with a single hash look-up (the hash of the
+     * path string is cached by {@link String}).
+     */
+    private static final class PathIndex {
+        
+        private boolean caseSensitive;
+        
+        private @NonNull PathNode root;
+        
+        private @NonNull Map<@NonNull String, @NonNull PathNode> exactPaths;
+        
+        /**
+         * Creates an empty index.
+         * 
+         * @param caseSensitive Whether the path segments should be compared case-sensitive.
+         */
+        public PathIndex(boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+            this.root = new PathNode("");
+            this.exactPaths = new HashMap<>();
+        }
+        
+        /**
+         * Sets the presence condition for the given path.
+         * 
+         * @param path The path of the file or directory.
+         * @param pc The presence condition; <code>null</code> to remove the entry.
+         */
+        public void put(@NonNull String path, @Nullable Formula pc) {
+            PathNode node = root;
+            int length = path.length();
+            
+            int start = 0;
+            if (length > 0 && path.charAt(0) == File.separatorChar) {
+                // the root of an absolute path is its own segment
+                node = node.getOrCreateChild(path, 0, 1, caseSensitive);
+                start = 1;
+            }
+            
+            while (start < length || node == root) {
+                int end = path.indexOf(File.separatorChar, start);
+                if (end == -1) {
+                    end = length;
+                }
+                
+                node = node.getOrCreateChild(path, start, end, caseSensitive);
+                start = end + 1;
+            }
+            
+            node.pc = pc;
+            exactPaths.put(path, node);
+        }
+        
+        /**
+         * Looks up the presence condition for the given path.
+         * 
+         * @param path The path of the file.
+         * @param keyType How to look up the presence condition.
+         * 
+         * @return The presence condition, or <code>null</code> if none is found.
+         */
+        public @Nullable Formula get(@NonNull String path, @NonNull KeyType keyType) {
+            Formula result;
+            
+            // equal strings are also equal if compared case-insensitive
+            PathNode exact = keyType != KeyType.DIRECTORY ? exactPaths.get(path) : null;
+            if (exact != null && (exact.pc != null || keyType == KeyType.FILE)) {
+                result = exact.pc;
+            } else {
+                result = walk(path, keyType);
+            }
+            
+            return result;
+        }
+        
+        /**
+         * Looks up the presence condition for the given path by walking the tree of path segments.
+         * 
+         * @param path The path of the file.
+         * @param keyType How to look up the presence condition.
+         * 
+         * @return The presence condition, or <code>null</code> if none is found.
+         */
+        private @Nullable Formula walk(@NonNull String path, @NonNull KeyType keyType) {
+            PathNode node = root;
+            Formula parentPc = null;
+            int length = path.length();
+            
+            int start = 0;
+            if (length > 0 && path.charAt(0) == File.separatorChar) {
+                node = root.getChild(path, 0, 1, caseSensitive);
+                start = 1;
+            }
+            
+            while (node != null && (start < length || node == root)) {
+                if (node != root && node.pc != null) {
+                    parentPc = node.pc;
+                }
+                
+                int end = path.indexOf(File.separatorChar, start);
+                if (end == -1) {
+                    end = length;
+                }
+                
+                node = node.getChild(path, start, end, caseSensitive);
+                start = end + 1;
+            }
+            
+            Formula result;
+            if (keyType == KeyType.FILE) {
+                result = node != null ? node.pc : null;
+                
+            } else if (keyType == KeyType.DIRECTORY) {
+                result = parentPc;
+                
+            } else { // FILE_AND_DIRECTORY
+                result = node != null && node.pc != null ? node.pc : parentPc;
+            }
+            
+            return result;
+        }
+        
+    }
+    
     /**
      * Instantiates a new and empty BuildModel. The key type is {@link KeyType#FILE}.
      */
@@ -122,9 +403,19 @@ public class BuildModel implements Iterable<@NonNull File> {
      *            the presence condition. Must not be null.
      */
     public void add(@NonNull File file, @NonNull Formula pc) {
+        String path = notNull(file.getPath());
         file = new InternalFile(file);
         
         fileFormulaMapping.put(file, pc);
+        
+        PathIndex index = this.index;
+        if (index != null && index.caseSensitive == descriptor.isCaseSensitive()) {
+            synchronized (this) {
+                index.put(path, pc);
+            }
+        } else {
+            this.index = null; // re-create on next look-up
+        }
     }
 
     /**
@@ -136,33 +427,52 @@ public class BuildModel implements Iterable<@NonNull File> {
      *      {@link BuildModel}.
      */
     public @Nullable Formula getPc(@NonNull File file) {
-        file = new InternalFile(file);
+        return getIndex().get(notNull(file.getPath()), descriptor.getKeyType());
+    }
+    
+    /**
+     * Retrieves the presence conditions for all of the given files. This is equivalent to calling
+     * {@link #getPc(File)} for each file, but avoids the overhead of repeated calls.
+     * 
+     * @param files The files to get the presence conditions for.
+     * 
+     * @return The presence conditions of the given files, in the same order as the files. Contains <code>null</code>
+     *      for files that do not appear in this {@link BuildModel}.
+     */
+    public @NonNull List<@Nullable Formula> getPcs(@NonNull List<@NonNull File> files) {
+        PathIndex index = getIndex();
+        KeyType keyType = descriptor.getKeyType();
         
-        Formula result;
-        if (descriptor.getKeyType() == KeyType.FILE) {
-            result = fileFormulaMapping.get(file);
-            
-        } else if (descriptor.getKeyType() == KeyType.DIRECTORY) {
-            result = null;
-            File parent = file.getParentFile();
-            
-            while (parent != null && result == null) {
-                result = fileFormulaMapping.get(parent);
-                parent = parent.getParentFile();
-            }
-            
-        } else { // FILE_AND_DIRECTORY
-            File f = file;
-            result = null;
-            while (result == null && f != null) {
-                result = fileFormulaMapping.get(f);
-                f = f.getParentFile();
-            }
-            
+        List<@Nullable Formula> result = new ArrayList<>(files.size());
+        for (File file : files) {
+            result.add(index.get(notNull(file.getPath()), keyType));
         }
         return result;
     }
     
+    /**
+     * Returns the index of all paths in this build model. Creates it, if it does not exist yet or if the
+     * case-sensitivity of the descriptor has changed.
+     * 
+     * @return The index of all paths.
+     */
+    private @NonNull PathIndex getIndex() {
+        PathIndex index = this.index;
+        if (index == null || index.caseSensitive != descriptor.isCaseSensitive()) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null || index.caseSensitive != descriptor.isCaseSensitive()) {
+                    index = new PathIndex(descriptor.isCaseSensitive());
+                    for (Map.Entry<@NonNull File, Formula> entry : fileFormulaMapping.entrySet()) {
+                        index.put(notNull(entry.getKey().getPath()), entry.getValue());
+                    }
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+    
     /**
      * Returns the stored presence condition for the given key. As opposed to {@link #getPc(File)}, this does <b>not</b>
      * adapt to the {@link KeyType}; this method directly returns what is stored inside the internal map at the given
@@ -173,9 +483,7 @@ public class BuildModel implements Iterable<@NonNull File> {
      * @return The stored PC for that key.
      */
     public @Nullable Formula getPcDirect(@NonNull File key) {
-        key = new InternalFile(key);
-        
-        return fileFormulaMapping.get(key);
+        return getIndex().get(notNull(key.getPath()), KeyType.FILE);
     }
 
     /**
@@ -187,9 +495,7 @@ public class BuildModel implements Iterable<@NonNull File> {
      * @return Whether the key is contained.
      */
     public boolean containsKey(@NonNull File file) {
-        file = new InternalFile(file);
-        
-        return fileFormulaMapping.containsKey(file);
+        return getPcDirect(file) != null;
     }
     
     /**
@@ -209,9 +515,17 @@ public class BuildModel implements Iterable<@NonNull File> {
      * @param file the given file. Must not be null.
      */
     public void delete(@NonNull File file) {
+        String path = notNull(file.getPath());
         file = new InternalFile(file);
         
         fileFormulaMapping.remove(file);
+        
+        PathIndex index = this.index;
+        if (index != null && index.caseSensitive == descriptor.isCaseSensitive()) {
+            synchronized (this) {
+                index.put(path, null);
+            }
+        }
     }
     
     /**
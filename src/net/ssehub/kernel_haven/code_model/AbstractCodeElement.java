@@ -20,6 +20,7 @@ import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 import java.io.File;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -66,6 +67,13 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
     
     private @NonNull Formula presenceCondition;
     
+    /**
+     * Tracks the modifications of the tree that this element belongs to and holds the cached structural hashes of
+     * its elements. <code>null</code> until the structural hash of this element (or of an element whose hash depends
+     * on this one) is calculated.
+     */
+    private volatile @Nullable ModificationTracker modificationTracker;
+    
     /**
      * Creates this element with the given presence condition. Source file is unknown, line numbers are -1 and
      * condition is <code>null</code>.
@@ -137,6 +145,7 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
      */
     public void setSourceFile(@NonNull File sourceFile) {
         this.sourceFile = sourceFile;
+        invalidateStructuralHash();
     }
     
     @Override
@@ -147,6 +156,7 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
     @Override
     public void setLineStart(int start) {
         this.lineStart = start;
+        invalidateStructuralHash();
     }
 
     @Override
@@ -157,6 +167,7 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
     @Override
     public void setLineEnd(int end) {
         this.lineEnd = end;
+        invalidateStructuralHash();
     }
     
     @Override
@@ -173,6 +184,7 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
      */
     protected void setCondition(Formula condition) {
         this.condition = condition;
+        invalidateStructuralHash();
     }
 
     @Override
@@ -189,6 +201,7 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
      */
     protected void setPresenceCondition(@NonNull Formula presenceCondition) {
         this.presenceCondition = presenceCondition;
+        invalidateStructuralHash();
     }
 
     @Override
@@ -393,10 +406,17 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
     }
     
     /**
-     * A helper class for calculating hashCode() of {@link AbstractCodeElement}s. This is needed since cross-references
-     * may lead to stack overflows with the trivial implementation of hashCode(). This class keeps a map of already
-     * hashed elements, and also ensures that no endless recursion occurs. (the latter is done by returning 0 as the
-     * hash for an element that is currently being hashed, if they it is encountered deeper down in the tree, again).
+     * A helper class for calculating hashCode() of {@link AbstractCodeElement}s. The hashes are structural
+     * (Merkle-style) hashes: the hash of an element is calculated from its own attributes and the hashes of its nested
+     * elements (see {@link #hashCode(AbstractCodeElement)}). Since the hashes of hashed elements are cached, this is
+     * cheap for elements that have been hashed before.
+     * <p>
+     * Cross-references to other elements of the AST (e.g. siblings) should be hashed with
+     * {@link #hashCodeOfReference(AbstractCodeElement)}, which only considers the attributes of the referenced element
+     * itself. Cycles that are hashed with {@link #hashCode(AbstractCodeElement)} don't cause an endless recursion:
+     * 0 is used as the hash for an element that is currently being hashed, if it is encountered deeper down in the
+     * tree again. Since such hashes depend on where the cycle was entered, they are not cached.
+     * </p>
      */
     protected static class CodeElementHasher {
         
@@ -405,25 +425,49 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
         private @NonNull Set<@NonNull IdentityWrapper<CodeElement<?>>> currentlyVisiting = new HashSet<>();
         
         /**
-         * Hashes the given {@link AbstractCodeElement}.
+         * The element whose hash is currently being calculated. <code>null</code> for the top-level element.
+         */
+        private @Nullable AbstractCodeElement<?> current;
+        
+        private boolean cycleFound;
+        
+        /**
+         * Creates a hasher. Use {@link AbstractCodeElement#getStructuralHash()} to calculate hashes.
+         */
+        private CodeElementHasher() {
+        }
+        
+        /**
+         * Hashes the given {@link AbstractCodeElement}. This should be used for nested elements (in the primary or
+         * secondary nesting structure), i.e. elements that are part of the sub-tree of the hashed element.
          * 
          * @param element the element to hash.
          * 
          * @return The hash of the given element.
          */
         public int hashCode(@NonNull AbstractCodeElement<?> element) {
+            AbstractCodeElement<?> user = current;
+            if (user != null) {
+                ModificationTracker.link(user, element);
+            }
+            
             Integer result;
-
             IdentityWrapper<CodeElement<?>> wrap = new IdentityWrapper<CodeElement<?>>(element);
             
             if (currentlyVisiting.contains(wrap)) {
                 result = 0; // return 0 if a higher calling method is currently evaluating this element
+                cycleFound = true;
                 
             } else {
                 result = visited.get(wrap);
+                if (result == null) {
+                    result = ModificationTracker.getCachedHash(element);
+                }
                 if (result == null) {
                     currentlyVisiting.add(wrap);
+                    current = element;
                     result = element.hashCode(this);
+                    current = user;
                     currentlyVisiting.remove(wrap);
                     
                     visited.put(wrap, result);
@@ -433,26 +477,266 @@ public abstract class AbstractCodeElement<NestedType extends CodeElement<NestedT
             return result;
         }
         
+        /**
+         * Hashes the given {@link AbstractCodeElement}, without considering its nested or referenced elements. This
+         * should be used for cross-references to elements that are not part of the sub-tree of the hashed element
+         * (e.g. siblings), since these may lead to cycles.
+         * 
+         * @param element The referenced element to hash.
+         * 
+         * @return The hash of the given element, only considering its own attributes.
+         */
+        public int hashCodeOfReference(@NonNull AbstractCodeElement<?> element) {
+            AbstractCodeElement<?> user = current;
+            if (user != null) {
+                ModificationTracker.link(user, element);
+            }
+            return element.attributesHashCode();
+        }
+        
     }
     
     /**
      * Calculates a hash for this element. Hash calculations of nested elements should use the
-     * {@link CodeElementHasher#hashCode(AbstractCodeElement)} method. Overriding methods should always call the
-     * super method of this.
+     * {@link CodeElementHasher#hashCode(AbstractCodeElement)} method; hash calculations of cross-referenced elements
+     * should use the {@link CodeElementHasher#hashCodeOfReference(AbstractCodeElement)} method. Overriding methods
+     * should always call the super method of this. Overriding classes must call {@link #invalidateStructuralHash()}
+     * whenever any attribute that is considered here changes.
      * 
      * @param hasher The hasher to use for nested elements.
      * 
      * @return The hash of this element.
      */
     protected int hashCode(@NonNull CodeElementHasher hasher) {
+        return attributesHashCode();
+    }
+    
+    /**
+     * Calculates a hash of the attributes that are common to all {@link AbstractCodeElement}s.
+     * 
+     * @return The hash of the attributes of this element.
+     */
+    private int attributesHashCode() {
         return Integer.hashCode(lineStart) + Integer.hashCode(lineEnd) + sourceFile.hashCode()
             + (condition != null ? condition.hashCode() : 54234) + presenceCondition.hashCode();
     }
     
-    // this method is mainly implemented for test cases
+    /**
+     * Returns the structural hash of this element. The hash is calculated by {@link #hashCode(CodeElementHasher)}
+     * from the attributes of this element and the hashes of its nested elements. It is cached until any element of
+     * the same tree is modified (see {@link #invalidateStructuralHash()}).
+     * 
+     * @return The structural hash of this element.
+     */
+    public int getStructuralHash() {
+        CodeElementHasher hasher = new CodeElementHasher();
+        int result = hasher.hashCode(this);
+        if (!hasher.cycleFound && !hasher.visited.isEmpty()) {
+            ModificationTracker.cacheHashes(this, hasher.visited);
+        }
+        return result;
+    }
+    
+    /**
+     * Invalidates the cached structural hash (see {@link #getStructuralHash()}). Sub-classes must call this whenever
+     * an attribute that is considered in {@link #hashCode(CodeElementHasher)} changes. Since elements don't know their
+     * parents, this invalidates the cached hashes of all elements of the same tree.
+     */
+    protected void invalidateStructuralHash() {
+        ModificationTracker.modified(this);
+    }
+    
+    /**
+     * Tracks the modifications of trees of {@link AbstractCodeElement}s for the cached structural hashes. Elements
+     * don't know their parents, so a modification of a single element can't be propagated to the cached hashes of its
+     * parents. Instead, all elements whose hashes depend on each other share a tracker, which holds the cached hashes
+     * of all of these elements. A modification of any element clears the cached hashes of its tracker. Keeping the
+     * hashes in this side table instead of in each element means that elements that are never hashed don't pay for
+     * the cache.
+     * <p>
+     * Elements are linked to the tracker of the element that uses them in its hash calculation (see
+     * {@link CodeElementHasher}). Trackers are merged like in a union-find structure: merged trackers point to a
+     * common root tracker, which holds the cached hashes.
+     * </p>
+     */
+    private static final class ModificationTracker {
+        
+        /**
+         * Guards the creation and merging of trackers and the cached hashes.
+         */
+        private static final @NonNull Object LOCK = new Object();
+        
+        private volatile @Nullable ModificationTracker parent;
+        
+        private int size;
+        
+        /**
+         * The cached hashes of the elements of this tree. Only used in root trackers. <code>null</code> if no hash
+         * is cached.
+         */
+        private @Nullable Map<AbstractCodeElement<?>, Integer> hashes;
+        
+        /**
+         * Creates a new root tracker.
+         */
+        private ModificationTracker() {
+            this.size = 1;
+        }
+        
+        /**
+         * Finds the root tracker of this tracker.
+         * 
+         * @return The root tracker.
+         */
+        private @NonNull ModificationTracker findRoot() {
+            ModificationTracker current = this;
+            ModificationTracker next = current.parent;
+            while (next != null) {
+                // path halving; the written parent is always an ancestor, so this is safe without the lock
+                ModificationTracker nextNext = next.parent;
+                if (nextNext != null) {
+                    current.parent = nextNext;
+                }
+                current = next;
+                next = current.parent;
+            }
+            return current;
+        }
+        
+        /**
+         * Returns the root tracker of the given element. Creates a new tracker for it, if it doesn't have one, yet.
+         * 
+         * @param element The element to get the tracker for.
+         * 
+         * @return The root tracker of the element.
+         */
+        private static @NonNull ModificationTracker getRoot(@NonNull AbstractCodeElement<?> element) {
+            ModificationTracker tracker = element.modificationTracker;
+            if (tracker == null) {
+                synchronized (LOCK) {
+                    tracker = element.modificationTracker;
+                    if (tracker == null) {
+                        tracker = new ModificationTracker();
+                        element.modificationTracker = tracker;
+                    }
+                }
+            }
+            return tracker.findRoot();
+        }
+        
+        /**
+         * Returns the cached structural hash of the given element.
+         * 
+         * @param element The element to get the cached hash for.
+         * 
+         * @return The cached hash, or <code>null</code> if no valid hash is cached.
+         */
+        private static @Nullable Integer getCachedHash(@NonNull AbstractCodeElement<?> element) {
+            Integer result = null;
+            ModificationTracker tracker = element.modificationTracker;
+            if (tracker != null) {
+                synchronized (LOCK) {
+                    Map<AbstractCodeElement<?>, Integer> hashes = tracker.findRoot().hashes;
+                    if (hashes != null) {
+                        result = hashes.get(element);
+                    }
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Caches the given structural hashes. All hashed elements must be linked to the tree of the given element.
+         * 
+         * @param element The top-level element whose hash has been calculated.
+         * @param calculated The calculated hashes of the element and its nested elements.
+         */
+        private static void cacheHashes(@NonNull AbstractCodeElement<?> element,
+                @NonNull Map<IdentityWrapper<CodeElement<?>>, Integer> calculated) {
+            
+            synchronized (LOCK) {
+                ModificationTracker root = getRoot(element);
+                Map<AbstractCodeElement<?>, Integer> hashes = root.hashes;
+                if (hashes == null) {
+                    hashes = new IdentityHashMap<>(calculated.size());
+                    root.hashes = hashes;
+                }
+                for (Map.Entry<IdentityWrapper<CodeElement<?>>, Integer> entry : calculated.entrySet()) {
+                    hashes.put((AbstractCodeElement<?>) entry.getKey().getData(), entry.getValue());
+                }
+            }
+        }
+        
+        /**
+         * Links the given element to the tracker of the element that uses it in its hash calculation.
+         * 
+         * @param user The element whose hash depends on the other element.
+         * @param used The element that the hash of the user depends on.
+         */
+        private static void link(@NonNull AbstractCodeElement<?> user, @NonNull AbstractCodeElement<?> used) {
+            ModificationTracker userRoot = getRoot(user);
+            ModificationTracker usedTracker = used.modificationTracker;
+            if (usedTracker == null || usedTracker.findRoot() != userRoot) {
+                synchronized (LOCK) {
+                    userRoot = userRoot.findRoot();
+                    usedTracker = used.modificationTracker;
+                    if (usedTracker == null) {
+                        // the used element has no cached hash, yet; simply join the tree of the user
+                        used.modificationTracker = userRoot;
+                    } else {
+                        merge(userRoot, usedTracker.findRoot());
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Merges the two given root trackers. The cached hashes of both trees stay valid, since neither tree has been
+         * modified. Must be called while holding {@link #LOCK}.
+         * 
+         * @param first The first root tracker.
+         * @param second The second root tracker.
+         */
+        private static void merge(@NonNull ModificationTracker first, @NonNull ModificationTracker second) {
+            if (first != second) {
+                ModificationTracker larger = first.size >= second.size ? first : second;
+                ModificationTracker smaller = larger == first ? second : first;
+                smaller.parent = larger;
+                larger.size += smaller.size;
+                
+                Map<AbstractCodeElement<?>, Integer> smallerHashes = smaller.hashes;
+                if (smallerHashes != null) {
+                    Map<AbstractCodeElement<?>, Integer> largerHashes = larger.hashes;
+                    if (largerHashes == null) {
+                        larger.hashes = smallerHashes;
+                    } else {
+                        largerHashes.putAll(smallerHashes);
+                    }
+                    smaller.hashes = null;
+                }
+            }
+        }
+        
+        /**
+         * Marks the tree of the given element as modified. This clears the cached hashes of all elements of the
+         * tree.
+         * 
+         * @param element The modified element.
+         */
+        private static void modified(@NonNull AbstractCodeElement<?> element) {
+            // elements without a tracker don't have a cached hash, and no cached hash depends on them
+            if (element.modificationTracker != null) {
+                synchronized (LOCK) {
+                    getRoot(element).hashes = null;
+                }
+            }
+        }
+        
+    }
+    
     @Override
     public final int hashCode() {
-        return new CodeElementHasher().hashCode(this);
+        return getStructuralHash();
     }
     
     @Override
@@ -17,11 +17,12 @@ package net.ssehub.kernel_haven.code_model;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import net.ssehub.kernel_haven.code_model.JsonCodeModelCache.CheckedFunction;
 import net.ssehub.kernel_haven.util.FormatException;
@@ -40,7 +41,12 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
 public abstract class AbstractCodeElementWithNesting<NestedType extends CodeElement<NestedType>>
         extends AbstractCodeElement<NestedType> {
 
-    private @NonNull List<@NonNull NestedType> nested;
+    /**
+     * The nested elements. If this is a {@link LazyNestedElements}, then the nested elements are not yet loaded; see
+     * {@link #setLazyNestedElements(Object, Supplier)}. This way, lazy loading does not need any additional fields in
+     * each element.
+     */
+    private volatile @NonNull ArrayList<@NonNull NestedType> nested;
     
     /**
      * Creates this element with the given presence condition. Source file is unknown, line numbers are -1 and
@@ -51,7 +57,7 @@ public abstract class AbstractCodeElementWithNesting<NestedType extends CodeElem
     public AbstractCodeElementWithNesting(@NonNull Formula presenceCondition) {
         super(presenceCondition);
         
-        this.nested = new LinkedList<>();
+        this.nested = new ArrayList<>();
     }
     
     /**
@@ -70,22 +76,63 @@ public abstract class AbstractCodeElementWithNesting<NestedType extends CodeElem
         throws FormatException {
         super(json, deserializeFunction);
         
-        this.nested = new LinkedList<>();
+        this.nested = new ArrayList<>();
+    }
+    
+    /**
+     * Specifies that the nested elements of this element should be loaded lazily, on first access. This is used by
+     * the {@link JsonCodeModelCache} to de-serialize nested elements only when they are needed. The supplier is called
+     * at most once, while holding the given lock. The lock should be the same for all elements of a single
+     * {@link SourceFile}, since the supplier may trigger the loading of other elements.
+     * 
+     * @param lock The lock to hold while calling the supplier.
+     * @param supplier The supplier that creates the nested elements.
+     */
+    void setLazyNestedElements(@NonNull Object lock, @NonNull Supplier<@NonNull List<@NonNull NestedType>> supplier) {
+        this.nested = new LazyNestedElements<>(lock, supplier);
+    }
+    
+    /**
+     * Returns the list of nested elements. Loads the nested elements first, if they are lazily loaded and not yet
+     * loaded.
+     * 
+     * @return The list of nested elements.
+     */
+    private @NonNull ArrayList<@NonNull NestedType> getNested() {
+        ArrayList<@NonNull NestedType> result = nested;
+        if (result instanceof LazyNestedElements) {
+            LazyNestedElements<NestedType> lazy = (LazyNestedElements<NestedType>) result;
+            synchronized (lazy.lock) {
+                // loading is true if the supplier recursively accesses this element again; it sees the empty list then
+                if (nested == lazy && !lazy.loading) {
+                    lazy.loading = true;
+                    try {
+                        ArrayList<@NonNull NestedType> loaded = new ArrayList<>(lazy.supplier.get());
+                        nested = loaded;
+                    } finally {
+                        lazy.loading = false;
+                    }
+                }
+            }
+            result = nested;
+        }
+        return result;
     }
     
     @Override
     public int getNestedElementCount() {
-        return nested.size();
+        return getNested().size();
     }
 
     @Override
     public @NonNull NestedType getNestedElement(int index) throws IndexOutOfBoundsException {
-        return notNull(nested.get(index));
+        return notNull(getNested().get(index));
     }
 
     @Override
     public void addNestedElement(@NonNull NestedType element) {
-        nested.add(element);
+        getNested().add(element);
+        invalidateStructuralHash();
     }
     
     /**
@@ -100,24 +147,60 @@ public abstract class AbstractCodeElementWithNesting<NestedType extends CodeElem
     protected void replaceNestedElement(@NonNull NestedType oldElement, @NonNull NestedType newElement)
             throws NoSuchElementException {
         
-        int index = nested.indexOf(oldElement);
+        int index = getNested().indexOf(oldElement);
         if (index < 0) {
             throw new NoSuchElementException();
         }
         
         nested.set(index, newElement);
+        invalidateStructuralHash();
+    }
+    
+    /**
+     * Replaces the nested element at the given index. This is used by the {@link SubtreeDeduplicator} to replace
+     * nested elements with equal, shared instances.
+     * 
+     * @param index The index of the nested element to replace.
+     * @param element The new element.
+     * 
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    void setNestedElement(int index, @NonNull NestedType element) throws IndexOutOfBoundsException {
+        getNested().set(index, element);
+        invalidateStructuralHash();
+    }
+    
+    /**
+     * Trims the storage of the nested elements to the current number of nested elements. This is done recursively for
+     * all nested elements. This should be called once the AST is fully constructed, to reduce the memory footprint of
+     * the AST (the nested elements are stored in an array which grows in chunks while elements are added). Nested
+     * elements that are not yet lazily loaded are not loaded by this method.
+     */
+    public void trimToSize() {
+        ArrayList<@NonNull NestedType> nested = this.nested;
+        if (nested instanceof LazyNestedElements) {
+            return; // lazily loaded elements are trimmed when they are loaded
+        }
+        
+        nested.trimToSize();
+        
+        for (NestedType n : nested) {
+            if (n instanceof AbstractCodeElementWithNesting) {
+                ((AbstractCodeElementWithNesting<?>) n).trimToSize();
+            }
+        }
     }
     
     @Override
     public Iterator<@NonNull NestedType> iterator() {
-        return nested.iterator();
+        return getNested().iterator();
     }
     
     @Override
     protected int hashCode(@NonNull CodeElementHasher hasher) {
         int result = 1;
 
-        for (NestedType n : nested) {
+        for (NestedType n : getNested()) {
             result = 31 * result + hasher.hashCode((AbstractCodeElement<?>) n);
         }
         
@@ -131,14 +214,54 @@ public abstract class AbstractCodeElementWithNesting<NestedType extends CodeElem
         if (equal) {
             AbstractCodeElementWithNesting<?> o = (AbstractCodeElementWithNesting<?>) other;
             
-            equal = this.nested.size() == o.nested.size();
-            for (int i = 0; equal && i < this.nested.size(); i++) {
-                equal &= checker.isEqual((AbstractCodeElement<?>) this.nested.get(i),
-                        (AbstractCodeElement<?>) o.nested.get(i));
+            List<@NonNull NestedType> thisNested = this.getNested();
+            List<?> otherNested = o.getNested();
+            
+            equal = thisNested.size() == otherNested.size();
+            for (int i = 0; equal && i < thisNested.size(); i++) {
+                equal &= checker.isEqual((AbstractCodeElement<?>) thisNested.get(i),
+                        (AbstractCodeElement<?>) notNull(otherNested.get(i)));
             }
         }
         
         return equal;
     }
+    
+    /**
+     * The (empty) list of nested elements of an element, whose nested elements are not yet loaded. Holds everything
+     * needed for lazy loading, so that elements that are not lazily loaded don't need any additional memory.
+     * 
+     * @param <NestedType> The type of the nested elements.
+     */
+    private static final class LazyNestedElements<NestedType> extends ArrayList<@NonNull NestedType> {
+        
+        private static final long serialVersionUID = 5460232780349126498L;
+        
+        /**
+         * The lock that is held while {@link #supplier} is evaluated.
+         */
+        private final transient @NonNull Object lock;
+        
+        private final transient @NonNull Supplier<@NonNull List<@NonNull NestedType>> supplier;
+        
+        /**
+         * Whether {@link #supplier} is currently being evaluated by the thread that holds {@link #lock}.
+         */
+        private transient boolean loading;
+        
+        /**
+         * Creates the placeholder list.
+         * 
+         * @param lock The lock to hold while calling the supplier.
+         * @param supplier The supplier that creates the nested elements.
+         */
+        private LazyNestedElements(@NonNull Object lock,
+                @NonNull Supplier<@NonNull List<@NonNull NestedType>> supplier) {
+            super(0);
+            this.lock = lock;
+            this.supplier = supplier;
+        }
+        
+    }
 
 }
@@ -15,17 +15,32 @@
  */
 package net.ssehub.kernel_haven.code_model;
 
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
 import java.io.File;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import net.ssehub.kernel_haven.SetUpException;
 import net.ssehub.kernel_haven.config.DefaultSettings;
 import net.ssehub.kernel_haven.provider.AbstractCache;
 import net.ssehub.kernel_haven.provider.AbstractProvider;
+import net.ssehub.kernel_haven.util.BlockingQueue;
+import net.ssehub.kernel_haven.util.ExtractorException;
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.ProgressLogger;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * The provider for the code model. This class serves as an intermediate between the analysis and the code model
@@ -42,59 +57,139 @@ public class CodeModelProvider extends AbstractProvider<SourceFile<?>> {
     
     @Override
     protected @NonNull List<@NonNull File> getTargets() throws SetUpException {
-        List<@NonNull File> result = new LinkedList<>();
+        List<@NonNull File> result = new ArrayList<>();
+        
+        for (File relativeFile : getStartingPoints()) {
+            try {
+                findTargets(relativeFile, result::add);
+            } catch (IOException e) {
+                throw new SetUpException("Can't read files in " + relativeFile.getPath(), e);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Walks the source tree in a separate thread and adds the targets to the queue as soon as they are found. This
+     * way, the extractor threads can already start working while the (potentially very large) source tree is still
+     * being searched. The paths specified in code.extractor.files are checked for existence before the discovery
+     * thread is started, so that configuration problems are still reported as a {@link SetUpException}.
+     */
+    @Override
+    protected void discoverTargets(@NonNull BlockingQueue<@NonNull File> targetQueue) throws SetUpException {
+        List<@NonNull File> startingPoints = getStartingPoints();
+        
+        new Thread(() -> {
+            ProgressLogger progress = new ProgressLogger("CodeModelProvider target discovery");
+            
+            try {
+                for (File relativeFile : startingPoints) {
+                    findTargets(relativeFile, (target) -> {
+                        targetQueue.add(target);
+                        progress.processedOne();
+                    });
+                }
+                
+            } catch (IOException e) {
+                Logger.get().logException("Error while discovering files in source tree", e);
+                addException(new ExtractorException("Error while discovering files in source tree: "
+                        + e.getMessage()));
+                
+            } finally {
+                targetQueue.end();
+                progress.close();
+            }
+            
+        }, "CodeModelProvider-TargetDiscovery").start();
+    }
+    
+    /**
+     * Returns the paths specified in code.extractor.files, after checking that they exist in the source tree.
+     * 
+     * @return The list of files and directories to search for targets, relative to the source tree.
+     * 
+     * @throws SetUpException If any of the specified paths does not exist.
+     */
+    private @NonNull List<@NonNull File> getStartingPoints() throws SetUpException {
+        List<@NonNull File> result = new ArrayList<>();
         
-        Pattern pattern = config.getValue(DefaultSettings.CODE_EXTRACTOR_FILE_REGEX);
-
         for (String relativeStr : config.getValue(DefaultSettings.CODE_EXTRACTOR_FILES)) {
             File relativeFile = new File(relativeStr);
             File absoluteFile = new File(config.getValue(DefaultSettings.SOURCE_TREE), relativeFile.getPath());
-
-            if (absoluteFile.isFile()) {
-                result.add(relativeFile);
-            } else if (absoluteFile.isDirectory()) {
-                readFilesFromDirectory(absoluteFile, pattern, result);
-            } else {
+            
+            if (!absoluteFile.isFile() && !absoluteFile.isDirectory()) {
                 throw new SetUpException("Non-existing file specified in code.extractor.files: "
                         + relativeFile.getPath());
             }
+            
+            result.add(relativeFile);
         }
         
         return result;
     }
     
     /**
-     * Finds all files in the given directory (recursively) that match the given
-     * pattern. The files that match are added to filesToParse.
+     * Finds all targets for the given starting point. If the starting point is a file, then it is passed to the
+     * consumer directly. If it is a directory, then all files in it (recursively) whose name matches the pattern in
+     * code.extractor.file_regex are passed to the consumer, as soon as they are found.
+     * 
+     * @param relativeFile The file or directory to search in, relative to the source tree.
+     * @param consumer The consumer that gets all found targets, relative to the source tree.
      * 
-     * @param directory
-     *            The directory to search in.
-     * @param pattern
-     *            The pattern to check against.
-     * @param result
-     *            The list to add the found files to.
+     * @throws IOException If walking the directory fails.
      */
-    private void readFilesFromDirectory(File directory, Pattern pattern, List<File> result) {
-        for (File file : directory.listFiles()) {
-            if (file.isDirectory()) {
-                readFilesFromDirectory(file, pattern, result);
-            } else {
-                Matcher m = pattern.matcher(file.getName());
-
-                if (m.matches()) {
-                    result.add(config.getValue(DefaultSettings.SOURCE_TREE).toPath()
-                            .relativize(file.toPath()).toFile());
+    private void findTargets(@NonNull File relativeFile, @NonNull Consumer<@NonNull File> consumer)
+            throws IOException {
+        
+        Path sourceTree = config.getValue(DefaultSettings.SOURCE_TREE).toPath();
+        Path absolutePath = sourceTree.resolve(relativeFile.toPath());
+        
+        if (!Files.isDirectory(absolutePath)) {
+            consumer.accept(relativeFile);
+            return;
+        }
+        
+        Pattern pattern = config.getValue(DefaultSettings.CODE_EXTRACTOR_FILE_REGEX);
+        
+        Files.walkFileTree(absolutePath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    Path name = file.getFileName();
+                    if (name != null && pattern.matcher(name.toString()).matches()) {
+                        consumer.accept(notNull(sourceTree.relativize(file).toFile()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // don't abort the whole walk just because a single file or directory is not readable
+                    Logger.get().logExceptionWarning("Can't visit " + file, exc);
+                    return FileVisitResult.CONTINUE;
                 }
+                
+            });
+    }
 
-            }
+    /**
+     * Trims the storage of the given result to its final size before passing it on to the analysis.
+     */
+    @Override
+    public void addResult(@Nullable SourceFile<?> result) {
+        if (result != null) {
+            result.trimToSize();
         }
-
+        super.addResult(result);
     }
 
     @Override
     protected @NonNull AbstractCache<SourceFile<?>> createCache() {
         return new JsonCodeModelCache(config.getValue(DefaultSettings.CACHE_DIR),
-                config.getValue(DefaultSettings.CODE_PROVIDER_CACHE_COMPRESS));
+                config.getValue(DefaultSettings.CODE_PROVIDER_CACHE_COMPRESS),
+                config.getValue(DefaultSettings.CODE_PROVIDER_CACHE_LAZY));
     }
 
     @Override
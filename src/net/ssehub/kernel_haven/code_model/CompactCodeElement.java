@@ -0,0 +1,301 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import net.ssehub.kernel_haven.code_model.ast.ISyntaxElement;
+import net.ssehub.kernel_haven.util.io.json.JsonElement;
+import net.ssehub.kernel_haven.util.io.json.JsonObject;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A light-weight, read-only cursor to a single element of a {@link CompactSourceFile}. Instances of this class only
+ * hold a reference to the file and the index of the element; all attributes are read from the arrays of the
+ * {@link CompactSourceFile} on demand. Thus, instances are cheap to create and can be discarded right after use.
+ * <p>
+ * All modifying methods of the {@link CodeElement} interface throw an {@link UnsupportedOperationException}.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class CompactCodeElement implements CodeElement<CompactCodeElement> {
+    
+    private @NonNull CompactSourceFile file;
+    
+    private int index;
+    
+    /**
+     * Creates a cursor for the given element. Use the methods of {@link CompactSourceFile} to get instances of this.
+     * 
+     * @param file The file that contains the element.
+     * @param index The index of the element in the file.
+     */
+    CompactCodeElement(@NonNull CompactSourceFile file, int index) {
+        this.file = file;
+        this.index = index;
+    }
+    
+    /**
+     * Returns the {@link CompactSourceFile} that this element is part of.
+     * 
+     * @return The file that contains this element.
+     */
+    public @NonNull CompactSourceFile getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the (breadth-first) index of this element in its {@link CompactSourceFile}.
+     * 
+     * @return The index of this element.
+     * 
+     * @see CompactSourceFile#getElementByIndex(int)
+     */
+    public int getIndex() {
+        return index;
+    }
+    
+    /**
+     * Returns the class of the original {@link CodeElement} that this element was created from (e.g. the class of the
+     * {@link ISyntaxElement}).
+     * 
+     * @return The class of the original element.
+     */
+    public @NonNull Class<?> getType() {
+        return file.getType(index);
+    }
+    
+    /**
+     * Returns the parent of this element.
+     * 
+     * @return The element that this element is nested in. <code>null</code> if this is a top element.
+     */
+    public @Nullable CompactCodeElement getParent() {
+        int parent = file.getParent(index);
+        return parent == -1 ? null : new CompactCodeElement(file, parent);
+    }
+    
+    /**
+     * Returns the ID of the immediate condition of this element in the {@link ConditionTable} of the file.
+     * 
+     * @return The ID of the condition. {@link ConditionTable#NO_CONDITION} if this element has no condition.
+     */
+    public int getConditionId() {
+        return file.getConditionId(index);
+    }
+    
+    /**
+     * Returns the ID of the presence condition of this element in the {@link ConditionTable} of the file. Since the
+     * same table is shared by all files, this can be used for cheap comparisons of presence conditions.
+     * 
+     * @return The ID of the presence condition.
+     */
+    public int getPresenceConditionId() {
+        return file.getPresenceConditionId(index);
+    }
+    
+    /**
+     * Returns whether the original element or any of its nested elements is an error element.
+     * 
+     * @return The value of {@link ISyntaxElement#containsErrorElement()} of the original element; <code>false</code>
+     *      if the original element was no {@link ISyntaxElement}.
+     */
+    public boolean containsErrorElement() {
+        return file.containsErrorElement(index);
+    }
+    
+    @Override
+    public int getNestedElementCount() {
+        return file.getNestedElementCount(index);
+    }
+    
+    @Override
+    public @NonNull CompactCodeElement getNestedElement(int index) throws IndexOutOfBoundsException {
+        return new CompactCodeElement(file, file.getNestedElement(this.index, index));
+    }
+    
+    /**
+     * Not supported, since {@link CompactSourceFile}s are read-only.
+     * 
+     * @param element Ignored.
+     * 
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void addNestedElement(@NonNull CompactCodeElement element) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("CompactCodeElements are read-only");
+    }
+    
+    @Override
+    public int getLineStart() {
+        return file.getLineStart(index);
+    }
+    
+    /**
+     * Not supported, since {@link CompactSourceFile}s are read-only.
+     * 
+     * @param start Ignored.
+     * 
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void setLineStart(int start) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("CompactCodeElements are read-only");
+    }
+    
+    @Override
+    public int getLineEnd() {
+        return file.getLineEnd(index);
+    }
+    
+    /**
+     * Not supported, since {@link CompactSourceFile}s are read-only.
+     * 
+     * @param end Ignored.
+     * 
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void setLineEnd(int end) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("CompactCodeElements are read-only");
+    }
+    
+    @Override
+    public @NonNull File getSourceFile() {
+        return file.getSourceFile(index);
+    }
+    
+    @Override
+    public @Nullable Formula getCondition() {
+        return file.getCondition(index);
+    }
+    
+    @Override
+    public @NonNull Formula getPresenceCondition() {
+        return file.getPresenceCondition(index);
+    }
+    
+    @Override
+    public @NonNull Iterator<@NonNull CompactCodeElement> iterator() {
+        return new Iterator<@NonNull CompactCodeElement>() {
+            
+            private int nestedIndex;
+            
+            @Override
+            public boolean hasNext() {
+                return nestedIndex < getNestedElementCount();
+            }
+            
+            @Override
+            public @NonNull CompactCodeElement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getNestedElement(nestedIndex++);
+            }
+        };
+    }
+    
+    @Override
+    public @NonNull String elementToString(@NonNull String indentation) {
+        return getType().getSimpleName() + "[start=" + getLineStart() + "; end=" + getLineEnd() + "; file="
+                + getSourceFile() + "; pc=" + getPresenceCondition() + "]\n";
+    }
+    
+    @Override
+    public @NonNull String toString(@NonNull String indentation) {
+        StringBuilder result = new StringBuilder();
+        
+        Formula condition = getCondition();
+        String conditionStr = condition == null ? "<null>" : condition.toString();
+        if (conditionStr.length() > 64) {
+            conditionStr = "...";
+        }
+        
+        result.append(indentation).append("[").append(conditionStr).append("] ");
+        result.append(elementToString(indentation));
+        
+        indentation += '\t';
+        
+        for (CompactCodeElement child : this) {
+            result.append(child.toString(indentation));
+        }
+        
+        return notNull(result.toString());
+    }
+    
+    @Override
+    public @NonNull String toString() {
+        return toString("");
+    }
+    
+    /**
+     * Not supported, since {@link CompactSourceFile}s are not cached.
+     * 
+     * @param result Ignored.
+     * @param serializeFunction Ignored.
+     * @param idFunction Ignored.
+     * 
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void serializeToJson(JsonObject result,
+            @NonNull Function<@NonNull CodeElement<?>, @NonNull JsonElement> serializeFunction,
+            @NonNull Function<@NonNull CodeElement<?>, @NonNull Integer> idFunction)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("CompactCodeElements can not be serialized");
+    }
+    
+    /**
+     * Not supported, since {@link CompactSourceFile}s are not cached.
+     * 
+     * @param mapping Ignored.
+     * 
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void resolveIds(Map<Integer, CodeElement<?>> mapping) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("CompactCodeElements can not be de-serialized");
+    }
+    
+    /**
+     * Two cursors are equal, if they point to the same element of the same {@link CompactSourceFile}.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        boolean equal = false;
+        if (obj instanceof CompactCodeElement) {
+            CompactCodeElement other = (CompactCodeElement) obj;
+            equal = other.file == this.file && other.index == this.index;
+        }
+        return equal;
+    }
+    
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(file) * 31 + index;
+    }
+
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import net.ssehub.kernel_haven.code_model.ast.ISyntaxElement;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A compact, read-only representation of a {@link SourceFile}. Instead of one object per {@link CodeElement}, the
+ * attributes of all elements are stored in parallel primitive arrays; conditions are stored as IDs into a
+ * {@link ConditionTable} that is shared between files. The elements can be accessed through light-weight
+ * {@link CompactCodeElement} cursors, which are created on demand and implement the read-only part of the
+ * {@link CodeElement} interface.
+ * <p>
+ * Only the primary nesting structure (i.e. {@link CodeElement#getNestedElement(int)}) and the attributes common to
+ * all {@link CodeElement}s are kept. Type-specific attributes (e.g. the text of code elements) and secondary nested
+ * elements are not stored. This makes this representation suitable for analyses that only need the structure,
+ * conditions and line numbers of the AST (e.g. block-based analyses), but which need to hold the code model of a
+ * whole product line in memory.
+ * </p>
+ * <p>
+ * The elements are numbered in breadth-first order. This way, the top elements have the indices
+ * 0 to {@link #getTopElementCount()} - 1 and the nested elements of each element are stored next to each other.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class CompactSourceFile implements Iterable<@NonNull CompactCodeElement> {
+    
+    private @NonNull File path;
+    
+    private @NonNull ConditionTable conditionTable;
+    
+    private int topElementCount;
+    
+    /**
+     * The distinct classes of the original elements. {@link #types} points into this.
+     */
+    private @NonNull Class<?> @NonNull [] typeTable;
+    
+    /**
+     * The distinct source files of the original elements. {@link #sourceFiles} points into this.
+     */
+    private @NonNull File @NonNull [] fileTable;
+    
+    private int @NonNull [] types;
+    
+    private int @NonNull [] parents;
+    
+    /**
+     * The nested elements of element i are at indices firstNested[i] to firstNested[i + 1] - 1. This has one
+     * entry more than the number of elements.
+     */
+    private int @NonNull [] firstNested;
+    
+    private int @NonNull [] lineStarts;
+    
+    private int @NonNull [] lineEnds;
+    
+    private int @NonNull [] sourceFiles;
+    
+    private int @NonNull [] conditions;
+    
+    private int @NonNull [] presenceConditions;
+    
+    private @NonNull BitSet containsErrorElement;
+    
+    /**
+     * Creates a compact representation of the given {@link SourceFile}. The given {@link SourceFile} is not modified
+     * and not referenced by this object, so it can be garbage collected after this.
+     * 
+     * @param sourceFile The {@link SourceFile} to convert.
+     * @param conditionTable The table to store the conditions in. Should be shared between all files of the same code
+     *      model.
+     */
+    public CompactSourceFile(@NonNull SourceFile<?> sourceFile, @NonNull ConditionTable conditionTable) {
+        this.path = sourceFile.getPath();
+        this.conditionTable = conditionTable;
+        this.topElementCount = sourceFile.getTopElementCount();
+        
+        // breadth-first numbering: the list doubles as the queue
+        List<@NonNull CodeElement<?>> order = new ArrayList<>();
+        for (CodeElement<?> element : sourceFile) {
+            order.add(element);
+        }
+        for (int i = 0; i < order.size(); i++) {
+            CodeElement<?> element = notNull(order.get(i));
+            for (int j = 0; j < element.getNestedElementCount(); j++) {
+                order.add(element.getNestedElement(j));
+            }
+        }
+        
+        int size = order.size();
+        this.types = new int[size];
+        this.parents = new int[size];
+        this.firstNested = new int[size + 1];
+        this.lineStarts = new int[size];
+        this.lineEnds = new int[size];
+        this.sourceFiles = new int[size];
+        this.conditions = new int[size];
+        this.presenceConditions = new int[size];
+        this.containsErrorElement = new BitSet();
+        
+        Map<Class<?>, Integer> typeIds = new HashMap<>();
+        Map<File, Integer> fileIds = new HashMap<>();
+        
+        for (int i = 0; i < topElementCount; i++) {
+            parents[i] = -1;
+        }
+        
+        int nextNested = topElementCount;
+        for (int i = 0; i < size; i++) {
+            CodeElement<?> element = notNull(order.get(i));
+            
+            types[i] = typeIds.computeIfAbsent(element.getClass(), (c) -> typeIds.size());
+            sourceFiles[i] = fileIds.computeIfAbsent(element.getSourceFile(), (f) -> fileIds.size());
+            lineStarts[i] = element.getLineStart();
+            lineEnds[i] = element.getLineEnd();
+            conditions[i] = conditionTable.getId(element.getCondition());
+            presenceConditions[i] = conditionTable.getId(element.getPresenceCondition());
+            
+            if (element instanceof ISyntaxElement && ((ISyntaxElement) element).containsErrorElement()) {
+                containsErrorElement.set(i);
+            }
+            
+            firstNested[i] = nextNested;
+            for (int j = 0; j < element.getNestedElementCount(); j++) {
+                parents[nextNested++] = i;
+            }
+        }
+        firstNested[size] = nextNested;
+        
+        this.typeTable = new Class<?>[typeIds.size()];
+        for (Map.Entry<Class<?>, Integer> entry : typeIds.entrySet()) {
+            typeTable[entry.getValue()] = notNull(entry.getKey());
+        }
+        this.fileTable = new File[fileIds.size()];
+        for (Map.Entry<File, Integer> entry : fileIds.entrySet()) {
+            fileTable[entry.getValue()] = notNull(entry.getKey());
+        }
+    }
+    
+    /**
+     * Retrieves the path of this file which is relative to the source tree.
+     * 
+     * @return The path.
+     */
+    public @NonNull File getPath() {
+        return path;
+    }
+    
+    /**
+     * Returns the condition table that the conditions of this file are stored in.
+     * 
+     * @return The condition table.
+     */
+    public @NonNull ConditionTable getConditionTable() {
+        return conditionTable;
+    }
+    
+    /**
+     * Returns the number of top elements (not nested in other elements).
+     * 
+     * @return the number of top elements.
+     */
+    public int getTopElementCount() {
+        return topElementCount;
+    }
+    
+    /**
+     * Returns the number of all elements in this file (fully recursive).
+     * 
+     * @return The number of elements.
+     */
+    public int getElementCount() {
+        return types.length;
+    }
+    
+    /**
+     * Returns the top element at the given index.
+     * 
+     * @param index The index to get the top element for.
+     * @return A cursor for the top element at the given index.
+     * 
+     * @throws IndexOutOfBoundsException If index is out of range.
+     */
+    public @NonNull CompactCodeElement getElement(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= topElementCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", top elements: " + topElementCount);
+        }
+        return new CompactCodeElement(this, index);
+    }
+    
+    /**
+     * Returns the element with the given (breadth-first) index.
+     * 
+     * @param index The index of the element, between 0 and {@link #getElementCount()} - 1.
+     * @return A cursor for the element.
+     * 
+     * @throws IndexOutOfBoundsException If index is out of range.
+     */
+    public @NonNull CompactCodeElement getElementByIndex(int index) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        return new CompactCodeElement(this, index);
+    }
+    
+    /**
+     * Iterates over the top elements not nested in other elements.
+     * 
+     * @return an iterator over top elements.
+     */
+    @Override
+    public @NonNull Iterator<@NonNull CompactCodeElement> iterator() {
+        return new Iterator<@NonNull CompactCodeElement>() {
+            
+            private int index;
+            
+            @Override
+            public boolean hasNext() {
+                return index < topElementCount;
+            }
+            
+            @Override
+            public @NonNull CompactCodeElement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new CompactCodeElement(CompactSourceFile.this, index++);
+            }
+        };
+    }
+    
+    /**
+     * Checks that the given index points to an element.
+     * 
+     * @param index The index to check.
+     * 
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= types.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", elements: " + types.length);
+        }
+    }
+    
+    /*
+     * Accessors for the cursors; these do not check the index, since cursors are only created for valid indices.
+     */
+    
+    /**
+     * Returns the class of the original element.
+     * 
+     * @param index The index of the element.
+     * @return The class of the original element.
+     */
+    @NonNull Class<?> getType(int index) {
+        return typeTable[types[index]];
+    }
+    
+    /**
+     * Returns the index of the parent of the given element.
+     * 
+     * @param index The index of the element.
+     * @return The index of the parent, or -1 if the given element is a top element.
+     */
+    int getParent(int index) {
+        return parents[index];
+    }
+    
+    /**
+     * Returns the number of elements nested inside the given element.
+     * 
+     * @param index The index of the element.
+     * @return The number of nested elements.
+     */
+    int getNestedElementCount(int index) {
+        return firstNested[index + 1] - firstNested[index];
+    }
+    
+    /**
+     * Returns the index of a nested element.
+     * 
+     * @param index The index of the parent element.
+     * @param nestedIndex The index of the nested element inside of the parent element.
+     * @return The index of the nested element in this file.
+     * 
+     * @throws IndexOutOfBoundsException If nestedIndex is out of range.
+     */
+    int getNestedElement(int index, int nestedIndex) throws IndexOutOfBoundsException {
+        if (nestedIndex < 0 || nestedIndex >= getNestedElementCount(index)) {
+            throw new IndexOutOfBoundsException("Index: " + nestedIndex + ", nested elements: "
+                    + getNestedElementCount(index));
+        }
+        return firstNested[index] + nestedIndex;
+    }
+    
+    /**
+     * Returns the start line of the given element.
+     * 
+     * @param index The index of the element.
+     * @return The start line number. -1 if not available.
+     */
+    int getLineStart(int index) {
+        return lineStarts[index];
+    }
+    
+    /**
+     * Returns the end line of the given element.
+     * 
+     * @param index The index of the element.
+     * @return The end line number. -1 if not available.
+     */
+    int getLineEnd(int index) {
+        return lineEnds[index];
+    }
+    
+    /**
+     * Returns the source file of the given element.
+     * 
+     * @param index The index of the element.
+     * @return The source file of the element.
+     */
+    @NonNull File getSourceFile(int index) {
+        return fileTable[sourceFiles[index]];
+    }
+    
+    /**
+     * Returns the ID of the condition of the given element in the {@link ConditionTable}.
+     * 
+     * @param index The index of the element.
+     * @return The ID of the condition. {@link ConditionTable#NO_CONDITION} if the element has no condition.
+     */
+    int getConditionId(int index) {
+        return conditions[index];
+    }
+    
+    /**
+     * Returns the ID of the presence condition of the given element in the {@link ConditionTable}.
+     * 
+     * @param index The index of the element.
+     * @return The ID of the presence condition.
+     */
+    int getPresenceConditionId(int index) {
+        return presenceConditions[index];
+    }
+    
+    /**
+     * Returns the condition of the given element.
+     * 
+     * @param index The index of the element.
+     * @return The condition, may be <code>null</code>.
+     */
+    @Nullable Formula getCondition(int index) {
+        return conditionTable.getCondition(conditions[index]);
+    }
+    
+    /**
+     * Returns the presence condition of the given element.
+     * 
+     * @param index The index of the element.
+     * @return The presence condition.
+     */
+    @NonNull Formula getPresenceCondition(int index) {
+        return notNull(conditionTable.getCondition(presenceConditions[index]));
+    }
+    
+    /**
+     * Returns whether the given element is or contains an error element.
+     * 
+     * @param index The index of the element.
+     * @return Whether the original element returned <code>true</code> for
+     *      {@link ISyntaxElement#containsErrorElement()}.
+     */
+    boolean containsErrorElement(int index) {
+        return containsErrorElement.get(index);
+    }
+
+}
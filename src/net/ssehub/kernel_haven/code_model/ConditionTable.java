@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A table that maps (equal) {@link Formula}s to unique integer IDs. This is used by {@link CompactSourceFile}s to
+ * store conditions as plain integers. A single table should be shared by all {@link CompactSourceFile}s of a code
+ * model, since the same conditions appear over and over again in different files. This class is thread-safe.
+ * 
+ * @author Adam
+ */
+public class ConditionTable {
+    
+    /**
+     * The ID that represents a <code>null</code> condition.
+     */
+    public static final int NO_CONDITION = -1;
+    
+    private @NonNull Map<@NonNull Formula, Integer> ids;
+    
+    private @NonNull List<@NonNull Formula> conditions;
+    
+    /**
+     * Creates a new, empty condition table.
+     */
+    public ConditionTable() {
+        this.ids = new HashMap<>();
+        this.conditions = new ArrayList<>();
+    }
+    
+    /**
+     * Returns the ID for the given condition. If the condition is not yet in this table, it is added.
+     * 
+     * @param condition The condition to get the ID for. May be <code>null</code>.
+     * 
+     * @return The ID of the condition. {@link #NO_CONDITION} if the condition is <code>null</code>.
+     */
+    public synchronized int getId(@Nullable Formula condition) {
+        int result = NO_CONDITION;
+        if (condition != null) {
+            Integer id = ids.get(condition);
+            if (id == null) {
+                id = conditions.size();
+                conditions.add(condition);
+                ids.put(condition, id);
+            }
+            result = id;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the condition for the given ID.
+     * 
+     * @param id The ID of the condition, as returned by {@link #getId(Formula)}.
+     * 
+     * @return The condition with the given ID. <code>null</code> if the ID is {@link #NO_CONDITION}.
+     * 
+     * @throws IndexOutOfBoundsException If no condition with the given ID exists.
+     */
+    public synchronized @Nullable Formula getCondition(int id) throws IndexOutOfBoundsException {
+        Formula result = null;
+        if (id != NO_CONDITION) {
+            result = notNull(conditions.get(id));
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of distinct conditions in this table.
+     * 
+     * @return The number of conditions.
+     */
+    public synchronized int getSize() {
+        return conditions.size();
+    }
+
+}
@@ -26,8 +26,11 @@ import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import net.ssehub.kernel_haven.provider.AbstractCache;
@@ -46,16 +49,30 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
 /**
  * A cache for saving (and reading) a code model to a files, using JSON as
  * serialization.
+ * <p>
+ * Each {@link CodeElement} instance is serialized exactly once. Further occurrences of the same instance (e.g. shared
+ * secondary nested elements) are written as <code>{"ref": id}</code>. Elements that are only referenced by ID (e.g.
+ * the target of a {@link net.ssehub.kernel_haven.code_model.ast.ReferenceElement} that is not part of the file) are
+ * written once in the <code>shared</code> list of the file. De-serialization restores the sharing of these instances.
+ * </p>
  * 
  * @author Adam
  */
 public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
 
-    private static final int VERSION = 2;
+    private static final int VERSION = 3;
+    
+    /**
+     * The oldest version that can still be read. Version 2 did not have shared elements or references, so it is a
+     * subset of the current format.
+     */
+    private static final int MIN_VERSION = 2;
     
     private @NonNull File cacheDir;
 
     private boolean compress;
+    
+    private boolean lazy;
 
     /**
      * Creates a new cache in the given cache directory.
@@ -83,6 +100,28 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         this.cacheDir = cacheDir;
         this.compress = compress;
     }
+    
+    /**
+     * Creates a new cache in the given cache directory.
+     * 
+     * @param cacheDir
+     *            The directory where to store the cache files. This must be a
+     *            directory, and we must be able to read and write to it.
+     * @param compress
+     *            Whether the cache files should be written compressed. Already
+     *            existing compressed cache files are always read, even if
+     *            compression is turned off.
+     * @param lazy
+     *            Whether uncompressed cache files should be read lazily. If
+     *            this is set, the elements of a read {@link SourceFile} are
+     *            only de-serialized when they are accessed for the first time.
+     *            Compressed cache files are always read completely.
+     */
+    public JsonCodeModelCache(@NonNull File cacheDir, boolean compress, boolean lazy) {
+        this.cacheDir = cacheDir;
+        this.compress = compress;
+        this.lazy = lazy;
+    }
 
     /**
      * Returns the path where the given source file should be cached.
@@ -152,6 +191,16 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         
         private @NonNull Map<IdentityWrapper<CodeElement<?>>, Integer> idMapping;
         
+        /**
+         * All elements that got an ID, indexed by ID - 1.
+         */
+        private @NonNull List<@NonNull CodeElement<?>> elements;
+        
+        /**
+         * The IDs of the elements that have already been written.
+         */
+        private @NonNull BitSet written;
+        
         private int nextId;
         
         /**
@@ -159,6 +208,8 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
          */
         public SerializeData() {
             this.idMapping = new HashMap<>();
+            this.elements = new ArrayList<>();
+            this.written = new BitSet();
             this.nextId = 1;
         }
         
@@ -175,12 +226,14 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
             if (result == null) {
                 result = nextId++;
                 idMapping.put(wrapper, result);
+                elements.add(element);
             }
             return result;
         }
         
         /**
-         * Serializes the given {@link CodeElement} to JSON.
+         * Serializes the given {@link CodeElement} to JSON. If the same instance has already been written, only a
+         * reference to its ID is returned.
          * 
          * @param element The element to serialize.
          * 
@@ -189,23 +242,47 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         public @NonNull JsonElement serialize(@NonNull CodeElement<?> element) {
             JsonObject result = new JsonObject();
             
-            result.putElement("class", new JsonString(notNull(element.getClass().getName())));
-            result.putElement("id", new JsonNumber(getId(element)));
-            
-            element.serializeToJson(result, this::serialize, this::getId);
-            
-            if (element.getNestedElementCount() > 0) {
-                JsonList nestedJson = new JsonList();
-                for (CodeElement<?> nested : element) {
-                    nestedJson.addElement(serialize(nested));
-                }
+            int id = getId(element);
+            if (written.get(id)) {
+                result.putElement("ref", new JsonNumber(id));
+                
+            } else {
+                written.set(id);
                 
-                result.putElement("nested", nestedJson);
+                result.putElement("class", new JsonString(notNull(element.getClass().getName())));
+                result.putElement("id", new JsonNumber(id));
+                
+                element.serializeToJson(result, this::serialize, this::getId);
+                
+                if (element.getNestedElementCount() > 0) {
+                    JsonList nestedJson = new JsonList();
+                    for (CodeElement<?> nested : element) {
+                        nestedJson.addElement(serialize(nested));
+                    }
+                    
+                    result.putElement("nested", nestedJson);
+                }
             }
             
             return result;
         }
         
+        /**
+         * Serializes all elements that got an ID (e.g. because they are referenced), but that have not been written
+         * yet. Serializing these may assign further IDs, which are also covered.
+         * 
+         * @return The list of serialized elements; empty if all elements have been written.
+         */
+        public @NonNull JsonList serializeUnwritten() {
+            JsonList result = new JsonList();
+            for (int i = 0; i < elements.size(); i++) {
+                if (!written.get(i + 1)) {
+                    result.addElement(serialize(notNull(elements.get(i))));
+                }
+            }
+            return result;
+        }
+        
     }
     
     /**
@@ -231,6 +308,11 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         
         result.putElement("elements", elements);
         
+        JsonList shared = data.serializeUnwritten();
+        if (shared.getSize() > 0) {
+            result.putElement("shared", shared);
+        }
+        
         return result;
     }
     
@@ -260,30 +342,52 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         }
         
         SourceFile<CodeElement<?>> result = null;
-        try {
-            JsonElement json;
-            if (compressed) {
-                try (ZipArchive archive = new ZipArchive(cacheFile);
-                        JsonParser parser = new JsonParser(
-                                new InputStreamReader(archive.getInputStream(new File("cache.json"))))) {
-                    
-                    json = parser.parse();
-                }
-            } else {
-                try (JsonParser parser = new JsonParser(cacheFile)) {
-                    json = parser.parse();
-                }
+        if (lazy && !compressed) {
+            if (cacheFile.isFile()) {
+                result = LazyJsonSourceFileLoader.load(cacheFile, MIN_VERSION, VERSION);
             }
             
-            result = deserialize(json);
-            
-        } catch (FileNotFoundException e) {
-            // ignore, so that null is returned if cache is not present
+        } else {
+            try {
+                result = deserialize(parse(cacheFile, compressed));
+            } catch (FileNotFoundException e) {
+                // ignore, so that null is returned if cache is not present
+            }
         }
 
         return result;
     }
     
+    /**
+     * Fully parses the JSON of the given cache file.
+     * 
+     * @param cacheFile The cache file to parse.
+     * @param compressed Whether the cache file is a compressed Zip archive.
+     * 
+     * @return The parsed JSON.
+     * 
+     * @throws IOException If reading the file fails.
+     * @throws FormatException If the file does not contain valid JSON.
+     */
+    private static @NonNull JsonElement parse(@NonNull File cacheFile, boolean compressed)
+            throws IOException, FormatException {
+        
+        JsonElement json;
+        if (compressed) {
+            try (ZipArchive archive = new ZipArchive(cacheFile);
+                    JsonParser parser = new JsonParser(
+                            new InputStreamReader(archive.getInputStream(new File("cache.json"))))) {
+                
+                json = parser.parse();
+            }
+        } else {
+            try (JsonParser parser = new JsonParser(cacheFile)) {
+                json = parser.parse();
+            }
+        }
+        return json;
+    }
+    
     /**
      * Functional interface that may throw an exception.
      *
@@ -307,6 +411,47 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         
     }
     
+    /**
+     * Creates a new {@link CodeElement} from the given JSON. The class specified in the JSON is instantiated via its
+     * de-serialization constructor. Nested elements in the primary nesting structure are not created by this method.
+     * 
+     * @param json The JSON to de-serialize.
+     * @param deserializeFunction The function to pass to the constructor for de-serializing secondary nested elements.
+     * 
+     * @return The new {@link CodeElement}.
+     * 
+     * @throws FormatException If the class can't be instantiated or the JSON does not contain the expected data.
+     */
+    static @NonNull CodeElement<?> instantiate(@NonNull JsonObject json,
+            @NonNull CheckedFunction<@NonNull JsonElement, @NonNull CodeElement<?>, FormatException>
+                deserializeFunction) throws FormatException {
+        
+        CodeElement<?> result;
+        
+        String className = json.getString("class");
+        try {
+            Class<?> clazz = ClassLoader.getSystemClassLoader().loadClass(className);
+            
+            Constructor<?> ctor = clazz.getDeclaredConstructor(JsonObject.class, CheckedFunction.class);
+            ctor.setAccessible(true);
+            result = notNull((CodeElement<?>) ctor.newInstance(json, deserializeFunction));
+            
+        } catch (NoSuchMethodException e) {
+            throw new FormatException(className + " does not implement a constructor with (JsonObject, Function) "
+                    + "parameters for de-serialization", e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof FormatException) {
+                throw (FormatException) e.getCause();
+            }
+            throw new FormatException("Can't instantiate " + className, e);
+            
+        } catch (ReflectiveOperationException e) {
+            throw new FormatException("Can't instantiate " + className, e);
+        }
+        
+        return result;
+    }
+    
     /**
      * Holds the data necessary for a de-serialization run. This is encapsulated in a nested object, so that the
      * {@link JsonCodeModelCache} itself is stateless.
@@ -323,7 +468,8 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         }
         
         /**
-         * Deserializes the given JSON back to a {@link CodeElement}.
+         * Deserializes the given JSON back to a {@link CodeElement}. A reference to an already de-serialized element
+         * returns that instance.
          * 
          * @param element The JSON to de-serialize.
          * 
@@ -340,35 +486,26 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
             JsonObject json = (JsonObject) element;
             CodeElement result;
             
-            String className = json.getString("class");
-            try {
-                Class<?> clazz = ClassLoader.getSystemClassLoader().loadClass(className);
+            if (json.getElement("ref") != null) {
+                int id = json.getInt("ref");
+                IdentityWrapper<CodeElement<?>> referenced = idMapping.get(id);
+                if (referenced == null) {
+                    throw new FormatException("Reference to unknown ID: " + id);
+                }
+                result = referenced.getData();
                 
-                Constructor<?> ctor = clazz.getDeclaredConstructor(JsonObject.class, CheckedFunction.class);
-                ctor.setAccessible(true);
+            } else {
                 CheckedFunction<@NonNull JsonElement, @NonNull CodeElement<?>, FormatException> deserializeFunction
                     = this::deserialize;
-                result = notNull((CodeElement) ctor.newInstance(json, deserializeFunction));
+                result = instantiate(json, deserializeFunction);
                 
-            } catch (NoSuchMethodException e) {
-                throw new FormatException(className + " does not implement a constructor with (JsonObject, Function) "
-                        + "parameters for de-serialization", e);
-            } catch (InvocationTargetException e) {
-                if (e.getCause() instanceof FormatException) {
-                    throw (FormatException) e.getCause();
-                }
-                throw new FormatException("Can't instantiate " + className, e);
+                int id = json.getInt("id");
+                idMapping.put(id, new IdentityWrapper<>(result));
                 
-            } catch (ReflectiveOperationException e) {
-                throw new FormatException("Can't instantiate " + className, e);
-            }
-            
-            int id = json.getInt("id");
-            idMapping.put(id, new IdentityWrapper<>(result));
-            
-            if (json.getElement("nested") != null) {
-                for (JsonElement nested : json.getList("nested")) {
-                    result.addNestedElement(deserialize(nested));
+                if (json.getElement("nested") != null) {
+                    for (JsonElement nested : json.getList("nested")) {
+                        result.addNestedElement(deserialize(nested));
+                    }
                 }
             }
             
@@ -411,9 +548,10 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         
         JsonObject jsonObj = (JsonObject) json;
         
-        if (jsonObj.getInt("version") != VERSION) {
-            throw new FormatException("Unsupported version: got " + jsonObj.getInt("version")
-                    + ", but expected " + VERSION);
+        int version = jsonObj.getInt("version");
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new FormatException("Unsupported version: got " + version
+                    + ", but expected " + MIN_VERSION + " to " + VERSION);
         }
         
         File path = new File(jsonObj.getString("path"));
@@ -424,8 +562,15 @@ public class JsonCodeModelCache extends AbstractCache<SourceFile<?>> {
         for (JsonElement nested : jsonObj.getList("elements")) {
             result.addElement(data.deserialize(nested));
         }
+        if (jsonObj.getElement("shared") != null) {
+            // only registered for resolving IDs, not part of the file itself
+            for (JsonElement shared : jsonObj.getList("shared")) {
+                data.deserialize(shared);
+            }
+        }
         
         data.resolveIds();
+        result.trimToSize();
         
         return result;
     }
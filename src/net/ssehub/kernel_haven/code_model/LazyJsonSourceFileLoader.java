@@ -0,0 +1,775 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.io.json.JsonElement;
+import net.ssehub.kernel_haven.util.io.json.JsonNumber;
+import net.ssehub.kernel_haven.util.io.json.JsonObject;
+import net.ssehub.kernel_haven.util.io.json.JsonParser;
+import net.ssehub.kernel_haven.util.io.json.JsonString;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Lazily loads a {@link SourceFile} from an (uncompressed) cache file written by the {@link JsonCodeModelCache}. The
+ * cache file is memory-mapped and only scanned for the boundaries of the top elements. A top element is only parsed
+ * and de-serialized once it is accessed, and the primary nested elements of each {@link CodeElement} are only parsed
+ * and de-serialized once they are accessed for the first time (if the element is an
+ * {@link AbstractCodeElementWithNesting}).
+ * <p>
+ * Secondary nested elements (e.g. the header of a function) are de-serialized together with the element that holds
+ * them. IDs of referenced elements (see {@link CodeElement#resolveIds(Map)}) are resolved when the referencing
+ * element is loaded; if a referenced element is not yet loaded, it is loaded at that time. The elements in the
+ * <code>shared</code> list of the file are handled like additional top elements, that are not part of the
+ * {@link SourceFile}.
+ * </p>
+ * <p>
+ * All loading is done while holding the lock of the loader instance, so the resulting {@link SourceFile} may be
+ * accessed from multiple threads.
+ * </p>
+ * <p>
+ * The structure of the file and of all top elements is checked when the file is loaded. If the content of an element
+ * turns out to be invalid when it is de-serialized later on, the accessing method throws a
+ * {@link LazyLoadingException}.
+ * </p>
+ * 
+ * @author Adam
+ */
+final class LazyJsonSourceFileLoader {
+    
+    private @NonNull ByteBuffer buffer;
+    
+    /**
+     * The start offsets of the top elements, followed by the start offsets of the shared elements.
+     */
+    private int @NonNull [] topStarts;
+    
+    /**
+     * The end offsets of the top elements, followed by the end offsets of the shared elements.
+     */
+    private int @NonNull [] topEnds;
+    
+    /**
+     * The number of top elements in the {@link SourceFile}, without the shared elements.
+     */
+    private int numTop;
+    
+    /**
+     * The indices of the top elements that are currently de-serialized.
+     */
+    private @NonNull BitSet loading;
+    
+    private @Nullable CodeElement<?> @NonNull [] topElements;
+    
+    /**
+     * The IDs of the top elements, mapped to their index. Lazily initialized, see {@link #getTopIds()}.
+     */
+    private @Nullable Map<Integer, Integer> topIds;
+    
+    private @NonNull Map<Integer, CodeElement<?>> idMapping;
+    
+    /**
+     * All elements that have been de-serialized so far, in the order of their de-serialization.
+     */
+    private @NonNull List<@NonNull CodeElement<?>> loadedElements;
+    
+    /**
+     * Elements that are de-serialized, but where {@link CodeElement#resolveIds(Map)} has not been called yet.
+     */
+    private @NonNull List<@NonNull CodeElement<?>> unresolved;
+    
+    private @NonNull Map<Integer, CodeElement<?>> resolveMapping;
+    
+    /**
+     * Creates a new loader for the given memory-mapped cache file content.
+     * 
+     * @param buffer The content of the cache file.
+     * @param topStarts The start offsets of the top and shared elements in the buffer.
+     * @param topEnds The end offsets (exclusive) of the top and shared elements in the buffer.
+     * @param numTop The number of top elements; the remaining ranges are shared elements.
+     */
+    private LazyJsonSourceFileLoader(@NonNull ByteBuffer buffer, int @NonNull [] topStarts,
+            int @NonNull [] topEnds, int numTop) {
+        
+        this.buffer = buffer;
+        this.topStarts = topStarts;
+        this.topEnds = topEnds;
+        this.numTop = numTop;
+        this.loading = new BitSet();
+        this.topElements = new CodeElement<?>[topStarts.length];
+        this.idMapping = new HashMap<>();
+        this.loadedElements = new ArrayList<>();
+        this.unresolved = new ArrayList<>();
+        this.resolveMapping = new LazyIdMapping();
+    }
+    
+    /**
+     * Lazily loads the given cache file.
+     * 
+     * @param cacheFile The uncompressed JSON cache file.
+     * @param minVersion The oldest version that the cache file may have.
+     * @param maxVersion The newest version that the cache file may have.
+     * 
+     * @return The {@link SourceFile} with lazily loaded elements.
+     * 
+     * @throws IOException If reading the cache file fails.
+     * @throws FormatException If the cache file does not have the expected format.
+     */
+    static @NonNull SourceFile<CodeElement<?>> load(@NonNull File cacheFile, int minVersion, int maxVersion)
+            throws IOException, FormatException {
+        
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Cache file " + cacheFile + " is too large to be mapped");
+            }
+            buffer = notNull(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+        
+        int end = buffer.limit();
+        int start = skipWhitespace(buffer, 0, end);
+        
+        int[] versionRange = findValue(buffer, start, end, "version");
+        int[] pathRange = findValue(buffer, start, end, "path");
+        int[] elementsRange = findValue(buffer, start, end, "elements");
+        if (versionRange == null || pathRange == null || elementsRange == null) {
+            throw new FormatException("Cache file does not contain version, path and elements");
+        }
+        
+        JsonElement version = parse(buffer, versionRange[0], versionRange[1], null);
+        if (!(version instanceof JsonNumber)
+                || ((JsonNumber) version).getValue().intValue() < minVersion
+                || ((JsonNumber) version).getValue().intValue() > maxVersion) {
+            throw new FormatException("Unsupported version: got " + version + ", but expected " + minVersion
+                    + " to " + maxVersion);
+        }
+        
+        JsonElement path = parse(buffer, pathRange[0], pathRange[1], null);
+        if (!(path instanceof JsonString)) {
+            throw new FormatException("Expected path to be a string, but got " + path);
+        }
+        
+        List<int @NonNull []> elementRanges = findListElements(buffer, elementsRange[0], elementsRange[1]);
+        int numTop = elementRanges.size();
+        int[] sharedRange = findValue(buffer, start, end, "shared");
+        if (sharedRange != null) {
+            elementRanges.addAll(findListElements(buffer, sharedRange[0], sharedRange[1]));
+        }
+        
+        int[] topStarts = new int[elementRanges.size()];
+        int[] topEnds = new int[elementRanges.size()];
+        for (int i = 0; i < topStarts.length; i++) {
+            topStarts[i] = notNull(elementRanges.get(i))[0];
+            topEnds[i] = notNull(elementRanges.get(i))[1];
+        }
+        
+        LazyJsonSourceFileLoader loader = new LazyJsonSourceFileLoader(buffer, topStarts, topEnds, numTop);
+        // check the structure of all top elements now, so that a corrupt file does not fail on some later access
+        loader.getTopIds();
+        return new SourceFile<>(
+                new File(((JsonString) path).getValue()),
+                loader.new LazyTopElementList());
+    }
+    
+    /**
+     * The list of top elements, which loads the elements on first access.
+     */
+    private final class LazyTopElementList extends AbstractList<@NonNull CodeElement<?>> {
+        
+        @Override
+        public @NonNull CodeElement<?> get(int index) {
+            try {
+                return getTopElement(index);
+            } catch (FormatException e) {
+                throw new LazyLoadingException("Can't load element " + index + " from cache", e);
+            }
+        }
+        
+        @Override
+        public int size() {
+            return numTop;
+        }
+        
+    }
+    
+    /**
+     * The ID mapping passed to {@link CodeElement#resolveIds(Map)}. Loads elements that are not yet loaded when they
+     * are requested. Only {@link #get(Object)} and {@link #containsKey(Object)} are lazy; all other operations
+     * first load the complete file.
+     */
+    private final class LazyIdMapping extends AbstractMap<Integer, CodeElement<?>> {
+        
+        @Override
+        public @Nullable CodeElement<?> get(Object key) {
+            CodeElement<?> result = idMapping.get(key);
+            try {
+                if (result == null && key instanceof Integer) {
+                    Integer topIndex = getTopIds().get(key);
+                    if (topIndex != null && !loading.get(topIndex)) {
+                        getTopElement(topIndex);
+                        result = idMapping.get(key);
+                    }
+                }
+                if (result == null) {
+                    // the element is somewhere nested; fall back to loading everything
+                    loadAll();
+                    result = idMapping.get(key);
+                }
+            } catch (FormatException e) {
+                throw new LazyLoadingException("Can't load element with ID " + key + " from cache", e);
+            }
+            return result;
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+        
+        @Override
+        public @NonNull Set<Entry<Integer, CodeElement<?>>> entrySet() {
+            try {
+                loadAll();
+            } catch (FormatException e) {
+                throw new LazyLoadingException("Can't load all elements from cache", e);
+            }
+            return notNull(idMapping.entrySet());
+        }
+        
+    }
+    
+    /**
+     * Returns the top element with the given index. Loads it, if it is not loaded yet.
+     * 
+     * @param index The index of the top element.
+     * 
+     * @return The top element.
+     * 
+     * @throws FormatException If the cache content of the element is invalid.
+     */
+    private synchronized @NonNull CodeElement<?> getTopElement(int index) throws FormatException {
+        CodeElement<?> result = topElements[index];
+        if (result == null) {
+            loading.set(index);
+            try {
+                result = deserialize(topStarts[index], topEnds[index]);
+            } finally {
+                loading.clear(index);
+            }
+            topElements[index] = result;
+            resolvePending();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the IDs of the top elements. Only scans the top elements for their IDs on the first call.
+     * 
+     * @return A mapping of IDs to top element indices.
+     * 
+     * @throws FormatException If the cache content is invalid.
+     */
+    private synchronized @NonNull Map<Integer, Integer> getTopIds() throws FormatException {
+        Map<Integer, Integer> topIds = this.topIds;
+        if (topIds == null) {
+            topIds = new HashMap<>();
+            for (int i = 0; i < topStarts.length; i++) {
+                int[] idRange = findValue(buffer, topStarts[i], topEnds[i], "id");
+                if (idRange != null) {
+                    try {
+                        topIds.put(Integer.parseInt(decode(buffer, idRange[0], idRange[1]).trim()), i);
+                    } catch (NumberFormatException e) {
+                        throw new FormatException(e);
+                    }
+                } else if (findValue(buffer, topStarts[i], topEnds[i], "ref") == null) {
+                    // references to elements written before don't define an ID
+                    throw new FormatException("Element without ID in cache");
+                }
+            }
+            this.topIds = topIds;
+        }
+        return topIds;
+    }
+    
+    /**
+     * Loads all elements of the file, including all nested elements.
+     * 
+     * @throws FormatException If the cache content is invalid.
+     */
+    private synchronized void loadAll() throws FormatException {
+        for (int i = 0; i < topStarts.length; i++) {
+            // an element that is currently loaded can only reference elements that precede it in the file
+            if (!loading.get(i)) {
+                getTopElement(i);
+            }
+        }
+        
+        /*
+         * Walk over all loaded elements instead of traversing the tree from the top elements: if this is called while
+         * the nested elements of an element are loaded, then that element does not yet return its nested elements.
+         * These are already registered in loadedElements, though. Loading the nested elements of an element appends
+         * them to the list, so this loop also covers these.
+         */
+        try {
+            for (int i = 0; i < loadedElements.size(); i++) {
+                notNull(loadedElements.get(i)).getNestedElementCount();
+            }
+        } catch (LazyLoadingException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Calls {@link CodeElement#resolveIds(Map)} on all elements that have been de-serialized since the last call of
+     * this method.
+     * 
+     * @throws FormatException If resolving the IDs fails.
+     */
+    private void resolvePending() throws FormatException {
+        // resolving may load further elements, which in turn call this method; thus swap the list before resolving
+        List<@NonNull CodeElement<?>> batch = unresolved;
+        unresolved = new ArrayList<>();
+        
+        for (CodeElement<?> element : batch) {
+            element.resolveIds(resolveMapping);
+        }
+    }
+    
+    /**
+     * De-serializes the element (in the primary nesting structure) in the given range of the buffer. Its nested
+     * elements are loaded lazily, if possible.
+     * 
+     * @param start The start offset of the element JSON.
+     * @param end The end offset (exclusive) of the element JSON.
+     * 
+     * @return The de-serialized element.
+     * 
+     * @throws FormatException If the JSON is invalid.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private @NonNull CodeElement<?> deserialize(int start, int end) throws FormatException {
+        int[] nestedRange = findValue(buffer, start, end, "nested");
+        JsonElement json = parse(buffer, start, end, nestedRange);
+        if (!(json instanceof JsonObject)) {
+            throw new FormatException("Expected JsonObject, but got " + json.getClass().getSimpleName());
+        }
+        
+        CodeElement result;
+        if (((JsonObject) json).getElement("ref") != null) {
+            result = getReferenced((JsonObject) json);
+            
+        } else {
+            result = createAndRegister((JsonObject) json);
+            
+            if (nestedRange != null) {
+                List<int @NonNull []> nested = findListElements(buffer, nestedRange[0], nestedRange[1]);
+                
+                if (result instanceof AbstractCodeElementWithNesting) {
+                    // explicitly typed, since javac 1.8 crashes when inferring the lambda for the raw type
+                    Supplier<@NonNull List<@NonNull CodeElement<?>>> supplier = () -> loadNested(nested);
+                    ((AbstractCodeElementWithNesting) result).setLazyNestedElements(this, supplier);
+                } else {
+                    for (int[] range : nested) {
+                        result.addNestedElement(deserialize(range[0], range[1]));
+                    }
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Loads the given nested elements. Used as the supplier for lazily loaded nested elements.
+     * 
+     * @param nested The ranges of the nested elements in the buffer.
+     * 
+     * @return The loaded nested elements.
+     * 
+     * @throws LazyLoadingException If the nested elements can't be de-serialized.
+     */
+    private synchronized @NonNull List<@NonNull CodeElement<?>> loadNested(@NonNull List<int @NonNull []> nested) {
+        List<@NonNull CodeElement<?>> result = new ArrayList<>(nested.size());
+        try {
+            for (int[] range : nested) {
+                result.add(deserialize(range[0], range[1]));
+            }
+            resolvePending();
+        } catch (FormatException e) {
+            throw new LazyLoadingException("Can't load nested elements from cache", e);
+        }
+        return result;
+    }
+    
+    /**
+     * De-serializes a secondary nested element from already parsed JSON. Its nested elements are loaded directly.
+     * 
+     * @param element The JSON of the element.
+     * 
+     * @return The de-serialized element.
+     * 
+     * @throws FormatException If the JSON is invalid.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private @NonNull CodeElement<?> deserializeSecondary(@NonNull JsonElement element) throws FormatException {
+        if (!(element instanceof JsonObject)) {
+            throw new FormatException("Expected JsonObject, but got " + element.getClass().getSimpleName());
+        }
+        JsonObject json = (JsonObject) element;
+        
+        CodeElement result;
+        if (json.getElement("ref") != null) {
+            result = getReferenced(json);
+            
+        } else {
+            result = createAndRegister(json);
+            
+            if (json.getElement("nested") != null) {
+                for (JsonElement nested : json.getList("nested")) {
+                    result.addNestedElement(deserializeSecondary(nested));
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Returns the instance for a reference (<code>{"ref": id}</code>) to an element that has been written before.
+     * Loads the element, if it is not loaded yet.
+     * 
+     * @param json The JSON of the reference.
+     * 
+     * @return The referenced element.
+     * 
+     * @throws FormatException If the ID is unknown.
+     */
+    private @NonNull CodeElement<?> getReferenced(@NonNull JsonObject json) throws FormatException {
+        int id = json.getInt("ref");
+        CodeElement<?> result = resolveMapping.get(id);
+        if (result == null) {
+            throw new FormatException("Reference to unknown ID: " + id);
+        }
+        return result;
+    }
+    
+    /**
+     * Creates the {@link CodeElement} for the given JSON and registers it for ID resolution.
+     * 
+     * @param json The JSON of the element.
+     * 
+     * @return The created element, without nested elements.
+     * 
+     * @throws FormatException If the JSON is invalid.
+     */
+    private @NonNull CodeElement<?> createAndRegister(@NonNull JsonObject json) throws FormatException {
+        CodeElement<?> result = JsonCodeModelCache.instantiate(json, this::deserializeSecondary);
+        
+        idMapping.put(json.getInt("id"), result);
+        loadedElements.add(result);
+        unresolved.add(result);
+        
+        return result;
+    }
+    
+    /*
+     * Scanning of the raw JSON bytes. All structural characters of JSON are ASCII, so we can find the boundaries of
+     * values directly on the UTF-8 bytes, without decoding them.
+     */
+    
+    /**
+     * Parses the JSON in the given range of the buffer.
+     * 
+     * @param buffer The buffer to read from.
+     * @param start The start offset.
+     * @param end The end offset (exclusive).
+     * @param cut An optional sub-range that is replaced by an empty list (<code>[]</code>). May be <code>null</code>.
+     * 
+     * @return The parsed JSON.
+     * 
+     * @throws FormatException If the JSON is invalid.
+     */
+    private static @NonNull JsonElement parse(@NonNull ByteBuffer buffer, int start, int end, int @Nullable [] cut)
+            throws FormatException {
+        
+        String text;
+        if (cut == null) {
+            text = decode(buffer, start, end);
+        } else {
+            text = decode(buffer, start, cut[0]) + "[]" + decode(buffer, cut[1], end);
+        }
+        
+        try (JsonParser parser = new JsonParser(new StringReader(text))) {
+            return parser.parse();
+        } catch (IOException e) {
+            // can't happen, since we read from a string
+            throw new FormatException(e);
+        }
+    }
+    
+    /**
+     * Decodes the given range of the buffer as UTF-8.
+     * 
+     * @param buffer The buffer to read from.
+     * @param start The start offset.
+     * @param end The end offset (exclusive).
+     * 
+     * @return The decoded string.
+     */
+    private static @NonNull String decode(@NonNull ByteBuffer buffer, int start, int end) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return notNull(StandardCharsets.UTF_8.decode(slice).toString());
+    }
+    
+    /**
+     * Finds the value for the given key in the JSON object in the given range.
+     * 
+     * @param buffer The buffer to read from.
+     * @param start The start offset of the object.
+     * @param end The end offset (exclusive) of the object.
+     * @param key The key to search. Must not contain characters that need escaping.
+     * 
+     * @return The start and end offset (exclusive) of the value. <code>null</code> if the key is not found.
+     * 
+     * @throws FormatException If the range does not contain a valid JSON object.
+     */
+    private static int @Nullable [] findValue(@NonNull ByteBuffer buffer, int start, int end, @NonNull String key)
+            throws FormatException {
+        
+        int pos = skipWhitespace(buffer, start, end);
+        expect(buffer, pos++, end, '{');
+        
+        pos = skipWhitespace(buffer, pos, end);
+        boolean done = pos < end && buffer.get(pos) == '}';
+        
+        int[] result = null;
+        while (!done && pos < end) {
+            int keyStart = pos;
+            pos = skipValue(buffer, pos, end);
+            boolean matches = isString(buffer, keyStart, pos, key);
+            
+            pos = skipWhitespace(buffer, pos, end);
+            expect(buffer, pos++, end, ':');
+            
+            int valueStart = skipWhitespace(buffer, pos, end);
+            pos = skipValue(buffer, valueStart, end);
+            if (matches) {
+                result = new int[] {valueStart, pos};
+                done = true;
+                
+            } else {
+                pos = skipWhitespace(buffer, pos, end);
+                done = pos < end && buffer.get(pos) == '}';
+                if (!done) {
+                    expect(buffer, pos++, end, ',');
+                    pos = skipWhitespace(buffer, pos, end);
+                }
+            }
+        }
+        
+        if (!done) {
+            throw new FormatException("Unterminated JSON object");
+        }
+        return result;
+    }
+    
+    /**
+     * Finds the elements of the JSON list in the given range.
+     * 
+     * @param buffer The buffer to read from.
+     * @param start The start offset of the list.
+     * @param end The end offset (exclusive) of the list.
+     * 
+     * @return The start and end offsets (exclusive) of all elements.
+     * 
+     * @throws FormatException If the range does not contain a valid JSON list.
+     */
+    private static @NonNull List<int @NonNull []> findListElements(@NonNull ByteBuffer buffer, int start, int end)
+            throws FormatException {
+        
+        List<int @NonNull []> result = new ArrayList<>();
+        
+        int pos = skipWhitespace(buffer, start, end);
+        expect(buffer, pos++, end, '[');
+        
+        pos = skipWhitespace(buffer, pos, end);
+        boolean done = pos < end && buffer.get(pos) == ']';
+        
+        while (!done && pos < end) {
+            int valueStart = pos;
+            pos = skipValue(buffer, pos, end);
+            result.add(new int[] {valueStart, pos});
+            
+            pos = skipWhitespace(buffer, pos, end);
+            done = pos < end && buffer.get(pos) == ']';
+            if (!done) {
+                expect(buffer, pos++, end, ',');
+                pos = skipWhitespace(buffer, pos, end);
+            }
+        }
+        
+        if (!done) {
+            throw new FormatException("Unterminated JSON list");
+        }
+        return result;
+    }
+    
+    /**
+     * Skips the JSON value starting at the given position.
+     * 
+     * @param buffer The buffer to read from.
+     * @param start The start offset of the value.
+     * @param end The end offset of the readable range.
+     * 
+     * @return The offset directly after the value.
+     * 
+     * @throws FormatException If the value is not terminated before end.
+     */
+    private static int skipValue(@NonNull ByteBuffer buffer, int start, int end) throws FormatException {
+        int pos = start;
+        int depth = 0;
+        boolean inString = false;
+        int result = -1;
+        
+        while (result < 0 && pos < end) {
+            byte b = buffer.get(pos++);
+            
+            if (inString) {
+                if (b == '\\') {
+                    pos++; // skip escaped character
+                } else if (b == '"') {
+                    inString = false;
+                    if (depth == 0) {
+                        result = pos;
+                    }
+                }
+                
+            } else if (b == '"') {
+                inString = true;
+                
+            } else if (b == '{' || b == '[') {
+                depth++;
+                
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (depth == 0) {
+                    result = pos;
+                } else if (depth < 0) {
+                    // end of a primitive value directly before the closing bracket of the surrounding structure
+                    result = pos - 1;
+                }
+                
+            } else if (depth == 0 && (b == ',' || isWhitespace(b))) {
+                // end of a primitive value (number, true, false, null)
+                result = pos - 1;
+            }
+        }
+        
+        if (result < 0) {
+            if (depth != 0 || inString) {
+                throw new FormatException("Unterminated JSON value");
+            }
+            result = pos;
+        }
+        return result;
+    }
+    
+    /**
+     * Checks if the given range contains the given string literal (including quotes).
+     * 
+     * @param buffer The buffer to read from.
+     * @param start The start offset.
+     * @param end The end offset (exclusive).
+     * @param value The expected string value, without quotes.
+     * 
+     * @return Whether the range contains exactly the given string literal.
+     */
+    private static boolean isString(@NonNull ByteBuffer buffer, int start, int end, @NonNull String value) {
+        boolean result = end - start == value.length() + 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"';
+        for (int i = 0; result && i < value.length(); i++) {
+            result = buffer.get(start + 1 + i) == value.charAt(i);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks that the given position contains the expected character.
+     * 
+     * @param buffer The buffer to read from.
+     * @param pos The position to check.
+     * @param end The end offset of the readable range.
+     * @param expected The expected character.
+     * 
+     * @throws FormatException If the position does not contain the expected character.
+     */
+    private static void expect(@NonNull ByteBuffer buffer, int pos, int end, char expected) throws FormatException {
+        if (pos >= end || buffer.get(pos) != expected) {
+            throw new FormatException("Expected '" + expected + "' at offset " + pos);
+        }
+    }
+    
+    /**
+     * Skips all whitespace characters starting at the given position.
+     * 
+     * @param buffer The buffer to read from.
+     * @param start The start offset.
+     * @param end The end offset of the readable range.
+     * 
+     * @return The offset of the first non-whitespace character, or end.
+     */
+    private static int skipWhitespace(@NonNull ByteBuffer buffer, int start, int end) {
+        int pos = start;
+        while (pos < end && isWhitespace(buffer.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+    
+    /**
+     * Checks if the given byte is a JSON whitespace character.
+     * 
+     * @param b The byte to check.
+     * 
+     * @return Whether the byte is whitespace.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Thrown when accessing an element of a lazily loaded {@link SourceFile} (see {@link JsonCodeModelCache}), if the
+ * element can't be de-serialized from the cache. The structure of the cache file is checked when it is read, but the
+ * content of the elements is only de-serialized on first access; thus, this is unchecked.
+ * 
+ * @author Adam
+ */
+public class LazyLoadingException extends RuntimeException {
+
+    private static final long serialVersionUID = -2245129930934611264L;
+
+    /**
+     * Creates a new {@link LazyLoadingException}.
+     * 
+     * @param message The message to display.
+     * @param cause The {@link FormatException} that caused the loading to fail.
+     */
+    public LazyLoadingException(@NonNull String message, @NonNull FormatException cause) {
+        super(message, cause);
+    }
+    
+    /**
+     * Returns the {@link FormatException} that caused the loading to fail.
+     * 
+     * @return The cause of this exception.
+     */
+    @Override
+    public synchronized @NonNull FormatException getCause() {
+        return (FormatException) super.getCause();
+    }
+
+}
@@ -18,8 +18,8 @@ package net.ssehub.kernel_haven.code_model;
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
@@ -53,7 +53,19 @@ public class SourceFile<ElementType extends CodeElement<?>> implements Iterable<
      */
     public SourceFile(@NonNull File path) {
         this.path = path;
-        elements = new LinkedList<>();
+        elements = new ArrayList<>();
+    }
+    
+    /**
+     * Constructs a Sourcefile with the given list of top elements. This is used by the {@link JsonCodeModelCache} to
+     * create {@link SourceFile}s with lazily loaded elements.
+     * 
+     * @param path The relative path to the source file in the source tree.
+     * @param elements The list of top elements. This is used directly, not copied.
+     */
+    SourceFile(@NonNull File path, @NonNull List<@NonNull ElementType> elements) {
+        this.path = path;
+        this.elements = elements;
     }
 
     /**
@@ -69,11 +81,32 @@ public class SourceFile<ElementType extends CodeElement<?>> implements Iterable<
      * Adds a element to the end of the list.
      * 
      * @param element The element to add. Must not be <code>null</code>.
+     * 
+     * @throws UnsupportedOperationException If this {@link SourceFile} was lazily loaded from the cache.
      */
-    public void addElement(@NonNull ElementType element) {
+    public void addElement(@NonNull ElementType element) throws UnsupportedOperationException {
         this.elements.add(element);
     }
 
+    /**
+     * Trims the storage of the top elements and (recursively) all nested elements to their current size. This should
+     * be called once the extractor has fully constructed this file, to reduce the memory footprint of the AST.
+     * This does nothing for lazily loaded {@link SourceFile}s, since these are already trimmed when loaded.
+     */
+    public void trimToSize() {
+        if (!(elements instanceof ArrayList)) {
+            return;
+        }
+        
+        ((ArrayList<?>) elements).trimToSize();
+        
+        for (ElementType element : elements) {
+            if (element instanceof AbstractCodeElementWithNesting) {
+                ((AbstractCodeElementWithNesting<?>) element).trimToSize();
+            }
+        }
+    }
+
     /**
      * Iterates over the top elements not nested in other elements.
      * @return an iterator over top elements.
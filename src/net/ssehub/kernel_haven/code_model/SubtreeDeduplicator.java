@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Finds equal sub-trees of {@link AbstractCodeElement}s. Each sub-tree passed to this class is compared to the
+ * sub-trees that have been passed before; if an equal one is found, the first (canonical) instance is returned. This
+ * can be used to de-duplicate equal sub-trees (e.g. when comparing the ASTs of different versions of a file); see
+ * {@link #deduplicateAll(Iterable)} for replacing equal sub-trees with shared instances.
+ * <p>
+ * Candidates are looked up by their cached {@link AbstractCodeElement#getStructuralHash()}, so the full
+ * {@link AbstractCodeElement#equals(Object)} check is only done for elements with the same hash. The elements must
+ * not be modified while they are used in this class.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class SubtreeDeduplicator {
+    
+    /**
+     * The canonical instances, grouped by their structural hash. Most groups only contain a single element.
+     */
+    private @NonNull Map<Integer, List<@NonNull AbstractCodeElement<?>>> canonical;
+    
+    private int numUnique;
+    
+    private int numDuplicates;
+    
+    /**
+     * Creates a new, empty {@link SubtreeDeduplicator}.
+     */
+    public SubtreeDeduplicator() {
+        this.canonical = new HashMap<>();
+    }
+    
+    /**
+     * Returns the canonical instance that is equal to the given element. If no equal element has been passed to this
+     * method before, the given element becomes the canonical instance and is returned.
+     * 
+     * @param <T> The type of element.
+     * @param element The element to de-duplicate.
+     * 
+     * @return The canonical instance equal to the given element; may be the element itself.
+     */
+    @SuppressWarnings("unchecked") // canonical elements are only returned for elements of the same class
+    public <T extends AbstractCodeElement<?>> @NonNull T deduplicate(@NonNull T element) {
+        AbstractCodeElement<?> result = find(element);
+        
+        if (result == null) {
+            canonical.computeIfAbsent(element.getStructuralHash(), (hash) -> new ArrayList<>(1)).add(element);
+            numUnique++;
+            result = element;
+        } else {
+            numDuplicates++;
+        }
+        
+        return (T) result;
+    }
+    
+    /**
+     * De-duplicates all sub-trees of the given elements. Each element (and recursively each of its nested elements)
+     * is passed to {@link #deduplicate(AbstractCodeElement)}. Nested elements that are duplicates are replaced by
+     * their canonical instance in their parent (if the parent is an {@link AbstractCodeElementWithNesting}), so
+     * afterwards equal sub-trees are shared instead of stored multiple times. Nested elements of duplicates are not
+     * visited, since these are duplicates of the nested elements of the canonical instance, too.
+     * <p>
+     * The given top-level elements themselves can not be replaced; use the return value of
+     * {@link #deduplicate(AbstractCodeElement)} for these. Elements in a secondary nesting structure (e.g. the
+     * condition of an AST element) are not replaced, either.
+     * </p>
+     * 
+     * @param elements The elements to de-duplicate, e.g. a {@link SourceFile}.
+     */
+    public void deduplicateAll(@NonNull Iterable<? extends CodeElement<?>> elements) {
+        for (CodeElement<?> element : elements) {
+            if (element instanceof AbstractCodeElement && deduplicate((AbstractCodeElement<?>) element) == element) {
+                deduplicateNested(element);
+            }
+        }
+    }
+    
+    /**
+     * De-duplicates the nested elements of the given (canonical) element and replaces duplicates with their canonical
+     * instance.
+     * 
+     * @param <N> The type of the nested elements.
+     * @param element The element to de-duplicate the nested elements of.
+     */
+    @SuppressWarnings("unchecked") // canonical elements have the same class as the element they replace
+    private <N extends CodeElement<N>> void deduplicateNested(@NonNull CodeElement<N> element) {
+        for (int i = 0; i < element.getNestedElementCount(); i++) {
+            N nested = element.getNestedElement(i);
+            if (nested instanceof AbstractCodeElement) {
+                AbstractCodeElement<?> canonicalNested = deduplicate((AbstractCodeElement<?>) nested);
+                
+                if (canonicalNested == nested) {
+                    deduplicateNested(nested);
+                } else if (element instanceof AbstractCodeElementWithNesting) {
+                    ((AbstractCodeElementWithNesting<N>) element).setNestedElement(i, (N) canonicalNested);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks whether an element equal to the given one has been passed to this de-duplicator before.
+     * 
+     * @param element The element to check.
+     * 
+     * @return Whether an equal element is known.
+     */
+    public boolean contains(@NonNull AbstractCodeElement<?> element) {
+        return find(element) != null;
+    }
+    
+    /**
+     * Returns the number of distinct sub-trees found so far.
+     * 
+     * @return The number of canonical instances.
+     */
+    public int getUniqueCount() {
+        return numUnique;
+    }
+    
+    /**
+     * Returns the number of sub-trees that have been found to be equal to an already known canonical instance.
+     * 
+     * @return The number of duplicates.
+     */
+    public int getDuplicateCount() {
+        return numDuplicates;
+    }
+    
+    /**
+     * Finds the canonical instance for the given element.
+     * 
+     * @param element The element to search the canonical instance for.
+     * 
+     * @return The canonical instance, or <code>null</code> if no equal element is known.
+     */
+    private @Nullable AbstractCodeElement<?> find(@NonNull AbstractCodeElement<?> element) {
+        AbstractCodeElement<?> result = null;
+        
+        List<@NonNull AbstractCodeElement<?>> candidates = canonical.get(element.getStructuralHash());
+        if (candidates != null) {
+            for (AbstractCodeElement<?> candidate : candidates) {
+                if (candidate.getClass() == element.getClass() && candidate.equals(element)) {
+                    result = candidate;
+                    break;
+                }
+            }
+        }
+        
+        return result;
+    }
+
+}
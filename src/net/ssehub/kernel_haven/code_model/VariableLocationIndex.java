@@ -0,0 +1,514 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.SourceLocation;
+import net.ssehub.kernel_haven.variability_model.VariabilityVariable;
+
+/**
+ * An inverted index from variable names to the locations where they are used. For each variable, a posting list
+ * stores the locations as primitive <code>int</code> triples: the ID of the file, the line number, and the number of
+ * the {@link CodeElement} in the file (see {@link #getElement(SourceFile, int)}). Postings created from
+ * {@link VariabilityVariable#getSourceLocations()} have no element number ({@link #NO_ELEMENT}).
+ * <p>
+ * Instances are created by the {@link VariableLocationIndexBuilder} pipeline component, or read from a file written
+ * by {@link #write(File)}. This class is immutable and thus thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class VariableLocationIndex {
+    
+    /**
+     * The element number of postings that do not point to a {@link CodeElement}, i.e. postings that were created
+     * from {@link VariabilityVariable#getSourceLocations()}.
+     */
+    public static final int NO_ELEMENT = -1;
+    
+    private static final int MAGIC = 0x4B485649; // "KHVI"
+    
+    private static final int VERSION = 1;
+    
+    /**
+     * The number of ints per posting.
+     */
+    private static final int POSTING_SIZE = 3;
+    
+    /**
+     * The names of all variables, sorted.
+     */
+    private @NonNull String @NonNull [] variables;
+    
+    /**
+     * The paths of all files; the index in this array is the file ID.
+     */
+    private @NonNull String @NonNull [] files;
+    
+    /**
+     * The start of the postings for each variable (in number of postings), plus one final element that holds the
+     * total number of postings.
+     */
+    private int @NonNull [] offsets;
+    
+    /**
+     * All postings, concatenated. Each posting consists of {@link #POSTING_SIZE} ints: file ID, line, element.
+     */
+    private int @NonNull [] postings;
+    
+    /**
+     * Creates a new index. The arrays are not copied.
+     * 
+     * @param variables The names of all variables, sorted.
+     * @param files The paths of all files.
+     * @param offsets The start of the postings for each variable, plus the total number of postings.
+     * @param postings All postings.
+     */
+    VariableLocationIndex(@NonNull String @NonNull [] variables, @NonNull String @NonNull [] files,
+            int @NonNull [] offsets, int @NonNull [] postings) {
+        
+        this.variables = variables;
+        this.files = files;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+    
+    /**
+     * Returns the number of variables in this index.
+     * 
+     * @return The number of variables; variable IDs are in the range <code>[0, getVariableCount())</code>.
+     */
+    public int getVariableCount() {
+        return variables.length;
+    }
+    
+    /**
+     * Returns the ID of the given variable.
+     * 
+     * @param variable The name of the variable.
+     * 
+     * @return The ID of the variable, or -1 if the variable does not occur in this index.
+     */
+    public int getVariableId(@NonNull String variable) {
+        int result = Arrays.binarySearch(variables, variable);
+        return result >= 0 ? result : -1;
+    }
+    
+    /**
+     * Returns the name of the variable with the given ID.
+     * 
+     * @param variableId The ID of the variable.
+     * 
+     * @return The name of the variable.
+     * 
+     * @throws IndexOutOfBoundsException If the ID is invalid.
+     */
+    public @NonNull String getVariable(int variableId) throws IndexOutOfBoundsException {
+        return variables[variableId];
+    }
+    
+    /**
+     * Returns the names of all variables in this index.
+     * 
+     * @return An unmodifiable, sorted list of all variable names.
+     */
+    public @NonNull List<@NonNull String> getVariables() {
+        return notNull(Collections.unmodifiableList(Arrays.asList(variables)));
+    }
+    
+    /**
+     * Returns the number of files in this index.
+     * 
+     * @return The number of files; file IDs are in the range <code>[0, getFileCount())</code>.
+     */
+    public int getFileCount() {
+        return files.length;
+    }
+    
+    /**
+     * Returns the file with the given ID.
+     * 
+     * @param fileId The ID of the file.
+     * 
+     * @return The file.
+     * 
+     * @throws IndexOutOfBoundsException If the ID is invalid.
+     */
+    public @NonNull File getFile(int fileId) throws IndexOutOfBoundsException {
+        return new File(files[fileId]);
+    }
+    
+    /**
+     * Returns the number of postings of the given variable.
+     * 
+     * @param variableId The ID of the variable.
+     * 
+     * @return The number of locations where the variable is used.
+     * 
+     * @throws IndexOutOfBoundsException If the ID is invalid.
+     */
+    public int getPostingCount(int variableId) throws IndexOutOfBoundsException {
+        return offsets[variableId + 1] - offsets[variableId];
+    }
+    
+    /**
+     * Returns the file ID of a posting.
+     * 
+     * @param variableId The ID of the variable.
+     * @param index The index of the posting, in the range <code>[0, {@link #getPostingCount(int)})</code>.
+     * 
+     * @return The ID of the file.
+     */
+    public int getPostingFile(int variableId, int index) {
+        return postings[(offsets[variableId] + index) * POSTING_SIZE];
+    }
+    
+    /**
+     * Returns the line number of a posting.
+     * 
+     * @param variableId The ID of the variable.
+     * @param index The index of the posting, in the range <code>[0, {@link #getPostingCount(int)})</code>.
+     * 
+     * @return The line number; may be -1 if the {@link CodeElement} has no line information.
+     */
+    public int getPostingLine(int variableId, int index) {
+        return postings[(offsets[variableId] + index) * POSTING_SIZE + 1];
+    }
+    
+    /**
+     * Returns the element number of a posting. See {@link #getElement(SourceFile, int)}.
+     * 
+     * @param variableId The ID of the variable.
+     * @param index The index of the posting, in the range <code>[0, {@link #getPostingCount(int)})</code>.
+     * 
+     * @return The number of the element in the file, or {@link #NO_ELEMENT} if this posting was created from
+     *      {@link VariabilityVariable#getSourceLocations()}.
+     */
+    public int getPostingElement(int variableId, int index) {
+        return postings[(offsets[variableId] + index) * POSTING_SIZE + 2];
+    }
+    
+    /**
+     * Returns all files in which the given variable is used.
+     * 
+     * @param variable The name of the variable.
+     * 
+     * @return The files in which the variable is used, in order of their first posting. Empty if the variable is
+     *      unknown.
+     */
+    public @NonNull Set<@NonNull File> getFiles(@NonNull String variable) {
+        Set<@NonNull File> result = new LinkedHashSet<>();
+        int id = getVariableId(variable);
+        if (id != -1) {
+            int lastFile = -1;
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                int file = postings[i * POSTING_SIZE];
+                // postings of one file are consecutive, except for the ones from the variability model
+                if (file != lastFile) {
+                    result.add(getFile(file));
+                    lastFile = file;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns all locations where the given variable is used, including the ones from the variability model.
+     * 
+     * @param variable The name of the variable.
+     * 
+     * @return The locations where the variable is used. Empty if the variable is unknown.
+     */
+    public @NonNull List<@NonNull SourceLocation> getLocations(@NonNull String variable) {
+        List<@NonNull SourceLocation> result = new ArrayList<>();
+        int id = getVariableId(variable);
+        if (id != -1) {
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                result.add(new SourceLocation(getFile(postings[i * POSTING_SIZE]), postings[i * POSTING_SIZE + 1]));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the element with the given number from the given {@link SourceFile}. Elements are numbered by a depth
+     * first pre-order traversal: the first top-level element has number 0, its first nested element 1, etc.
+     * 
+     * @param file The file to get the element from.
+     * @param elementNumber The number of the element.
+     * 
+     * @return The element, or <code>null</code> if the file has less elements.
+     */
+    public static @Nullable CodeElement<?> getElement(@NonNull SourceFile<?> file, int elementNumber) {
+        CodeElement<?> result = null;
+        if (elementNumber >= 0) {
+            PreOrderIterator it = new PreOrderIterator(file);
+            for (int i = 0; i <= elementNumber && it.hasNext(); i++) {
+                result = it.next();
+            }
+            if (it.getCount() != elementNumber + 1) {
+                result = null;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Iterates over all elements of a {@link SourceFile} in depth first pre-order. This defines the element numbers
+     * used in the postings. Uses an explicit stack, so that deeply nested elements are supported.
+     */
+    static final class PreOrderIterator {
+        
+        private @NonNull List<@NonNull CodeElement<?>> stack;
+        
+        private int count;
+        
+        /**
+         * Creates an iterator over all elements of the given file.
+         * 
+         * @param file The file to iterate over.
+         */
+        PreOrderIterator(@NonNull SourceFile<?> file) {
+            this.stack = new ArrayList<>();
+            for (int i = file.getTopElementCount() - 1; i >= 0; i--) {
+                stack.add(file.getElement(i));
+            }
+        }
+        
+        /**
+         * Returns whether there are more elements.
+         * 
+         * @return Whether {@link #next()} can be called.
+         */
+        boolean hasNext() {
+            return !stack.isEmpty();
+        }
+        
+        /**
+         * Returns the next element. Its element number is <code>{@link #getCount()} - 1</code> after this call.
+         * 
+         * @return The next element.
+         */
+        @NonNull CodeElement<?> next() {
+            CodeElement<?> element = notNull(stack.remove(stack.size() - 1));
+            for (int i = element.getNestedElementCount() - 1; i >= 0; i--) {
+                stack.add(element.getNestedElement(i));
+            }
+            count++;
+            return element;
+        }
+        
+        /**
+         * Returns the number of elements returned by {@link #next()} so far.
+         * 
+         * @return The number of visited elements.
+         */
+        int getCount() {
+            return count;
+        }
+        
+    }
+    
+    /**
+     * Writes this index to the given file. The file can be read again with {@link #read(File)}.
+     * 
+     * @param file The file to write to. Overwritten if it already exists.
+     * 
+     * @throws IOException If writing the file fails.
+     */
+    public void write(@NonNull File file) throws IOException {
+        byte[][] variableBytes = toBytes(variables);
+        byte[][] fileBytes = toBytes(files);
+        
+        // magic, version, string counts and posting count, plus one length per string
+        long size = 4L * (5 + variables.length + files.length + offsets.length + postings.length);
+        for (byte[] bytes : variableBytes) {
+            size += bytes.length;
+        }
+        for (byte[] bytes : fileBytes) {
+            size += bytes.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Index is too large to be written");
+        }
+        
+        ByteBuffer content = ByteBuffer.allocate((int) size);
+        content.putInt(MAGIC);
+        content.putInt(VERSION);
+        putStrings(content, variableBytes);
+        putStrings(content, fileBytes);
+        content.putInt(postings.length / POSTING_SIZE);
+        content.asIntBuffer().put(offsets).put(postings);
+        content.position(0);
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+    }
+    
+    /**
+     * Reads an index from a file that was written by {@link #write(File)}. The file is memory-mapped and the
+     * posting lists are copied in bulk.
+     * 
+     * @param file The file to read.
+     * 
+     * @return The read index.
+     * 
+     * @throws IOException If reading the file fails.
+     * @throws FormatException If the file does not contain a valid index.
+     */
+    public static @NonNull VariableLocationIndex read(@NonNull File file) throws IOException, FormatException {
+        ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index file " + file + " is too large to be mapped");
+            }
+            content = notNull(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+        
+        try {
+            if (content.getInt() != MAGIC) {
+                throw new FormatException(file + " is not a variable location index");
+            }
+            int version = content.getInt();
+            if (version != VERSION) {
+                throw new FormatException("Got invalid version " + version + ", we only support " + VERSION);
+            }
+            
+            String[] variables = getStrings(content);
+            String[] files = getStrings(content);
+            int numPostings = checkCount(content.getInt(), content, 4 * POSTING_SIZE);
+            
+            IntBuffer ints = content.asIntBuffer();
+            int[] offsets = new int[variables.length + 1];
+            int[] postings = new int[numPostings * POSTING_SIZE];
+            ints.get(offsets);
+            ints.get(postings);
+            
+            for (int i = 0; i < variables.length; i++) {
+                if (offsets[i] < 0 || offsets[i] > offsets[i + 1]) {
+                    throw new FormatException("Invalid posting offsets in " + file);
+                }
+            }
+            if (offsets[variables.length] != numPostings) {
+                throw new FormatException("Invalid posting offsets in " + file);
+            }
+            
+            return new VariableLocationIndex(variables, files, offsets, postings);
+            
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new FormatException("Invalid variable location index " + file, e);
+        }
+    }
+    
+    /**
+     * Converts the given strings to UTF-8.
+     * 
+     * @param strings The strings to convert.
+     * 
+     * @return The UTF-8 bytes of each string.
+     */
+    private static byte @NonNull [] @NonNull [] toBytes(@NonNull String @NonNull [] strings) {
+        byte[][] result = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            result[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+    
+    /**
+     * Writes a list of strings: the number of strings, followed by the length and UTF-8 bytes of each string.
+     * 
+     * @param out The buffer to write to.
+     * @param strings The UTF-8 bytes of the strings.
+     */
+    private static void putStrings(@NonNull ByteBuffer out, byte @NonNull [] @NonNull [] strings) {
+        out.putInt(strings.length);
+        for (byte[] bytes : strings) {
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+    }
+    
+    /**
+     * Reads a list of strings written by {@link #putStrings(ByteBuffer, byte[][])}.
+     * 
+     * @param in The buffer to read from.
+     * 
+     * @return The read strings.
+     * 
+     * @throws FormatException If the buffer does not contain enough data.
+     */
+    private static @NonNull String @NonNull [] getStrings(@NonNull ByteBuffer in) throws FormatException {
+        String[] result = new String[checkCount(in.getInt(), in, 4)];
+        for (int i = 0; i < result.length; i++) {
+            byte[] bytes = new byte[checkCount(in.getInt(), in, 1)];
+            in.get(bytes);
+            result[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks that a count read from a buffer is plausible, i.e. that the buffer contains enough remaining data. This
+     * prevents huge allocations for corrupted files.
+     * 
+     * @param count The count that was read.
+     * @param in The buffer that the elements will be read from.
+     * @param elementSize The minimum size of each element, in bytes.
+     * 
+     * @return The count.
+     * 
+     * @throws FormatException If the count is negative or larger than the remaining data.
+     */
+    private static int checkCount(int count, @NonNull ByteBuffer in, int elementSize) throws FormatException {
+        if (count < 0 || count > in.remaining() / elementSize) {
+            throw new FormatException("Invalid element count " + count);
+        }
+        return count;
+    }
+    
+    @Override
+    public @NonNull String toString() {
+        return "VariableLocationIndex[variables=" + variables.length + ", files=" + files.length + ", postings="
+                + postings.length / POSTING_SIZE + "]";
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.analysis.AnalysisComponent;
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.VariableFinder;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.SourceLocation;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+import net.ssehub.kernel_haven.variability_model.VariabilityVariable;
+
+/**
+ * A pipeline component that consumes the code model once and creates a {@link VariableLocationIndex} from it. For
+ * each {@link CodeElement}, a posting is added for every variable in its presence condition. If a variability model
+ * is passed, then the {@link VariabilityVariable#getSourceLocations()} are added to the same index.
+ * <p>
+ * If {@link DefaultSettings#ANALYSIS_VARIABLE_INDEX_FILE} is set, the created index is also written to that file;
+ * it can be read again via {@link VariableLocationIndex#read(File)}.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class VariableLocationIndexBuilder extends AnalysisComponent<VariableLocationIndex> {
+    
+    private @NonNull AnalysisComponent<SourceFile<?>> cmComponent;
+    
+    private @Nullable AnalysisComponent<VariabilityModel> vmComponent;
+    
+    private @Nullable File indexFile;
+    
+    /**
+     * Creates a new {@link VariableLocationIndexBuilder} that only indexes the code model.
+     * 
+     * @param config The pipeline configuration.
+     * @param cmComponent The component to get the code model from.
+     */
+    public VariableLocationIndexBuilder(@NonNull Configuration config,
+            @NonNull AnalysisComponent<SourceFile<?>> cmComponent) {
+        
+        super(config);
+        this.cmComponent = cmComponent;
+        this.indexFile = config.getValue(DefaultSettings.ANALYSIS_VARIABLE_INDEX_FILE);
+    }
+    
+    /**
+     * Creates a new {@link VariableLocationIndexBuilder} that indexes the code model and the source locations of
+     * the variability model.
+     * 
+     * @param config The pipeline configuration.
+     * @param cmComponent The component to get the code model from.
+     * @param vmComponent The component to get the variability model from.
+     */
+    public VariableLocationIndexBuilder(@NonNull Configuration config,
+            @NonNull AnalysisComponent<SourceFile<?>> cmComponent,
+            @NonNull AnalysisComponent<VariabilityModel> vmComponent) {
+        
+        this(config, cmComponent);
+        this.vmComponent = vmComponent;
+    }
+    
+    @Override
+    protected void execute() {
+        Map<@NonNull String, Integer> fileIds = new HashMap<>();
+        List<@NonNull String> files = new ArrayList<>();
+        Map<@NonNull String, Postings> postings = new HashMap<>();
+        
+        // presence conditions are shared by many elements; only search each formula instance once
+        Map<@NonNull Formula, @NonNull String @NonNull []> variableCache = new IdentityHashMap<>();
+        VariableFinder finder = new VariableFinder();
+        
+        SourceFile<?> file;
+        while ((file = cmComponent.getNextResult()) != null) {
+            int fileId = getFileId(file.getPath(), fileIds, files);
+            
+            VariableLocationIndex.PreOrderIterator it = new VariableLocationIndex.PreOrderIterator(file);
+            while (it.hasNext()) {
+                CodeElement<?> element = it.next();
+                int elementNumber = it.getCount() - 1;
+                
+                Formula pc = element.getPresenceCondition();
+                String[] variables = variableCache.get(pc);
+                if (variables == null) {
+                    finder.clear();
+                    pc.accept(finder);
+                    variables = notNull(finder.getVariableNames().toArray(new String[0]));
+                    variableCache.put(pc, variables);
+                }
+                
+                for (String variable : variables) {
+                    postings.computeIfAbsent(variable, k -> new Postings())
+                            .add(fileId, element.getLineStart(), elementNumber);
+                }
+            }
+        }
+        
+        AnalysisComponent<VariabilityModel> vmComponent = this.vmComponent;
+        if (vmComponent != null) {
+            VariabilityModel vm = vmComponent.getNextResult();
+            if (vm != null) {
+                for (VariabilityVariable variable : vm.getVariableMap().values()) {
+                    List<@NonNull SourceLocation> locations = variable.getSourceLocations();
+                    if (locations != null) {
+                        for (SourceLocation location : locations) {
+                            int fileId = getFileId(location.getSource(), fileIds, files);
+                            postings.computeIfAbsent(variable.getName(), k -> new Postings())
+                                    .add(fileId, location.getLineNumber(), VariableLocationIndex.NO_ELEMENT);
+                        }
+                    }
+                }
+            } else {
+                LOGGER.logWarning("Got no variability model, only indexing the code model");
+            }
+        }
+        
+        VariableLocationIndex index = build(postings, files);
+        LOGGER.logInfo("Created " + index);
+        
+        File indexFile = this.indexFile;
+        if (indexFile != null) {
+            try {
+                index.write(indexFile);
+            } catch (IOException e) {
+                LOGGER.logException("Can't write variable location index to " + indexFile, e);
+            }
+        }
+        
+        addResult(index);
+    }
+    
+    /**
+     * Returns the ID for the given file. Creates a new ID if the file has not been seen before.
+     * 
+     * @param file The file to get the ID for.
+     * @param fileIds The already assigned IDs.
+     * @param files The list of files; the index in this list is the ID.
+     * 
+     * @return The ID of the file.
+     */
+    private static int getFileId(@NonNull File file, @NonNull Map<@NonNull String, Integer> fileIds,
+            @NonNull List<@NonNull String> files) {
+        
+        String path = file.getPath();
+        Integer id = fileIds.get(path);
+        if (id == null) {
+            id = files.size();
+            files.add(path);
+            fileIds.put(path, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Creates the index from the collected postings.
+     * 
+     * @param postings The postings of each variable.
+     * @param files The list of files.
+     * 
+     * @return The index.
+     */
+    static @NonNull VariableLocationIndex build(@NonNull Map<@NonNull String, Postings> postings,
+            @NonNull List<@NonNull String> files) {
+        
+        String[] variables = postings.keySet().toArray(new String[postings.size()]);
+        Arrays.sort(variables);
+        
+        int[] offsets = new int[variables.length + 1];
+        int total = 0;
+        for (int i = 0; i < variables.length; i++) {
+            offsets[i] = total;
+            total += notNull(postings.get(variables[i])).size;
+        }
+        offsets[variables.length] = total;
+        
+        int[] data = new int[total * Postings.SIZE];
+        for (int i = 0; i < variables.length; i++) {
+            Postings list = notNull(postings.get(variables[i]));
+            System.arraycopy(list.data, 0, data, offsets[i] * Postings.SIZE, list.size * Postings.SIZE);
+        }
+        
+        return new VariableLocationIndex(variables, notNull(files.toArray(new String[files.size()])), offsets, data);
+    }
+    
+    @Override
+    public @NonNull String getResultName() {
+        return "Variable Location Index";
+    }
+    
+    /**
+     * A growable list of postings for a single variable.
+     */
+    static final class Postings {
+        
+        private static final int SIZE = 3;
+        
+        private int @NonNull [] data = new int[SIZE * 4];
+        
+        private int size;
+        
+        /**
+         * Adds a posting.
+         * 
+         * @param file The ID of the file.
+         * @param line The line number.
+         * @param element The element number.
+         */
+        void add(int file, int line, int element) {
+            if ((size + 1) * SIZE > data.length) {
+                data = notNull(Arrays.copyOf(data, data.length * 2));
+            }
+            data[size * SIZE] = file;
+            data[size * SIZE + 1] = line;
+            data[size * SIZE + 2] = element;
+            size++;
+        }
+        
+    }
+
+}
@@ -127,6 +127,7 @@ public class BranchStatement extends AbstractSyntaxElementWithNesting {
      */
     public void addSibling(@NonNull BranchStatement sibling) {
         siblings.add(sibling);
+        invalidateStructuralHash();
     }
 
     /**
@@ -191,7 +192,7 @@ public class BranchStatement extends AbstractSyntaxElementWithNesting {
         int result = 1;
         
         for (BranchStatement sibling : siblings) {
-            result = 31 * result + hasher.hashCode(sibling);
+            result = 31 * result + hasher.hashCodeOfReference(sibling);
         }
         
         return result + super.hashCode(hasher) + type.hashCode()
@@ -257,6 +258,7 @@ public class BranchStatement extends AbstractSyntaxElementWithNesting {
             }
             this.siblings.add(sibling);
         }
+        invalidateStructuralHash();
     }
 
 }
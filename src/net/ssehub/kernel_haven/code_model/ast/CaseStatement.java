@@ -145,7 +145,7 @@ public class CaseStatement extends AbstractSyntaxElementWithNesting {
     
     @Override
     protected int hashCode(@NonNull CodeElementHasher hasher) {
-        return super.hashCode(hasher) + type.hashCode() + hasher.hashCode(switchStatement)
+        return super.hashCode(hasher) + type.hashCode() + hasher.hashCodeOfReference(switchStatement)
                 + (caseCondition != null ? hasher.hashCode((AbstractCodeElement<?>) caseCondition) : 523);
     }
     
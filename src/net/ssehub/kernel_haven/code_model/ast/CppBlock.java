@@ -134,6 +134,7 @@ public class CppBlock extends AbstractSyntaxElementWithNesting implements ICode
      */
     public void addSibling(@NonNull CppBlock sibling) {
         siblings.add(sibling);
+        invalidateStructuralHash();
     }
 
     /**
@@ -243,7 +244,7 @@ public class CppBlock extends AbstractSyntaxElementWithNesting implements ICode
         int result = 1;
         
         for (CppBlock sibling : siblings) {
-            result = 31 * result + hasher.hashCode(sibling);
+            result = 31 * result + hasher.hashCodeOfReference(sibling);
         }
         
         return result + super.hashCode(hasher) + type.hashCode()
@@ -312,6 +313,7 @@ public class CppBlock extends AbstractSyntaxElementWithNesting implements ICode
             }
             this.siblings.add(sibling);
         }
+        invalidateStructuralHash();
     }
 
 }
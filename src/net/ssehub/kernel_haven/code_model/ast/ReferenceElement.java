@@ -24,6 +24,7 @@ import net.ssehub.kernel_haven.code_model.CodeElement;
 import net.ssehub.kernel_haven.code_model.JsonCodeModelCache.CheckedFunction;
 import net.ssehub.kernel_haven.util.FormatException;
 import net.ssehub.kernel_haven.util.io.json.JsonElement;
+import net.ssehub.kernel_haven.util.io.json.JsonNumber;
 import net.ssehub.kernel_haven.util.io.json.JsonObject;
 import net.ssehub.kernel_haven.util.logic.Formula;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
@@ -109,7 +110,8 @@ public class ReferenceElement extends AbstractSyntaxElementNoNesting {
             @NonNull Function<@NonNull CodeElement<?>, @NonNull Integer> idFunction) {
         super.serializeToJson(result, serializeFunction, idFunction);
 
-        result.putElement("referenced", serializeFunction.apply(referenced));
+        // only the ID, so that the referenced element is shared instead of copied
+        result.putElement("referenced", new JsonNumber(idFunction.apply(referenced)));
     }
     
     @Override
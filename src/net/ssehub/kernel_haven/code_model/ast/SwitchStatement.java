@@ -123,6 +123,7 @@ public class SwitchStatement extends AbstractSyntaxElementWithNesting {
      */
     public void addCase(@NonNull CaseStatement caseStatement) {
         cases.add(caseStatement);
+        invalidateStructuralHash();
     }
     
     /**
@@ -149,7 +150,7 @@ public class SwitchStatement extends AbstractSyntaxElementWithNesting {
         int result = 1;
         
         for (CaseStatement sibling : cases) {
-            result = 31 * result + hasher.hashCode(sibling);
+            result = 31 * result + hasher.hashCodeOfReference(sibling);
         }
         
         return result + super.hashCode(hasher) + hasher.hashCode((AbstractCodeElement<?>) header);
@@ -206,6 +207,7 @@ public class SwitchStatement extends AbstractSyntaxElementWithNesting {
             }
             this.cases.add(sibling);
         }
+        invalidateStructuralHash();
     }
 
 }
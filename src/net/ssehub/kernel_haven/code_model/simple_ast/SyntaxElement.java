@@ -17,7 +17,7 @@ package net.ssehub.kernel_haven.code_model.simple_ast;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
 
@@ -37,7 +37,11 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
  */
 public class SyntaxElement extends AbstractCodeElementWithNesting<SyntaxElement> {
 
-    private @NonNull List<@NonNull String> relations;
+    /**
+     * The relations of the nested elements, at the same indices as the nested elements. The strings are interned, since
+     * there are only very few distinct relations in a whole AST.
+     */
+    private @NonNull ArrayList<@NonNull String> relations;
     
     private @NonNull ISyntaxElementType type;
     
@@ -54,7 +58,7 @@ public class SyntaxElement extends AbstractCodeElementWithNesting<SyntaxElement>
         super(presencCondition);
         setCondition(condition);
         
-        this.relations = new LinkedList<>();
+        this.relations = new ArrayList<>();
         this.type = type;
     }
 
@@ -87,6 +91,7 @@ public class SyntaxElement extends AbstractCodeElementWithNesting<SyntaxElement>
         if (relations.size() < getNestedElementCount()) {
             relations.add("");
         }
+        invalidateStructuralHash();
     }
     
     /**
@@ -97,7 +102,8 @@ public class SyntaxElement extends AbstractCodeElementWithNesting<SyntaxElement>
      */
     public void addNestedElement(@NonNull SyntaxElement element, @NonNull String relation) {
         super.addNestedElement(element);
-        this.relations.add(relation);
+        this.relations.add(notNull(relation.intern()));
+        invalidateStructuralHash();
     }
 
     /**
@@ -128,7 +134,17 @@ public class SyntaxElement extends AbstractCodeElementWithNesting<SyntaxElement>
      * @param relation The relations of the children elements.
      */
     public void setDeserializedRelations(@NonNull List<@NonNull String> relation) {
-        this.relations = relation;
+        this.relations = new ArrayList<>(relation.size());
+        for (String r : relation) {
+            this.relations.add(notNull(r.intern()));
+        }
+        invalidateStructuralHash();
+    }
+    
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        relations.trimToSize();
     }
     
     @Override
@@ -455,6 +455,17 @@ public class Configuration {
         return propertyFile;
     }
     
+    /**
+     * Returns a copy of all properties of this configuration, including the ones read from included files.
+     * 
+     * @return A copy of the properties.
+     */
+    public @NonNull Properties copyProperties() {
+        Properties result = new Properties();
+        result.putAll(properties);
+        return result;
+    }
+    
     /**
      * Sets the property file. Used in test cases.
      * 
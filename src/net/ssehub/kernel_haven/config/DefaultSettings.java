@@ -19,6 +19,7 @@ import static net.ssehub.kernel_haven.config.Setting.Type.BOOLEAN;
 import static net.ssehub.kernel_haven.config.Setting.Type.DIRECTORY;
 import static net.ssehub.kernel_haven.config.Setting.Type.FILE;
 import static net.ssehub.kernel_haven.config.Setting.Type.INTEGER;
+import static net.ssehub.kernel_haven.config.Setting.Type.PATH;
 import static net.ssehub.kernel_haven.config.Setting.Type.REGEX;
 import static net.ssehub.kernel_haven.config.Setting.Type.STRING;
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
@@ -31,11 +32,20 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import net.ssehub.kernel_haven.Daemon;
 import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.analysis.BatchPipelineAnalysis;
 import net.ssehub.kernel_haven.analysis.ConfiguredPipelineAnalysis;
+import net.ssehub.kernel_haven.analysis.GroupByComponent;
+import net.ssehub.kernel_haven.analysis.HashJoinComponent;
+import net.ssehub.kernel_haven.analysis.ListCollectorComponent;
+import net.ssehub.kernel_haven.analysis.ObservableAnalysis;
+import net.ssehub.kernel_haven.analysis.SortComponent;
 import net.ssehub.kernel_haven.build_model.EmptyBuildModelExtractor;
 import net.ssehub.kernel_haven.code_model.EmptyCodeModelExtractor;
+import net.ssehub.kernel_haven.code_model.VariableLocationIndexBuilder;
 import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.StaticClassLoader;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
 import net.ssehub.kernel_haven.variability_model.EmptyVariabilityModelExtractor;
@@ -97,10 +107,21 @@ public class DefaultSettings {
     public static final @NonNull Setting<@NonNull String> ANALYSIS_CLASS = new Setting<>("analysis.class", STRING, true, null, "The fully qualified class name of the analysis that should be run.");
     public static final @NonNull ListSetting<@NonNull String> ANALYSIS_COMPONENTS_LOG = new ListSetting<>("analysis.output.intermediate_results", STRING, false, "Specifies which analysis components (simple class name) of a PipelineAnalysis should output their intermediate results. These will be written in addition to the result of the main component.");
     public static final @NonNull Setting<@NonNull String> ANALYSIS_PIPELINE = new Setting<>("analysis.pipeline", STRING, true, "", "A string specifying a pipeline of analyis components. This only has an effect if " + ANALYSIS_CLASS.getKey() + " is set to " + ConfiguredPipelineAnalysis.class.getName() + "."); // TODO specify format
+    public static final @NonNull ListSetting<@NonNull String> ANALYSIS_BATCH_CLASSES = new ListSetting<>("analysis.batch.classes", STRING, false, "A list of fully qualified class names of PipelineAnalysis subclasses that should run together on a single extraction. This only has an effect if " + ANALYSIS_CLASS.getKey() + " is set to " + BatchPipelineAnalysis.class.getName() + ". Each analysis writes its own output, with its simple class name appended to analysis.output.name.");
+    public static final @NonNull ListSetting<@NonNull String> ANALYSIS_MEMOIZE_COMPONENTS = new ListSetting<>("analysis.memoize.components", STRING, false, "Specifies which analysis components (simple class name) of a " + ConfiguredPipelineAnalysis.class.getName() + " should store their results in analysis.memoize.dir. If a later execution contains the same component with the same input components and the same configuration, the stored results are replayed instead of executing the component and its input components again. The results of these components must be serializable. The stored results are not invalidated if the source tree itself changes; delete the directory in this case.");
+    public static final @NonNull Setting<@Nullable File> ANALYSIS_MEMOIZE_DIR = new Setting<>("analysis.memoize.dir", DIRECTORY, false, null, "The directory where the results of the components specified in analysis.memoize.components are stored. If not set, no results are memoized.");
+    public static final @NonNull Setting<@NonNull Integer> ANALYSIS_SPILL_HEAP_USAGE = new Setting<>("analysis.spill.heap_usage", INTEGER, true, "75", "A percentage of the maximum heap size. If the used heap exceeds this while a " + ListCollectorComponent.class.getName() + " or " + ObservableAnalysis.class.getName() + " collects results, the collected results are written to disk in chunks and read back when they are accessed. If it is exceeded while a " + HashJoinComponent.class.getName() + " or " + GroupByComponent.class.getName() + " reads its input, the input is written to partitions on disk. If it is exceeded while a " + SortComponent.class.getName() + " reads its input, the current chunk is sorted and written to disk. The results must be serializable for this. Set to 100 to keep all results in memory.");
+    public static final @NonNull Setting<@Nullable File> ANALYSIS_SPILL_DIR = new Setting<>("analysis.spill.dir", DIRECTORY, false, null, "The directory where collected results are written to if analysis.spill.heap_usage is exceeded. If not set, the temporary directory of the system is used.");
+    public static final @NonNull Setting<@NonNull String> ANALYSIS_JOIN_LEFT_KEY = new Setting<>("analysis.join.left_key", STRING, true, "", "The key that a " + HashJoinComponent.class.getName() + " created by analysis.pipeline joins the results of its left (first) input component by. This is a path of properties, separated by dots (e.g. \"sourceFile.path\"); each property is a column name of a table row, a getter or a public field. An empty string uses the result itself as the key.");
+    public static final @NonNull Setting<@NonNull String> ANALYSIS_JOIN_RIGHT_KEY = new Setting<>("analysis.join.right_key", STRING, true, "", "The key that a " + HashJoinComponent.class.getName() + " created by analysis.pipeline joins the results of its right (second) input component by. See analysis.join.left_key for the format.");
+    public static final @NonNull Setting<@NonNull String> ANALYSIS_GROUP_BY_KEY = new Setting<>("analysis.group_by.key", STRING, true, "", "The key that a " + GroupByComponent.class.getName() + " created by analysis.pipeline groups the results of its input component by. See analysis.join.left_key for the format.");
+    public static final @NonNull ListSetting<@NonNull String> ANALYSIS_SORT_KEYS = new ListSetting<>("analysis.sort.keys", STRING, false, "The keys that a " + SortComponent.class.getName() + " created by analysis.pipeline sorts the results of its input component by. Results are compared by the first key, results with an equal first key by the second key, and so on. See analysis.join.left_key for the format of a key. Key values of different classes are ordered by their class name. If not set, the results themselves are compared.");
+    public static final @NonNull Setting<@NonNull Integer> ANALYSIS_SORT_CHUNK_SIZE = new Setting<>("analysis.sort.chunk_size", INTEGER, true, "100000", "The maximum number of results that a " + SortComponent.class.getName() + " sorts in memory at once. If its input has more results, chunks of this size are sorted in parallel, written to analysis.spill.dir and merged afterwards.");
     public static final @NonNull Setting<@NonNull String> ANALYSIS_RESULT = new Setting<>("analysis.output.type", STRING, true, "csv", "A file suffix that specifies which kind of output writer shall be used. By deafult, the main infrastructure supports \"csv\" and \"csv.zip\". If IOUtils is used, then \"xls\" or \"xlsx\" can be used here.");
     public static final @NonNull Setting<@NonNull String> ANALYSIS_RESULT_NAME = new Setting<>("analysis.output.name", STRING, true, "Analysis", "A name for the analysis result that is used as a prefix for the output file(s).");
     public static final @NonNull Setting<@NonNull Boolean> ANALYSIS_USE_VARMODEL_VARIABLES_ONLY = new Setting<>("analysis.consider_vm_vars_only", BOOLEAN, true, "false", "Defines whether the analysis should only consider variables that are present in the variability model.");
-    public static final @NonNull Setting<@NonNull Boolean> ANALYSIS_PIPELINE_START_EXTRACTORS = new Setting<>("analysis.pipeline.preemptively_start_extractors", BOOLEAN, true, "true", "Whether the analysis pipeline should preemptively start all three extractors. This has the advantage that the extractors will always run in parallel, even if the analysis compoenents only poll them in order. If this is set to false, then the extractors only start on demand when the analysis components poll them.");
+    public static final @NonNull Setting<@NonNull Boolean> ANALYSIS_PIPELINE_START_EXTRACTORS = new Setting<>("analysis.pipeline.preemptively_start_extractors", BOOLEAN, true, "true", "Whether the analysis pipeline should preemptively start all three extractors. This has the advantage that the extractors will always run in parallel, even if the analysis compoenents only poll them in order. If this is set to false, then the extractors only start on demand when the analysis components poll them. Extractors that are only used by components that replay memoized results (see analysis.memoize.components) are never started.");
+    public static final @NonNull Setting<@Nullable File> ANALYSIS_VARIABLE_INDEX_FILE = new Setting<>("analysis.variable_index.file", PATH, false, null, "If set, the " + VariableLocationIndexBuilder.class.getName() + " writes the variable location index it creates to this file. The written index can be read again without running the extractors.");
     
     /*
      * Common extractor parameters
@@ -118,6 +139,7 @@ public class DefaultSettings {
     public static final @NonNull Setting<@NonNull Boolean> CODE_PROVIDER_CACHE_WRITE = new Setting<>("code.provider.cache.write", BOOLEAN, true, "false", "Defines whether the code model provider will write its results to the cache directory.");
     public static final @NonNull Setting<@NonNull Boolean> CODE_PROVIDER_CACHE_READ = new Setting<>("code.provider.cache.read", BOOLEAN, true, "false", "Defines whether the code model provider is allowed to read the cache instead of starting the extractor.");
     public static final @NonNull Setting<@NonNull Boolean> CODE_PROVIDER_CACHE_COMPRESS = new Setting<>("code.provider.cache.compress", BOOLEAN, true, "true", "Whether the individual cache files for the code model should written as compressed Zip archives. Reading of compressed cache files is always supported.");
+    public static final @NonNull Setting<@NonNull Boolean> CODE_PROVIDER_CACHE_LAZY = new Setting<>("code.provider.cache.lazy", BOOLEAN, true, "false", "Whether uncompressed cache files of the code model should be read lazily. If this is enabled, the elements of a cached source file are only de-serialized when they are accessed for the first time. This reduces the memory footprint of analyses that only look at parts of the code model. Compressed cache files are always read completely.");
     public static final @NonNull ListSetting<@NonNull String> CODE_EXTRACTOR_FILES = new ListSetting<>("code.extractor.files", STRING, notNull(Arrays.asList("")), "Defines which files the code extractor should run on. Comma separated list of paths relative to the source tree. If directories are listed, then they are searched recursively for files that match the regular expression specified in code.extractor.file_regex. Set to an empty string to specify the complete source tree.");
     public static final @NonNull Setting<@NonNull Pattern> CODE_EXTRACTOR_FILE_REGEX = new Setting<>("code.extractor.file_regex", REGEX, true, ".*\\.c", "A Java regular expression defining which files are considered to be source files for parsing. See code.extractor.files for a description on which files this expression is tested on."); 
     public static final @NonNull Setting<@NonNull Integer> CODE_EXTRACTOR_THREADS = new Setting<>("code.extractor.threads", INTEGER, true, "1", "The number of threads the code extractor should use. This many files are parsed in parallel.");
@@ -145,10 +167,20 @@ public class DefaultSettings {
     public static final @NonNull Setting<@Nullable File> VARIABILITY_INPUT_FILE = new Setting<>("variability.input.file", FILE, false, null, "Path of a single file to be parsed by a variability model extractor.");
     public static final @NonNull Setting<@NonNull Pattern> VARIABILITY_EXTRACTOR_FILE_REGEX = new Setting<>("variability.extractor.file_regex", REGEX, true, "..*(?i)(^|\\/|\\\\)(Kconfig)", "A Java regular expression defining which files are considered to be source files relevant for parsing the variability model.");
     
+    /*
+     * Daemon
+     */
+    
+    public static final @NonNull Setting<@NonNull Integer> DAEMON_PORT = new Setting<>("daemon.port", INTEGER, true, "21512", "The local port that the daemon (started via " + Daemon.class.getName() + ") listens on for analysis requests. Only connections from the loopback interface are accepted.");
+    public static final @NonNull Setting<@NonNull Integer> DAEMON_CODE_MODEL_CACHE_SIZE = new Setting<>("daemon.code_model_cache_size", INTEGER, true, "5000", "The maximum number of source files that the daemon keeps in memory between analysis runs. The least recently used source files are evicted first.");
+    public static final @NonNull Setting<@NonNull Integer> DAEMON_REQUEST_TIMEOUT = new Setting<>("daemon.request_timeout", INTEGER, true, "10000", "The maximum time (in milliseconds) that the daemon waits for a client to send its token and command. Clients that are silent for longer are disconnected, so that they can't block the daemon. 0 means no timeout.");
+    public static final @NonNull Setting<@NonNull File> DAEMON_TOKEN_FILE = new Setting<>("daemon.token_file", PATH, true, ".kernelhaven_daemon.token", "The file that the daemon writes a random token to when it starts. Clients must send this token with each request; the file is only readable by the user that started the daemon, so that other local users can't send requests. The daemon and the clients must use the same file.");
+    
     /*
      * Other
      */
     
+    public static final @NonNull Setting<@Nullable File> PLUGINS_INDEX_FILE = new Setting<>("plugins.index_file", PATH, false, null, "If set, the class names that the " + StaticClassLoader.LOAD_CLASSES_FILENAME + " files in jars on the class path specify are stored in this file. Jars whose path, size and modification time did not change since the last execution are not opened again at start-up.");
     public static final @NonNull ListSetting<@NonNull String> PREPARATION_CLASSES = new ListSetting<>("preparation.class", STRING, false, "A list of fully qualified class names that defines which preparations to run. A preparation class has to implement IPreperation. The preparations defined here are executed in the defined order.");
     
     // CHECKSTYLE:ON
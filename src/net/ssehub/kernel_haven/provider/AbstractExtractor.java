@@ -128,8 +128,12 @@ public abstract class AbstractExtractor<ResultType> {
                     ResultType result = null;
                     boolean readFromCache = false;
                     
+                    MemoryResultCache<ResultType> memoryCache = provider.getMemoryCache();
+                    if (memoryCache != null && provider.readCache()) {
+                        result = memoryCache.get(target);
+                    }
                     
-                    if (provider.readCache()) {
+                    if (result == null && provider.readCache()) {
                         try {
                             result = provider.getCache().read(target);
                         } catch (FormatException | IOException e) {
@@ -152,6 +156,10 @@ public abstract class AbstractExtractor<ResultType> {
                     
                     provider.addResult(result);
                     
+                    if (memoryCache != null) {
+                        memoryCache.put(target, result);
+                    }
+                    
                     if (provider.writeCache() && !readFromCache) {
                         try {
                             provider.getCache().write(result);
@@ -180,25 +188,53 @@ public abstract class AbstractExtractor<ResultType> {
      * @param targets The targets to run on.
      */
     public final void run(@NonNull List<@NonNull File> targets) {
+        BlockingQueue<@NonNull File> targetQueue = new BlockingQueue<>();
+        for (File target : targets) {
+            targetQueue.add(target);
+        }
+        targetQueue.end();
+        
+        run(targetQueue, targets.size());
+    }
+    
+    /**
+     * Runs the extractor asynchronously on the targets in the given queue. The targets may still be added to the queue
+     * while the extractor is already running; the worker threads pick them up as soon as they are available. The
+     * extraction is finished once the queue is ended and all targets in it are processed. This potentially (depending
+     * on configuration) spawns multiple threads that chew through the queue of targets. For each result, setResult()
+     * or setException() of the provider is called.
+     * 
+     * @param targets The queue of targets to run on. Must be ended by whoever fills it.
+     */
+    public final void run(@NonNull BlockingQueue<@NonNull File> targets) {
+        run(targets, -1);
+    }
+    
+    /**
+     * Runs the extractor asynchronously on the targets in the given queue.
+     * 
+     * @param targets The queue of targets to run on. Must be ended by whoever fills it.
+     * @param numTargets The number of targets in the queue, if known in advance. -1 if unknown.
+     */
+    private void run(@NonNull BlockingQueue<@NonNull File> targets, int numTargets) {
         synchronized (isRunningMutex) {
             this.isRunning = true;
         }
         
         new Thread(() -> {
             
-            LOGGER.logStatus("Starting on ", targets.size(), " targets in ", provider.getNumberOfThreads(), " threads");
-            ProgressLogger progress = new ProgressLogger(getName(), targets.size());
-           
-            BlockingQueue<File> targetQueue = new BlockingQueue<>();
-            for (File target : targets) {
-                targetQueue.add(target);
+            if (numTargets >= 0) {
+                LOGGER.logStatus("Starting on ", numTargets, " targets in ", provider.getNumberOfThreads(),
+                        " threads");
+            } else {
+                LOGGER.logStatus("Starting on discovered targets in ", provider.getNumberOfThreads(), " threads");
             }
-            targetQueue.end();
-            
+            ProgressLogger progress = new ProgressLogger(getName(), numTargets);
+           
             List<WorkerThread> threads = new ArrayList<>(provider.getNumberOfThreads());
             
             for (int i = 1; i <= provider.getNumberOfThreads(); i++) {
-                WorkerThread th = new WorkerThread(getName(), i, targetQueue, progress);
+                WorkerThread th = new WorkerThread(getName(), i, targets, progress);
                 th.start();
                 threads.add(th);
             }
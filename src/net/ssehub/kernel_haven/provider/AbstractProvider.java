@@ -49,6 +49,8 @@ public abstract class AbstractProvider<ResultType> {
     private @NonNull BlockingQueue<ExtractorException> exceptionQueue;
     
     private AbstractCache<ResultType> cache;
+    
+    private @Nullable MemoryResultCache<ResultType> memoryCache;
 
     /**
      * Creates a new provider.
@@ -69,6 +71,30 @@ public abstract class AbstractProvider<ResultType> {
      */
     protected abstract @NonNull List<@NonNull File> getTargets() throws SetUpException;
     
+    /**
+     * Starts discovering the targets that the extractor should run on. Discovered targets are added to the given
+     * queue as soon as they are found; {@link BlockingQueue#end()} is called on the queue once all targets are
+     * discovered. This allows the extractor to start working on the first targets while the rest are still being
+     * searched for.
+     * <p>
+     * The default implementation simply adds all elements of {@link #getTargets()} and ends the queue. Sub-classes
+     * that need a long time to find their targets (e.g. by walking a large source tree) should overwrite this and
+     * fill the queue asynchronously.
+     * </p>
+     * 
+     * @param targetQueue The queue to add the discovered targets to. Must be ended by this method or the discovery
+     *      process started by it, even if discovery fails.
+     * 
+     * @throws SetUpException If discovering the targets fails (e.g. due to configuration problems). If this is thrown,
+     *      the queue does not have to be ended.
+     */
+    protected void discoverTargets(@NonNull BlockingQueue<@NonNull File> targetQueue) throws SetUpException {
+        for (File target : getTargets()) {
+            targetQueue.add(target);
+        }
+        targetQueue.end();
+    }
+    
     /**
      * Specifies the timeout in milliseconds until waiting for the result of the extractor is aborted and an exception
      * is generated instead.
@@ -148,11 +174,34 @@ public abstract class AbstractProvider<ResultType> {
         return cache;
     }
     
+    /**
+     * Sets a cache that keeps results in memory between multiple extractions in the same JVM. If {@link #readCache()}
+     * is <code>true</code>, it is checked before the (disk) cache returned by {@link #getCache()}. All results are
+     * stored in it. This is used by the {@link net.ssehub.kernel_haven.Daemon}, which runs many analyses on the same
+     * models.
+     * 
+     * @param memoryCache The in-memory cache to use; <code>null</code> to not keep results in memory (the default).
+     */
+    public void setMemoryCache(@Nullable MemoryResultCache<ResultType> memoryCache) {
+        this.memoryCache = memoryCache;
+    }
+    
+    /**
+     * Returns the cache that keeps results in memory between multiple extractions.
+     * 
+     * @return The in-memory cache; <code>null</code> if results are not kept in memory.
+     * 
+     * @see #setMemoryCache(MemoryResultCache)
+     */
+    public @Nullable MemoryResultCache<ResultType> getMemoryCache() {
+        return memoryCache;
+    }
+    
     /**
      * Starts the extraction process. Calling this method clears the internal result and exception queues.
      * 
-     * @throws SetUpException If the extractor is already running, the configuration has not been set yet, or creation
-     *      of the target list fails.
+     * @throws SetUpException If the extractor is already running, the configuration has not been set yet, or starting
+     *      the target discovery fails.
      */
     public void start() throws SetUpException {
         if (extractor.isRunning()) {
@@ -166,8 +215,10 @@ public abstract class AbstractProvider<ResultType> {
         resultQueue = new BlockingQueue<>();
         exceptionQueue = new BlockingQueue<>();
 
+        BlockingQueue<@NonNull File> targetQueue = new BlockingQueue<>();
         try {
-            extractor.run(getTargets());
+            discoverTargets(targetQueue);
+            extractor.run(targetQueue);
         } catch (SetUpException e) {
             addResult(null); // signal that no more results are going to be sent (since starting the extractor failed)
             throw e;
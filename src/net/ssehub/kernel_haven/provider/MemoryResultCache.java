@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.provider;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Keeps extractor results in memory, so that later extractions in the same JVM can use them without running the
+ * extractor or reading the (disk) {@link AbstractCache} again. The results are stored per target; if more than the
+ * given number of results are stored, the least recently used ones are evicted.
+ * <p>
+ * A result is only returned as long as its target did not change. For file targets, this is detected by the last
+ * modification time of the file. For directory targets (e.g. the source tree for the variability and build model),
+ * a fingerprint of the paths, sizes and modification times of all files in the directory (recursively) that match the
+ * pattern of input files is used. If no pattern is given, only the last modification time of the directory itself is
+ * considered, which only detects added or removed files directly in the directory.
+ * </p>
+ * <p>
+ * This class is thread-safe, since the extractor may run in multiple threads.
+ * </p>
+ * 
+ * @param <ResultType> The type of result that the extractor produces.
+ * 
+ * @author Adam
+ */
+public class MemoryResultCache<ResultType> {
+    
+    private @NonNull File baseDir;
+    
+    private int capacity;
+    
+    private @Nullable Pattern inputFiles;
+    
+    private @NonNull LinkedHashMap<@NonNull File, @NonNull StoredResult<ResultType>> entries;
+    
+    private long hits;
+    
+    private long misses;
+    
+    /**
+     * Creates an empty cache. Directory targets are only checked by their own last modification time.
+     * 
+     * @param baseDir The directory that relative targets are resolved against (i.e. the source tree).
+     * @param capacity The maximum number of results to keep. Must be positive.
+     */
+    public MemoryResultCache(@NonNull File baseDir, int capacity) {
+        this(baseDir, capacity, null);
+    }
+    
+    /**
+     * Creates an empty cache.
+     * 
+     * @param baseDir The directory that relative targets are resolved against (i.e. the source tree).
+     * @param capacity The maximum number of results to keep. Must be positive.
+     * @param inputFiles A pattern for the input files of the extractor (e.g.
+     *      {@link net.ssehub.kernel_haven.config.DefaultSettings#VARIABILITY_EXTRACTOR_FILE_REGEX}), which is matched
+     *      against the absolute paths of the files. For directory targets, the files in the directory that match this
+     *      are considered when checking whether the target changed. <code>null</code> to only consider the directory
+     *      itself.
+     */
+    public MemoryResultCache(@NonNull File baseDir, int capacity, @Nullable Pattern inputFiles) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.baseDir = baseDir;
+        this.capacity = capacity;
+        this.inputFiles = inputFiles;
+        this.entries = new LinkedHashMap<@NonNull File, @NonNull StoredResult<ResultType>>(16, 0.75f, true) {
+            
+            private static final long serialVersionUID = 5417542339004618471L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<@NonNull File, @NonNull StoredResult<ResultType>> eldest) {
+                return size() > MemoryResultCache.this.capacity;
+            }
+            
+        };
+    }
+    
+    /**
+     * Returns a stamp that changes whenever the given target changes. This is the last modification time for files,
+     * and a fingerprint of the input files for directories (if a pattern for these is given).
+     * 
+     * @param target The target, either absolute or relative to the base directory.
+     * 
+     * @return The stamp of the target; <code>null</code> if it can't be determined.
+     */
+    private @Nullable Long getStamp(@NonNull File target) {
+        File file = target.isAbsolute() ? target : new File(baseDir, target.getPath());
+        Pattern pattern = this.inputFiles;
+        
+        Long result;
+        if (pattern != null && file.isDirectory()) {
+            try {
+                result = getFingerprint(file, pattern);
+            } catch (IOException e) {
+                Logger.get().logExceptionWarning("Can't check whether " + file + " changed", e);
+                result = null;
+            }
+        } else {
+            result = file.lastModified();
+        }
+        return result;
+    }
+    
+    /**
+     * Calculates a fingerprint of the paths, sizes and last modification times of all files in the given directory
+     * (recursively) that match the given pattern.
+     * 
+     * @param directory The directory to calculate the fingerprint for.
+     * @param inputFiles The pattern for the files to consider.
+     * 
+     * @return The fingerprint of the directory.
+     * 
+     * @throws IOException If walking the directory fails.
+     */
+    private static long getFingerprint(@NonNull File directory, @NonNull Pattern inputFiles) throws IOException {
+        long[] fingerprint = {0};
+        Files.walkFileTree(directory.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String path = file.toAbsolutePath().toString();
+                    if (inputFiles.matcher(path).matches()) {
+                        long hash = path.hashCode() * 31L + attrs.size();
+                        hash = hash * 31L + attrs.lastModifiedTime().toMillis();
+                        // sum the mixed hashes, so that the order of the files does not matter
+                        fingerprint[0] += hash * 0x9E3779B97F4A7C15L;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    throw exc;
+                }
+                
+            });
+        return fingerprint[0];
+    }
+    
+    /**
+     * Returns the result for the given target, if it is stored and the target was not modified since.
+     * 
+     * @param target The target to get the result for.
+     * 
+     * @return The stored result; <code>null</code> if there is none.
+     */
+    public synchronized @Nullable ResultType get(@NonNull File target) {
+        ResultType result = null;
+        StoredResult<ResultType> entry = entries.get(target);
+        if (entry != null) {
+            Long stamp = getStamp(target);
+            if (stamp != null && entry.stamp == stamp) {
+                result = entry.result;
+            } else {
+                entries.remove(target);
+            }
+        }
+        
+        if (result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return result;
+    }
+    
+    /**
+     * Stores the result for the given target. Evicts the least recently used result, if the cache is full. The result
+     * is not stored if it can't be determined whether the target changed later on.
+     * 
+     * @param target The target that the result was created for.
+     * @param result The result to store.
+     */
+    public synchronized void put(@NonNull File target, @NonNull ResultType result) {
+        Long stamp = getStamp(target);
+        if (stamp != null) {
+            entries.put(target, new StoredResult<>(result, stamp));
+        }
+    }
+    
+    /**
+     * Returns the number of stored results.
+     * 
+     * @return The number of stored results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Returns the number of calls to {@link #get(File)} that returned a result.
+     * 
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Returns the number of calls to {@link #get(File)} that returned <code>null</code>.
+     * 
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * A stored result.
+     * 
+     * @param <ResultType> The type of result that the extractor produces.
+     */
+    private static final class StoredResult<ResultType> {
+        
+        private @NonNull ResultType result;
+        
+        private long stamp;
+        
+        /**
+         * Creates an entry.
+         * 
+         * @param result The stored result.
+         * @param stamp The stamp of the target when the result was stored.
+         */
+        private StoredResult(@NonNull ResultType result, long stamp) {
+            this.result = result;
+            this.stamp = stamp;
+        }
+        
+    }
+
+}
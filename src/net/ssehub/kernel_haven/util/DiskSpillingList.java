@@ -0,0 +1,456 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A list that writes its elements to disk once the used heap exceeds a given limit. The elements are stored in chunks
+ * of (initially) a fixed size. As long as the heap usage is below the limit, all chunks are kept in memory. Once it is
+ * exceeded, all chunks are serialized to temporary files. Reading a spilled element loads its chunk back from disk;
+ * the most recently loaded chunk is kept, so that sequential access (e.g. via {@link #iterator()}) reads each chunk
+ * only once.
+ * <p>
+ * All modifications of {@link java.util.List} are supported. Modifying a spilled chunk changes the loaded copy; it is
+ * written back to its file before another chunk is loaded. Inserting or removing elements in the middle changes the
+ * size of a single chunk only, so it is not slower than for a {@link java.util.LinkedList} of the same chunk. The
+ * elements must be serializable to be written to disk; if writing a chunk fails, all elements are kept in memory.
+ * All methods are synchronized, so a complete list can be passed to multiple components.
+ * </p>
+ * <p>
+ * The temporary files are deleted by {@link #clear()} or {@link #close()}, or when the JVM exits. Serializing this
+ * list writes a plain {@link ArrayList} with all elements.
+ * </p>
+ * 
+ * @param <T> The type of elements in this list.
+ * 
+ * @author Adam
+ */
+public class DiskSpillingList<T> extends AbstractList<T> implements Serializable, Closeable {
+    
+    /**
+     * The default number of elements per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+    
+    private static final long serialVersionUID = -3719183062563427019L;
+    
+    private static final Logger LOGGER = Logger.get();
+    
+    private @Nullable File spillDir;
+    
+    private int chunkSize;
+    
+    private double maxHeapUsage;
+    
+    /**
+     * All chunks; new elements are appended to the last one.
+     */
+    private @NonNull List<@NonNull Chunk<T>> chunks;
+    
+    private int size;
+    
+    private boolean spillingFailed;
+    
+    private int loadedChunkIndex;
+    
+    private @Nullable List<T> loadedChunk;
+    
+    /**
+     * Whether {@link #loadedChunk} was modified and needs to be written back to its file.
+     */
+    private boolean loadedChunkModified;
+    
+    /**
+     * The index of the chunk that was found last by {@link #findChunk(int)}. Speeds up sequential access.
+     */
+    private int foundChunkIndex;
+    
+    /**
+     * The index of the first element of the chunk at {@link #foundChunkIndex}.
+     */
+    private int foundChunkStart;
+    
+    /**
+     * Creates an empty list, configured by {@link DefaultSettings#ANALYSIS_SPILL_HEAP_USAGE} and
+     * {@link DefaultSettings#ANALYSIS_SPILL_DIR}.
+     * 
+     * @param config The configuration to read the settings from.
+     */
+    public DiskSpillingList(@NonNull Configuration config) {
+        this(config.getValue(DefaultSettings.ANALYSIS_SPILL_DIR), DEFAULT_CHUNK_SIZE,
+                config.getValue(DefaultSettings.ANALYSIS_SPILL_HEAP_USAGE) / 100.0);
+    }
+    
+    /**
+     * Creates an empty list, configured by {@link DefaultSettings#ANALYSIS_SPILL_HEAP_USAGE}. Analysis components use
+     * this to write to the spill directory of their pipeline, which is deleted once the pipeline is done (see
+     * {@link net.ssehub.kernel_haven.analysis.AnalysisComponent#getSpillDir()}).
+     * 
+     * @param spillDir The directory to write the temporary files to. <code>null</code> for the default temporary
+     *      directory of the system.
+     * @param config The configuration to read the settings from.
+     */
+    public DiskSpillingList(@Nullable File spillDir, @NonNull Configuration config) {
+        this(spillDir, DEFAULT_CHUNK_SIZE, config.getValue(DefaultSettings.ANALYSIS_SPILL_HEAP_USAGE) / 100.0);
+    }
+    
+    /**
+     * Creates an empty list.
+     * 
+     * @param spillDir The directory to write the temporary files to. <code>null</code> for the default temporary
+     *      directory of the system.
+     * @param chunkSize The number of elements per chunk. Must be positive.
+     * @param maxHeapUsage The fraction of the maximum heap size; if the used heap exceeds this, the chunks are written
+     *      to disk. 0 writes every complete chunk to disk, 1 (or more) keeps all chunks in memory.
+     * 
+     * @throws IllegalArgumentException If chunkSize is not positive.
+     */
+    public DiskSpillingList(@Nullable File spillDir, int chunkSize, double maxHeapUsage)
+            throws IllegalArgumentException {
+        
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        }
+        this.spillDir = spillDir;
+        this.chunkSize = chunkSize;
+        this.maxHeapUsage = maxHeapUsage;
+        this.chunks = new ArrayList<>();
+        this.loadedChunkIndex = -1;
+    }
+    
+    @Override
+    public synchronized boolean add(T element) {
+        Chunk<T> last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        List<T> elements = last != null ? last.elements : null;
+        if (last == null || elements == null || last.size >= chunkSize) {
+            elements = new ArrayList<>(chunkSize);
+            last = new Chunk<>(elements);
+            chunks.add(last);
+        }
+        
+        elements.add(element);
+        last.size++;
+        size++;
+        modCount++;
+        
+        if (last.size == chunkSize && !spillingFailed && Util.isHeapUsageExceeded(maxHeapUsage)) {
+            spillChunks();
+        }
+        return true;
+    }
+    
+    @Override
+    public synchronized void add(int index, T element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        
+        if (index == size) {
+            add(element);
+        } else {
+            int chunkIndex = findChunk(index);
+            getElementsForModification(chunkIndex).add(index - foundChunkStart, element);
+            chunks.get(chunkIndex).size++;
+            size++;
+            modCount++;
+        }
+    }
+    
+    @Override
+    public synchronized T set(int index, T element) {
+        checkIndex(index);
+        int chunkIndex = findChunk(index);
+        return getElementsForModification(chunkIndex).set(index - foundChunkStart, element);
+    }
+    
+    @Override
+    public synchronized T remove(int index) {
+        checkIndex(index);
+        int chunkIndex = findChunk(index);
+        T result = getElementsForModification(chunkIndex).remove(index - foundChunkStart);
+        chunks.get(chunkIndex).size--;
+        size--;
+        modCount++;
+        return result;
+    }
+    
+    @Override
+    public synchronized T get(int index) {
+        checkIndex(index);
+        int chunkIndex = findChunk(index);
+        return getElements(chunkIndex).get(index - foundChunkStart);
+    }
+    
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Checks that the given index points to an existing element.
+     * 
+     * @param index The index to check.
+     * 
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+    
+    /**
+     * Finds the chunk that contains the element at the given index. Afterwards, {@link #foundChunkStart} is the index
+     * of the first element of this chunk. The search starts at the chunk that was found last, so that sequential
+     * access does not need to iterate over all chunks.
+     * 
+     * @param index The index of an existing element.
+     * 
+     * @return The index of the chunk.
+     */
+    private int findChunk(int index) {
+        if (foundChunkIndex >= chunks.size() || index < foundChunkStart) {
+            foundChunkIndex = 0;
+            foundChunkStart = 0;
+        }
+        // modifications only change the size of the found chunk, so the start of it stays valid
+        while (index >= foundChunkStart + chunks.get(foundChunkIndex).size) {
+            foundChunkStart += chunks.get(foundChunkIndex).size;
+            foundChunkIndex++;
+        }
+        return foundChunkIndex;
+    }
+    
+    /**
+     * Returns the elements of the given chunk for reading.
+     * 
+     * @param chunkIndex The index of the chunk.
+     * 
+     * @return The elements of the chunk.
+     */
+    private @NonNull List<T> getElements(int chunkIndex) {
+        List<T> elements = chunks.get(chunkIndex).elements;
+        if (elements == null) {
+            elements = loadChunk(chunkIndex);
+        }
+        return elements;
+    }
+    
+    /**
+     * Returns the elements of the given chunk for modification. If the chunk is spilled, it will be written back to
+     * its file before another chunk is loaded.
+     * 
+     * @param chunkIndex The index of the chunk.
+     * 
+     * @return The modifiable elements of the chunk.
+     */
+    private @NonNull List<T> getElementsForModification(int chunkIndex) {
+        List<T> elements = getElements(chunkIndex);
+        if (chunks.get(chunkIndex).file != null) {
+            loadedChunkModified = true;
+        }
+        return elements;
+    }
+    
+    /**
+     * Reads a chunk that was written to disk. If the previously loaded chunk was modified, it is written back first.
+     * 
+     * @param chunkIndex The index of the chunk.
+     * 
+     * @return The elements of the chunk.
+     * 
+     * @throws IllegalStateException If reading the chunk fails.
+     */
+    @SuppressWarnings("unchecked")
+    private @NonNull List<T> loadChunk(int chunkIndex) throws IllegalStateException {
+        List<T> result = loadedChunk;
+        if (result == null || loadedChunkIndex != chunkIndex) {
+            storeLoadedChunk();
+            
+            File file = chunks.get(chunkIndex).file;
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                result = (List<T>) in.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Can't read results from " + file, e);
+            }
+            loadedChunk = result;
+            loadedChunkIndex = chunkIndex;
+        }
+        return result;
+    }
+    
+    /**
+     * Writes {@link #loadedChunk} back to its file, if it was modified. If this fails, the chunk is kept in memory.
+     */
+    private void storeLoadedChunk() {
+        List<T> elements = loadedChunk;
+        if (loadedChunkModified && elements != null) {
+            Chunk<T> chunk = chunks.get(loadedChunkIndex);
+            File file = chunk.file;
+            if (file != null && !writeChunk(file, elements)) {
+                chunk.elements = elements;
+                chunk.file = null;
+                file.delete();
+            }
+            loadedChunkModified = false;
+        }
+    }
+    
+    /**
+     * Writes all chunks that are still in memory to disk.
+     */
+    private void spillChunks() {
+        for (Chunk<T> chunk : chunks) {
+            List<T> elements = chunk.elements;
+            if (elements != null && !spillingFailed) {
+                File file = null;
+                try {
+                    file = File.createTempFile("spilled_results", ".chunk", spillDir);
+                } catch (IOException e) {
+                    LOGGER.logExceptionWarning("Can't write results to disk; keeping them in memory", e);
+                    spillingFailed = true;
+                }
+                
+                if (file != null) {
+                    if (writeChunk(file, elements)) {
+                        chunk.file = file;
+                        chunk.elements = null;
+                    } else {
+                        file.delete();
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Serializes the elements of a chunk to the given file. If this fails, no further chunks are written to disk.
+     * 
+     * @param file The file to write to.
+     * @param elements The elements to write.
+     * 
+     * @return Whether writing was successful.
+     */
+    private boolean writeChunk(@NonNull File file, @NonNull List<T> elements) {
+        boolean success = false;
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(elements);
+            success = true;
+        } catch (IOException e) {
+            LOGGER.logExceptionWarning("Can't write results to disk; keeping them in memory", e);
+            spillingFailed = true;
+        }
+        return success;
+    }
+    
+    /**
+     * Returns the number of chunks that are currently written to disk. Useful for test cases.
+     * 
+     * @return The number of spilled chunks.
+     */
+    synchronized int getNumSpilledChunks() {
+        int result = 0;
+        for (Chunk<T> chunk : chunks) {
+            if (chunk.file != null) {
+                result++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Removes all elements and deletes the temporary files.
+     */
+    @Override
+    public synchronized void clear() {
+        for (Chunk<T> chunk : chunks) {
+            File file = chunk.file;
+            if (file != null) {
+                file.delete();
+            }
+        }
+        chunks.clear();
+        size = 0;
+        loadedChunk = null;
+        loadedChunkIndex = -1;
+        loadedChunkModified = false;
+        foundChunkIndex = 0;
+        foundChunkStart = 0;
+        modCount++;
+    }
+    
+    /**
+     * Removes all elements and deletes the temporary files. Same as {@link #clear()}; allows to release the files
+     * once the consumer of this list is finished.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+    
+    /**
+     * Replaces this list by an {@link ArrayList} with the same elements when serializing.
+     * 
+     * @return An {@link ArrayList} with all elements of this list.
+     */
+    private synchronized Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+    
+    /**
+     * A chunk of elements. Either the elements or the file that they are written to is set.
+     * 
+     * @param <T> The type of elements.
+     */
+    private static final class Chunk<T> {
+        
+        private @Nullable List<T> elements;
+        
+        private @Nullable File file;
+        
+        private int size;
+        
+        /**
+         * Creates a chunk that is kept in memory.
+         * 
+         * @param elements The elements of this chunk.
+         */
+        private Chunk(@NonNull List<T> elements) {
+            this.elements = elements;
+            this.size = elements.size();
+        }
+        
+    }
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A pool of long-lived external worker processes. In contrast to {@link Util#executeProcess(ProcessBuilder, String)},
+ * which starts a new process for each call, the processes of this pool handle many requests each; thus, the startup
+ * cost of the process (e.g. of a JVM or a parser that loads its configuration) is only paid once per worker.
+ * <p>
+ * The workers communicate over a framed protocol on stdin and stdout: each request and each response is a 4-byte
+ * big-endian length, followed by that many bytes. For each request frame read from stdin, a worker has to write
+ * exactly one response frame to stdout (and flush it). A worker should exit when its stdin is closed. The stderr
+ * output of the workers is logged on debug level; it is drained by the shared pump thread of
+ * {@link StreamingProcess}, so no additional thread is started per worker process.
+ * </p>
+ * <p>
+ * Workers are started when they are first needed. Idle workers that have been used most recently are preferred, so
+ * that sequential requests are handled by a single warm worker. If a worker crashes or exceeds the timeout of a
+ * request, it is killed and the request fails with an {@link IOException}; a new process is started for the next
+ * request. This class is thread-safe; {@link #execute(byte[])} blocks until a worker is free.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class ExternalWorkerPool implements Closeable {
+    
+    private @NonNull ProcessBuilder processBuilder;
+    
+    private @NonNull String name;
+    
+    private long timeout;
+    
+    /**
+     * The idle workers; the most recently used one is first.
+     */
+    private @NonNull LinkedBlockingDeque<@NonNull Worker> idle;
+    
+    private @NonNull List<@NonNull Worker> workers;
+    
+    /**
+     * Added to {@link #idle} when this pool is closed, so that threads waiting for a free worker wake up.
+     */
+    private @NonNull Worker closedMarker;
+    
+    /**
+     * Kills workers that exceed the timeout of their request. A single thread for all workers.
+     */
+    private @NonNull ScheduledExecutorService watchdog;
+    
+    private @NonNull AtomicInteger numStarted;
+    
+    private volatile boolean closed;
+    
+    /**
+     * Creates a new pool. No processes are started yet.
+     * 
+     * @param processBuilder The builder for the worker processes. Each worker is started with this builder.
+     * @param name The name of the workers; used for logging only.
+     * @param numWorkers The maximum number of worker processes that run at the same time. Must be positive.
+     * @param timeout The maximum time (in milliseconds) that a worker may take for a single request. 0 if no timeout
+     *      should be used.
+     */
+    public ExternalWorkerPool(@NonNull ProcessBuilder processBuilder, @NonNull String name, int numWorkers,
+            long timeout) {
+        
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("Need at least one worker, got " + numWorkers);
+        }
+        
+        this.processBuilder = processBuilder;
+        this.name = name;
+        this.timeout = timeout;
+        this.idle = new LinkedBlockingDeque<>();
+        this.workers = new ArrayList<>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            Worker worker = new Worker(i);
+            workers.add(worker);
+            idle.addLast(worker);
+        }
+        this.closedMarker = new Worker(-1);
+        this.watchdog = notNull(Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread th = new Thread(runnable, name + "-Watchdog");
+            th.setDaemon(true);
+            return th;
+        }));
+        this.numStarted = new AtomicInteger();
+    }
+    
+    /**
+     * Sends the given request to a worker and returns its response. Blocks until a worker is free.
+     * 
+     * @param request The request to send.
+     * 
+     * @return The response of the worker.
+     * 
+     * @throws IOException If the worker crashes, exceeds the timeout or can't be started. An
+     *      {@link InterruptedIOException} if the thread is interrupted while waiting for a free worker.
+     * @throws IllegalStateException If this pool has already been closed (or is closed while waiting for a free
+     *      worker).
+     */
+    public byte @NonNull [] execute(byte @NonNull [] request) throws IOException, IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("Worker pool " + name + " is closed");
+        }
+        
+        Worker worker;
+        try {
+            worker = notNull(idle.takeFirst());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException exc = new InterruptedIOException("Interrupted while waiting for a free "
+                    + name + " worker");
+            exc.initCause(e);
+            throw exc;
+        }
+        
+        if (closed) {
+            // put the worker (or the closed marker) back, so that the next waiting thread wakes up, too
+            idle.addFirst(worker);
+            throw new IllegalStateException("Worker pool " + name + " is closed");
+        }
+        
+        byte[] result;
+        try {
+            result = worker.execute(request);
+        } finally {
+            idle.addFirst(worker);
+        }
+        return result;
+    }
+    
+    /**
+     * Sends the given request to a worker and returns its response. The request and response are encoded as UTF-8.
+     * 
+     * @param request The request to send.
+     * 
+     * @return The response of the worker.
+     * 
+     * @throws IOException If the worker crashes, exceeds the timeout or can't be started.
+     * @throws IllegalStateException If this pool has already been closed.
+     * 
+     * @see #execute(byte[])
+     */
+    public @NonNull String execute(@NonNull String request) throws IOException, IllegalStateException {
+        byte[] response = execute(notNull(request.getBytes(StandardCharsets.UTF_8)));
+        return new String(response, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Returns the number of worker processes that have been started so far, including restarts of crashed workers.
+     * 
+     * @return The number of started processes.
+     */
+    public int getNumStarted() {
+        return numStarted.get();
+    }
+    
+    /**
+     * Stops all worker processes. Closes their stdin and waits for them to exit; workers that do not exit within the
+     * timeout (or one second, if no timeout is set) are killed. Requests that are currently executed fail; threads
+     * that wait for a free worker get an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        idle.addFirst(closedMarker);
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+        watchdog.shutdownNow();
+    }
+    
+    /**
+     * A single worker slot. Holds the current process of the worker, if it is running.
+     */
+    private final class Worker {
+        
+        private int index;
+        
+        private @Nullable StreamingProcess process;
+        
+        private @Nullable DataOutputStream stdin;
+        
+        private @Nullable DataInputStream stdout;
+        
+        private volatile boolean timedOut;
+        
+        /**
+         * Creates a new worker slot without a running process.
+         * 
+         * @param index The index of this worker; used for logging only.
+         */
+        private Worker(int index) {
+            this.index = index;
+        }
+        
+        /**
+         * Starts the process of this worker, if it is not running. The stderr output of the process is logged by the
+         * pump of {@link StreamingProcess}.
+         * 
+         * @throws IOException If starting the process fails.
+         */
+        private synchronized void ensureStarted() throws IOException {
+            StreamingProcess process = this.process;
+            if (process == null || !process.getProcess().isAlive()) {
+                String workerName = name + " worker " + index;
+                process = new StreamingProcess(processBuilder, workerName, new StderrLogger(workerName), 0);
+                numStarted.incrementAndGet();
+                
+                this.process = process;
+                this.stdin = new DataOutputStream(new BufferedOutputStream(process.getStdin()));
+                this.stdout = new DataInputStream(new BufferedInputStream(process.getStdout()));
+            }
+        }
+        
+        /**
+         * Sends the request to the process of this worker and reads its response. Kills the process if the request
+         * fails, so that it is restarted for the next request.
+         * 
+         * @param request The request to send.
+         * 
+         * @return The response of the worker.
+         * 
+         * @throws IOException If the worker crashes, exceeds the timeout or can't be started.
+         */
+        private byte @NonNull [] execute(byte @NonNull [] request) throws IOException {
+            ensureStarted();
+            Process process = notNull(this.process).getProcess();
+            DataOutputStream stdin = notNull(this.stdin);
+            DataInputStream stdout = notNull(this.stdout);
+            
+            timedOut = false;
+            ScheduledFuture<?> kill = null;
+            if (timeout > 0) {
+                kill = watchdog.schedule(() -> {
+                    timedOut = true;
+                    process.destroyForcibly();
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
+            
+            byte[] response;
+            try {
+                stdin.writeInt(request.length);
+                stdin.write(request);
+                stdin.flush();
+                
+                int length = stdout.readInt();
+                if (length < 0) {
+                    throw new IOException("Got invalid response length " + length + " from " + name);
+                }
+                response = new byte[length];
+                stdout.readFully(response);
+                
+            } catch (IOException e) {
+                discard();
+                if (timedOut) {
+                    throw new IOException(name + " worker did not respond within " + timeout + " ms", e);
+                }
+                throw new IOException(name + " worker failed", e);
+                
+            } finally {
+                if (kill != null) {
+                    kill.cancel(false);
+                }
+            }
+            return response;
+        }
+        
+        /**
+         * Kills the process of this worker, so that a new one is started for the next request.
+         */
+        private synchronized void discard() {
+            StreamingProcess process = this.process;
+            if (process != null) {
+                process.close();
+            }
+            this.process = null;
+        }
+        
+        /**
+         * Closes the stdin of the process of this worker and waits for it to exit.
+         */
+        private synchronized void stop() {
+            StreamingProcess process = this.process;
+            DataOutputStream stdin = this.stdin;
+            if (process != null && stdin != null) {
+                try {
+                    stdin.close();
+                } catch (IOException e) {
+                    // process already died
+                }
+                Util.waitForProcess(process.getProcess(), timeout > 0 ? timeout : 1000);
+                process.close();
+            }
+            this.process = null;
+        }
+        
+    }
+    
+    /**
+     * Logs the stderr output of a worker process line by line on debug level. Written by the pump of
+     * {@link StreamingProcess}.
+     */
+    private static final class StderrLogger extends OutputStream {
+        
+        /**
+         * The maximum length of a line; longer lines are split, so that a worker can't fill the memory.
+         */
+        private static final int MAX_LINE_LENGTH = 8192;
+        
+        private @NonNull String workerName;
+        
+        private @NonNull ByteArrayOutputStream line;
+        
+        /**
+         * Creates a logger for the stderr of the given worker.
+         * 
+         * @param workerName The name of the worker; used as the prefix of the logged lines.
+         */
+        private StderrLogger(@NonNull String workerName) {
+            this.workerName = workerName;
+            this.line = new ByteArrayOutputStream();
+        }
+        
+        @Override
+        public void write(int value) {
+            if (value == '\n') {
+                logLine();
+            } else if (value != '\r') {
+                line.write(value);
+                if (line.size() >= MAX_LINE_LENGTH) {
+                    logLine();
+                }
+            }
+        }
+        
+        @Override
+        public void close() {
+            if (line.size() > 0) {
+                logLine();
+            }
+        }
+        
+        /**
+         * Logs the current line and starts a new one.
+         */
+        private void logLine() {
+            Logger.get().logDebug(workerName + ": " + new String(line.toByteArray(), Charset.defaultCharset()));
+            line.reset();
+        }
+        
+    }
+
+}
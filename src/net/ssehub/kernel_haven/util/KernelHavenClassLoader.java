@@ -33,7 +33,12 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
  * @author Adam
  */
 public class KernelHavenClassLoader extends URLClassLoader {
-          
+
+    static {
+        // allows the StaticClassLoader to load plugin classes in parallel (loadClass() locks per class name)
+        ClassLoader.registerAsParallelCapable();
+    }
+
     /**
      * Creates this class loader. This will be called by the JVM if <code>java.system.class.loader</code> is set to
      * this class.
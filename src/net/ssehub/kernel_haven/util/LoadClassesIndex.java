@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An index of the class names that the "loadClasses.txt" files in jars specify. The {@link StaticClassLoader} uses
+ * this to avoid opening jars that did not change since the last execution. Entries are identified by the absolute
+ * path of the jar and are only valid as long as the size and last modification time of the jar did not change.
+ * <p>
+ * The index is stored as a text file with one line per jar:
+ * <code>&lt;absolute path&gt; TAB &lt;size&gt; TAB &lt;last modified&gt; TAB &lt;class names, separated by
+ * spaces&gt;</code>.
+ * </p>
+ * 
+ * @author Adam
+ */
+class LoadClassesIndex {
+    
+    private static final Logger LOGGER = Logger.get();
+    
+    private @NonNull File file;
+    
+    private @NonNull Map<@NonNull String, @NonNull IndexEntry> stored;
+    
+    private @NonNull Map<@NonNull String, @NonNull IndexEntry> used;
+    
+    private boolean modified;
+    
+    /**
+     * Creates an index backed by the given file. If the file exists, the stored entries are read from it.
+     * 
+     * @param file The file that the index is stored in.
+     */
+    public LoadClassesIndex(@NonNull File file) {
+        this.file = file;
+        this.stored = new HashMap<>();
+        this.used = new TreeMap<>();
+        
+        if (file.isFile()) {
+            try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    readLine(line);
+                }
+            } catch (IOException e) {
+                LOGGER.logExceptionWarning("Can't read index of " + StaticClassLoader.LOAD_CLASSES_FILENAME
+                        + " files from " + file, e);
+                stored.clear();
+            }
+        }
+    }
+    
+    /**
+     * Parses a single line of the index file. Invalid lines are ignored.
+     * 
+     * @param line The line to parse.
+     */
+    private void readLine(@NonNull String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length == 4) {
+            try {
+                List<@NonNull String> classNames = new ArrayList<>();
+                for (String className : parts[3].split(" ")) {
+                    if (!className.isEmpty()) {
+                        classNames.add(className);
+                    }
+                }
+                stored.put(parts[0], new IndexEntry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), classNames));
+                
+            } catch (NumberFormatException e) {
+                LOGGER.logDebug("Ignoring invalid line in " + file + ": " + line);
+            }
+        }
+    }
+    
+    /**
+     * Returns the class names for the given jar, if the index contains an up-to-date entry for it.
+     * 
+     * @param jar The jar to get the class names for.
+     * 
+     * @return The class names specified in the jar; <code>null</code> if the jar has to be scanned.
+     */
+    public @Nullable List<@NonNull String> get(@NonNull File jar) {
+        String key = jar.getAbsolutePath();
+        IndexEntry entry = stored.get(key);
+        List<@NonNull String> result = null;
+        
+        if (entry != null && entry.size == jar.length() && entry.lastModified == jar.lastModified()) {
+            used.put(key, entry);
+            result = entry.classNames;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Stores the class names for the given jar, after it has been scanned.
+     * 
+     * @param jar The jar that was scanned.
+     * @param classNames The class names specified in the jar.
+     */
+    public void put(@NonNull File jar, @NonNull List<@NonNull String> classNames) {
+        used.put(jar.getAbsolutePath(), new IndexEntry(jar.length(), jar.lastModified(), classNames));
+        modified = true;
+    }
+    
+    /**
+     * Writes the index file, if any entry was added or is not used anymore. Only the entries that have been used (via
+     * {@link #get(File)} or {@link #put(File, List)}) are written, so jars that are not on the class path anymore are
+     * removed from the index.
+     * 
+     * @throws IOException If writing the file fails.
+     */
+    public void write() throws IOException {
+        if (modified || !used.keySet().equals(stored.keySet())) {
+            try (PrintWriter out = new PrintWriter(file)) {
+                for (Map.Entry<@NonNull String, @NonNull IndexEntry> entry : used.entrySet()) {
+                    IndexEntry value = entry.getValue();
+                    out.print(entry.getKey() + "\t" + value.size + "\t" + value.lastModified + "\t");
+                    out.println(String.join(" ", value.classNames));
+                }
+            }
+            stored = new HashMap<>(used);
+            modified = false;
+        }
+    }
+    
+    /**
+     * The stored class names of a single jar.
+     */
+    private static final class IndexEntry {
+        
+        private long size;
+        
+        private long lastModified;
+        
+        private @NonNull List<@NonNull String> classNames;
+        
+        /**
+         * Creates an entry.
+         * 
+         * @param size The size of the jar.
+         * @param lastModified The last modification time of the jar.
+         * @param classNames The class names specified in the jar.
+         */
+        private IndexEntry(long size, long lastModified, @NonNull List<@NonNull String> classNames) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classNames = classNames;
+        }
+        
+    }
+
+}
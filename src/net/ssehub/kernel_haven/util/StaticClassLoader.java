@@ -15,6 +15,8 @@
  */
 package net.ssehub.kernel_haven.util;
 
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -24,14 +26,20 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * Utility class for loading and executing a static initialization method of all classes specified in
@@ -62,6 +70,11 @@ public class StaticClassLoader {
     public static final String INIT_METHOD_NAME = "initialize";
     
     private static final Logger LOGGER = Logger.get();
+    
+    /**
+     * The classes that have been loaded by the last call to {@link #loadClasses(Configuration)}.
+     */
+    private static @NonNull List<@NonNull Class<?>> loadedClasses = new ArrayList<>();
 
     /**
      * Don't allow any instances.
@@ -70,13 +83,77 @@ public class StaticClassLoader {
     }
     
     /**
-     * Searches for all "loadClasses.txt" in all class loader URLs and loads the specified classes.
+     * Searches for all "loadClasses.txt" in all class loader URLs and loads the specified classes. If
+     * {@link DefaultSettings#PLUGINS_INDEX_FILE} is set, jars that did not change since the last execution are not
+     * opened again (see {@link LoadClassesIndex}).
+     * <p>
+     * The classes are first loaded (without running their static initializers) in parallel. The static initializers
+     * and initialize methods are then called one after another, since they usually register handlers in shared
+     * registries. The time needed for each jar (or class path directory) is logged.
+     * </p>
      * 
      * @param config The configuration to pass to the initialize methods.
      */
     public static void loadClasses(@NonNull Configuration config) {
         LOGGER.logInfo("Loading all classes specified in " + LOAD_CLASSES_FILENAME + " ...");
+        long tStart = System.nanoTime();
+        
+        File indexFile = config.getValue(DefaultSettings.PLUGINS_INDEX_FILE);
+        LoadClassesIndex index = indexFile != null ? new LoadClassesIndex(indexFile) : null;
+        
+        List<@NonNull Plugin> plugins = findPlugins(getClassPathFiles(), index);
+        
+        if (index != null) {
+            try {
+                index.write();
+            } catch (IOException e) {
+                LOGGER.logExceptionWarning("Can't write index of " + LOAD_CLASSES_FILENAME + " files to "
+                        + indexFile, e);
+            }
+        }
+        
+        List<@NonNull String> allClassNames = new ArrayList<>();
+        for (Plugin plugin : plugins) {
+            allClassNames.addAll(plugin.classNames);
+        }
+        preloadClasses(allClassNames);
+
+        List<@NonNull Class<?>> loaded = new ArrayList<>(allClassNames.size());
+        for (Plugin plugin : plugins) {
+            long tPluginStart = System.nanoTime();
+            for (@NonNull String className : plugin.classNames) {
+                try {
+                    LOGGER.logDebug("Loading class " + className + "...");
+                    
+                    // load the class
+                    // don't use ClassLoader.loadClass(), because it doesn't initialize
+                    Class<?> clazz = notNull(Class.forName(className, true, ClassLoader.getSystemClassLoader()));
+                    
+                    initialize(clazz, config, true);
+                    
+                    loaded.add(clazz);
+                } catch (ClassNotFoundException e) {
+                    LOGGER.logExceptionWarning("Can't load class name " + className + " specified in "
+                            + LOAD_CLASSES_FILENAME, e);
+                }
+            }
+            
+            LOGGER.logInfo(plugin.source.getName() + ": " + plugin.classNames.size() + " classes, "
+                    + (plugin.indexed ? "read from index" : "searched in " + toMillis(plugin.scanTime) + " ms")
+                    + ", initialized in " + toMillis(System.nanoTime() - tPluginStart) + " ms");
+        }
+        loadedClasses = loaded;
         
+        LOGGER.logInfo("Loaded " + loaded.size() + " classes specified in loadClasses.txt files in "
+                + toMillis(System.nanoTime() - tStart) + " ms");
+    }
+    
+    /**
+     * Returns the files and directories on the class path of the system class loader, excluding those of the JRE.
+     * 
+     * @return The class path entries.
+     */
+    private static @NonNull List<@NonNull File> getClassPathFiles() {
         URLClassLoader classLoader = (URLClassLoader) ClassLoader.getSystemClassLoader();
         
         String javaHome = System.getProperty("java.home");
@@ -99,45 +176,144 @@ public class StaticClassLoader {
             }
         }
         
-        Set<@NonNull String> classesToLoad = new HashSet<>();
+        return files;
+    }
+    
+    /**
+     * Finds the classes to load in the given class path entries. Each class is only returned once, for the first
+     * class path entry that specifies it. Class path entries that don't specify any classes are not returned.
+     * 
+     * @param files The class path entries to search in.
+     * @param index The index to look up unchanged jars in and to store newly searched jars in. May be
+     *      <code>null</code>, in which case all jars are opened.
+     * 
+     * @return The class path entries with the classes that they specify, in class path order.
+     */
+    private static @NonNull List<@NonNull Plugin> findPlugins(@NonNull List<@NonNull File> files,
+            @Nullable LoadClassesIndex index) {
+        
+        List<@NonNull Plugin> result = new ArrayList<>();
+        Set<@NonNull String> allClassNames = new HashSet<>();
+        
         for (File file : files) {
+            long tStart = System.nanoTime();
+            Set<@NonNull String> classNames = new LinkedHashSet<>();
+            boolean indexed = false;
             
             if (file.isDirectory()) {
-                findClassesToLoadInDir(file, classesToLoad);
+                findClassesToLoadInDir(file, classNames);
                 
             } else if (file.isFile() && file.getName().endsWith(".jar")) {
-                findClassesToLoadInJar(file, classesToLoad);
+                List<@NonNull String> fromIndex = index != null ? index.get(file) : null;
+                if (fromIndex != null) {
+                    classNames.addAll(fromIndex);
+                    indexed = true;
+                } else {
+                    findClassesToLoadInJar(file, classNames);
+                    if (index != null) {
+                        index.put(file, new ArrayList<>(classNames));
+                    }
+                }
+            }
+            
+            classNames.removeAll(allClassNames);
+            allClassNames.addAll(classNames);
+            
+            if (!classNames.isEmpty()) {
+                result.add(new Plugin(file, new ArrayList<>(classNames), indexed, System.nanoTime() - tStart));
             }
         }
-
-        int loaded = 0;
-        for (@NonNull String className : classesToLoad) {
-            try {
-                LOGGER.logDebug("Loading class " + className + "...");
-                
-                // load the class
-                // don't use ClassLoader.loadClass(), because it doesn't initialize
-                Class<?> clazz = Class.forName(className, true, ClassLoader.getSystemClassLoader());
-                
-                // try to call the initialize(Configuration) method
-                try {
-                    clazz.getMethod(INIT_METHOD_NAME, Configuration.class).invoke(null, config);
-                    
-                } catch (NoSuchMethodException e) {
-                    LOGGER.logWarning(clazz.getName() + " has no " + INIT_METHOD_NAME + "(Configuration) method");
-                    callLegacyMethod(clazz);
-                    
-                } catch (ReflectiveOperationException | SecurityException e) {
-                    LOGGER.logException("Can't execute " + INIT_METHOD_NAME + " for class " + clazz.getName(), e);
+        
+        return result;
+    }
+    
+    /**
+     * Loads the given classes in parallel, without initializing them. This reads and defines the classes, so that the
+     * following (sequential) initialization doesn't have to. Classes that can't be loaded are ignored here; they are
+     * reported when they are initialized.
+     * 
+     * @param classNames The names of the classes to load.
+     */
+    private static void preloadClasses(@NonNull List<@NonNull String> classNames) {
+        ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+        Queue<@NonNull String> queue = new ConcurrentLinkedQueue<>(classNames);
+        int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), classNames.size());
+        
+        List<@NonNull Thread> threads = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            Thread thread = new Thread(() -> {
+                String className;
+                while ((className = queue.poll()) != null) {
+                    try {
+                        Class.forName(className, false, classLoader);
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        // ignore, will be reported when initializing
+                    }
                 }
-                
-                loaded++;
-            } catch (ClassNotFoundException e) {
-                LOGGER.logExceptionWarning("Can't load class name " + className + " specified in loadClasses.txt", e);
-            }
+            }, "StaticClassLoader-" + i);
+            threads.add(thread);
+            thread.start();
         }
         
-        LOGGER.logInfo("Loaded " + loaded + " classes specified in loadClasses.txt files");
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                // ignore; the remaining classes are loaded while initializing
+            }
+        }
+    }
+    
+    /**
+     * Converts the given duration in nanoseconds to milliseconds.
+     * 
+     * @param nanos The duration in nanoseconds.
+     * 
+     * @return The duration in milliseconds.
+     */
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+    
+    /**
+     * Calls the initialize method of all classes that have been loaded by the last call to
+     * {@link #loadClasses(Configuration)} with the given configuration. This does not search the class path again;
+     * it is used when multiple configurations are executed in the same JVM (see
+     * {@link net.ssehub.kernel_haven.Daemon}). Classes that only have the legacy initialize() method without parameters
+     * are not initialized again.
+     * 
+     * @param config The configuration to pass to the initialize methods.
+     */
+    public static void initializeLoadedClasses(@NonNull Configuration config) {
+        List<@NonNull Class<?>> loaded = loadedClasses;
+        for (Class<?> clazz : loaded) {
+            initialize(clazz, config, false);
+        }
+        LOGGER.logInfo("Initialized " + loaded.size() + " classes specified in loadClasses.txt files");
+    }
+    
+    /**
+     * Calls the initialize method of the given class.
+     * 
+     * @param clazz The class to initialize.
+     * @param config The configuration to pass to the initialize method.
+     * @param legacy Whether the legacy initialize() method should be called, if the class has no
+     *      initialize(Configuration) method.
+     */
+    private static void initialize(@NonNull Class<?> clazz, @NonNull Configuration config, boolean legacy) {
+        // try to call the initialize(Configuration) method
+        try {
+            clazz.getMethod(INIT_METHOD_NAME, Configuration.class).invoke(null, config);
+            
+        } catch (NoSuchMethodException e) {
+            if (legacy) {
+                LOGGER.logWarning(clazz.getName() + " has no " + INIT_METHOD_NAME + "(Configuration) method");
+                callLegacyMethod(clazz);
+            }
+            
+        } catch (ReflectiveOperationException | SecurityException e) {
+            LOGGER.logException("Can't execute " + INIT_METHOD_NAME + " for class " + clazz.getName(), e);
+        }
     }
     
     /**
@@ -238,4 +414,35 @@ public class StaticClassLoader {
         }
     }
     
+    /**
+     * A class path entry (usually a plugin jar) with the classes to load that it specifies.
+     */
+    private static final class Plugin {
+        
+        private @NonNull File source;
+        
+        private @NonNull List<@NonNull String> classNames;
+        
+        private boolean indexed;
+        
+        private long scanTime;
+        
+        /**
+         * Creates a plugin.
+         * 
+         * @param source The jar or directory.
+         * @param classNames The names of the classes to load.
+         * @param indexed Whether the class names were read from the {@link LoadClassesIndex}.
+         * @param scanTime The time needed to find the class names, in nanoseconds.
+         */
+        private Plugin(@NonNull File source, @NonNull List<@NonNull String> classNames, boolean indexed,
+                long scanTime) {
+            this.source = source;
+            this.classNames = classNames;
+            this.indexed = indexed;
+            this.scanTime = scanTime;
+        }
+        
+    }
+    
 }
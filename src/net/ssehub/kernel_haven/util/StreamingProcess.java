@@ -0,0 +1,648 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A running external process, whose standard output is read directly by the caller (see {@link #getStdout()}). This
+ * allows parsing large outputs incrementally, instead of buffering them completely in memory. Created by
+ * {@link Util#executeProcessStreaming(ProcessBuilder, String, long)}.
+ * <p>
+ * The error output of all processes is drained by a single shared pump thread, so that processes do not block on a
+ * full stderr pipe. Only a bounded sample of it is kept: the first and the last {@link #STDERR_SAMPLE_SIZE} bytes (see
+ * {@link #getStderr()}). The pump thread also kills processes that exceed their timeout; thus, no additional threads
+ * are started per process. If the error output is written to a stream supplied by the caller (see
+ * {@link Util#executeProcess(ProcessBuilder, String, OutputStream, OutputStream, long)}), this stream is written by a
+ * pooled writer thread instead, so that a blocking or failing stream does not stall the pump.
+ * </p>
+ * <p>
+ * The caller has to read the standard output until its end (or {@link #close()} this object); otherwise, the process
+ * may block on a full stdout pipe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class StreamingProcess implements Closeable {
+    
+    /**
+     * The number of bytes that are kept from the start and from the end of the error output.
+     */
+    public static final int STDERR_SAMPLE_SIZE = 8192;
+    
+    private @NonNull Process process;
+    
+    private @NonNull String name;
+    
+    private @NonNull InputStream stdout;
+    
+    private @NonNull PumpedStream stderr;
+    
+    /**
+     * Starts the given process. Use {@link Util#executeProcessStreaming(ProcessBuilder, String, long)} instead.
+     * 
+     * @param processBuilder The process to start.
+     * @param name The name of this process; used for logging only.
+     * @param timeout The maximum time (in milliseconds) that the process may run until it is killed forcibly. 0 if
+     *      no timeout should be used.
+     * 
+     * @throws IOException If starting the process fails.
+     */
+    StreamingProcess(@NonNull ProcessBuilder processBuilder, @NonNull String name, long timeout) throws IOException {
+        this(processBuilder, name, new StderrSample(), timeout);
+    }
+    
+    /**
+     * Starts the given process and writes its error output to the given stream.
+     * 
+     * @param processBuilder The process to start.
+     * @param name The name of this process; used for logging only.
+     * @param stderr The stream to write the error output to. Closed by the pump when the error output is closed.
+     * @param timeout The maximum time (in milliseconds) that the process may run until it is killed forcibly. 0 if
+     *      no timeout should be used.
+     * 
+     * @throws IOException If starting the process fails.
+     */
+    StreamingProcess(@NonNull ProcessBuilder processBuilder, @NonNull String name, @NonNull OutputStream stderr,
+            long timeout) throws IOException {
+        
+        this.process = notNull(processBuilder.start());
+        this.name = name;
+        this.stdout = notNull(process.getInputStream());
+        this.stderr = new PumpedStream(process, name, notNull(process.getErrorStream()), stderr,
+                timeout > 0 ? System.currentTimeMillis() + timeout : 0);
+        Pump.register(this.stderr);
+    }
+    
+    /**
+     * Returns the standard output of the process. This stream is read directly from the process, without buffering
+     * the complete output.
+     * 
+     * @return The standard output of the process.
+     */
+    public @NonNull InputStream getStdout() {
+        return stdout;
+    }
+    
+    /**
+     * Returns the standard input of the process.
+     * 
+     * @return The standard input of the process.
+     */
+    @NonNull OutputStream getStdin() {
+        return notNull(process.getOutputStream());
+    }
+    
+    /**
+     * Returns the underlying process.
+     * 
+     * @return The process.
+     */
+    @NonNull Process getProcess() {
+        return process;
+    }
+    
+    /**
+     * Returns a reader for the standard output of the process. Uses the default charset.
+     * 
+     * @return A reader for the standard output of the process.
+     * 
+     * @see #getStdout()
+     */
+    public @NonNull BufferedReader getStdoutReader() {
+        return new BufferedReader(new InputStreamReader(stdout, Charset.defaultCharset()));
+    }
+    
+    /**
+     * Returns the sampled error output of the process. If the output is longer than two times
+     * {@link #STDERR_SAMPLE_SIZE}, the middle part is replaced by a line with the number of omitted bytes. Only
+     * complete after {@link #waitFor()} has returned.
+     * 
+     * @return The (sampled) error output.
+     */
+    public @NonNull String getStderr() {
+        String result = "";
+        if (stderr.out instanceof StderrSample) {
+            result = ((StderrSample) stderr.out).toString();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns whether the process has been killed, because it exceeded its timeout.
+     * 
+     * @return Whether the timeout has been reached.
+     */
+    public boolean isTimedOut() {
+        return stderr.timedOut;
+    }
+    
+    /**
+     * Waits until the process has finished and its error output has been drained.
+     * 
+     * @return The exit code of the process, or <code>null</code> if the process was killed because it exceeded the
+     *      timeout.
+     */
+    public @Nullable Integer waitFor() {
+        int exitCode = Util.waitForProcess(process);
+        stderr.awaitDone();
+        
+        Integer result = null;
+        if (!stderr.timedOut) {
+            result = exitCode;
+        }
+        return result;
+    }
+    
+    /**
+     * Kills the process, if it is still running, and closes its standard output.
+     */
+    @Override
+    public void close() {
+        if (process.isAlive()) {
+            Logger.get().logDebug("Killing process " + name);
+            process.destroyForcibly();
+        }
+        try {
+            stdout.close();
+        } catch (IOException e) {
+            // ignore, process is dead anyway
+        }
+    }
+    
+    /**
+     * The error stream of a process, which is drained by the {@link Pump}. The bytes are written to a
+     * {@link StderrSample} directly by the pump thread. Other (caller supplied) streams may block or fail; thus, the
+     * pump only appends the bytes to a buffer, which is written to the stream by one of the {@link #SINK_WRITERS}.
+     * If the buffer is full, the pump stops reading from this stream until it is written (only the process of this
+     * stream is slowed down). If writing fails, the remaining output of this process is discarded.
+     */
+    private static final class PumpedStream {
+        
+        /**
+         * The maximum number of bytes that are buffered for a caller supplied stream.
+         */
+        private static final int MAX_PENDING = 1024 * 1024;
+        
+        /**
+         * The threads that write the buffered output to caller supplied streams. Threads are only created while
+         * streams are being written concurrently, and are re-used for later processes.
+         */
+        private static final @NonNull ExecutorService SINK_WRITERS = notNull(Executors.newCachedThreadPool((task) -> {
+            Thread thread = new Thread(task, "ProcessOutputWriter");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        
+        private @NonNull Process process;
+        
+        private @NonNull String name;
+        
+        private @NonNull InputStream in;
+        
+        private @NonNull OutputStream out;
+        
+        /**
+         * The bytes that are not yet written to {@link #out}; <code>null</code> if {@link #out} is written directly
+         * by the pump thread.
+         */
+        private @Nullable ByteArrayOutputStream pending;
+        
+        /**
+         * The time (see {@link System#currentTimeMillis()}) when the process is killed; 0 if there is no timeout.
+         */
+        private long deadline;
+        
+        private volatile boolean timedOut;
+        
+        private boolean inputEnded;
+        
+        /**
+         * Whether a task that writes {@link #pending} is currently submitted to the {@link #SINK_WRITERS}.
+         */
+        private boolean writing;
+        
+        private boolean sinkFailed;
+        
+        private boolean done;
+        
+        /**
+         * Creates a new stream to be pumped.
+         * 
+         * @param process The process that the stream belongs to.
+         * @param name The name of the process; used for logging only.
+         * @param in The error stream of the process.
+         * @param out The stream to write to.
+         * @param deadline The time when the process is killed; 0 if there is no timeout.
+         */
+        private PumpedStream(@NonNull Process process, @NonNull String name, @NonNull InputStream in,
+                @NonNull OutputStream out, long deadline) {
+            
+            this.process = process;
+            this.name = name;
+            this.in = in;
+            this.out = out;
+            this.deadline = deadline;
+            if (!(out instanceof StderrSample)) {
+                this.pending = new ByteArrayOutputStream();
+            }
+        }
+        
+        /**
+         * Reads the currently available bytes, without blocking. Kills the process, if it exceeded its deadline.
+         * 
+         * @param buffer The buffer to use for reading.
+         * 
+         * @return The number of bytes that have been read; -1 if the stream has ended.
+         */
+        private int pump(byte @NonNull [] buffer) {
+            int result = 0;
+            try {
+                if (deadline != 0 && System.currentTimeMillis() > deadline && process.isAlive()) {
+                    timedOut = true;
+                    process.destroyForcibly();
+                }
+                
+                // check alive first: all output of a dead process is available in the pipe
+                boolean alive = process.isAlive();
+                if (!isPendingFull()) {
+                    int available = in.available();
+                    if (available > 0) {
+                        result = in.read(buffer, 0, Math.min(available, buffer.length));
+                        deliver(buffer, result);
+                    } else if (!alive) {
+                        result = -1;
+                    }
+                }
+                
+            } catch (IOException e) {
+                // killing a process closes its streams
+                if (!timedOut) {
+                    Logger.get().logExceptionDebug("Exception while reading process output", e);
+                }
+                result = -1;
+            }
+            return result;
+        }
+        
+        /**
+         * Returns whether the buffer for a caller supplied stream is full.
+         * 
+         * @return Whether no more bytes should be read until the buffer is written.
+         */
+        private synchronized boolean isPendingFull() {
+            ByteArrayOutputStream pending = this.pending;
+            return pending != null && pending.size() >= MAX_PENDING;
+        }
+        
+        /**
+         * Writes the read bytes to {@link #out}, or appends them to {@link #pending}.
+         * 
+         * @param buffer The buffer containing the bytes.
+         * @param length The number of bytes in the buffer.
+         * 
+         * @throws IOException If writing to {@link #out} directly fails.
+         */
+        private void deliver(byte @NonNull [] buffer, int length) throws IOException {
+            ByteArrayOutputStream pending = this.pending;
+            if (pending == null) {
+                out.write(buffer, 0, length);
+            } else {
+                synchronized (this) {
+                    if (!sinkFailed) {
+                        pending.write(buffer, 0, length);
+                        scheduleWrite();
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Submits a task that writes {@link #pending}, if none is submitted yet. Must be called while holding the
+         * lock of this object.
+         */
+        private void scheduleWrite() {
+            if (!writing) {
+                writing = true;
+                SINK_WRITERS.execute(this::writePending);
+            }
+        }
+        
+        /**
+         * Writes {@link #pending} to {@link #out} until it is empty. Closes {@link #out} if the input has ended.
+         * Executed by one of the {@link #SINK_WRITERS}.
+         */
+        private void writePending() {
+            ByteArrayOutputStream pending = notNull(this.pending);
+            boolean close = false;
+            byte[] chunk;
+            do {
+                chunk = null;
+                synchronized (this) {
+                    if (pending.size() > 0) {
+                        chunk = pending.toByteArray();
+                        pending.reset();
+                    } else if (inputEnded) {
+                        close = true;
+                    } else {
+                        writing = false;
+                    }
+                }
+                
+                if (chunk != null) {
+                    writeToSink(chunk);
+                }
+            } while (chunk != null);
+            
+            if (close) {
+                closeSink();
+                markDone();
+            }
+        }
+        
+        /**
+         * Writes the given bytes to the caller supplied stream. If this fails, all further output is discarded.
+         * 
+         * @param chunk The bytes to write.
+         */
+        private void writeToSink(byte @NonNull [] chunk) {
+            try {
+                out.write(chunk);
+            } catch (IOException e) {
+                sinkFailed(e);
+                
+                // CHECKSTYLE:OFF
+            } catch (RuntimeException e) {
+                // CHECKSTYLE:ON
+                // a faulty stream of one caller must not affect the output of other processes
+                sinkFailed(e);
+            }
+        }
+        
+        /**
+         * Closes the caller supplied stream.
+         */
+        private void closeSink() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Logger.get().logException("Exception while closing output of process " + name, e);
+                
+                // CHECKSTYLE:OFF
+            } catch (RuntimeException e) {
+                // CHECKSTYLE:ON
+                Logger.get().logException("Exception while closing output of process " + name, e);
+            }
+        }
+        
+        /**
+         * Logs that writing to the caller supplied stream failed, and discards all further output.
+         * 
+         * @param exc The exception that writing failed with.
+         */
+        private void sinkFailed(@NonNull Exception exc) {
+            Logger.get().logException("Exception while writing output of process " + name
+                    + "; discarding remaining output", exc);
+            synchronized (this) {
+                sinkFailed = true;
+                notNull(pending).reset();
+            }
+        }
+        
+        /**
+         * Called by the pump after the stream has ended. Closes the streams and wakes up the threads waiting in
+         * {@link #awaitDone()}; for caller supplied streams, this happens after all buffered bytes are written.
+         */
+        private void finish() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                Logger.get().logException("Exception while closing process output", e);
+            }
+            
+            if (pending == null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Logger.get().logException("Exception while closing process output", e);
+                }
+                markDone();
+                
+            } else {
+                synchronized (this) {
+                    inputEnded = true;
+                    scheduleWrite();
+                }
+            }
+        }
+        
+        /**
+         * Marks this stream as done and wakes up the threads waiting in {@link #awaitDone()}.
+         */
+        private synchronized void markDone() {
+            done = true;
+            notifyAll();
+        }
+        
+        /**
+         * Waits until the stream has ended.
+         */
+        private synchronized void awaitDone() {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // wait again
+                }
+            }
+        }
+        
+    }
+    
+    /**
+     * The single daemon thread that drains the error streams of all {@link StreamingProcess}es and enforces their
+     * timeouts. Polls all streams; sleeps shortly if no stream had data, and waits if no streams are registered. If
+     * the thread dies unexpectedly, all its streams are finished and a new pump is started for the next process.
+     */
+    private static final class Pump extends Thread {
+        
+        private static final long POLL_INTERVAL = 5;
+        
+        private static @Nullable Pump instance;
+        
+        private @NonNull List<@NonNull PumpedStream> streams;
+        
+        /**
+         * Creates the pump thread.
+         */
+        private Pump() {
+            super("ProcessStreamPump");
+            setDaemon(true);
+            this.streams = new ArrayList<>();
+        }
+        
+        /**
+         * Registers the given stream at the pump. Starts the pump thread, if it is not running yet.
+         * 
+         * @param stream The stream to pump until it ends.
+         */
+        private static synchronized void register(@NonNull PumpedStream stream) {
+            Pump pump = instance;
+            if (pump == null) {
+                pump = new Pump();
+                instance = pump;
+                pump.start();
+            }
+            synchronized (pump) {
+                pump.streams.add(stream);
+                pump.notifyAll();
+            }
+        }
+        
+        @Override
+        public void run() {
+            try {
+                pumpStreams();
+            } finally {
+                // only reached if the pump died unexpectedly; don't leave the waiting processes hanging
+                synchronized (Pump.class) {
+                    if (instance == this) {
+                        instance = null;
+                    }
+                }
+                List<@NonNull PumpedStream> remaining;
+                synchronized (this) {
+                    remaining = new ArrayList<>(streams);
+                    streams.clear();
+                }
+                for (PumpedStream stream : remaining) {
+                    stream.finish();
+                }
+            }
+        }
+        
+        /**
+         * Pumps all registered streams, forever.
+         */
+        private void pumpStreams() {
+            byte[] buffer = new byte[8192];
+            List<@NonNull PumpedStream> current = new ArrayList<>();
+            while (true) {
+                synchronized (this) {
+                    while (streams.isEmpty()) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            // wait again
+                        }
+                    }
+                    current.clear();
+                    current.addAll(streams);
+                }
+                
+                boolean readSomething = false;
+                for (PumpedStream stream : current) {
+                    int read = stream.pump(buffer);
+                    if (read > 0) {
+                        readSomething = true;
+                    } else if (read < 0) {
+                        synchronized (this) {
+                            streams.remove(stream);
+                        }
+                        stream.finish();
+                    }
+                }
+                
+                if (!readSomething) {
+                    try {
+                        Thread.sleep(POLL_INTERVAL);
+                    } catch (InterruptedException e) {
+                        // continue polling
+                    }
+                }
+            }
+        }
+        
+    }
+    
+    /**
+     * Keeps the first and the last {@link StreamingProcess#STDERR_SAMPLE_SIZE} bytes written to it.
+     */
+    private static final class StderrSample extends OutputStream {
+        
+        private byte @NonNull [] head = new byte[STDERR_SAMPLE_SIZE];
+        
+        /**
+         * Ring buffer of the last bytes after the head is full.
+         */
+        private byte @NonNull [] tail = new byte[STDERR_SAMPLE_SIZE];
+        
+        private long total;
+        
+        @Override
+        public synchronized void write(int value) {
+            if (total < STDERR_SAMPLE_SIZE) {
+                head[(int) total] = (byte) value;
+            } else {
+                tail[(int) ((total - STDERR_SAMPLE_SIZE) % STDERR_SAMPLE_SIZE)] = (byte) value;
+            }
+            total++;
+        }
+        
+        @Override
+        public synchronized void write(byte @NonNull [] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(buffer[i]);
+            }
+        }
+        
+        @Override
+        public synchronized @NonNull String toString() {
+            StringBuilder result = new StringBuilder();
+            Charset charset = Charset.defaultCharset();
+            result.append(new String(head, 0, (int) Math.min(total, STDERR_SAMPLE_SIZE), charset));
+            
+            long tailLength = total - STDERR_SAMPLE_SIZE;
+            if (tailLength > STDERR_SAMPLE_SIZE) {
+                result.append("\n[... ").append(tailLength - STDERR_SAMPLE_SIZE).append(" bytes omitted ...]\n");
+                int start = (int) (tailLength % STDERR_SAMPLE_SIZE);
+                result.append(new String(tail, start, STDERR_SAMPLE_SIZE - start, charset));
+                result.append(new String(tail, 0, start, charset));
+            } else if (tailLength > 0) {
+                result.append(new String(tail, 0, (int) tailLength, charset));
+            }
+            return notNull(result.toString());
+        }
+        
+    }
+
+}
@@ -27,9 +27,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import net.ssehub.kernel_haven.SetUpException;
@@ -48,6 +54,19 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
  */
 public final class Util {
 
+    /**
+     * The memory pools of the heap; used by {@link #isHeapUsageExceeded(double)}.
+     */
+    private static final @NonNull List<@NonNull MemoryPoolMXBean> HEAP_POOLS = new ArrayList<>();
+    
+    static {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                HEAP_POOLS.add(notNull(pool));
+            }
+        }
+    }
+    
     /**
      * Cache for result of {@link #determineOS()}.
      */
@@ -254,37 +273,30 @@ public final class Util {
     public static boolean executeProcess(@NonNull ProcessBuilder processBuilder, @NonNull String name, long timeout)
             throws IOException {
         
-        Process process = processBuilder.start();
-
-        BufferThread th1 = new BufferThread(notNull(process.getInputStream()));
-        BufferThread th2 = new BufferThread(notNull(process.getErrorStream()));
-        th1.start();
-        th2.start();
-
-        Integer returnValue = waitForProcess(process, timeout);
-
-        try {
-            th1.join();
-            th2.join();
-        } catch (InterruptedException e) {
-            // This never happens
-        }
+        ByteArrayOutputStream stdoutBuffer = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderrBuffer = new ByteArrayOutputStream();
+        
+        boolean success = executeProcess(processBuilder, name, stdoutBuffer, stderrBuffer, timeout);
 
-        String stdout = th1.content;
-        if (stdout != null && !stdout.equals("")) {
+        String stdout = stdoutBuffer.toString();
+        if (!stdout.equals("")) {
             Logger.get().logDebug(notNull(("Stdout:\n" + stdout).split("\n")));
         }
-        String stderr = th2.content;
-        if (stderr != null && !stderr.equals("")) {
+        String stderr = stderrBuffer.toString();
+        if (!stderr.equals("")) {
             Logger.get().logDebug(notNull(("Stderr:\n" + stderr).split("\n")));
         }
 
-        return null != returnValue && returnValue == 0;
+        return success;
     }
 
     /**
      * Runs the process until it is finished. Writes the output of stdout and stderr to the given streams. The streams
      * are closed when the output of the process is closed.
+     * <p>
+     * The standard output is copied in the calling thread; the error output is copied by the shared pump thread of
+     * {@link StreamingProcess}.
+     * </p>
      * 
      * @param processBuilder
      *            The process to start and run. Must not be null.
@@ -306,74 +318,51 @@ public final class Util {
     public static boolean executeProcess(@NonNull ProcessBuilder processBuilder, @NonNull String name,
             @NonNull OutputStream stdout, @NonNull OutputStream stderr, long timeout) throws IOException {
         
-        Process process = processBuilder.start();
-
-        BufferThread th1 = new BufferThread(notNull(process.getInputStream()), stdout);
-        BufferThread th2 = new BufferThread(notNull(process.getErrorStream()), stderr);
-        th1.start();
-        th2.start();
-
-        Integer returnValue = waitForProcess(process, timeout);
-
-        try {
-            th1.join();
-            th2.join();
-        } catch (InterruptedException e) {
-            // This never happens
+        Integer returnValue;
+        try (StreamingProcess process = new StreamingProcess(processBuilder, name, stderr, timeout)) {
+            try {
+                copyStream(process.getStdout(), stdout);
+            } finally {
+                stdout.close();
+            }
+            returnValue = process.waitFor();
         }
 
         return returnValue != null && returnValue == 0;
     }
-
+    
     /**
-     * Buffer that reads the output stream of a process. This is needed so that the output buffer for stdout/stderr of
-     * the process doesn't get full; this would cause the process to halt (deadlock).
+     * Starts the process and hands its standard output to the caller as a live stream, so that it can be parsed
+     * incrementally instead of buffering the complete output. Only a bounded sample of the error output is kept.
+     * Usage could look like this:
+     * <pre>
+     * try (StreamingProcess process = Util.executeProcessStreaming(builder, "Parser", 0)) {
+     *     BufferedReader out = process.getStdoutReader();
+     *     // parse out until it ends
+     *     
+     *     Integer exitCode = process.waitFor();
+     * }
+     * </pre>
+     * 
+     * @param processBuilder
+     *            The process to start. Must not be null.
+     * @param name
+     *            The name of this process; used for logging only. Must not be null.
+     * @param timeout
+     *            The maximum time (in milliseconds) that the process may run until it is killed forcibly. 0 if no
+     *            timeout should be used.
+     * 
+     * @return The running process.
+     * 
+     * @throws IOException
+     *             If starting the process fails.
+     * 
+     * @see StreamingProcess
      */
-    private static class BufferThread extends Thread {
-
-        private @NonNull InputStream in;
-
-        private @Nullable OutputStream out;
-
-        private String content;
-
-        /**
-         * Creates a new bufferthread to read from the given stream.
-         * 
-         * @param in
-         *            The stream to read.
-         */
-        public BufferThread(@NonNull InputStream in) {
-            this.in = in;
-        }
-
-        /**
-         * Creates a new bufferthread to read from the given stream and write into the given stream.
-         * 
-         * @param in
-         *            The stream to read from.
-         * @param out
-         *            The stream to write to.
-         */
-        public BufferThread(@NonNull InputStream in, @NonNull OutputStream out) {
-            this.in = in;
-            this.out = out;
-        }
-
-        @Override
-        public void run() {
-            try {
-                OutputStream out = this.out;
-                if (out == null) {
-                    content = readStream(in);
-                } else {
-                    copyStream(in, out);
-                    out.close();
-                }
-            } catch (IOException e) {
-                Logger.get().logException("Exception while reading process output", e);
-            }
-        }
+    public static @NonNull StreamingProcess executeProcessStreaming(@NonNull ProcessBuilder processBuilder,
+            @NonNull String name, long timeout) throws IOException {
+        
+        return new StreamingProcess(processBuilder, name, timeout);
     }
 
     /**
@@ -575,6 +564,52 @@ public final class Util {
         return result;
     }
     
+    /**
+     * Checks whether the used heap of this JVM exceeds the given fraction of the maximum heap size. Components that
+     * collect many results use this to decide when to write them to disk.
+     * <p>
+     * The used heap also contains garbage that was not collected yet. Thus, if it exceeds the given fraction, the heap
+     * usage after the last garbage collection is compared instead: for each memory pool of the heap that supports it,
+     * the usage after its last collection (see {@link MemoryPoolMXBean#getCollectionUsage()}) is used, otherwise its
+     * current usage. This never triggers a garbage collection itself.
+     * </p>
+     * 
+     * @param maxHeapUsage The fraction of the maximum heap size, e.g. 0.75. A value of 1 or above never is exceeded,
+     *      a value of 0 or below always is.
+     * 
+     * @return Whether the used heap exceeds the given fraction.
+     */
+    public static boolean isHeapUsageExceeded(double maxHeapUsage) {
+        Runtime runtime = Runtime.getRuntime();
+        double limit = runtime.maxMemory() * maxHeapUsage;
+        
+        boolean exceeded = maxHeapUsage <= 0 || runtime.totalMemory() - runtime.freeMemory() >= limit;
+        if (exceeded && maxHeapUsage > 0 && maxHeapUsage < 1 && !HEAP_POOLS.isEmpty()) {
+            exceeded = getHeapUsageAfterGc() >= limit;
+        }
+        return exceeded;
+    }
+    
+    /**
+     * Sums the heap usage after the last garbage collection of all memory pools of the heap. For pools that don't
+     * report this, their current usage is used.
+     * 
+     * @return The used heap after the last garbage collection, in bytes.
+     */
+    private static long getHeapUsageAfterGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : HEAP_POOLS) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null) {
+                usage = pool.getUsage();
+            }
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+    
     /**
      * Formats a duration of time to a human-readable string.
      * 
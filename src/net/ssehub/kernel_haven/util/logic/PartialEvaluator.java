@@ -0,0 +1,377 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Applies a partial assignment of many variables to a {@link Formula} in a single pass. In contrast to the
+ * {@link VariableValueReplacer}, which replaces a single variable per pass:
+ * <ul>
+ *      <li>Variables can be assigned by exact name (a map) and by name prefix (stored in a trie).</li>
+ *      <li>Constants are folded on the fly: <code>NOT(true) -&gt; false</code>, <code>false AND a -&gt; false</code>,
+ *      <code>true AND a -&gt; a</code>, <code>true OR a -&gt; true</code>, <code>false OR a -&gt; a</code>.</li>
+ *      <li>Unaffected sub-formulas are not copied; the original instances are returned instead. If a formula
+ *      contains neither assigned variables nor constants, the result is the same instance as the input.</li>
+ *      <li>Results for conjunctions and disjunctions are cached per formula instance, so sub-formulas that are
+ *      shared between many formulas (e.g. parent conditions in presence conditions) are only evaluated once. The
+ *      cache is bounded: it is discarded before a call to {@link #evaluate(Formula)} once it holds more than
+ *      {@value #MAX_CACHE_SIZE} results.</li>
+ * </ul>
+ * <p>
+ * If the assignment is given as {@link BitSet}s over the IDs of a {@link VariableSupportCache}, then sub-formulas
+ * whose support does not contain any assigned variable are skipped without visiting them.
+ * </p>
+ * <p>
+ * The cached results are discarded when values are assigned via {@link #setValue(String, boolean)} or
+ * {@link #setPrefixValue(String, boolean)}. If the map or {@link BitSet}s passed to the constructor are modified
+ * afterwards, {@link #clear()} has to be called. This class is not thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class PartialEvaluator implements IFormulaVisitor<@NonNull Formula> {
+    
+    /**
+     * The maximum number of cached results that are kept between calls to {@link #evaluate(Formula)}.
+     */
+    static final int MAX_CACHE_SIZE = 1 << 16;
+    
+    private @NonNull Map<@NonNull String, Boolean> exactValues;
+    
+    private @Nullable PrefixNode prefixes;
+    
+    private @Nullable VariableSupportCache supportCache;
+    
+    private @Nullable BitSet assigned;
+    
+    private @Nullable BitSet values;
+    
+    private @NonNull Map<@NonNull Formula, @NonNull Formula> cache;
+    
+    private int maxCacheSize = MAX_CACHE_SIZE;
+    
+    /**
+     * Creates a new evaluator with the given assignment of exact variable names.
+     * 
+     * @param values The values of the assigned variables. Not copied.
+     */
+    public PartialEvaluator(@NonNull Map<@NonNull String, Boolean> values) {
+        this.exactValues = values;
+        this.cache = new IdentityHashMap<>();
+    }
+    
+    /**
+     * Creates a new evaluator without any assignment. Use {@link #setValue(String, boolean)} and
+     * {@link #setPrefixValue(String, boolean)} to assign values.
+     */
+    public PartialEvaluator() {
+        this(new HashMap<>());
+    }
+    
+    /**
+     * Creates a new evaluator with an assignment given as {@link BitSet}s over the variable IDs of the given
+     * {@link VariableSupportCache}.
+     * 
+     * @param supportCache The dictionary of variable IDs. Also used to skip sub-formulas that contain no assigned
+     *      variables.
+     * @param assigned The IDs of the variables that have a value. Not copied.
+     * @param values The values of the variables; only bits that are set in <code>assigned</code> are considered.
+     *      Not copied.
+     */
+    public PartialEvaluator(@NonNull VariableSupportCache supportCache, @NonNull BitSet assigned,
+            @NonNull BitSet values) {
+        
+        this();
+        this.supportCache = supportCache;
+        this.assigned = assigned;
+        this.values = values;
+    }
+    
+    /**
+     * Assigns a value to the variable with the given name. Takes precedence over prefix assignments.
+     * 
+     * @param variable The name of the variable.
+     * @param value The value of the variable.
+     */
+    public void setValue(@NonNull String variable, boolean value) {
+        exactValues.put(variable, value);
+        cache.clear();
+    }
+    
+    /**
+     * Assigns a value to all variables whose name starts with the given prefix (like <code>exactMatch=false</code>
+     * in {@link VariableValueReplacer}). If several prefixes match a variable, the longest one is used.
+     * 
+     * @param prefix The prefix of the variable names.
+     * @param value The value of the variables.
+     */
+    public void setPrefixValue(@NonNull String prefix, boolean value) {
+        PrefixNode node = prefixes;
+        if (node == null) {
+            node = new PrefixNode();
+            prefixes = node;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrCreateChild(prefix.charAt(i));
+        }
+        node.value = value;
+        cache.clear();
+    }
+    
+    /**
+     * Evaluates the given formula with the assignment of this evaluator.
+     * 
+     * @param formula The formula to evaluate.
+     * 
+     * @return The partially evaluated formula. {@link True#INSTANCE} or {@link False#INSTANCE} if the formula is
+     *      fully determined by the assignment. The same instance as the input, if it contains neither assigned
+     *      variables nor constants.
+     */
+    public @NonNull Formula evaluate(@NonNull Formula formula) {
+        if (cache.size() > maxCacheSize) {
+            cache.clear();
+        }
+        return formula.accept(this);
+    }
+    
+    /**
+     * Changes the maximum number of cached results that are kept between calls to {@link #evaluate(Formula)}.
+     * 
+     * @param maxCacheSize The maximum number of cached results. Defaults to {@link #MAX_CACHE_SIZE}.
+     */
+    void setMaxCacheSize(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+    
+    /**
+     * Removes all cached results. Must be called if the map or {@link BitSet}s passed to the constructor are modified
+     * after formulas have been evaluated.
+     */
+    public void clear() {
+        cache.clear();
+    }
+    
+    /**
+     * Returns the value of the given variable.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The assigned value, or <code>null</code> if the variable is not assigned.
+     */
+    private @Nullable Boolean getValue(@NonNull String name) {
+        Boolean result = exactValues.get(name);
+        
+        BitSet assigned = this.assigned;
+        VariableSupportCache supportCache = this.supportCache;
+        if (result == null && assigned != null && supportCache != null) {
+            int id = supportCache.getVariableId(name);
+            if (id != -1 && assigned.get(id)) {
+                BitSet values = this.values;
+                result = values != null && values.get(id);
+            }
+        }
+        
+        if (result == null) {
+            result = getPrefixValue(name);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Returns the value of the longest assigned prefix of the given variable name.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The value of the longest matching prefix, or <code>null</code> if no prefix matches.
+     */
+    private @Nullable Boolean getPrefixValue(@NonNull String name) {
+        Boolean result = null;
+        PrefixNode node = prefixes;
+        int i = 0;
+        while (node != null) {
+            if (node.value != null) {
+                result = node.value;
+            }
+            node = i < name.length() ? node.getChild(name.charAt(i)) : null;
+            i++;
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the given formula can be skipped, because none of its variables is assigned. Only possible if
+     * the assignment is given as {@link BitSet}s and no other values are assigned.
+     * 
+     * @param formula The formula to check.
+     * 
+     * @return Whether the formula is not affected by the assignment.
+     */
+    private boolean isUnaffected(@NonNull Formula formula) {
+        BitSet assigned = this.assigned;
+        VariableSupportCache supportCache = this.supportCache;
+        boolean onlyBitSets = exactValues.isEmpty() && prefixes == null;
+        boolean unaffected = false;
+        if (onlyBitSets && assigned != null && supportCache != null) {
+            unaffected = !supportCache.getSupport(formula).intersects(assigned);
+        }
+        return unaffected;
+    }
+    
+    @Override
+    public @NonNull Formula visitFalse(@NonNull False falseConstant) {
+        return falseConstant;
+    }
+    
+    @Override
+    public @NonNull Formula visitTrue(@NonNull True trueConstant) {
+        return trueConstant;
+    }
+    
+    @Override
+    public @NonNull Formula visitVariable(@NonNull Variable variable) {
+        Boolean value = getValue(variable.getName());
+        Formula result;
+        if (value == null) {
+            result = variable;
+        } else {
+            result = value ? True.INSTANCE : False.INSTANCE;
+        }
+        return result;
+    }
+    
+    @Override
+    public @NonNull Formula visitNegation(@NonNull Negation formula) {
+        Formula nested = formula.getFormula().accept(this);
+        Formula result;
+        if (nested == formula.getFormula()) {
+            result = formula;
+        } else if (nested == True.INSTANCE) {
+            result = False.INSTANCE;
+        } else if (nested == False.INSTANCE) {
+            result = True.INSTANCE;
+        } else {
+            result = new Negation(nested);
+        }
+        return result;
+    }
+    
+    @Override
+    public @NonNull Formula visitDisjunction(@NonNull Disjunction formula) {
+        Formula result = cache.get(formula);
+        if (result == null) {
+            if (isUnaffected(formula)) {
+                result = formula;
+            } else {
+                Formula left = formula.getLeft().accept(this);
+                Formula right = left == True.INSTANCE ? left : formula.getRight().accept(this);
+                
+                if (left == True.INSTANCE || right == True.INSTANCE) {
+                    result = True.INSTANCE;
+                } else if (left == False.INSTANCE) {
+                    result = right;
+                } else if (right == False.INSTANCE) {
+                    result = left;
+                } else if (left == formula.getLeft() && right == formula.getRight()) {
+                    result = formula;
+                } else {
+                    result = new Disjunction(left, right);
+                }
+            }
+            cache.put(formula, result);
+        }
+        return result;
+    }
+    
+    @Override
+    public @NonNull Formula visitConjunction(@NonNull Conjunction formula) {
+        Formula result = cache.get(formula);
+        if (result == null) {
+            if (isUnaffected(formula)) {
+                result = formula;
+            } else {
+                Formula left = formula.getLeft().accept(this);
+                Formula right = left == False.INSTANCE ? left : formula.getRight().accept(this);
+                
+                if (left == False.INSTANCE || right == False.INSTANCE) {
+                    result = False.INSTANCE;
+                } else if (left == True.INSTANCE) {
+                    result = right;
+                } else if (right == True.INSTANCE) {
+                    result = left;
+                } else if (left == formula.getLeft() && right == formula.getRight()) {
+                    result = formula;
+                } else {
+                    result = new Conjunction(left, right);
+                }
+            }
+            cache.put(formula, result);
+        }
+        return result;
+    }
+    
+    /**
+     * A node in the trie of assigned prefixes.
+     */
+    private static final class PrefixNode {
+        
+        private @Nullable Map<Character, @NonNull PrefixNode> children;
+        
+        private @Nullable Boolean value;
+        
+        /**
+         * Returns the child for the given character.
+         * 
+         * @param c The next character.
+         * 
+         * @return The child node, or <code>null</code> if no prefix continues with the character.
+         */
+        private @Nullable PrefixNode getChild(char c) {
+            Map<Character, @NonNull PrefixNode> children = this.children;
+            return children != null ? children.get(c) : null;
+        }
+        
+        /**
+         * Returns the child for the given character, creating it if necessary.
+         * 
+         * @param c The next character.
+         * 
+         * @return The child node.
+         */
+        private @NonNull PrefixNode getOrCreateChild(char c) {
+            Map<Character, @NonNull PrefixNode> children = this.children;
+            if (children == null) {
+                children = new HashMap<>(4);
+                this.children = children;
+            }
+            PrefixNode child = children.get(c);
+            if (child == null) {
+                child = new PrefixNode();
+                children.put(c, child);
+            }
+            return child;
+        }
+        
+    }
+
+}
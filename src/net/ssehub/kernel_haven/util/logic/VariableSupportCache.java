@@ -0,0 +1,364 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * Calculates the variable support (the set of variables used in a {@link Formula}) as a {@link BitSet} over a
+ * dictionary of variable names. In contrast to the {@link VariableFinder}, results are memoized per formula instance:
+ * sub-formulas that are shared between different formulas (e.g. the parent conditions in presence conditions) are
+ * only visited once. Formulas that are interned (e.g. by a condition table) thus always hit the cache.
+ * <p>
+ * The dictionary initially contains the given variable names (e.g. the variables of a variability model, see
+ * <code>VariabilityModelIndex.createSupportCache()</code>), with their index as ID. Unknown variables that are
+ * encountered in formulas get new IDs after these. Thus, {@link #usesOnlyDictionaryVariables(Formula)} is a single
+ * bit operation.
+ * </p>
+ * <p>
+ * The {@link BitSet}s returned by {@link #getSupport(Formula)} are shared and must not be modified. The cache keeps
+ * references to all visited formulas; use {@link #clear()} to release them. This class is thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class VariableSupportCache {
+    
+    private static final @NonNull BitSet EMPTY = new BitSet(0);
+    
+    private @NonNull Map<@NonNull String, Integer> ids;
+    
+    private @NonNull List<@NonNull String> names;
+    
+    /**
+     * A singleton support for each variable ID. Created lazily when the variable is first encountered in a formula,
+     * since a {@link BitSet} for a variable with ID n needs n bits; <code>null</code> for variables that have not
+     * been encountered, yet.
+     */
+    private @NonNull List<@Nullable BitSet> singletons;
+    
+    private int dictionarySize;
+    
+    private @NonNull Map<@NonNull Formula, @NonNull BitSet> cache;
+    
+    private @NonNull SupportVisitor visitor;
+    
+    /**
+     * Creates a cache with an empty initial dictionary. All variables get IDs in the order they are encountered.
+     */
+    public VariableSupportCache() {
+        this(new String[0]);
+    }
+    
+    /**
+     * Creates a cache with the given initial dictionary.
+     * 
+     * @param dictionary The names of the initially known variables. The index in this array is the ID of the
+     *      variable. Must not contain duplicates.
+     * 
+     * @throws IllegalArgumentException If the dictionary contains duplicates.
+     */
+    public VariableSupportCache(@NonNull String @NonNull [] dictionary) throws IllegalArgumentException {
+        this.ids = new HashMap<>(dictionary.length * 2);
+        this.names = new ArrayList<>(dictionary.length);
+        this.singletons = new ArrayList<>(dictionary.length);
+        for (String name : dictionary) {
+            if (ids.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate variable in dictionary: " + name);
+            }
+            addVariable(name);
+        }
+        this.dictionarySize = dictionary.length;
+        this.cache = new IdentityHashMap<>();
+        this.visitor = new SupportVisitor();
+    }
+    
+    /**
+     * Adds a new variable to the dictionary.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The ID of the new variable.
+     */
+    private int addVariable(@NonNull String name) {
+        int id = names.size();
+        ids.put(name, id);
+        names.add(name);
+        singletons.add(null);
+        return id;
+    }
+    
+    /**
+     * Returns the size of the initial dictionary that was passed to the constructor.
+     * 
+     * @return The number of initially known variables.
+     */
+    public int getDictionarySize() {
+        return dictionarySize;
+    }
+    
+    /**
+     * Returns the number of variables that have an ID. This is the size of the initial dictionary plus the number
+     * of unknown variables encountered in formulas so far.
+     * 
+     * @return The number of variables with an ID.
+     */
+    public synchronized int getVariableCount() {
+        return names.size();
+    }
+    
+    /**
+     * Returns the ID of the given variable.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The ID of the variable, or -1 if it is neither in the dictionary nor has been encountered in a formula.
+     */
+    public synchronized int getVariableId(@NonNull String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+    
+    /**
+     * Returns the name of the variable with the given ID.
+     * 
+     * @param id The ID of the variable.
+     * 
+     * @return The name of the variable.
+     * 
+     * @throws IndexOutOfBoundsException If the ID is invalid.
+     */
+    public synchronized @NonNull String getVariableName(int id) throws IndexOutOfBoundsException {
+        return notNull(names.get(id));
+    }
+    
+    /**
+     * Converts a support {@link BitSet} to the names of the variables.
+     * 
+     * @param support The IDs of the variables.
+     * 
+     * @return The names of the variables, ordered by ID.
+     * 
+     * @throws IndexOutOfBoundsException If the support contains an invalid ID.
+     */
+    public synchronized @NonNull List<@NonNull String> getVariableNames(@NonNull BitSet support)
+            throws IndexOutOfBoundsException {
+        
+        List<@NonNull String> result = new ArrayList<>(support.cardinality());
+        for (int id = support.nextSetBit(0); id >= 0; id = support.nextSetBit(id + 1)) {
+            result.add(notNull(names.get(id)));
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the IDs of all variables used in the given formula. The result is cached for the given formula
+     * instance and all of its sub-formulas.
+     * 
+     * @param formula The formula to get the support for.
+     * 
+     * @return The IDs of the variables in the formula. This is shared, so it must not be modified.
+     */
+    public synchronized @NonNull BitSet getSupport(@NonNull Formula formula) {
+        return formula.accept(visitor);
+    }
+    
+    /**
+     * Returns the union of the supports of the given formulas.
+     * 
+     * @param formulas The formulas.
+     * 
+     * @return The IDs of all variables used in any of the given formulas. This is a new {@link BitSet}.
+     */
+    public synchronized @NonNull BitSet getSupportUnion(@NonNull Iterable<@NonNull Formula> formulas) {
+        BitSet result = new BitSet();
+        for (Formula formula : formulas) {
+            result.or(getSupport(formula));
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the variables that are used in both formulas.
+     * 
+     * @param f1 The first formula.
+     * @param f2 The second formula.
+     * 
+     * @return The IDs of the variables used in both formulas. This is a new {@link BitSet}.
+     */
+    public synchronized @NonNull BitSet getSupportIntersection(@NonNull Formula f1, @NonNull Formula f2) {
+        BitSet result = (BitSet) getSupport(f1).clone();
+        result.and(getSupport(f2));
+        return result;
+    }
+    
+    /**
+     * Checks whether the two formulas have at least one variable in common.
+     * 
+     * @param f1 The first formula.
+     * @param f2 The second formula.
+     * 
+     * @return Whether the supports of the formulas intersect.
+     */
+    public synchronized boolean sharesVariables(@NonNull Formula f1, @NonNull Formula f2) {
+        return getSupport(f1).intersects(getSupport(f2));
+    }
+    
+    /**
+     * Checks whether the given formula only uses variables from the given set.
+     * 
+     * @param formula The formula to check.
+     * @param allowed The IDs of the allowed variables.
+     * 
+     * @return Whether the support of the formula is a subset of the allowed variables.
+     */
+    public synchronized boolean usesOnly(@NonNull Formula formula, @NonNull BitSet allowed) {
+        BitSet support = getSupport(formula);
+        boolean result = true;
+        for (int id = support.nextSetBit(0); result && id >= 0; id = support.nextSetBit(id + 1)) {
+            result = allowed.get(id);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the given formula only uses variables from the initial dictionary. For example, if the
+     * dictionary consists of the variables of the variability model, this checks that no unknown variables are used.
+     * 
+     * @param formula The formula to check.
+     * 
+     * @return Whether all variables of the formula are in the initial dictionary.
+     */
+    public synchronized boolean usesOnlyDictionaryVariables(@NonNull Formula formula) {
+        return getSupport(formula).length() <= dictionarySize;
+    }
+    
+    /**
+     * Removes all cached formulas. The IDs of variables are kept.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+    
+    /**
+     * Checks whether all bits of <code>subset</code> are also set in <code>superset</code>, without allocating a
+     * new {@link BitSet}.
+     * 
+     * @param subset The potential subset.
+     * @param superset The potential superset.
+     * 
+     * @return Whether <code>subset</code> is a subset of <code>superset</code>.
+     */
+    private static boolean isSubset(@NonNull BitSet subset, @NonNull BitSet superset) {
+        boolean result = subset.length() <= superset.length();
+        for (int id = subset.nextSetBit(0); result && id >= 0; id = subset.nextSetBit(id + 1)) {
+            result = superset.get(id);
+        }
+        return result;
+    }
+    
+    /**
+     * Calculates the support of formulas. Supports of conjunctions and disjunctions are cached; variables use the
+     * shared singletons and negations pass through the support of their operand.
+     */
+    private class SupportVisitor implements IFormulaVisitor<@NonNull BitSet> {
+        
+        @Override
+        public @NonNull BitSet visitFalse(@NonNull False falseConstant) {
+            return EMPTY;
+        }
+        
+        @Override
+        public @NonNull BitSet visitTrue(@NonNull True trueConstant) {
+            return EMPTY;
+        }
+        
+        @Override
+        public @NonNull BitSet visitVariable(@NonNull Variable variable) {
+            Integer id = ids.get(variable.getName());
+            if (id == null) {
+                id = addVariable(variable.getName());
+            }
+            
+            BitSet singleton = singletons.get(id);
+            if (singleton == null) {
+                singleton = new BitSet(id + 1);
+                singleton.set(id);
+                singletons.set(id, singleton);
+            }
+            return singleton;
+        }
+        
+        @Override
+        public @NonNull BitSet visitNegation(@NonNull Negation formula) {
+            return formula.getFormula().accept(this);
+        }
+        
+        @Override
+        public @NonNull BitSet visitDisjunction(@NonNull Disjunction formula) {
+            return getCombined(formula, formula.getLeft(), formula.getRight());
+        }
+        
+        @Override
+        public @NonNull BitSet visitConjunction(@NonNull Conjunction formula) {
+            return getCombined(formula, formula.getLeft(), formula.getRight());
+        }
+        
+        /**
+         * Calculates (or looks up) the support of a binary operation.
+         * 
+         * @param formula The binary operation.
+         * @param left The left operand.
+         * @param right The right operand.
+         * 
+         * @return The union of the supports of the operands.
+         */
+        private @NonNull BitSet getCombined(@NonNull Formula formula, @NonNull Formula left,
+                @NonNull Formula right) {
+            
+            BitSet result = cache.get(formula);
+            if (result == null) {
+                BitSet leftSupport = left.accept(this);
+                BitSet rightSupport = right.accept(this);
+                
+                // share the operand support if the other one does not add anything
+                if (isSubset(rightSupport, leftSupport)) {
+                    result = leftSupport;
+                } else if (isSubset(leftSupport, rightSupport)) {
+                    result = rightSupport;
+                } else {
+                    result = (BitSet) leftSupport.clone();
+                    result.or(rightSupport);
+                }
+                
+                cache.put(formula, result);
+            }
+            return result;
+        }
+        
+    }
+
+}
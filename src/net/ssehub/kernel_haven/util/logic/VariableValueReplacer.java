@@ -20,7 +20,8 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
 /**
  * Replaces each occurrence of a variable with a constant.
  * Returns a new Formula equal to the given formula, but with each occurrence of the variable replaced.
- * The Formula is not altered.
+ * The Formula is not altered; sub-formulas that contain no replaced variable are shared with the result. To replace
+ * many variables at once, use the {@link PartialEvaluator}.
  * 
  * @author Bargfeldt
  */
@@ -73,21 +74,22 @@ public class VariableValueReplacer implements IFormulaVisitor<@NonNull Formula>
 
     @Override
     public @NonNull Formula visitNegation(@NonNull Negation formula) {
-        return new Negation(formula.getFormula().accept(this));
+        Formula nested = formula.getFormula().accept(this);
+        return nested == formula.getFormula() ? formula : new Negation(nested);
     }
 
     @Override
     public @NonNull Formula visitDisjunction(@NonNull Disjunction formula) {
-        return new Disjunction(
-                formula.getLeft().accept(this),
-                formula.getRight().accept(this));
+        Formula left = formula.getLeft().accept(this);
+        Formula right = formula.getRight().accept(this);
+        return left == formula.getLeft() && right == formula.getRight() ? formula : new Disjunction(left, right);
     }
 
     @Override
     public @NonNull Formula visitConjunction(@NonNull Conjunction formula) {
-        return new Conjunction(
-                formula.getLeft().accept(this),
-                formula.getRight().accept(this));
+        Formula left = formula.getLeft().accept(this);
+        Formula right = formula.getRight().accept(this);
+        return left == formula.getLeft() && right == formula.getRight() ? formula : new Conjunction(left, right);
     }
     
 }
@@ -0,0 +1,859 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic.bdd;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.IFormulaVisitor;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A manager for reduced ordered binary decision diagrams (BDDs). BDD nodes are identified by <code>int</code>
+ * handles; {@link #FALSE} and {@link #TRUE} are the terminal nodes. Since all BDDs of one manager are reduced and use
+ * the same variable order, two formulas are equivalent if and only if their BDDs have the same handle.
+ * <p>
+ * Nodes are stored in primitive arrays and hashed into a unique table, so that each node exists only once. Results
+ * of the binary operations are kept in a direct-mapped operation cache. Nodes are never freed; if the configured
+ * maximum number of nodes is reached, a {@link BddNodeLimitException} is thrown. Callers should then fall back to
+ * other means (e.g. the syntactic {@link net.ssehub.kernel_haven.util.logic.FormulaSimplifier}) and may
+ * {@link #clear()} the manager.
+ * </p>
+ * <p>
+ * The variable order is given by the list passed to the constructor (for example
+ * <code>VariabilityModel.getVariableOrder()</code>); variables that are not part of it are appended in the order
+ * they are first used. This class is not thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class BddManager {
+    
+    /**
+     * The handle of the constant <code>false</code> BDD.
+     */
+    public static final int FALSE = 0;
+    
+    /**
+     * The handle of the constant <code>true</code> BDD.
+     */
+    public static final int TRUE = 1;
+    
+    private static final int OP_AND = 0;
+    
+    private static final int OP_OR = 1;
+    
+    private static final int OP_XOR = 2;
+    
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    
+    private static final int MAX_CACHE_SIZE = 1 << 20;
+    
+    private int maxNodes;
+    
+    private @NonNull Map<@NonNull String, Integer> levels;
+    
+    private @NonNull List<@NonNull String> variables;
+    
+    /*
+     * The nodes; indexed by handle.
+     */
+    
+    private int @NonNull [] nodeLevel;
+    
+    private int @NonNull [] nodeLow;
+    
+    private int @NonNull [] nodeHigh;
+    
+    private int nodeCount;
+    
+    /**
+     * Open addressing hash table; contains node handles, or -1 for empty slots.
+     */
+    private int @NonNull [] uniqueTable;
+    
+    /*
+     * The direct-mapped operation cache.
+     */
+    
+    private int @NonNull [] cacheOp;
+    
+    private int @NonNull [] cacheLeft;
+    
+    private int @NonNull [] cacheRight;
+    
+    private int @NonNull [] cacheResult;
+    
+    /**
+     * Creates a manager with the given variable order.
+     * 
+     * @param variableOrder The names of the variables, from the top to the bottom of the BDDs. Duplicates are
+     *      ignored.
+     * @param maxNodes The maximum number of nodes (including the two terminals) that this manager may create.
+     * 
+     * @throws IllegalArgumentException If maxNodes is less than 2.
+     */
+    public BddManager(@NonNull List<@NonNull String> variableOrder, int maxNodes) throws IllegalArgumentException {
+        if (maxNodes < 2) {
+            throw new IllegalArgumentException("maxNodes must be at least 2");
+        }
+        this.maxNodes = maxNodes;
+        this.levels = new HashMap<>(variableOrder.size() * 2);
+        this.variables = new ArrayList<>(variableOrder.size());
+        for (String variable : variableOrder) {
+            getLevel(variable);
+        }
+        clear();
+    }
+    
+    /**
+     * Creates a manager without a pre-defined variable order. Variables are ordered as they are first used.
+     * 
+     * @param maxNodes The maximum number of nodes (including the two terminals) that this manager may create.
+     * 
+     * @throws IllegalArgumentException If maxNodes is less than 2.
+     */
+    public BddManager(int maxNodes) throws IllegalArgumentException {
+        this(new ArrayList<>(), maxNodes);
+    }
+    
+    /**
+     * Removes all nodes (except the terminals) and clears the operation cache. All previously returned handles
+     * become invalid. The variable order is kept.
+     */
+    public void clear() {
+        int capacity = Math.min(INITIAL_CAPACITY, maxNodes);
+        this.nodeLevel = new int[capacity];
+        this.nodeLow = new int[capacity];
+        this.nodeHigh = new int[capacity];
+        
+        nodeLevel[FALSE] = Integer.MAX_VALUE;
+        nodeLevel[TRUE] = Integer.MAX_VALUE;
+        nodeLow[TRUE] = TRUE;
+        nodeHigh[TRUE] = TRUE;
+        this.nodeCount = 2;
+        
+        this.uniqueTable = new int[getTableSize(capacity)];
+        Arrays.fill(uniqueTable, -1);
+        
+        allocateCache(capacity);
+    }
+    
+    /**
+     * Returns the maximum number of nodes this manager may create.
+     * 
+     * @return The node limit.
+     */
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+    
+    /**
+     * Returns the number of nodes that currently exist, including the two terminals.
+     * 
+     * @return The number of nodes.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    /**
+     * Returns the number of variables known to this manager. This is the number of variables that model counting
+     * considers.
+     * 
+     * @return The number of variables.
+     */
+    public int getVariableCount() {
+        return variables.size();
+    }
+    
+    /**
+     * Returns the names of all variables known to this manager, in their order.
+     * 
+     * @return The variable order; the index in this list is the level of the variable.
+     */
+    public @NonNull List<@NonNull String> getVariableOrder() {
+        return notNull(Collections.unmodifiableList(variables));
+    }
+    
+    /**
+     * Returns the level of the given variable in the order. Unknown variables are appended at the bottom.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The level of the variable.
+     */
+    private int getLevel(@NonNull String name) {
+        Integer level = levels.get(name);
+        if (level == null) {
+            level = variables.size();
+            variables.add(name);
+            levels.put(name, level);
+        }
+        return level;
+    }
+    
+    /**
+     * Returns the BDD of a single variable.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The BDD that is true iff the variable is true.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public int variable(@NonNull String name) throws BddNodeLimitException {
+        return makeNode(getLevel(name), FALSE, TRUE);
+    }
+    
+    /**
+     * Returns the variable at the top of the given (non-terminal) BDD.
+     * 
+     * @param bdd The BDD.
+     * 
+     * @return The name of the variable.
+     * 
+     * @throws IllegalArgumentException If the BDD is a terminal.
+     */
+    public @NonNull String getTopVariable(int bdd) throws IllegalArgumentException {
+        if (bdd == FALSE || bdd == TRUE) {
+            throw new IllegalArgumentException("Terminal BDD has no variable");
+        }
+        return notNull(variables.get(nodeLevel[bdd]));
+    }
+    
+    /**
+     * Returns the successor of the given node for the case that its top variable is <code>false</code>.
+     * 
+     * @param bdd The BDD.
+     * 
+     * @return The low successor.
+     */
+    public int getLow(int bdd) {
+        return nodeLow[bdd];
+    }
+    
+    /**
+     * Returns the successor of the given node for the case that its top variable is <code>true</code>.
+     * 
+     * @param bdd The BDD.
+     * 
+     * @return The high successor.
+     */
+    public int getHigh(int bdd) {
+        return nodeHigh[bdd];
+    }
+    
+    /**
+     * Calculates the conjunction of two BDDs.
+     * 
+     * @param left The left operand.
+     * @param right The right operand.
+     * 
+     * @return The BDD of <code>left AND right</code>.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public int and(int left, int right) throws BddNodeLimitException {
+        return apply(OP_AND, left, right);
+    }
+    
+    /**
+     * Calculates the disjunction of two BDDs.
+     * 
+     * @param left The left operand.
+     * @param right The right operand.
+     * 
+     * @return The BDD of <code>left OR right</code>.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public int or(int left, int right) throws BddNodeLimitException {
+        return apply(OP_OR, left, right);
+    }
+    
+    /**
+     * Calculates the exclusive disjunction of two BDDs.
+     * 
+     * @param left The left operand.
+     * @param right The right operand.
+     * 
+     * @return The BDD of <code>left XOR right</code>.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public int xor(int left, int right) throws BddNodeLimitException {
+        return apply(OP_XOR, left, right);
+    }
+    
+    /**
+     * Calculates the negation of a BDD.
+     * 
+     * @param bdd The operand.
+     * 
+     * @return The BDD of <code>NOT bdd</code>.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public int not(int bdd) throws BddNodeLimitException {
+        return apply(OP_XOR, bdd, TRUE);
+    }
+    
+    /**
+     * Calculates the implication of two BDDs.
+     * 
+     * @param left The premise.
+     * @param right The conclusion.
+     * 
+     * @return The BDD of <code>left -&gt; right</code>.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public int implies(int left, int right) throws BddNodeLimitException {
+        return or(not(left), right);
+    }
+    
+    /**
+     * Checks whether <code>left</code> implies <code>right</code>, i.e. whether every model of <code>left</code> is
+     * also a model of <code>right</code>.
+     * 
+     * @param left The premise.
+     * @param right The conclusion.
+     * 
+     * @return Whether the implication is a tautology.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public boolean isImplied(int left, int right) throws BddNodeLimitException {
+        return and(left, not(right)) == FALSE;
+    }
+    
+    /**
+     * Calculates the number of satisfying assignments of the given BDD over all variables known to this manager
+     * (see {@link #getVariableCount()}).
+     * 
+     * @param bdd The BDD.
+     * 
+     * @return The number of models.
+     */
+    public @NonNull BigInteger countModels(int bdd) {
+        Map<Integer, @NonNull BigInteger> memo = new HashMap<>();
+        // nodes below level l count the assignments of the levels [l, numVariables)
+        return notNull(countModels(bdd, memo).shiftLeft(level(bdd)));
+    }
+    
+    /**
+     * Recursive helper for {@link #countModels(int)}.
+     * 
+     * @param bdd The current node.
+     * @param memo The already counted nodes.
+     * 
+     * @return The number of models over the variables from the level of the node to the bottom.
+     */
+    private @NonNull BigInteger countModels(int bdd, @NonNull Map<Integer, @NonNull BigInteger> memo) {
+        BigInteger result;
+        if (bdd == FALSE) {
+            result = BigInteger.ZERO;
+        } else if (bdd == TRUE) {
+            result = BigInteger.ONE;
+        } else {
+            result = memo.get(bdd);
+            if (result == null) {
+                int low = nodeLow[bdd];
+                int high = nodeHigh[bdd];
+                BigInteger lowCount = countModels(low, memo).shiftLeft(level(low) - nodeLevel[bdd] - 1);
+                BigInteger highCount = countModels(high, memo).shiftLeft(level(high) - nodeLevel[bdd] - 1);
+                result = notNull(lowCount.add(highCount));
+                memo.put(bdd, result);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the level of a node, with terminals at the level below the last variable.
+     * 
+     * @param bdd The node.
+     * 
+     * @return The level of the node.
+     */
+    private int level(int bdd) {
+        return bdd == FALSE || bdd == TRUE ? variables.size() : nodeLevel[bdd];
+    }
+    
+    /**
+     * Returns one satisfying assignment of the given BDD.
+     * 
+     * @param bdd The BDD.
+     * 
+     * @return The values of the variables on one path to {@link #TRUE}. Variables that are not in the map may have
+     *      any value. <code>null</code> if the BDD is unsatisfiable.
+     */
+    public @Nullable Map<@NonNull String, Boolean> getSatisfyingAssignment(int bdd) {
+        Map<@NonNull String, Boolean> result = null;
+        if (bdd != FALSE) {
+            result = new HashMap<>();
+            int current = bdd;
+            while (current != TRUE) {
+                String variable = notNull(variables.get(nodeLevel[current]));
+                if (nodeLow[current] != FALSE) {
+                    result.put(variable, false);
+                    current = nodeLow[current];
+                } else {
+                    result.put(variable, true);
+                    current = nodeHigh[current];
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Converts the given formula to a BDD. Sub-formulas are converted once per formula instance.
+     * 
+     * @param formula The formula to convert.
+     * 
+     * @return The BDD of the formula.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public int fromFormula(@NonNull Formula formula) throws BddNodeLimitException {
+        try {
+            return formula.accept(new FormulaConverter());
+        } catch (LimitReached e) {
+            throw e.cause;
+        }
+    }
+    
+    /**
+     * Converts the given BDD back to a formula. The formula is an if-then-else expansion of the BDD; nodes that are
+     * shared in the BDD are represented by shared sub-formula instances.
+     * 
+     * @param bdd The BDD to convert.
+     * 
+     * @return A formula that is equivalent to the BDD.
+     */
+    public @NonNull Formula toFormula(int bdd) {
+        return toFormula(bdd, new HashMap<>());
+    }
+    
+    /**
+     * Recursive helper for {@link #toFormula(int)}.
+     * 
+     * @param bdd The current node.
+     * @param memo The already converted nodes.
+     * 
+     * @return The formula for the node.
+     */
+    private @NonNull Formula toFormula(int bdd, @NonNull Map<Integer, @NonNull Formula> memo) {
+        Formula result;
+        if (bdd == FALSE) {
+            result = False.INSTANCE;
+        } else if (bdd == TRUE) {
+            result = True.INSTANCE;
+        } else {
+            result = memo.get(bdd);
+            if (result == null) {
+                Variable var = new Variable(notNull(variables.get(nodeLevel[bdd])));
+                int low = nodeLow[bdd];
+                int high = nodeHigh[bdd];
+                
+                Formula highPart;
+                if (high == TRUE) {
+                    highPart = var;
+                } else if (high == FALSE) {
+                    highPart = False.INSTANCE;
+                } else {
+                    highPart = new Conjunction(var, toFormula(high, memo));
+                }
+                
+                Formula lowPart;
+                if (low == TRUE) {
+                    lowPart = new Negation(var);
+                } else if (low == FALSE) {
+                    lowPart = False.INSTANCE;
+                } else {
+                    lowPart = new Conjunction(new Negation(var), toFormula(low, memo));
+                }
+                
+                if (lowPart == False.INSTANCE) {
+                    result = highPart;
+                } else if (highPart == False.INSTANCE) {
+                    result = lowPart;
+                } else {
+                    result = new Disjunction(highPart, lowPart);
+                }
+                memo.put(bdd, result);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether two formulas are equivalent.
+     * 
+     * @param f1 The first formula.
+     * @param f2 The second formula.
+     * 
+     * @return Whether the formulas have the same models.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public boolean isEquivalent(@NonNull Formula f1, @NonNull Formula f2) throws BddNodeLimitException {
+        return fromFormula(f1) == fromFormula(f2);
+    }
+    
+    /**
+     * Checks whether a formula is satisfiable.
+     * 
+     * @param formula The formula.
+     * 
+     * @return Whether the formula has at least one model.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    public boolean isSatisfiable(@NonNull Formula formula) throws BddNodeLimitException {
+        return fromFormula(formula) != FALSE;
+    }
+    
+    /**
+     * The core operation on two BDDs.
+     * 
+     * @param op The operation; one of {@link #OP_AND}, {@link #OP_OR}, {@link #OP_XOR}.
+     * @param left The left operand.
+     * @param right The right operand.
+     * 
+     * @return The resulting BDD.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    private int apply(int op, int left, int right) throws BddNodeLimitException {
+        int result = applyTerminal(op, left, right);
+        
+        if (result == -1) {
+            // all operations are commutative; normalize for better cache hits
+            int first = Math.min(left, right);
+            int second = Math.max(left, right);
+            
+            int slot = cacheSlot(op, first, second);
+            if (cacheOp[slot] == op && cacheLeft[slot] == first && cacheRight[slot] == second) {
+                result = cacheResult[slot];
+            } else {
+                int firstLevel = nodeLevel[first];
+                int secondLevel = nodeLevel[second];
+                int level = Math.min(firstLevel, secondLevel);
+                
+                int low = apply(op, firstLevel == level ? nodeLow[first] : first,
+                        secondLevel == level ? nodeLow[second] : second);
+                int high = apply(op, firstLevel == level ? nodeHigh[first] : first,
+                        secondLevel == level ? nodeHigh[second] : second);
+                result = makeNode(level, low, high);
+                
+                // the cache may have been re-allocated while growing
+                slot = cacheSlot(op, first, second);
+                cacheOp[slot] = op;
+                cacheLeft[slot] = first;
+                cacheRight[slot] = second;
+                cacheResult[slot] = result;
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Handles the cases of {@link #apply(int, int, int)} that can be decided without recursion.
+     * 
+     * @param op The operation; one of {@link #OP_AND}, {@link #OP_OR}, {@link #OP_XOR}.
+     * @param left The left operand.
+     * @param right The right operand.
+     * 
+     * @return The resulting BDD, or -1 if recursion is needed.
+     */
+    private static int applyTerminal(int op, int left, int right) {
+        int result = -1;
+        switch (op) {
+        case OP_AND:
+            if (left == FALSE || right == FALSE) {
+                result = FALSE;
+            } else if (left == TRUE || left == right) {
+                result = right;
+            } else if (right == TRUE) {
+                result = left;
+            }
+            break;
+        case OP_OR:
+            if (left == TRUE || right == TRUE) {
+                result = TRUE;
+            } else if (left == FALSE || left == right) {
+                result = right;
+            } else if (right == FALSE) {
+                result = left;
+            }
+            break;
+        default:
+            if (left == right) {
+                result = FALSE;
+            } else if (left == FALSE) {
+                result = right;
+            } else if (right == FALSE) {
+                result = left;
+            }
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the unique node for the given level and successors. Creates it if it does not exist yet.
+     * 
+     * @param level The level of the variable.
+     * @param low The low successor.
+     * @param high The high successor.
+     * 
+     * @return The handle of the node.
+     * 
+     * @throws BddNodeLimitException If a new node is required and the node limit is reached.
+     */
+    private int makeNode(int level, int low, int high) throws BddNodeLimitException {
+        int result = -1;
+        if (low == high) {
+            result = low;
+        } else {
+            int slot = findSlot(level, low, high);
+            if (uniqueTable[slot] != -1) {
+                result = uniqueTable[slot];
+            } else {
+                if (nodeCount == nodeLevel.length) {
+                    grow();
+                    // table has changed; find the free slot again
+                    slot = findSlot(level, low, high);
+                }
+                
+                result = nodeCount++;
+                nodeLevel[result] = level;
+                nodeLow[result] = low;
+                nodeHigh[result] = high;
+                uniqueTable[slot] = result;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Finds the slot of a node in the unique table.
+     * 
+     * @param level The level of the variable.
+     * @param low The low successor.
+     * @param high The high successor.
+     * 
+     * @return The slot that contains the node, or the empty slot where it should be inserted.
+     */
+    private int findSlot(int level, int low, int high) {
+        int mask = uniqueTable.length - 1;
+        int slot = hash(level, low, high) & mask;
+        int node = uniqueTable[slot];
+        while (node != -1 && (nodeLevel[node] != level || nodeLow[node] != low || nodeHigh[node] != high)) {
+            slot = (slot + 1) & mask;
+            node = uniqueTable[slot];
+        }
+        return slot;
+    }
+    
+    /**
+     * Doubles the capacity of the node arrays (up to the node limit) and re-hashes the unique table.
+     * 
+     * @throws BddNodeLimitException If the node limit is reached.
+     */
+    private void grow() throws BddNodeLimitException {
+        if (nodeLevel.length >= maxNodes) {
+            throw new BddNodeLimitException("Reached the limit of " + maxNodes + " BDD nodes");
+        }
+        int capacity = (int) Math.min((long) nodeLevel.length * 2, maxNodes);
+        nodeLevel = notNull(Arrays.copyOf(nodeLevel, capacity));
+        nodeLow = notNull(Arrays.copyOf(nodeLow, capacity));
+        nodeHigh = notNull(Arrays.copyOf(nodeHigh, capacity));
+        
+        uniqueTable = new int[getTableSize(capacity)];
+        Arrays.fill(uniqueTable, -1);
+        int mask = uniqueTable.length - 1;
+        for (int node = 2; node < nodeCount; node++) {
+            int slot = hash(nodeLevel[node], nodeLow[node], nodeHigh[node]) & mask;
+            while (uniqueTable[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            uniqueTable[slot] = node;
+        }
+        
+        allocateCache(capacity);
+    }
+    
+    /**
+     * Calculates the size of the unique table for the given node capacity. This is a power of two, so that slots can
+     * be calculated by masking, and keeps the load factor of the table at most 0.5.
+     * 
+     * @param capacity The capacity of the node arrays.
+     * 
+     * @return The size of the unique table.
+     */
+    private static int getTableSize(int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 2;
+    }
+    
+    /**
+     * (Re-)allocates an empty operation cache for the given node capacity.
+     * 
+     * @param capacity The capacity of the node arrays.
+     */
+    private void allocateCache(int capacity) {
+        int size = Math.min(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1, MAX_CACHE_SIZE);
+        cacheOp = new int[size];
+        Arrays.fill(cacheOp, -1);
+        cacheLeft = new int[size];
+        cacheRight = new int[size];
+        cacheResult = new int[size];
+    }
+    
+    /**
+     * Calculates the slot in the operation cache.
+     * 
+     * @param op The operation.
+     * @param left The left operand.
+     * @param right The right operand.
+     * 
+     * @return The slot index.
+     */
+    private int cacheSlot(int op, int left, int right) {
+        return hash(op, left, right) & (cacheOp.length - 1);
+    }
+    
+    /**
+     * Hashes three integers.
+     * 
+     * @param a The first integer.
+     * @param b The second integer.
+     * @param c The third integer.
+     * 
+     * @return The hash.
+     */
+    private static int hash(int a, int b, int c) {
+        int h = a * 0x9E3779B1 + b;
+        h = h * 0x85EBCA6B + c;
+        return h ^ (h >>> 15);
+    }
+    
+    /**
+     * Unchecked wrapper to pass a {@link BddNodeLimitException} through the {@link IFormulaVisitor}.
+     */
+    private static final class LimitReached extends RuntimeException {
+        
+        private static final long serialVersionUID = -1846529381062262424L;
+        
+        private final @NonNull BddNodeLimitException cause;
+        
+        /**
+         * Creates a new wrapper.
+         * 
+         * @param cause The wrapped exception.
+         */
+        LimitReached(@NonNull BddNodeLimitException cause) {
+            this.cause = cause;
+        }
+        
+    }
+    
+    /**
+     * Converts formulas to BDDs. Binary operations are cached per formula instance.
+     */
+    private final class FormulaConverter implements IFormulaVisitor<@NonNull Integer> {
+        
+        private @NonNull Map<@NonNull Formula, Integer> cache = new IdentityHashMap<>();
+        
+        @Override
+        public @NonNull Integer visitFalse(@NonNull False falseConstant) {
+            return FALSE;
+        }
+        
+        @Override
+        public @NonNull Integer visitTrue(@NonNull True trueConstant) {
+            return TRUE;
+        }
+        
+        @Override
+        public @NonNull Integer visitVariable(@NonNull Variable variable) {
+            try {
+                return variable(variable.getName());
+            } catch (BddNodeLimitException e) {
+                throw new LimitReached(e);
+            }
+        }
+        
+        @Override
+        public @NonNull Integer visitNegation(@NonNull Negation formula) {
+            try {
+                return not(formula.getFormula().accept(this));
+            } catch (BddNodeLimitException e) {
+                throw new LimitReached(e);
+            }
+        }
+        
+        @Override
+        public @NonNull Integer visitDisjunction(@NonNull Disjunction formula) {
+            Integer result = cache.get(formula);
+            if (result == null) {
+                try {
+                    result = or(formula.getLeft().accept(this), formula.getRight().accept(this));
+                } catch (BddNodeLimitException e) {
+                    throw new LimitReached(e);
+                }
+                cache.put(formula, result);
+            }
+            return result;
+        }
+        
+        @Override
+        public @NonNull Integer visitConjunction(@NonNull Conjunction formula) {
+            Integer result = cache.get(formula);
+            if (result == null) {
+                try {
+                    result = and(formula.getLeft().accept(this), formula.getRight().accept(this));
+                } catch (BddNodeLimitException e) {
+                    throw new LimitReached(e);
+                }
+                cache.put(formula, result);
+            }
+            return result;
+        }
+        
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic.bdd;
+
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An exception to indicate that a {@link BddManager} reached its maximum number of nodes.
+ * 
+ * @author Adam
+ */
+public class BddNodeLimitException extends Exception {
+    
+    private static final long serialVersionUID = -3870287466012935170L;
+    
+    /**
+     * Creates a new exception indicating that the node limit was reached.
+     * 
+     * @param message A message describing the failure.
+     */
+    public BddNodeLimitException(@Nullable String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,1010 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic.sat;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An incremental, in-process SAT solver for CNF formulas. This is a conflict-driven clause learning (CDCL) solver
+ * with two watched literals per clause, activity-based variable selection, phase saving and restarts.
+ * <p>
+ * Variables are numbered from 1 and literals are given as in the DIMACS format: a positive number for a variable,
+ * a negative number for its negation. Clauses are added once (e.g. the clauses of the variability model) and stay
+ * in the solver. Each call to {@link #isSatisfiable()} checks the clauses under the current assumptions; assumptions
+ * are pushed and popped like a stack. Clauses that are learned while solving only depend on the added clauses, not
+ * on the assumptions, so they are kept and speed up later calls.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class SatSolver {
+    
+    private static final byte UNASSIGNED = 0;
+    
+    private static final byte TRUE = 1;
+    
+    private static final byte FALSE = -1;
+    
+    private static final int RESTART_BASE = 100;
+    
+    private static final double VARIABLE_DECAY = 0.95;
+    
+    private static final double RESCALE_LIMIT = 1e100;
+    
+    private static final int MIN_LEARNT_LIMIT = 2000;
+    
+    private int numVariables;
+    
+    /*
+     * Per variable; indexed by the variable number.
+     */
+    
+    private byte @NonNull [] values;
+    
+    private int @NonNull [] levels;
+    
+    private @Nullable Clause @NonNull [] reasons;
+    
+    private boolean @NonNull [] phases;
+    
+    private double @NonNull [] activity;
+    
+    private boolean @NonNull [] seen;
+    
+    private boolean @NonNull [] decision;
+    
+    /**
+     * A max-heap of the variables, ordered by activity. Unassigned variables are always in the heap.
+     */
+    private int @NonNull [] heap;
+    
+    private int heapSize;
+    
+    /**
+     * The position of each variable in {@link #heap}, or -1 if it is not in the heap.
+     */
+    private int @NonNull [] heapIndex;
+    
+    private double activityIncrement;
+    
+    /**
+     * The clauses watching each literal; indexed by the internal literal (see {@link #toInternal(int)}).
+     */
+    private @NonNull WatchList @NonNull [] watches;
+    
+    /**
+     * The assigned literals, in the order of assignment.
+     */
+    private int @NonNull [] trail;
+    
+    private int trailSize;
+    
+    private int propagationHead;
+    
+    /**
+     * The start positions of the decision levels in the {@link #trail}.
+     */
+    private int @NonNull [] levelStarts;
+    
+    private int numLevels;
+    
+    private int numClauses;
+    
+    private @NonNull List<@NonNull Clause> learnts;
+    
+    private int learntLimit;
+    
+    private int @NonNull [] assumptions;
+    
+    private int numAssumptions;
+    
+    private boolean ok;
+    
+    private byte @Nullable [] model;
+    
+    /**
+     * Creates an empty solver without any variables or clauses.
+     */
+    public SatSolver() {
+        this.values = new byte[1];
+        this.levels = new int[1];
+        this.reasons = new Clause[1];
+        this.phases = new boolean[1];
+        this.activity = new double[1];
+        this.seen = new boolean[1];
+        this.decision = new boolean[1];
+        this.heap = new int[1];
+        this.heapIndex = new int[] {-1};
+        this.activityIncrement = 1;
+        this.watches = new WatchList[] {new WatchList(), new WatchList()};
+        this.trail = new int[1];
+        this.levelStarts = new int[1];
+        this.learnts = new ArrayList<>();
+        this.assumptions = new int[4];
+        this.ok = true;
+    }
+    
+    /**
+     * Returns the number of variables of this solver.
+     * 
+     * @return The number of variables; the variables are numbered from 1 to this number.
+     */
+    public int getNumVariables() {
+        return numVariables;
+    }
+    
+    /**
+     * Returns the number of clauses that were added to this solver and not already satisfied when they were added.
+     * Unit clauses and learned clauses are not counted.
+     * 
+     * @return The number of clauses.
+     */
+    public int getNumClauses() {
+        return numClauses;
+    }
+    
+    /**
+     * Returns the number of currently kept learned clauses.
+     * 
+     * @return The number of learned clauses.
+     */
+    public int getNumLearnedClauses() {
+        return learnts.size();
+    }
+    
+    /**
+     * Adds a new variable to this solver.
+     * 
+     * @return The number of the new variable.
+     */
+    public int newVariable() {
+        ensureVariables(numVariables + 1);
+        return numVariables;
+    }
+    
+    /**
+     * Adds a new variable to this solver that is never chosen as a decision. This is meant for auxiliary variables
+     * that are defined to be equivalent to a combination of other variables (e.g. by a {@link TseitinConverter}):
+     * their value follows by propagation once the other variables are assigned, so branching on them only slows
+     * down the search.
+     * 
+     * @return The number of the new variable.
+     */
+    public int newAuxiliaryVariable() {
+        int result = newVariable();
+        decision[result] = false;
+        if (heapIndex[result] != -1) {
+            heapRemove(result);
+        }
+        return result;
+    }
+    
+    /**
+     * Makes sure that this solver has at least the given number of variables.
+     * 
+     * @param number The minimum number of variables.
+     */
+    public void ensureVariables(int number) {
+        if (number > numVariables) {
+            int capacity = values.length;
+            if (number + 1 > capacity) {
+                capacity = Math.max(number + 1, capacity * 2);
+                values = notNull(Arrays.copyOf(values, capacity));
+                levels = notNull(Arrays.copyOf(levels, capacity));
+                reasons = notNull(Arrays.copyOf(reasons, capacity));
+                phases = notNull(Arrays.copyOf(phases, capacity));
+                activity = notNull(Arrays.copyOf(activity, capacity));
+                seen = notNull(Arrays.copyOf(seen, capacity));
+                decision = notNull(Arrays.copyOf(decision, capacity));
+                heap = notNull(Arrays.copyOf(heap, capacity));
+                heapIndex = notNull(Arrays.copyOf(heapIndex, capacity));
+                trail = notNull(Arrays.copyOf(trail, capacity));
+                levelStarts = notNull(Arrays.copyOf(levelStarts, capacity));
+                
+                int oldWatches = watches.length;
+                watches = notNull(Arrays.copyOf(watches, capacity * 2));
+                for (int i = oldWatches; i < watches.length; i++) {
+                    watches[i] = new WatchList();
+                }
+            }
+            
+            for (int var = numVariables + 1; var <= number; var++) {
+                decision[var] = true;
+                heapIndex[var] = -1;
+                heapInsert(var);
+            }
+            numVariables = number;
+        }
+    }
+    
+    /**
+     * Adds a clause to this solver. Variables that do not exist yet are created.
+     * 
+     * @param literals The literals of the clause, in DIMACS format. Not modified.
+     * 
+     * @return <code>false</code> if the clauses of this solver are now known to be unsatisfiable (without any
+     *      assumptions); <code>true</code> otherwise.
+     * 
+     * @throws IllegalArgumentException If a literal is 0.
+     */
+    public boolean addClause(int @NonNull ... literals) throws IllegalArgumentException {
+        int[] lits = new int[literals.length];
+        int maxVariable = 0;
+        for (int i = 0; i < literals.length; i++) {
+            if (literals[i] == 0) {
+                throw new IllegalArgumentException("0 is not a valid literal");
+            }
+            maxVariable = Math.max(maxVariable, Math.abs(literals[i]));
+            lits[i] = toInternal(literals[i]);
+        }
+        ensureVariables(maxVariable);
+        
+        if (ok) {
+            int size = simplify(lits);
+            if (size == 0) {
+                ok = false;
+            } else if (size == 1) {
+                assign(lits[0], null);
+                ok = propagate() == null;
+            } else if (size > 1) {
+                attach(new Clause(notNull(Arrays.copyOf(lits, size))));
+                numClauses++;
+            }
+        }
+        return ok;
+    }
+    
+    /**
+     * Sorts the literals of a new clause, removes duplicates and literals that are false without any decision.
+     * 
+     * @param lits The internal literals of the clause; modified so that the remaining literals are at the start.
+     * 
+     * @return The number of remaining literals, or -1 if the clause is always satisfied.
+     */
+    private int simplify(int @NonNull [] lits) {
+        Arrays.sort(lits);
+        int size = 0;
+        int previous = -1;
+        for (int i = 0; i < lits.length && size != -1; i++) {
+            int lit = lits[i];
+            byte value = getValue(lit);
+            if (value == TRUE || lit == (previous ^ 1)) {
+                size = -1;
+            } else if (value != FALSE && lit != previous) {
+                lits[size++] = lit;
+                previous = lit;
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Pushes an assumption. Subsequent calls to {@link #isSatisfiable()} only search for solutions where the
+     * literal is true.
+     * 
+     * @param literal The assumed literal, in DIMACS format.
+     * 
+     * @throws IllegalArgumentException If the literal is 0.
+     */
+    public void pushAssumption(int literal) throws IllegalArgumentException {
+        if (literal == 0) {
+            throw new IllegalArgumentException("0 is not a valid literal");
+        }
+        ensureVariables(Math.abs(literal));
+        if (numAssumptions == assumptions.length) {
+            assumptions = notNull(Arrays.copyOf(assumptions, numAssumptions * 2));
+        }
+        assumptions[numAssumptions++] = toInternal(literal);
+    }
+    
+    /**
+     * Removes the most recently pushed assumption.
+     * 
+     * @throws IllegalStateException If there are no assumptions.
+     */
+    public void popAssumption() throws IllegalStateException {
+        if (numAssumptions == 0) {
+            throw new IllegalStateException("No assumption to pop");
+        }
+        numAssumptions--;
+    }
+    
+    /**
+     * Returns the number of currently pushed assumptions.
+     * 
+     * @return The number of assumptions.
+     */
+    public int getNumAssumptions() {
+        return numAssumptions;
+    }
+    
+    /**
+     * Checks whether the clauses of this solver are satisfiable under the current assumptions.
+     * 
+     * @return Whether there is an assignment that satisfies all clauses and assumptions.
+     */
+    public boolean isSatisfiable() {
+        boolean result = false;
+        model = null;
+        if (ok) {
+            if (learntLimit == 0) {
+                learntLimit = Math.max(numClauses / 3, MIN_LEARNT_LIMIT);
+            }
+            
+            Boolean status = null;
+            for (int restarts = 0; status == null; restarts++) {
+                status = search(luby(restarts) * RESTART_BASE);
+            }
+            result = status;
+            if (result) {
+                model = Arrays.copyOf(values, numVariables + 1);
+            }
+            cancelUntil(0);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the clauses of this solver are satisfiable under the current and the given additional
+     * assumptions. The additional assumptions are removed again afterwards.
+     * 
+     * @param additionalAssumptions The additional assumed literals, in DIMACS format.
+     * 
+     * @return Whether there is an assignment that satisfies all clauses and assumptions.
+     * 
+     * @throws IllegalArgumentException If a literal is 0.
+     */
+    public boolean isSatisfiable(int @NonNull ... additionalAssumptions) throws IllegalArgumentException {
+        int previous = numAssumptions;
+        try {
+            for (int literal : additionalAssumptions) {
+                pushAssumption(literal);
+            }
+            return isSatisfiable();
+        } finally {
+            numAssumptions = previous;
+        }
+    }
+    
+    /**
+     * Returns the value of a variable in the solution found by the last call to {@link #isSatisfiable()}.
+     * 
+     * @param variable The number of the variable.
+     * 
+     * @return The value of the variable in the solution.
+     * 
+     * @throws IllegalStateException If the last call did not find a solution.
+     */
+    public boolean getModelValue(int variable) throws IllegalStateException {
+        byte[] model = this.model;
+        if (model == null) {
+            throw new IllegalStateException("No solution available");
+        }
+        return variable < model.length && model[variable] == TRUE;
+    }
+    
+    /**
+     * Runs the CDCL search until a solution is found, unsatisfiability is proven, or the conflict budget is used up.
+     * 
+     * @param conflictBudget The number of conflicts after which the search is restarted.
+     * 
+     * @return Whether the clauses are satisfiable under the assumptions, or <code>null</code> for a restart.
+     */
+    private @Nullable Boolean search(int conflictBudget) {
+        Boolean result = null;
+        boolean done = false;
+        int conflicts = 0;
+        while (!done) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                conflicts++;
+                if (numLevels == 0) {
+                    ok = false;
+                    result = false;
+                    done = true;
+                } else {
+                    learn(conflict);
+                }
+                
+            } else if (conflicts >= conflictBudget) {
+                cancelUntil(0);
+                done = true;
+                
+            } else {
+                if (learnts.size() >= learntLimit) {
+                    reduceLearnts();
+                }
+                
+                int next = -1;
+                while (!done && next == -1 && numLevels < numAssumptions) {
+                    int assumption = assumptions[numLevels];
+                    byte value = getValue(assumption);
+                    if (value == TRUE) {
+                        newLevel();
+                    } else if (value == FALSE) {
+                        result = false;
+                        done = true;
+                    } else {
+                        next = assumption;
+                    }
+                }
+                if (!done && next == -1) {
+                    next = pickBranchLiteral();
+                    if (next == -1) {
+                        result = true;
+                        done = true;
+                    }
+                }
+                if (!done) {
+                    newLevel();
+                    assign(next, null);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Analyzes a conflict, adds the learned clause, and jumps back to the level where it becomes unit.
+     * 
+     * @param conflict The conflicting clause.
+     */
+    private void learn(@NonNull Clause conflict) {
+        int[] learnt = analyze(conflict);
+        
+        // the literal with the highest level (except the asserting one) determines the backjump level
+        int backjumpLevel = 0;
+        if (learnt.length > 1) {
+            int maxIndex = 1;
+            for (int i = 2; i < learnt.length; i++) {
+                if (levels[learnt[i] >> 1] > levels[learnt[maxIndex] >> 1]) {
+                    maxIndex = i;
+                }
+            }
+            int tmp = learnt[1];
+            learnt[1] = learnt[maxIndex];
+            learnt[maxIndex] = tmp;
+            backjumpLevel = levels[learnt[1] >> 1];
+        }
+        
+        cancelUntil(backjumpLevel);
+        if (learnt.length == 1) {
+            assign(learnt[0], null);
+        } else {
+            Clause clause = new Clause(learnt);
+            attach(clause);
+            learnts.add(clause);
+            assign(learnt[0], clause);
+        }
+        
+        activityIncrement /= VARIABLE_DECAY;
+    }
+    
+    /**
+     * Derives a learned clause from a conflict (first unique implication point).
+     * 
+     * @param conflict The conflicting clause.
+     * 
+     * @return The learned clause; the first literal is the one that is asserted after backjumping.
+     */
+    private int @NonNull [] analyze(@NonNull Clause conflict) {
+        IntList learnt = new IntList();
+        learnt.add(-1);
+        
+        int open = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+        Clause clause = conflict;
+        do {
+            int[] lits = notNull(clause).literals;
+            // the first literal of a reason is the implied one
+            for (int i = lit == -1 ? 0 : 1; i < lits.length; i++) {
+                int var = lits[i] >> 1;
+                if (!seen[var] && levels[var] > 0) {
+                    seen[var] = true;
+                    bumpActivity(var);
+                    if (levels[var] >= numLevels) {
+                        open++;
+                    } else {
+                        learnt.add(lits[i]);
+                    }
+                }
+            }
+            
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            lit = trail[index];
+            index--;
+            clause = reasons[lit >> 1];
+            seen[lit >> 1] = false;
+            open--;
+        } while (open > 0);
+        learnt.set(0, lit ^ 1);
+        
+        int[] result = minimize(learnt);
+        for (int i = 1; i < learnt.size(); i++) {
+            seen[learnt.get(i) >> 1] = false;
+        }
+        return result;
+    }
+    
+    /**
+     * Removes literals from a learned clause that are implied by other literals of the clause.
+     * 
+     * @param learnt The learned clause; all literals except the first are marked in {@link #seen}.
+     * 
+     * @return The minimized clause.
+     */
+    private int @NonNull [] minimize(@NonNull IntList learnt) {
+        IntList result = new IntList();
+        result.add(learnt.get(0));
+        for (int i = 1; i < learnt.size(); i++) {
+            int lit = learnt.get(i);
+            Clause reason = reasons[lit >> 1];
+            boolean redundant = reason != null;
+            if (reason != null) {
+                int[] lits = reason.literals;
+                for (int j = 1; j < lits.length && redundant; j++) {
+                    int var = lits[j] >> 1;
+                    redundant = seen[var] || levels[var] == 0;
+                }
+            }
+            if (!redundant) {
+                result.add(lit);
+            }
+        }
+        return result.toArray();
+    }
+    
+    /**
+     * Propagates all assignments on the trail that have not been propagated yet.
+     * 
+     * @return A clause that is violated by the assignment, or <code>null</code> if there is no conflict.
+     */
+    private @Nullable Clause propagate() {
+        Clause conflict = null;
+        while (conflict == null && propagationHead < trailSize) {
+            int falseLit = trail[propagationHead++] ^ 1;
+            WatchList watchList = watches[falseLit];
+            Clause[] clauses = watchList.clauses;
+            int size = watchList.size;
+            int kept = 0;
+            int i = 0;
+            while (i < size) {
+                Clause clause = notNull(clauses[i++]);
+                if (!clause.deleted) {
+                    int[] lits = clause.literals;
+                    // make sure that the false literal is the second watch
+                    if (lits[0] == falseLit) {
+                        lits[0] = lits[1];
+                        lits[1] = falseLit;
+                    }
+                    
+                    if (getValue(lits[0]) == TRUE || findNewWatch(clause)) {
+                        if (lits[1] == falseLit) {
+                            clauses[kept++] = clause;
+                        }
+                    } else {
+                        clauses[kept++] = clause;
+                        if (getValue(lits[0]) == FALSE) {
+                            conflict = clause;
+                            propagationHead = trailSize;
+                            while (i < size) {
+                                clauses[kept++] = clauses[i++];
+                            }
+                        } else {
+                            assign(lits[0], clause);
+                        }
+                    }
+                }
+            }
+            Arrays.fill(clauses, kept, size, null);
+            watchList.size = kept;
+        }
+        return conflict;
+    }
+    
+    /**
+     * Tries to replace the second (false) watched literal of a clause by a literal that is not false.
+     * 
+     * @param clause The clause.
+     * 
+     * @return Whether a new watch was found; the clause is then added to the watches of the new literal.
+     */
+    private boolean findNewWatch(@NonNull Clause clause) {
+        int[] lits = clause.literals;
+        boolean found = false;
+        for (int k = 2; k < lits.length && !found; k++) {
+            if (getValue(lits[k]) != FALSE) {
+                int tmp = lits[1];
+                lits[1] = lits[k];
+                lits[k] = tmp;
+                watches[lits[1]].add(clause);
+                found = true;
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Selects the next decision literal: the unassigned variable with the highest activity, with its saved phase.
+     * 
+     * @return The literal to decide, or -1 if all variables are assigned.
+     */
+    private int pickBranchLiteral() {
+        int result = -1;
+        while (result == -1 && heapSize > 0) {
+            int var = heapRemoveMax();
+            if (values[var] == UNASSIGNED) {
+                result = phases[var] ? var << 1 : (var << 1) | 1;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Removes about half of the learned clauses; the longest ones are removed first. Binary clauses and clauses
+     * that are currently the reason for an assignment are kept.
+     */
+    private void reduceLearnts() {
+        learnts.sort((c1, c2) -> Integer.compare(c1.literals.length, c2.literals.length));
+        int keep = learnts.size() / 2;
+        List<@NonNull Clause> kept = new ArrayList<>(learnts.size());
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause clause = notNull(learnts.get(i));
+            int first = clause.literals[0];
+            boolean locked = values[first >> 1] != UNASSIGNED && reasons[first >> 1] == clause;
+            if (i < keep || clause.literals.length <= 2 || locked) {
+                kept.add(clause);
+            } else {
+                // removed lazily from the watch lists in propagate()
+                clause.deleted = true;
+            }
+        }
+        learnts = kept;
+        learntLimit += learntLimit / 10;
+    }
+    
+    /**
+     * Assigns a literal to true at the current decision level.
+     * 
+     * @param lit The internal literal.
+     * @param reason The clause that implied the literal, or <code>null</code> for decisions and unit clauses.
+     */
+    private void assign(int lit, @Nullable Clause reason) {
+        int var = lit >> 1;
+        values[var] = (lit & 1) == 0 ? TRUE : FALSE;
+        levels[var] = numLevels;
+        reasons[var] = reason;
+        trail[trailSize++] = lit;
+    }
+    
+    /**
+     * Starts a new decision level.
+     */
+    private void newLevel() {
+        // assumptions that are already true open empty levels, so there may be more levels than variables
+        if (numLevels == levelStarts.length) {
+            levelStarts = notNull(Arrays.copyOf(levelStarts, numLevels * 2));
+        }
+        levelStarts[numLevels++] = trailSize;
+    }
+    
+    /**
+     * Reverts all assignments above the given decision level.
+     * 
+     * @param level The level to jump back to.
+     */
+    private void cancelUntil(int level) {
+        if (numLevels > level) {
+            for (int i = trailSize - 1; i >= levelStarts[level]; i--) {
+                int var = trail[i] >> 1;
+                phases[var] = values[var] == TRUE;
+                values[var] = UNASSIGNED;
+                reasons[var] = null;
+                if (heapIndex[var] == -1 && decision[var]) {
+                    heapInsert(var);
+                }
+            }
+            trailSize = levelStarts[level];
+            propagationHead = trailSize;
+            numLevels = level;
+        }
+    }
+    
+    /**
+     * Adds a clause to the watch lists of its first two literals.
+     * 
+     * @param clause The clause with at least two literals.
+     */
+    private void attach(@NonNull Clause clause) {
+        watches[clause.literals[0]].add(clause);
+        watches[clause.literals[1]].add(clause);
+    }
+    
+    /**
+     * Returns the current value of an internal literal.
+     * 
+     * @param lit The internal literal.
+     * 
+     * @return {@link #TRUE}, {@link #FALSE} or {@link #UNASSIGNED}.
+     */
+    private byte getValue(int lit) {
+        byte value = values[lit >> 1];
+        return (lit & 1) == 0 ? value : (byte) -value;
+    }
+    
+    /**
+     * Increases the activity of a variable that took part in a conflict.
+     * 
+     * @param var The variable.
+     */
+    private void bumpActivity(int var) {
+        activity[var] += activityIncrement;
+        if (activity[var] > RESCALE_LIMIT) {
+            for (int i = 1; i <= numVariables; i++) {
+                activity[i] /= RESCALE_LIMIT;
+            }
+            activityIncrement /= RESCALE_LIMIT;
+        }
+        if (heapIndex[var] != -1) {
+            heapUp(heapIndex[var]);
+        }
+    }
+    
+    /**
+     * Inserts a variable into the activity heap.
+     * 
+     * @param var The variable.
+     */
+    private void heapInsert(int var) {
+        heap[heapSize] = var;
+        heapIndex[var] = heapSize;
+        heapSize++;
+        heapUp(heapSize - 1);
+    }
+    
+    /**
+     * Removes the variable with the highest activity from the heap.
+     * 
+     * @return The removed variable.
+     */
+    private int heapRemoveMax() {
+        int result = heap[0];
+        heapIndex[result] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return result;
+    }
+    
+    /**
+     * Removes a variable from the heap.
+     * 
+     * @param var The variable; must be in the heap.
+     */
+    private void heapRemove(int var) {
+        int position = heapIndex[var];
+        heapIndex[var] = -1;
+        heapSize--;
+        if (position < heapSize) {
+            int last = heap[heapSize];
+            heap[position] = last;
+            heapIndex[last] = position;
+            heapDown(position);
+            heapUp(heapIndex[last]);
+        }
+    }
+    
+    /**
+     * Moves a heap entry up until its parent has a higher activity.
+     * 
+     * @param position The position of the entry.
+     */
+    private void heapUp(int position) {
+        int var = heap[position];
+        int pos = position;
+        while (pos > 0 && activity[heap[(pos - 1) >> 1]] < activity[var]) {
+            int parent = (pos - 1) >> 1;
+            heap[pos] = heap[parent];
+            heapIndex[heap[pos]] = pos;
+            pos = parent;
+        }
+        heap[pos] = var;
+        heapIndex[var] = pos;
+    }
+    
+    /**
+     * Moves a heap entry down until its children have a lower activity.
+     * 
+     * @param position The position of the entry.
+     */
+    private void heapDown(int position) {
+        int var = heap[position];
+        int pos = position;
+        boolean done = false;
+        while (!done && 2 * pos + 1 < heapSize) {
+            int child = 2 * pos + 1;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] > activity[var]) {
+                heap[pos] = heap[child];
+                heapIndex[heap[pos]] = pos;
+                pos = child;
+            } else {
+                done = true;
+            }
+        }
+        heap[pos] = var;
+        heapIndex[var] = pos;
+    }
+    
+    /**
+     * Converts a DIMACS literal to the internal representation: <code>2 * variable</code> for positive literals,
+     * <code>2 * variable + 1</code> for negative literals.
+     * 
+     * @param literal The DIMACS literal.
+     * 
+     * @return The internal literal.
+     */
+    private static int toInternal(int literal) {
+        return literal > 0 ? literal << 1 : (-literal << 1) | 1;
+    }
+    
+    /**
+     * Calculates the restart sequence by Luby et al.: 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ...
+     * 
+     * @param index The index in the sequence, starting at 0.
+     * 
+     * @return The element of the sequence.
+     */
+    private static int luby(int index) {
+        int size = 1;
+        int sequence = 0;
+        while (size < index + 1) {
+            sequence++;
+            size = 2 * size + 1;
+        }
+        int x = index;
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            sequence--;
+            x = x % size;
+        }
+        return 1 << sequence;
+    }
+    
+    /**
+     * A clause of the solver. The first two literals are watched.
+     */
+    private static final class Clause {
+        
+        private final int @NonNull [] literals;
+        
+        private boolean deleted;
+        
+        /**
+         * Creates a new clause.
+         * 
+         * @param literals The internal literals.
+         */
+        Clause(int @NonNull [] literals) {
+            this.literals = literals;
+        }
+        
+    }
+    
+    /**
+     * A growable list of the clauses that watch a literal.
+     */
+    private static final class WatchList {
+        
+        private @Nullable Clause @NonNull [] clauses = new Clause[4];
+        
+        private int size;
+        
+        /**
+         * Adds a clause to this list.
+         * 
+         * @param clause The clause to add.
+         */
+        private void add(@NonNull Clause clause) {
+            if (size == clauses.length) {
+                clauses = notNull(Arrays.copyOf(clauses, size * 2));
+            }
+            clauses[size++] = clause;
+        }
+        
+    }
+    
+    /**
+     * A growable list of <code>int</code>s.
+     */
+    private static final class IntList {
+        
+        private int @NonNull [] data = new int[16];
+        
+        private int size;
+        
+        /**
+         * Appends a value.
+         * 
+         * @param value The value to add.
+         */
+        private void add(int value) {
+            if (size == data.length) {
+                data = notNull(Arrays.copyOf(data, size * 2));
+            }
+            data[size++] = value;
+        }
+        
+        /**
+         * Returns the value at the given index.
+         * 
+         * @param index The index.
+         * 
+         * @return The value.
+         */
+        private int get(int index) {
+            return data[index];
+        }
+        
+        /**
+         * Replaces the value at the given index.
+         * 
+         * @param index The index.
+         * @param value The new value.
+         */
+        private void set(int index, int value) {
+            data[index] = value;
+        }
+        
+        /**
+         * Returns the number of values.
+         * 
+         * @return The size.
+         */
+        private int size() {
+            return size;
+        }
+        
+        /**
+         * Copies the values to an array.
+         * 
+         * @return The values.
+         */
+        private int @NonNull [] toArray() {
+            return notNull(Arrays.copyOf(data, size));
+        }
+        
+    }
+
+}
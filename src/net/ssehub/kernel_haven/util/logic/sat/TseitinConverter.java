@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic.sat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.IFormulaVisitor;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Converts {@link Formula}s to CNF clauses in a {@link SatSolver} using the Tseitin transformation. Each conjunction
+ * and disjunction gets a new solver variable that is defined to be equivalent to it; thus, the number of clauses is
+ * linear in the size of the formula. These are auxiliary variables (see {@link SatSolver#newAuxiliaryVariable()}).
+ * Constants, duplicate and complementary operands are folded without a new
+ * variable.
+ * <p>
+ * The literal of each converted conjunction and disjunction is cached per formula instance. Since the definitions
+ * stay in the solver, a sub-formula that is shared between many formulas (e.g. parent conditions in presence
+ * conditions) is only converted once. The definitions do not constrain the original variables, so the solver can
+ * then check the formula by assuming its literal (see {@link SatSolver#pushAssumption(int)}).
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class TseitinConverter implements IFormulaVisitor<@NonNull Integer> {
+    
+    private @NonNull SatSolver solver;
+    
+    private @NonNull Map<@NonNull String, Integer> variables;
+    
+    private @NonNull Map<@NonNull Formula, Integer> cache;
+    
+    /**
+     * The literal that is always true; 0 if it has not been created yet.
+     */
+    private int trueLiteral;
+    
+    /**
+     * Creates a converter that adds its clauses to the given solver. Variables of the formulas get new solver
+     * variables when they are first encountered.
+     * 
+     * @param solver The solver to add the clauses to.
+     */
+    public TseitinConverter(@NonNull SatSolver solver) {
+        this(solver, new HashMap<>());
+    }
+    
+    /**
+     * Creates a converter that adds its clauses to the given solver, with the given mapping of variable names to
+     * solver variables (e.g. the DIMACS numbers of a variability model). Variables that are not in the mapping get
+     * new solver variables when they are first encountered.
+     * 
+     * @param solver The solver to add the clauses to.
+     * @param variables The mapping of variable names to (positive) solver variables. Copied.
+     */
+    public TseitinConverter(@NonNull SatSolver solver, @NonNull Map<@NonNull String, Integer> variables) {
+        this.solver = solver;
+        this.variables = new HashMap<>(variables);
+        this.cache = new IdentityHashMap<>();
+    }
+    
+    /**
+     * Converts the given formula. The definitions of its sub-formulas are added to the solver.
+     * 
+     * @param formula The formula to convert.
+     * 
+     * @return The literal (in DIMACS format) that is equivalent to the formula.
+     */
+    public int convert(@NonNull Formula formula) {
+        return formula.accept(this);
+    }
+    
+    /**
+     * Returns the solver variable for the given variable name. Creates a new solver variable if the name is unknown.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The solver variable.
+     */
+    public int getVariable(@NonNull String name) {
+        Integer result = variables.get(name);
+        if (result == null) {
+            result = solver.newVariable();
+            variables.put(name, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of cached conjunctions and disjunctions.
+     * 
+     * @return The number of formula instances that have a literal.
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+    
+    /**
+     * Returns the literal that is always true. Creates it with a unit clause when it is first needed.
+     * 
+     * @return The true literal.
+     */
+    private int getTrueLiteral() {
+        if (trueLiteral == 0) {
+            trueLiteral = solver.newAuxiliaryVariable();
+            solver.addClause(trueLiteral);
+        }
+        return trueLiteral;
+    }
+    
+    @Override
+    public @NonNull Integer visitFalse(@NonNull False falseConstant) {
+        return -getTrueLiteral();
+    }
+    
+    @Override
+    public @NonNull Integer visitTrue(@NonNull True trueConstant) {
+        return getTrueLiteral();
+    }
+    
+    @Override
+    public @NonNull Integer visitVariable(@NonNull Variable variable) {
+        return getVariable(variable.getName());
+    }
+    
+    @Override
+    public @NonNull Integer visitNegation(@NonNull Negation formula) {
+        return -formula.getFormula().accept(this);
+    }
+    
+    @Override
+    public @NonNull Integer visitDisjunction(@NonNull Disjunction formula) {
+        Integer result = cache.get(formula);
+        if (result == null) {
+            // a OR b = NOT (NOT a AND NOT b)
+            int left = formula.getLeft().accept(this);
+            int right = formula.getRight().accept(this);
+            result = -defineConjunction(new int[] {-left, -right});
+            cache.put(formula, result);
+        }
+        return result;
+    }
+    
+    @Override
+    public @NonNull Integer visitConjunction(@NonNull Conjunction formula) {
+        Integer result = cache.get(formula);
+        if (result == null) {
+            int left = formula.getLeft().accept(this);
+            int right = formula.getRight().accept(this);
+            result = defineConjunction(new int[] {left, right});
+            cache.put(formula, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Creates a new literal that is equivalent to the conjunction of the given literals. Constant and duplicate
+     * operands are folded.
+     * 
+     * @param operands The literals of the operands. Modified.
+     * 
+     * @return The literal of the conjunction. This may be an existing literal if no new definition is needed.
+     */
+    private int defineConjunction(int @NonNull [] operands) {
+        int trueLit = getTrueLiteral();
+        Arrays.sort(operands);
+        
+        boolean isFalse = false;
+        for (int i = 0; i < operands.length && !isFalse; i++) {
+            isFalse = operands[i] == -trueLit || Arrays.binarySearch(operands, -operands[i]) >= 0;
+        }
+        
+        int size = 0;
+        for (int i = 0; i < operands.length && !isFalse; i++) {
+            int lit = operands[i];
+            if (lit != trueLit && (size == 0 || operands[size - 1] != lit)) {
+                operands[size++] = lit;
+            }
+        }
+        
+        int result;
+        if (isFalse) {
+            result = -trueLit;
+        } else if (size == 0) {
+            result = trueLit;
+        } else if (size == 1) {
+            result = operands[0];
+        } else {
+            // x <-> (a1 AND ... AND an) is (NOT x OR ai) for all i, and (x OR NOT a1 OR ... OR NOT an)
+            result = solver.newAuxiliaryVariable();
+            int[] back = new int[size + 1];
+            back[0] = result;
+            for (int i = 0; i < size; i++) {
+                solver.addClause(-result, operands[i]);
+                back[i + 1] = -operands[i];
+            }
+            solver.addClause(back);
+        }
+        return result;
+    }
+
+}
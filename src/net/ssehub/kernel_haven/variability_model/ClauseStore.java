@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.Arrays;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An in-memory store for the clauses of a CNF (e.g. read from a DIMACS file). All literals of all clauses are stored
+ * in a single <code>int[]</code> arena; literals are DIMACS numbers, negative for negated variables. A second array
+ * stores the start offset of each clause in the arena.
+ * <p>
+ * Instances of this class are immutable.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class ClauseStore {
+    
+    private int numVariables;
+    
+    private int @NonNull [] literals;
+    
+    private int @NonNull [] offsets;
+    
+    /**
+     * Creates a new {@link ClauseStore}. The given arrays are not copied, they must not be modified afterwards.
+     * 
+     * @param numVariables The number of variables of the CNF. All literals must be in the range
+     *      <code>[-numVariables, numVariables]</code>, excluding 0.
+     * @param literals The literals of all clauses, concatenated. Must have the length
+     *      <code>offsets[offsets.length - 1]</code>.
+     * @param offsets The start offsets of the clauses in the literal arena, plus one final element that holds the
+     *      total number of literals. Thus, this has the length <code>numClauses + 1</code>.
+     * 
+     * @throws IllegalArgumentException If the given arrays are inconsistent.
+     */
+    public ClauseStore(int numVariables, int @NonNull [] literals, int @NonNull [] offsets)
+            throws IllegalArgumentException {
+        
+        if (offsets.length == 0 || offsets[0] != 0 || offsets[offsets.length - 1] != literals.length) {
+            throw new IllegalArgumentException("Clause offsets do not match literal array");
+        }
+        
+        this.numVariables = numVariables;
+        this.literals = literals;
+        this.offsets = offsets;
+    }
+    
+    /**
+     * Returns the number of variables of the CNF. This is the number specified in the DIMACS header, or the highest
+     * variable number used in the clauses.
+     * 
+     * @return The number of variables.
+     */
+    public int getNumVariables() {
+        return numVariables;
+    }
+    
+    /**
+     * Returns the number of clauses.
+     * 
+     * @return The number of clauses.
+     */
+    public int getNumClauses() {
+        return offsets.length - 1;
+    }
+    
+    /**
+     * Returns the total number of literals in all clauses.
+     * 
+     * @return The number of literals.
+     */
+    public int getNumLiterals() {
+        return literals.length;
+    }
+    
+    /**
+     * Returns the number of literals in the given clause.
+     * 
+     * @param clause The index of the clause.
+     * 
+     * @return The length of the clause.
+     * 
+     * @throws IndexOutOfBoundsException If the clause index is invalid.
+     */
+    public int getClauseLength(int clause) throws IndexOutOfBoundsException {
+        return offsets[clause + 1] - offsets[clause];
+    }
+    
+    /**
+     * Returns a single literal of a clause.
+     * 
+     * @param clause The index of the clause.
+     * @param index The index of the literal in the clause.
+     * 
+     * @return The literal (DIMACS number of the variable, negative if negated).
+     * 
+     * @throws IndexOutOfBoundsException If the clause index is invalid.
+     */
+    public int getLiteral(int clause, int index) throws IndexOutOfBoundsException {
+        return literals[offsets[clause] + index];
+    }
+    
+    /**
+     * Returns a copy of the literals of the given clause.
+     * 
+     * @param clause The index of the clause.
+     * 
+     * @return The literals of the clause.
+     * 
+     * @throws IndexOutOfBoundsException If the clause index is invalid.
+     */
+    public int @NonNull [] getClause(int clause) throws IndexOutOfBoundsException {
+        return notNull(Arrays.copyOfRange(literals, offsets[clause], offsets[clause + 1]));
+    }
+    
+    /**
+     * Returns the literal arena that contains the literals of all clauses. This is the internal array, so it must
+     * not be modified. Use {@link #getClauseOffsets()} to find the clause boundaries.
+     * 
+     * @return The literal arena.
+     */
+    public int @NonNull [] getLiteralArena() {
+        return literals;
+    }
+    
+    /**
+     * Returns the start offsets of the clauses in the {@link #getLiteralArena()}, plus one final element that holds
+     * the total number of literals. This is the internal array, so it must not be modified.
+     * 
+     * @return The clause offsets.
+     */
+    public int @NonNull [] getClauseOffsets() {
+        return offsets;
+    }
+    
+    @Override
+    public int hashCode() {
+        return numVariables + 31 * Arrays.hashCode(literals) + 37 * Arrays.hashCode(offsets);
+    }
+    
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        boolean equal = false;
+        if (obj instanceof ClauseStore) {
+            ClauseStore other = (ClauseStore) obj;
+            equal = numVariables == other.numVariables && Arrays.equals(literals, other.literals)
+                    && Arrays.equals(offsets, other.offsets);
+        }
+        return equal;
+    }
+    
+    @Override
+    public @NonNull String toString() {
+        return "ClauseStore[numVariables=" + numVariables + ", numClauses=" + getNumClauses() + ", numLiterals="
+                + literals.length + "]";
+    }
+
+}
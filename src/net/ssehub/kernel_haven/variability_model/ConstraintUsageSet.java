@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An unmodifiable set of variables for the constraint usage relations (see
+ * {@link VariabilityVariable#getVariablesUsedInConstraints()}), which stores the variables as a sorted array of
+ * indices into a shared array of all variables. This needs much less memory than a {@link java.util.HashSet} per
+ * variable. The shared array must be sorted by variable name; {@link #contains(Object)} is then a binary search.
+ *
+ * @author Adam
+ */
+final class ConstraintUsageSet extends AbstractSet<@NonNull VariabilityVariable> {
+
+    private @NonNull VariabilityVariable @NonNull [] byIndex;
+
+    /**
+     * The sorted, distinct indices into {@link #byIndex}.
+     */
+    private int @NonNull [] members;
+
+    /**
+     * Creates a set.
+     *
+     * @param byIndex All variables, sorted by name. Shared between all sets; not copied.
+     * @param members The sorted, distinct indices of the members of this set into byIndex. Not copied.
+     */
+    ConstraintUsageSet(@NonNull VariabilityVariable @NonNull [] byIndex, int @NonNull [] members) {
+        this.byIndex = byIndex;
+        this.members = members;
+    }
+
+    @Override
+    public int size() {
+        return members.length;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object object) {
+        boolean result = false;
+        if (object instanceof VariabilityVariable) {
+            String name = ((VariabilityVariable) object).getName();
+            int low = 0;
+            int high = members.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                VariabilityVariable candidate = byIndex[members[mid]];
+                int comparison = candidate.getName().compareTo(name);
+                if (comparison < 0) {
+                    low = mid + 1;
+                } else if (comparison > 0) {
+                    high = mid - 1;
+                } else {
+                    result = candidate.equals(object);
+                    low = high + 1; // found
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public @NonNull Iterator<@NonNull VariabilityVariable> iterator() {
+        return new Iterator<@NonNull VariabilityVariable>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < members.length;
+            }
+
+            @Override
+            public @NonNull VariabilityVariable next() {
+                if (next >= members.length) {
+                    throw new NoSuchElementException();
+                }
+                return notNull(byIndex[members[next++]]);
+            }
+
+        };
+    }
+
+}
@@ -18,27 +18,31 @@ package net.ssehub.kernel_haven.variability_model;
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 
 import net.ssehub.kernel_haven.SetUpException;
 import net.ssehub.kernel_haven.config.Configuration;
 import net.ssehub.kernel_haven.config.DefaultSettings;
 import net.ssehub.kernel_haven.util.ExtractorException;
+import net.ssehub.kernel_haven.util.FormatException;
 import net.ssehub.kernel_haven.util.Logger;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
-import net.ssehub.kernel_haven.util.null_checks.NullHelpers;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Attribute;
 import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.ConstraintFileType;
 import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.VariableType;
 
 /**
  * {@link VariabilityModel} extractor, which operators only on a single
- * <a href="http://www.satcompetition.org/2009/format-benchmarks2009.html">DIMACS</a> file.
+ * <a href="http://www.satcompetition.org/2009/format-benchmarks2009.html">DIMACS</a> file. The variables are read
+ * from the comment lines, the clauses are available via {@link VariabilityModel#getClauses()}. The constraint usage
+ * of the variables is derived from the clauses.
  * 
  * @author El-Sharkawy
  */
@@ -61,26 +65,182 @@ public class DIMACSVariabilityModelExtractor extends AbstractVariabilityModelExt
     @Override
     protected @Nullable VariabilityModel runOnFile(File target) throws ExtractorException {
         Map<String, VariabilityVariable> variables = new HashMap<>();
-        try {
-            Files.lines(dimacsfile.toPath())
-                .filter(l -> l != null && l.startsWith("c "))           // Only comment lines
-                .map(l -> l.split("\\s"))                               // Create array, split whitespace characters
-                .map(a -> parseLine(a))                                 // Parse lines
-                .filter(Objects::nonNull)                               // Only parsed variables
-                .map(NullHelpers::notNull)                              // turn @Nullable into @NonNull
-                .forEachOrdered(v -> variables.put(v.getName(), v));    // Store results
-        } catch (IOException e) {
-            throw new ExtractorException("Could not parse " + dimacsfile.getAbsolutePath());
+        ClauseStore clauses;
+        try (InputStream in = new FileInputStream(dimacsfile)) {
+            clauses = new DimacsParser(in).parse((line) -> {
+                VariabilityVariable var = parseLine(line);
+                if (var != null) {
+                    variables.put(var.getName(), var);
+                }
+            });
+        } catch (IOException | FormatException e) {
+            throw new ExtractorException("Could not parse " + dimacsfile.getAbsolutePath(), e);
         }
         
         VariabilityModel result = new VariabilityModel(notNull(dimacsfile), variables);
+        result.setClauses(clauses);
         VariabilityModelDescriptor descriptor = result.getDescriptor();
         descriptor.setVariableType(VariableType.BOOLEAN);
         descriptor.setConstraintFileType(ConstraintFileType.DIMACS);
         
+        addConstraintUsage(variables, clauses);
+        descriptor.addAttribute(Attribute.CONSTRAINT_USAGE);
+        
+        return result;
+    }
+    
+    /**
+     * Derives the constraint usage relations (see {@link VariabilityVariable#getVariablesUsedInConstraints()})
+     * from the clauses. Two variables use each other, if they occur together in at least one clause. Thus, the
+     * relation is symmetric, and {@link VariabilityVariable#getUsedInConstraintsOfOtherVariables()} is the same set
+     * as {@link VariabilityVariable#getVariablesUsedInConstraints()}. The sets are {@link ConstraintUsageSet}s, which
+     * keep the compact int rows instead of a {@link java.util.HashSet} per variable.
+     * 
+     * @param variables The variables of the model.
+     * @param clauses The clauses of the model.
+     */
+    private void addConstraintUsage(@NonNull Map<String, VariabilityVariable> variables,
+            @NonNull ClauseStore clauses) {
+        
+        // assign a dense index to each variable, ordered by name (as required by ConstraintUsageSet)
+        @NonNull VariabilityVariable[] byIndex = notNull(variables.values().toArray(new VariabilityVariable[0]));
+        Arrays.sort(byIndex, (v1, v2) -> v1.getName().compareTo(v2.getName()));
+        
+        int[] numberToIndex = createNumberToIndex(byIndex, clauses.getNumVariables());
+        
+        int[] rowSizes = new int[byIndex.length];
+        int[][] rows = collectRows(clauses, numberToIndex, rowSizes);
+        
+        int[] empty = new int[0];
+        for (int index = 0; index < byIndex.length; index++) {
+            int[] row = rows[index];
+            int[] members = empty;
+            if (row != null) {
+                Arrays.sort(row, 0, rowSizes[index]);
+                members = distinct(row, rowSizes[index]);
+            }
+            
+            // the relation is symmetric, so both directions can share the same set
+            Set<@NonNull VariabilityVariable> used = new ConstraintUsageSet(byIndex, members);
+            byIndex[index].setVariablesUsedInConstraints(used);
+            byIndex[index].setUsedInConstraintsOfOtherVariables(used);
+        }
+    }
+    
+    /**
+     * Maps the DIMACS numbers to the dense indices of the variables.
+     * 
+     * @param byIndex The variables, by their dense index.
+     * @param numVariables The number of variables in the clauses (the highest DIMACS number).
+     * 
+     * @return The dense index for each DIMACS number; -1 for numbers without a variable.
+     */
+    private static int @NonNull [] createNumberToIndex(@NonNull VariabilityVariable @NonNull [] byIndex,
+            int numVariables) {
+        
+        Map<String, Integer> indices = new HashMap<>(byIndex.length * 2);
+        Map<Integer, String> dimacsMapping = new HashMap<>();
+        for (int index = 0; index < byIndex.length; index++) {
+            indices.put(byIndex[index].getName(), index);
+            byIndex[index].getDimacsMapping(dimacsMapping);
+        }
+        
+        int[] result = new int[numVariables + 1];
+        Arrays.fill(result, -1);
+        for (Map.Entry<Integer, String> entry : dimacsMapping.entrySet()) {
+            int number = entry.getKey();
+            Integer index = indices.get(entry.getValue());
+            if (number > 0 && number < result.length && index != null) {
+                result[number] = index;
+            }
+        }
         return result;
     }
     
+    /**
+     * Collects the constraint usage relation as int rows (with duplicates). This is much cheaper than adding to sets
+     * directly.
+     * 
+     * @param clauses The clauses of the model.
+     * @param numberToIndex The dense index for each DIMACS number.
+     * @param rowSizes Filled with the number of used elements in each row.
+     * 
+     * @return The rows for each dense index; <code>null</code> for variables that are not part of any clause.
+     */
+    private static int @Nullable [] @NonNull [] collectRows(@NonNull ClauseStore clauses,
+            int @NonNull [] numberToIndex, int @NonNull [] rowSizes) {
+        
+        int[][] rows = new int[rowSizes.length][];
+        int[] literals = clauses.getLiteralArena();
+        int[] offsets = clauses.getClauseOffsets();
+        int[] clauseVars = new int[16];
+        for (int clause = 0; clause < clauses.getNumClauses(); clause++) {
+            int numClauseVars = 0;
+            for (int i = offsets[clause]; i < offsets[clause + 1]; i++) {
+                int index = numberToIndex[Math.abs(literals[i])];
+                if (index != -1 && !contains(clauseVars, numClauseVars, index)) {
+                    if (numClauseVars == clauseVars.length) {
+                        clauseVars = Arrays.copyOf(clauseVars, clauseVars.length * 2);
+                    }
+                    clauseVars[numClauseVars++] = index;
+                }
+            }
+            
+            for (int i = 0; i < numClauseVars; i++) {
+                int index = clauseVars[i];
+                int[] row = rows[index];
+                if (row == null) {
+                    row = new int[Math.max(4, numClauseVars - 1)];
+                } else if (rowSizes[index] + numClauseVars - 1 > row.length) {
+                    row = Arrays.copyOf(row, Math.max(row.length * 2, rowSizes[index] + numClauseVars - 1));
+                }
+                rows[index] = row;
+                
+                for (int j = 0; j < numClauseVars; j++) {
+                    if (i != j) {
+                        row[rowSizes[index]++] = clauseVars[j];
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Removes the duplicates from the sorted beginning of the given array.
+     * 
+     * @param sorted The array; sorted up to length.
+     * @param length The number of elements to consider.
+     * 
+     * @return A new array with the distinct elements.
+     */
+    private static int @NonNull [] distinct(int @NonNull [] sorted, int length) {
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return notNull(Arrays.copyOf(sorted, size));
+    }
+    
+    /**
+     * Checks whether the given value is contained in the first elements of the given array.
+     * 
+     * @param array The array to search in.
+     * @param length The number of elements of the array to consider.
+     * @param value The value to search.
+     * 
+     * @return Whether the value is found.
+     */
+    private static boolean contains(int @NonNull [] array, int length, int value) {
+        boolean found = false;
+        for (int i = 0; i < length && !found; i++) {
+            found = array[i] == value;
+        }
+        return found;
+    }
+    
     /**
      * Converts a single comment line of the DIMACS file into a newly created {@link VariabilityVariable}.
      * The extractor ensures, that only non <tt>null</tt> comments will be passed to this method.
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A streaming parser for <a href="http://www.satcompetition.org/2009/format-benchmarks2009.html">DIMACS</a> files.
+ * Reads comment lines, the <code>p cnf</code> header and the clauses in a single pass over the input bytes, without
+ * creating intermediate {@link String}s for the clause section. Clauses are stored in a {@link ClauseStore}.
+ * 
+ * @author Adam
+ */
+class DimacsParser {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private @NonNull InputStream in;
+    
+    private byte @NonNull [] buffer;
+    
+    private int bufferPos;
+    
+    private int bufferEnd;
+    
+    private int lineNumber;
+    
+    private byte @NonNull [] lineBuffer;
+    
+    private int numVariables;
+    
+    private int maxVariable;
+    
+    private int @NonNull [] literals;
+    
+    private int numLiterals;
+    
+    private int @NonNull [] offsets;
+    
+    private int numClauses;
+    
+    /**
+     * Creates a new parser for the given input. The stream is not closed by this parser.
+     * 
+     * @param in The stream to read the DIMACS file from.
+     */
+    DimacsParser(@NonNull InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.lineBuffer = new byte[256];
+        this.lineNumber = 1;
+        this.literals = new int[1024];
+        this.offsets = new int[256];
+    }
+    
+    /**
+     * Parses the complete input.
+     * 
+     * @param commentHandler Called for each comment line (starting with <code>c</code> followed by a whitespace),
+     *      with the whitespace separated elements of the line. The first element is always the comment character
+     *      <code>c</code>.
+     * 
+     * @return The clauses of the DIMACS file.
+     * 
+     * @throws IOException If reading the input fails.
+     * @throws FormatException If the input is not a valid DIMACS file.
+     */
+    @NonNull ClauseStore parse(@NonNull Consumer<@NonNull String @NonNull []> commentHandler)
+            throws IOException, FormatException {
+        
+        boolean clauseOpen = false;
+        int c = read();
+        while (c != -1) {
+            if (c == '\n') {
+                lineNumber++;
+                c = read();
+                
+            } else if (isWhitespace(c)) {
+                c = read();
+                
+            } else if (c == 'c') {
+                String[] tokens = readLineTokens(c);
+                if (tokens[0].equals("c")) {
+                    commentHandler.accept(tokens);
+                }
+                c = read();
+                
+            } else if (c == 'p') {
+                readHeader(readLineTokens(c));
+                c = read();
+                
+            } else if (c == '%') {
+                // end marker used in some benchmark files
+                break;
+                
+            } else {
+                // a literal
+                boolean negative = c == '-';
+                if (negative) {
+                    c = read();
+                }
+                if (c < '0' || c > '9') {
+                    throw new FormatException("Unexpected character '" + (char) c + "' in line " + lineNumber);
+                }
+                
+                long value = 0;
+                while (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    if (value > Integer.MAX_VALUE) {
+                        throw new FormatException("Variable number too large in line " + lineNumber);
+                    }
+                    c = read();
+                }
+                if (c != -1 && c != '\n' && !isWhitespace(c)) {
+                    throw new FormatException("Unexpected character '" + (char) c + "' in line " + lineNumber);
+                }
+                
+                if (value == 0) {
+                    endClause();
+                    clauseOpen = false;
+                } else {
+                    addLiteral(negative ? (int) -value : (int) value);
+                    clauseOpen = true;
+                    maxVariable = Math.max(maxVariable, (int) value);
+                }
+            }
+        }
+        
+        if (clauseOpen) {
+            // last clause is not terminated by a 0
+            endClause();
+        }
+        
+        int[] resultOffsets = Arrays.copyOf(offsets, numClauses + 1);
+        resultOffsets[numClauses] = numLiterals;
+        return new ClauseStore(Math.max(numVariables, maxVariable), notNull(Arrays.copyOf(literals, numLiterals)),
+                notNull(resultOffsets));
+    }
+    
+    /**
+     * Parses the <code>p cnf &lt;variables&gt; &lt;clauses&gt;</code> header line.
+     * 
+     * @param tokens The elements of the header line.
+     * 
+     * @throws FormatException If the header is malformed.
+     */
+    private void readHeader(@NonNull String @NonNull [] tokens) throws FormatException {
+        if (tokens.length != 4 || !tokens[0].equals("p") || !tokens[1].equals("cnf")) {
+            throw new FormatException("Invalid problem line in line " + (lineNumber - 1) + ": "
+                    + String.join(" ", tokens));
+        }
+        
+        try {
+            numVariables = Integer.parseInt(tokens[2]);
+            int expectedClauses = Integer.parseInt(tokens[3]);
+            if (numVariables < 0 || expectedClauses < 0) {
+                throw new NumberFormatException("Negative number");
+            }
+            
+            // pre-allocate arrays; assume an average clause length of 3
+            if (expectedClauses >= offsets.length) {
+                offsets = new int[expectedClauses + 1];
+            }
+            if (expectedClauses * 3L < Integer.MAX_VALUE - 8 && expectedClauses * 3 > literals.length) {
+                literals = new int[expectedClauses * 3];
+            }
+            
+        } catch (NumberFormatException e) {
+            throw new FormatException("Invalid problem line in line " + (lineNumber - 1) + ": "
+                    + String.join(" ", tokens), e);
+        }
+    }
+    
+    /**
+     * Adds a literal to the currently open clause.
+     * 
+     * @param literal The literal to add.
+     */
+    private void addLiteral(int literal) {
+        if (numLiterals == literals.length) {
+            literals = notNull(Arrays.copyOf(literals, literals.length * 2));
+        }
+        literals[numLiterals++] = literal;
+    }
+    
+    /**
+     * Finishes the currently open clause.
+     */
+    private void endClause() {
+        // offsets has one more element than clauses, for the final end offset
+        if (numClauses + 1 >= offsets.length) {
+            offsets = notNull(Arrays.copyOf(offsets, offsets.length * 2));
+        }
+        numClauses++;
+        offsets[numClauses] = numLiterals;
+    }
+    
+    /**
+     * Reads the remainder of the current line (including the line break) and splits it at whitespace characters.
+     * 
+     * @param first The first character of the line, which has already been read.
+     * 
+     * @return The whitespace separated elements of the line.
+     * 
+     * @throws IOException If reading the input fails.
+     */
+    private @NonNull String @NonNull [] readLineTokens(int first) throws IOException {
+        int length = 0;
+        int c = first;
+        while (c != -1 && c != '\n') {
+            if (length == lineBuffer.length) {
+                lineBuffer = notNull(Arrays.copyOf(lineBuffer, lineBuffer.length * 2));
+            }
+            lineBuffer[length++] = (byte) c;
+            c = read();
+        }
+        if (c == '\n') {
+            lineNumber++;
+        }
+        
+        List<@NonNull String> tokens = new ArrayList<>(4);
+        int pos = 0;
+        while (pos < length) {
+            while (pos < length && isWhitespace(lineBuffer[pos])) {
+                pos++;
+            }
+            int start = pos;
+            while (pos < length && !isWhitespace(lineBuffer[pos])) {
+                pos++;
+            }
+            if (pos > start) {
+                tokens.add(new String(lineBuffer, start, pos - start, StandardCharsets.UTF_8));
+            }
+        }
+        
+        return notNull(tokens.toArray(new String[tokens.size()]));
+    }
+    
+    /**
+     * Reads the next byte from the input.
+     * 
+     * @return The next byte (unsigned), or -1 if the end of the input is reached.
+     * 
+     * @throws IOException If reading the input fails.
+     */
+    private int read() throws IOException {
+        if (bufferPos == bufferEnd) {
+            bufferEnd = Math.max(in.read(buffer), 0);
+            bufferPos = 0;
+        }
+        
+        int result = -1;
+        if (bufferPos < bufferEnd) {
+            result = buffer[bufferPos++] & 0xFF;
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the given character is a whitespace (except line breaks, these are handled separately).
+     * 
+     * @param c The character to check.
+     * 
+     * @return Whether the character is a whitespace.
+     */
+    private static boolean isWhitespace(int c) {
+        boolean result;
+        switch (c) {
+        case ' ':
+        case '\t':
+        case '\r':
+        case '\f':
+        case 0x0B:
+            result = true;
+            break;
+        
+        default:
+            result = false;
+            break;
+        }
+        return result;
+    }
+
+}
@@ -31,7 +31,8 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
- * A {@link VariabilityVariable} that has additional information about the hierarchy of variables.
+ * A {@link VariabilityVariable} that has additional information about the hierarchy of variables. For efficient
+ * ancestor and descendant queries, see {@link VariabilityModel#getHierarchyIndex()}.
  * 
  * TODO: serialization
  * 
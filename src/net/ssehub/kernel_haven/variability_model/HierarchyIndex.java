@@ -0,0 +1,381 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Attribute;
+
+/**
+ * An index on the hierarchy of the {@link HierarchicalVariable}s of a {@link VariabilityModel}. The hierarchy is
+ * traversed once (depth first, children ordered by name) and each variable gets a pre-order and a post-order number.
+ * This allows checking whether a variable is an ancestor of another one in constant time. All descendants of a
+ * variable have consecutive pre-order numbers, so the sub-tree of a variable is a contiguous range of the pre-order
+ * array.
+ * <p>
+ * Instances are obtained via {@link VariabilityModel#getHierarchyIndex()} for models with the
+ * {@link Attribute#HIERARCHICAL} attribute. This class is immutable and thus thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class HierarchyIndex {
+    
+    private static final @NonNull Comparator<@NonNull HierarchicalVariable> BY_NAME
+            = (v1, v2) -> v1.getName().compareTo(v2.getName());
+    
+    /**
+     * All variables, in pre-order.
+     */
+    private @NonNull HierarchicalVariable @NonNull [] preOrder;
+    
+    /**
+     * The exclusive end of the sub-tree range for each variable, indexed by pre-order number.
+     */
+    private int @NonNull [] subtreeEnd;
+    
+    /**
+     * The depth in the hierarchy for each variable, indexed by pre-order number.
+     */
+    private int @NonNull [] depth;
+    
+    /**
+     * The pre-order number of the parent for each variable, indexed by pre-order number. -1 for roots.
+     */
+    private int @NonNull [] parent;
+    
+    private @NonNull Map<@NonNull String, Integer> nameToPreOrder;
+    
+    /**
+     * The fingerprint of the model when this index was created; see {@link VariabilityModel#calculateFingerprint()}.
+     */
+    private long fingerprint;
+    
+    /**
+     * Creates the index for the given variability model. Only {@link HierarchicalVariable}s of the model are
+     * considered; variables whose parent is not part of the model are treated as roots.
+     * 
+     * @param model The model to create the index for.
+     */
+    HierarchyIndex(@NonNull VariabilityModel model) {
+        Map<@NonNull String, VariabilityVariable> variables = model.getVariableMap();
+        this.fingerprint = model.calculateFingerprint();
+        
+        List<@NonNull HierarchicalVariable> roots = new ArrayList<>();
+        int numVariables = findRoots(variables, roots);
+        
+        this.preOrder = new @NonNull HierarchicalVariable[numVariables];
+        this.parent = new int[numVariables];
+        this.depth = new int[numVariables];
+        this.nameToPreOrder = new HashMap<>(numVariables * 2);
+        
+        int size = traverse(variables, roots);
+        
+        // variables in a parent cycle are not reachable from any root; these are not part of the index
+        this.preOrder = notNull(Arrays.copyOf(preOrder, size));
+        this.parent = notNull(Arrays.copyOf(parent, size));
+        this.depth = notNull(Arrays.copyOf(depth, size));
+        
+        this.subtreeEnd = calculateSubtreeEnds();
+    }
+    
+    /**
+     * Finds the root variables of the hierarchy. These are the {@link HierarchicalVariable}s without a parent in the
+     * model.
+     * 
+     * @param variables The variables of the model.
+     * @param roots The list to add the roots to. Sorted by name in reverse order afterwards.
+     * 
+     * @return The number of {@link HierarchicalVariable}s in the model.
+     */
+    private static int findRoots(@NonNull Map<@NonNull String, VariabilityVariable> variables,
+            @NonNull List<@NonNull HierarchicalVariable> roots) {
+        
+        int numVariables = 0;
+        for (VariabilityVariable var : variables.values()) {
+            if (var instanceof HierarchicalVariable) {
+                numVariables++;
+                HierarchicalVariable parent = ((HierarchicalVariable) var).getParent();
+                if (parent == null || variables.get(parent.getName()) != parent) {
+                    roots.add((HierarchicalVariable) var);
+                }
+            }
+        }
+        roots.sort(BY_NAME.reversed());
+        return numVariables;
+    }
+    
+    /**
+     * Traverses the hierarchy from the given roots and fills {@link #preOrder}, {@link #parent}, {@link #depth} and
+     * {@link #nameToPreOrder}. This is an iterative depth first traversal (to support deep hierarchies). The stack
+     * contains the variables to visit and the pre-order number of their parents. Children are pushed in reverse
+     * order, so that they are visited ordered by name.
+     * 
+     * @param variables The variables of the model.
+     * @param roots The roots of the hierarchy, sorted by name in reverse order.
+     * 
+     * @return The number of visited variables.
+     */
+    private int traverse(@NonNull Map<@NonNull String, VariabilityVariable> variables,
+            @NonNull List<@NonNull HierarchicalVariable> roots) {
+        
+        List<@NonNull HierarchicalVariable> stack = new ArrayList<>(roots);
+        int[] stackParents = new int[Math.max(16, roots.size())];
+        Arrays.fill(stackParents, 0, roots.size(), -1);
+        List<@NonNull HierarchicalVariable> children = new ArrayList<>();
+        int size = 0;
+        
+        while (!stack.isEmpty()) {
+            HierarchicalVariable var = stack.remove(stack.size() - 1);
+            int parentPre = stackParents[stack.size()];
+            if (nameToPreOrder.containsKey(var.getName())) {
+                continue; // inconsistent hierarchy with a cycle or duplicate child entries
+            }
+            
+            int pre = size++;
+            preOrder[pre] = var;
+            parent[pre] = parentPre;
+            depth[pre] = parentPre == -1 ? 0 : depth[parentPre] + 1;
+            nameToPreOrder.put(var.getName(), pre);
+            
+            children.clear();
+            for (HierarchicalVariable child : var.getChildren()) {
+                if (variables.get(child.getName()) == child) {
+                    children.add(child);
+                }
+            }
+            children.sort(BY_NAME.reversed());
+            
+            if (stack.size() + children.size() > stackParents.length) {
+                stackParents = Arrays.copyOf(stackParents,
+                        Math.max(stackParents.length * 2, stack.size() + children.size()));
+            }
+            for (HierarchicalVariable child : children) {
+                stackParents[stack.size()] = pre;
+                stack.add(child);
+            }
+        }
+        
+        return size;
+    }
+    
+    /**
+     * Calculates the exclusive end of the sub-tree range for each variable, based on {@link #parent}.
+     * 
+     * @return The sub-tree ends, indexed by pre-order number.
+     */
+    private int @NonNull [] calculateSubtreeEnds() {
+        int size = parent.length;
+        
+        // accumulate sub-tree sizes bottom-up; children always have a higher pre-order number than their parent
+        int[] result = new int[size];
+        for (int pre = size - 1; pre >= 0; pre--) {
+            result[pre]++;
+            if (parent[pre] != -1) {
+                result[parent[pre]] += result[pre];
+            }
+        }
+        for (int pre = 0; pre < size; pre++) {
+            result[pre] += pre;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of variables in this index.
+     * 
+     * @return The number of indexed variables.
+     */
+    public int getSize() {
+        return preOrder.length;
+    }
+    
+    /**
+     * Returns the fingerprint of the model when this index was created. Used to detect that the index is outdated.
+     * 
+     * @return The fingerprint of the model; see {@link VariabilityModel#calculateFingerprint()}.
+     */
+    long getFingerprint() {
+        return fingerprint;
+    }
+    
+    /**
+     * Returns the pre-order number of the given variable.
+     * 
+     * @param variable The variable.
+     * 
+     * @return The pre-order number, or -1 if the variable is not part of this index.
+     */
+    public int getPreOrderNumber(@NonNull VariabilityVariable variable) {
+        Integer result = nameToPreOrder.get(variable.getName());
+        return result != null && preOrder[result] == variable ? result : -1;
+    }
+    
+    /**
+     * Returns the post-order number of the given variable.
+     * 
+     * @param variable The variable.
+     * 
+     * @return The post-order number, or -1 if the variable is not part of this index.
+     */
+    public int getPostOrderNumber(@NonNull VariabilityVariable variable) {
+        int pre = getPreOrderNumber(variable);
+        int result = -1;
+        if (pre != -1) {
+            // all variables in the sub-tree, except the ones on the path from the root, are finished before
+            result = subtreeEnd[pre] - 1 - depth[pre];
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the variable with the given pre-order number.
+     * 
+     * @param preOrderNumber The pre-order number.
+     * 
+     * @return The variable.
+     * 
+     * @throws IndexOutOfBoundsException If the number is not in the range <code>[0, {@link #getSize()})</code>.
+     */
+    public @NonNull HierarchicalVariable getVariable(int preOrderNumber) throws IndexOutOfBoundsException {
+        return preOrder[preOrderNumber];
+    }
+    
+    /**
+     * Returns the depth of the given variable in this index. This is the number of ancestors that are part of the
+     * model.
+     * 
+     * @param variable The variable.
+     * 
+     * @return The depth; 0 for roots. -1 if the variable is not part of this index.
+     */
+    public int getDepth(@NonNull VariabilityVariable variable) {
+        int pre = getPreOrderNumber(variable);
+        return pre != -1 ? depth[pre] : -1;
+    }
+    
+    /**
+     * Checks whether <code>ancestor</code> is a (transitive) parent of <code>descendant</code>. This runs in constant
+     * time.
+     * 
+     * @param ancestor The potential ancestor.
+     * @param descendant The potential descendant.
+     * 
+     * @return Whether <code>ancestor</code> is a proper ancestor of <code>descendant</code>. <code>false</code> if
+     *      either variable is not part of this index.
+     */
+    public boolean isAncestor(@NonNull VariabilityVariable ancestor, @NonNull VariabilityVariable descendant) {
+        int ancestorPre = getPreOrderNumber(ancestor);
+        int descendantPre = getPreOrderNumber(descendant);
+        return ancestorPre != -1 && descendantPre != -1
+                && ancestorPre < descendantPre && descendantPre < subtreeEnd[ancestorPre];
+    }
+    
+    /**
+     * Returns the exclusive end of the pre-order range of the sub-tree of the given variable. The sub-tree consists
+     * of the pre-order numbers <code>[{@link #getPreOrderNumber(VariabilityVariable)}, getSubtreeEnd())</code>.
+     * 
+     * @param variable The variable.
+     * 
+     * @return The end of the sub-tree range, or -1 if the variable is not part of this index.
+     */
+    public int getSubtreeEnd(@NonNull VariabilityVariable variable) {
+        int pre = getPreOrderNumber(variable);
+        return pre != -1 ? subtreeEnd[pre] : -1;
+    }
+    
+    /**
+     * Returns all (transitive) children of the given variable, in pre-order. The result is a view on a contiguous
+     * range of the internal pre-order array.
+     * 
+     * @param variable The variable.
+     * 
+     * @return An unmodifiable list of all descendants. Empty if the variable has no children or is not part of this
+     *      index.
+     */
+    public @NonNull List<@NonNull HierarchicalVariable> getDescendants(@NonNull VariabilityVariable variable) {
+        int pre = getPreOrderNumber(variable);
+        List<@NonNull HierarchicalVariable> result;
+        if (pre != -1) {
+            result = range(pre + 1, subtreeEnd[pre]);
+        } else {
+            result = notNull(Collections.emptyList());
+        }
+        return result;
+    }
+    
+    /**
+     * Returns all ancestors of the given variable, starting with its parent.
+     * 
+     * @param variable The variable.
+     * 
+     * @return The ancestors of the variable. Empty for roots or if the variable is not part of this index.
+     */
+    public @NonNull List<@NonNull HierarchicalVariable> getAncestors(@NonNull VariabilityVariable variable) {
+        int pre = getPreOrderNumber(variable);
+        List<@NonNull HierarchicalVariable> result = new ArrayList<>(pre != -1 ? depth[pre] : 0);
+        if (pre != -1) {
+            for (int current = parent[pre]; current != -1; current = parent[current]) {
+                result.add(preOrder[current]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the variables that have no parent in the model, ordered by name.
+     * 
+     * @return The root variables.
+     */
+    public @NonNull List<@NonNull HierarchicalVariable> getRoots() {
+        List<@NonNull HierarchicalVariable> result = new ArrayList<>();
+        for (int pre = 0; pre < preOrder.length; pre = subtreeEnd[pre]) {
+            result.add(preOrder[pre]);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns all variables of this index, in pre-order.
+     * 
+     * @return An unmodifiable list of all variables in pre-order.
+     */
+    public @NonNull List<@NonNull HierarchicalVariable> getPreOrder() {
+        return range(0, preOrder.length);
+    }
+    
+    /**
+     * Creates an unmodifiable view on a range of the pre-order array.
+     * 
+     * @param from The start of the range (inclusive).
+     * @param to The end of the range (exclusive).
+     * 
+     * @return A view on the range.
+     */
+    private @NonNull List<@NonNull HierarchicalVariable> range(int from, int to) {
+        return notNull(Collections.unmodifiableList(Arrays.asList(preOrder).subList(from, to)));
+    }
+
+}
@@ -20,17 +20,26 @@ import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 
 import net.ssehub.kernel_haven.provider.AbstractCache;
 import net.ssehub.kernel_haven.util.FormatException;
@@ -50,15 +59,44 @@ import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Vari
 
 /**
  * A cache for permanently saving (and reading) a {@link VariabilityModel} to a file. Uses JSON for data representation.
+ * The constraint model file is stored as a read-only sidecar file next to the JSON file; it is validated with a
+ * checksum and used directly (without copying) as the constraint model of models read from the cache. If the
+ * {@link VariabilityModel} has {@link VariabilityModel#getClauses()}, these are stored in a binary sidecar file, so
+ * that they don't need to be parsed again. The constraint usage relations of the variables (which make up most of
+ * the variable data for large models) are also stored in a binary sidecar file, as indices into the variable list of
+ * the JSON file.
  * 
  * @author Adam
  */
 public class JsonVariabilityModelCache extends AbstractCache<VariabilityModel> {
 
-    private static final int VERSION = 5;
+    private static final int VERSION = 6;
+    
+    /**
+     * The old version, which embedded the constraint model as a string in the JSON file. Still supported for reading.
+     */
+    private static final int VERSION_EMBEDDED_CONSTRAINTS = 5;
+    
+    /**
+     * Marker in the constraint usage file for a variable that has no set of used variables.
+     */
+    private static final int NO_SET = -1;
+    
+    /**
+     * Marker in the constraint usage file for a variable where both constraint usage relations are the same set.
+     */
+    private static final int SAME_SET = -2;
+    
+    private @NonNull File cacheDir;
     
     private @NonNull File cacheFile;
     
+    private @NonNull File constraintFile;
+    
+    private @NonNull File clauseFile;
+    
+    private @NonNull File usageFile;
+    
     /**
      * Creates a new cache in the given cache directory.
      * 
@@ -66,7 +104,11 @@ public class JsonVariabilityModelCache extends AbstractCache<VariabilityModel> {
      *      read and write to it.
      */
     public JsonVariabilityModelCache(@NonNull File cacheDir) {
+        this.cacheDir = cacheDir;
         this.cacheFile = new File(cacheDir, "vmCache.json");
+        this.constraintFile = new File(cacheDir, "vmCache.constraints");
+        this.clauseFile = new File(cacheDir, "vmCache.clauses");
+        this.usageFile = new File(cacheDir, "vmCache.usage");
     }
     
     @Override
@@ -88,29 +130,205 @@ public class JsonVariabilityModelCache extends AbstractCache<VariabilityModel> {
         }
         
         if (data != null) {
-            if (data.getInt("version") != VERSION) {
-                throw new FormatException("Got invalid version " + data.getInt("version") + ", we only support "
-                        + VERSION);
+            int version = data.getInt("version");
+            if (version != VERSION && version != VERSION_EMBEDDED_CONSTRAINTS) {
+                throw new FormatException("Got invalid version " + version + ", we only support " + VERSION);
             }
             
             VariabilityModelDescriptor descriptor = readDescriptor(data.getObject("descriptor"));
             // TODO: removed null annotations because jacoco report fails with it
             Map</*@NonNull*/ String, VariabilityVariable> vars = readVariables(data.getList("variables"));
             
-            File constraintCopy = File.createTempFile("constraintModel", "");
-            constraintCopy.deleteOnExit();
-            try (FileOutputStream out = new FileOutputStream(constraintCopy)) {
-                Util.copyStream(new ByteArrayInputStream(data.getString("constraintModel").getBytes()), out);
+            File constraintModel;
+            ClauseStore clauses = null;
+            if (version == VERSION_EMBEDDED_CONSTRAINTS) {
+                constraintModel = File.createTempFile("constraintModel", "");
+                constraintModel.deleteOnExit();
+                try (FileOutputStream out = new FileOutputStream(constraintModel)) {
+                    Util.copyStream(new ByteArrayInputStream(data.getString("constraintModel").getBytes()), out);
+                }
+                
+            } else {
+                JsonObject constraintData = data.getObject("constraintModel");
+                // the sidecar file is read-only, so it can be used directly as the constraint model
+                constraintModel = new File(cacheDir, constraintData.getString("file"));
+                checkSidecar(constraintModel, constraintData);
+                
+                if (data.getElement("clauses") != null) {
+                    clauses = readClauses(data.getObject("clauses"));
+                }
+                if (data.getElement("constraintUsage") != null) {
+                    readConstraintUsage(data.getObject("constraintUsage"), data.getList("variables"), vars);
+                }
             }
             
             @SuppressWarnings("null") // TODO: null annotation missing, see above
-            VariabilityModel tmp = new VariabilityModel(constraintCopy, vars);
+            VariabilityModel tmp = new VariabilityModel(constraintModel, vars);
             tmp.setDescriptor(descriptor);
+            tmp.setClauses(clauses);
             result = tmp;
         }
         
         return result;
     }
+    
+    /**
+     * Checks that the size and checksum of the given sidecar file match the values stored in the JSON.
+     * 
+     * @param file The sidecar file to check.
+     * @param data The JSON data describing the sidecar file.
+     * 
+     * @return The memory-mapped content of the file.
+     * 
+     * @throws FormatException If the file does not match the JSON data.
+     * @throws IOException If reading the file fails.
+     */
+    private static @NonNull ByteBuffer checkSidecar(@NonNull File file, @NonNull JsonObject data)
+            throws FormatException, IOException {
+        
+        if (!file.isFile()) {
+            throw new FormatException("Cache sidecar file " + file + " does not exist");
+        }
+        
+        ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != data.getLong("size")) {
+                throw new FormatException("Cache sidecar file " + file + " has size " + channel.size()
+                        + ", expected " + data.getLong("size"));
+            }
+            content = notNull(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+        
+        if (checksum(content) != data.getLong("crc32")) {
+            throw new FormatException("Checksum of cache sidecar file " + file + " does not match");
+        }
+        
+        return content;
+    }
+    
+    /**
+     * Calculates the CRC32 checksum of the given buffer. The position of the buffer is not changed.
+     * 
+     * @param content The content to calculate the checksum for.
+     * 
+     * @return The checksum.
+     */
+    private static long checksum(@NonNull ByteBuffer content) {
+        CRC32 crc = new CRC32();
+        crc.update(content.duplicate());
+        return crc.getValue();
+    }
+    
+    /**
+     * Reads the constraint usage relations from the binary sidecar file and sets them on the variables. See
+     * {@link #writeConstraintUsage(List)} for the file format.
+     * 
+     * @param data The JSON data describing the sidecar file.
+     * @param variableList The JSON list of variables; the indices in the sidecar file refer to this list.
+     * @param vars The de-serialized variables.
+     * 
+     * @throws FormatException If the sidecar file is invalid.
+     * @throws IOException If reading the sidecar file fails.
+     */
+    private void readConstraintUsage(@NonNull JsonObject data, @NonNull JsonList variableList,
+            @NonNull Map<String, VariabilityVariable> vars) throws FormatException, IOException {
+        
+        File file = new File(cacheDir, data.getString("file"));
+        IntBuffer content = checkSidecar(file, data).asIntBuffer();
+        
+        // readVariables() already checked that all elements are JsonObjects
+        VariabilityVariable[] ordered = new VariabilityVariable[variableList.getSize()];
+        int index = 0;
+        for (JsonElement element : variableList) {
+            ordered[index++] = vars.get(((JsonObject) element).getString("name"));
+        }
+        
+        try {
+            if (content.get() != ordered.length) {
+                throw new FormatException("Constraint usage file " + file + " does not match the variables");
+            }
+            
+            for (VariabilityVariable var : ordered) {
+                Set<@NonNull VariabilityVariable> used = readVariableSet(content, ordered);
+                if (used != null) {
+                    var.setVariablesUsedInConstraints(used);
+                }
+                
+                if (content.get(content.position()) == SAME_SET) {
+                    content.get();
+                    if (used != null) {
+                        var.setUsedInConstraintsOfOtherVariables(used);
+                    }
+                } else {
+                    Set<@NonNull VariabilityVariable> usedBy = readVariableSet(content, ordered);
+                    if (usedBy != null) {
+                        var.setUsedInConstraintsOfOtherVariables(usedBy);
+                    }
+                }
+            }
+            
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new FormatException("Invalid constraint usage file " + file, e);
+        }
+    }
+    
+    /**
+     * Reads a single set of variables from the constraint usage sidecar file.
+     * 
+     * @param content The content of the file, positioned at the size of the set.
+     * @param ordered The variables, in the order of the variable list in the JSON file.
+     * 
+     * @return The read set, or <code>null</code> if the set was not present.
+     * 
+     * @throws FormatException If the content is invalid.
+     */
+    private static @Nullable Set<@NonNull VariabilityVariable> readVariableSet(@NonNull IntBuffer content,
+            @Nullable VariabilityVariable @NonNull [] ordered) throws FormatException {
+        
+        Set<@NonNull VariabilityVariable> result = null;
+        int size = content.get();
+        if (size >= 0) {
+            result = new HashSet<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                VariabilityVariable var = ordered[content.get()];
+                if (var == null) {
+                    throw new FormatException("Invalid variable index in constraint usage file");
+                }
+                result.add(var);
+            }
+        } else if (size != NO_SET) {
+            throw new FormatException("Invalid set size " + size + " in constraint usage file");
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the {@link ClauseStore} from the binary sidecar file.
+     * 
+     * @param data The JSON data describing the sidecar file.
+     * 
+     * @return The read clauses.
+     * 
+     * @throws FormatException If the sidecar file is invalid.
+     * @throws IOException If reading the sidecar file fails.
+     */
+    private @NonNull ClauseStore readClauses(@NonNull JsonObject data) throws FormatException, IOException {
+        File file = new File(cacheDir, data.getString("file"));
+        IntBuffer content = checkSidecar(file, data).asIntBuffer();
+        
+        try {
+            int numVariables = content.get();
+            int[] offsets = new int[content.get() + 1];
+            int[] literals = new int[content.get()];
+            content.get(offsets);
+            content.get(literals);
+            
+            return new ClauseStore(numVariables, literals, offsets);
+            
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new FormatException("Invalid clause file " + file, e);
+        }
+    }
 
     /**
      * Reads the {@link VariabilityModelDescriptor} from the given DIMACS.
@@ -212,15 +430,92 @@ public class JsonVariabilityModelCache extends AbstractCache<VariabilityModel> {
         
         mainJson.putElement("version", new JsonNumber(VERSION));
         mainJson.putElement("descriptor", descriptorToJson(result.getDescriptor()));
-        mainJson.putElement("variables", variablesToJson(result.getVariables()));
-        mainJson.putElement("constraintModel",
-                new JsonString(Util.readStream(new FileInputStream(result.getConstraintModel()))));
+        List<@NonNull VariabilityVariable> sorted = new ArrayList<>(result.getVariableMap().values());
+        sorted.sort((v1, v2) -> v1.getName().compareTo(v2.getName()));
+        mainJson.putElement("variables", variablesToJson(sorted));
+        
+        if (writeConstraintUsage(sorted)) {
+            mainJson.putElement("constraintUsage", sidecarToJson(usageFile));
+        } else {
+            Files.deleteIfExists(usageFile.toPath());
+        }
+        
+        // the model may have been read from this cache, and thus use the sidecar file directly
+        if (!Files.exists(constraintFile.toPath())
+                || !Files.isSameFile(result.getConstraintModel().toPath(), constraintFile.toPath())) {
+            // replace the read-only sidecar file atomically, so that readers never see a partially written file
+            File tmp = File.createTempFile("vmCache", ".constraints.tmp", cacheDir);
+            try {
+                Files.copy(result.getConstraintModel().toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                tmp.setReadOnly();
+                constraintFile.setWritable(true); // some platforms don't allow replacing read-only files
+                Files.move(tmp.toPath(), constraintFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        }
+        mainJson.putElement("constraintModel", sidecarToJson(constraintFile));
+        
+        ClauseStore clauses = result.getClauses();
+        if (clauses != null) {
+            writeClauses(clauses);
+            mainJson.putElement("clauses", sidecarToJson(clauseFile));
+        } else {
+            Files.deleteIfExists(clauseFile.toPath());
+        }
         
         try (BufferedWriter out = new BufferedWriter(new FileWriter(cacheFile))) {
             out.write(mainJson.accept(new JsonPrettyPrinter()));
         }
     }
     
+    /**
+     * Creates the JSON data that references a sidecar file. This contains the name, size and checksum of the file.
+     * 
+     * @param file The sidecar file. Must be located in the cache directory.
+     * 
+     * @return The JSON data describing the sidecar file.
+     * 
+     * @throws IOException If reading the file fails.
+     */
+    private static @NonNull JsonObject sidecarToJson(@NonNull File file) throws IOException {
+        long checksum;
+        long size;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            checksum = checksum(notNull(channel.map(MapMode.READ_ONLY, 0, size)));
+        }
+        
+        JsonObject result = new JsonObject();
+        result.putElement("file", new JsonString(notNull(file.getName())));
+        result.putElement("size", new JsonNumber(size));
+        result.putElement("crc32", new JsonNumber(checksum));
+        return result;
+    }
+    
+    /**
+     * Writes the given clauses to the binary sidecar file. The file contains the number of variables, the number of
+     * clauses, the number of literals, the clause offsets and the literals as 32 bit integers.
+     * 
+     * @param clauses The clauses to write.
+     * 
+     * @throws IOException If writing the file fails.
+     */
+    private void writeClauses(@NonNull ClauseStore clauses) throws IOException {
+        int[] offsets = clauses.getClauseOffsets();
+        int[] literals = clauses.getLiteralArena();
+        
+        ByteBuffer content = ByteBuffer.allocate((3 + offsets.length + literals.length) * Integer.BYTES);
+        IntBuffer ints = content.asIntBuffer();
+        ints.put(clauses.getNumVariables());
+        ints.put(clauses.getNumClauses());
+        ints.put(clauses.getNumLiterals());
+        ints.put(offsets);
+        ints.put(literals);
+        
+        writeFile(clauseFile, content);
+    }
+    
     /**
      * Turns the {@link VariabilityModelDescriptor} into a {@link JsonObject}.
      * 
@@ -244,25 +539,121 @@ public class JsonVariabilityModelCache extends AbstractCache<VariabilityModel> {
     }
     
     /**
-     * Turns the given {@link VariabilityVariable}s into a {@link JsonList} of {@link JsonObject}s.
+     * Turns the given {@link VariabilityVariable}s into a {@link JsonList} of {@link JsonObject}s. The constraint
+     * usage relations are not included, these are written by {@link #writeConstraintUsage(List)}.
      * 
-     * @param variables The variables to convert.
+     * @param variables The variables to convert, sorted by name.
      * 
      * @return The JSON representation of the variables.
      */
-    private @NonNull JsonElement variablesToJson(@NonNull Set<@NonNull VariabilityVariable> variables) {
-        List<@NonNull VariabilityVariable> sorted = new ArrayList<>(variables);
-        sorted.sort((v1, v2) -> v1.getName().compareTo(v2.getName()));
-        
+    private @NonNull JsonElement variablesToJson(@NonNull List<@NonNull VariabilityVariable> variables) {
         JsonList result = new JsonList();
         
-        for (VariabilityVariable var : sorted) {
+        for (VariabilityVariable var : variables) {
             JsonObject json = var.toJson();
+            json.removeElement("references");
+            json.removeElement("referenced-by");
             json.putElement("class", new JsonString(notNull(var.getClass().getName())));
             result.addElement(json);
         }
         
         return result;
     }
+    
+    /**
+     * Writes the constraint usage relations of the given variables to the binary sidecar file. The file contains
+     * 32 bit integers: the number of variables, followed by two sets for each variable
+     * ({@link VariabilityVariable#getVariablesUsedInConstraints()} and
+     * {@link VariabilityVariable#getUsedInConstraintsOfOtherVariables()}). Each set is written as its size (or
+     * {@link #NO_SET}) followed by the indices of the variables in the given list. The second set may be written
+     * as {@link #SAME_SET} if both relations are the same set.
+     * 
+     * @param variables The variables, in the order of the variable list in the JSON file.
+     * 
+     * @return Whether the sidecar file was written; <code>false</code> if no variable has constraint usage
+     *      information.
+     * 
+     * @throws IOException If writing the file fails.
+     */
+    private boolean writeConstraintUsage(@NonNull List<@NonNull VariabilityVariable> variables) throws IOException {
+        Map<VariabilityVariable, Integer> indices = new HashMap<>(variables.size() * 2);
+        int size = 1;
+        boolean hasUsage = false;
+        for (VariabilityVariable var : variables) {
+            indices.put(var, indices.size());
+            
+            Set<@NonNull VariabilityVariable> used = var.getVariablesUsedInConstraints();
+            Set<@NonNull VariabilityVariable> usedBy = var.getUsedInConstraintsOfOtherVariables();
+            size += 2 + (used != null ? used.size() : 0) + (usedBy != null && usedBy != used ? usedBy.size() : 0);
+            hasUsage |= used != null || usedBy != null;
+        }
+        
+        if (hasUsage) {
+            ByteBuffer content = ByteBuffer.allocate(size * Integer.BYTES);
+            IntBuffer ints = content.asIntBuffer();
+            ints.put(variables.size());
+            for (VariabilityVariable var : variables) {
+                Set<@NonNull VariabilityVariable> used = var.getVariablesUsedInConstraints();
+                Set<@NonNull VariabilityVariable> usedBy = var.getUsedInConstraintsOfOtherVariables();
+                writeVariableSet(ints, used, indices);
+                if (used != null && usedBy == used) {
+                    ints.put(SAME_SET);
+                } else {
+                    writeVariableSet(ints, usedBy, indices);
+                }
+            }
+            
+            // the buffer may be larger than needed, if sets contain variables that are not part of the model
+            content.limit(ints.position() * Integer.BYTES);
+            writeFile(usageFile, content);
+        }
+        
+        return hasUsage;
+    }
+    
+    /**
+     * Writes a single set of variables to the constraint usage sidecar file. Variables that are not part of the
+     * model are skipped.
+     * 
+     * @param out The buffer to write to.
+     * @param set The set to write; may be <code>null</code>.
+     * @param indices The indices of the variables in the variable list.
+     */
+    private static void writeVariableSet(@NonNull IntBuffer out, @Nullable Set<@NonNull VariabilityVariable> set,
+            @NonNull Map<VariabilityVariable, Integer> indices) {
+        
+        if (set == null) {
+            out.put(NO_SET);
+        } else {
+            int sizePosition = out.position();
+            out.put(0);
+            int size = 0;
+            for (VariabilityVariable var : set) {
+                Integer index = indices.get(var);
+                if (index != null) {
+                    out.put(index);
+                    size++;
+                }
+            }
+            out.put(sizePosition, size);
+        }
+    }
+    
+    /**
+     * Writes the given content to a file. Existing files are overwritten.
+     * 
+     * @param file The file to write.
+     * @param content The content to write.
+     * 
+     * @throws IOException If writing the file fails.
+     */
+    private static void writeFile(@NonNull File file, @NonNull ByteBuffer content) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+    }
 
 }
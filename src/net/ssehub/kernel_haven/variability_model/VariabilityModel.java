@@ -16,12 +16,17 @@
 package net.ssehub.kernel_haven.variability_model;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Attribute;
 
 /**
  * Representation of variability models.
@@ -40,12 +45,27 @@ public class VariabilityModel {
      * null.
      */
     private @NonNull File constraintModel;
+    
+    /**
+     * The parsed clauses of the {@link #constraintModel}, if available.
+     */
+    private @Nullable ClauseStore clauses;
 
     /**
      * The variables defined by this variability model. Never null.
      * The key is the name of the variable for easier access.
      */
     private @NonNull Map<@NonNull String, VariabilityVariable> variables;
+    
+    /**
+     * The lazily created index; see {@link #getIndex()}.
+     */
+    private volatile @Nullable VariabilityModelIndex index;
+    
+    /**
+     * The lazily created hierarchy index; see {@link #getHierarchyIndex()}.
+     */
+    private volatile @Nullable HierarchyIndex hierarchyIndex;
 
     /**
      * Creates a new variability model.
@@ -94,6 +114,27 @@ public class VariabilityModel {
         return constraintModel;
     }
 
+    /**
+     * Returns the clauses of the constraint model, if the extractor parsed them. This is the case for
+     * {@link VariabilityModelDescriptor.ConstraintFileType#DIMACS} models created by the
+     * {@link DIMACSVariabilityModelExtractor}. This allows consumers to work on the clauses without re-parsing
+     * {@link #getConstraintModel()}.
+     * 
+     * @return The clauses of the constraint model, or <code>null</code> if they are not available.
+     */
+    public @Nullable ClauseStore getClauses() {
+        return clauses;
+    }
+    
+    /**
+     * Sets the clauses of the constraint model. These must match the content of {@link #getConstraintModel()}.
+     * 
+     * @param clauses The clauses of the constraint model, or <code>null</code>.
+     */
+    public void setClauses(@Nullable ClauseStore clauses) {
+        this.clauses = clauses;
+    }
+
     /**
      * Returns the variables defined by this variability model.
      * 
@@ -129,6 +170,132 @@ public class VariabilityModel {
      */
     void setDescriptor(@NonNull VariabilityModelDescriptor descriptor) {
         this.descriptor = descriptor;
+        this.index = null;
+        this.hierarchyIndex = null;
+    }
+    
+    /**
+     * Returns a dense, integer-indexed view on the variables of this model. The index is created on the first call
+     * and cached afterwards. It is re-created if variables were added, removed or replaced, if their DIMACS numbers
+     * or constraint usage sets changed (see {@link #calculateFingerprint()}), or if the
+     * {@link Attribute#CONSTRAINT_USAGE} attribute changed since then.
+     * 
+     * @return The index for this model.
+     */
+    public @NonNull VariabilityModelIndex getIndex() {
+        VariabilityModelIndex result = this.index;
+        if (result == null || !isUpToDate(result)) {
+            synchronized (this) {
+                result = this.index;
+                if (result == null || !isUpToDate(result)) {
+                    result = new VariabilityModelIndex(this);
+                    this.index = result;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns an index on the hierarchy of the {@link HierarchicalVariable}s in this model. This allows constant time
+     * ancestor checks and returns sub-trees as contiguous ranges. The index is created on the first call and cached
+     * afterwards. It is re-created if variables were added, removed or replaced since then (see
+     * {@link #calculateFingerprint()}); other modifications of the hierarchy after the first call are not reflected.
+     * 
+     * @return The hierarchy index, or <code>null</code> if this model does not have the
+     *      {@link Attribute#HIERARCHICAL} attribute.
+     */
+    public @Nullable HierarchyIndex getHierarchyIndex() {
+        HierarchyIndex result = null;
+        if (descriptor.hasAttribute(Attribute.HIERARCHICAL)) {
+            result = this.hierarchyIndex;
+            if (result == null || result.getFingerprint() != calculateFingerprint()) {
+                synchronized (this) {
+                    result = this.hierarchyIndex;
+                    if (result == null || result.getFingerprint() != calculateFingerprint()) {
+                        result = new HierarchyIndex(this);
+                        this.hierarchyIndex = result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns an order of the variables of this model that is suitable for binary decision diagrams (see
+     * {@link net.ssehub.kernel_haven.util.logic.bdd.BddManager}). If this model is hierarchical, the variables are
+     * in the pre-order of the hierarchy, so that parents and their children are close to each other. The remaining
+     * variables follow in the order of the {@link #getIndex()}.
+     * 
+     * @return The names of all variables of this model, each exactly once.
+     */
+    public @NonNull List<@NonNull String> getVariableOrder() {
+        VariabilityModelIndex index = getIndex();
+        List<@NonNull String> result = new ArrayList<>(index.getSize());
+        
+        BitSet added = new BitSet(index.getSize());
+        HierarchyIndex hierarchy = getHierarchyIndex();
+        if (hierarchy != null) {
+            for (HierarchicalVariable variable : hierarchy.getPreOrder()) {
+                result.add(variable.getName());
+                added.set(index.getId(variable));
+            }
+        }
+        
+        for (int id = added.nextClearBit(0); id < index.getSize(); id = added.nextClearBit(id + 1)) {
+            result.add(index.getVariable(id).getName());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Checks whether the given index still matches the state of this model.
+     * 
+     * @param index The index to check.
+     * 
+     * @return Whether the index can be used.
+     */
+    private boolean isUpToDate(@NonNull VariabilityModelIndex index) {
+        return index.getFingerprint() == calculateFingerprint()
+                && index.hasConstraintUsage() == descriptor.hasAttribute(Attribute.CONSTRAINT_USAGE);
+    }
+    
+    /**
+     * Calculates a fingerprint of the variables of this model. This is used to detect that a cached index does not
+     * match the variables anymore. The fingerprint covers the names and identities of the variables, their DIMACS
+     * numbers, and the identities and sizes of their constraint usage sets. Calculating it is linear in the number of
+     * variables, but much cheaper than creating an index.
+     * 
+     * @return The fingerprint of the current variables.
+     */
+    long calculateFingerprint() {
+        long result = variables.size();
+        for (Map.Entry<@NonNull String, VariabilityVariable> entry : variables.entrySet()) {
+            VariabilityVariable var = entry.getValue();
+            long hash = entry.getKey().hashCode() * 31L + System.identityHashCode(var);
+            hash = hash * 31 + var.getDimacsNumber();
+            hash = hash * 31 + hashSet(var.getVariablesUsedInConstraints());
+            hash = hash * 31 + hashSet(var.getUsedInConstraintsOfOtherVariables());
+            
+            // sum of mixed hashes, so that the iteration order of the map does not matter
+            hash *= 0x9E3779B97F4A7C15L;
+            result += hash ^ (hash >>> 32);
+        }
+        return result;
+    }
+    
+    /**
+     * Calculates a cheap hash of a constraint usage set for {@link #calculateFingerprint()}, based on its identity and
+     * size.
+     * 
+     * @param set The set; may be <code>null</code>.
+     * 
+     * @return The hash of the set.
+     */
+    private static long hashSet(@Nullable Set<@NonNull VariabilityVariable> set) {
+        return set != null ? System.identityHashCode(set) * 31L + set.size() : 0;
     }
     
 }
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.VariableSupportCache;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Attribute;
+
+/**
+ * A dense, integer-indexed view on the variables of a {@link VariabilityModel}. Each variable gets an ID in the range
+ * <code>[0, {@link #getSize()})</code>. Variables are numbered in the order of their DIMACS numbers; variables
+ * without a DIMACS number come last (ordered by name).
+ * <p>
+ * If the {@link VariabilityModel} has the {@link Attribute#CONSTRAINT_USAGE} attribute, then the constraint usage
+ * relations (see {@link VariabilityVariable#getVariablesUsedInConstraints()} and
+ * {@link VariabilityVariable#getUsedInConstraintsOfOtherVariables()}) are stored in compressed sparse row arrays.
+ * This allows fast, allocation free iteration over these relations, and neighborhood queries on {@link BitSet}s of
+ * variable IDs.
+ * </p>
+ * <p>
+ * Instances are obtained via {@link VariabilityModel#getIndex()}. This class is immutable and thus thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public final class VariabilityModelIndex {
+    
+    private @NonNull VariabilityVariable @NonNull [] variables;
+    
+    private @NonNull Map<@NonNull String, Integer> nameToId;
+    
+    /**
+     * Maps DIMACS numbers to variable IDs. -1 for DIMACS numbers without a variable.
+     */
+    private int @NonNull [] dimacsToId;
+    
+    /**
+     * Offsets into {@link #uses} for each variable ID (with an additional last element). <code>null</code> if the
+     * model has no constraint usage information.
+     */
+    private int @Nullable [] usesOffsets;
+    
+    private int @Nullable [] uses;
+    
+    private int @Nullable [] usedByOffsets;
+    
+    private int @Nullable [] usedBy;
+    
+    /**
+     * The fingerprint of the model when this index was created; see {@link VariabilityModel#calculateFingerprint()}.
+     */
+    private long fingerprint;
+    
+    /**
+     * Creates the index for the given variability model.
+     * 
+     * @param model The model to create the index for.
+     */
+    VariabilityModelIndex(@NonNull VariabilityModel model) {
+        this.fingerprint = model.calculateFingerprint();
+        Collection<VariabilityVariable> vars = model.getVariableMap().values();
+        this.variables = notNull(vars.toArray(new VariabilityVariable[vars.size()]));
+        Arrays.sort(this.variables, Comparator
+                .comparingInt((VariabilityVariable var) -> var.getDimacsNumber() > 0 ? var.getDimacsNumber()
+                        : Integer.MAX_VALUE)
+                .thenComparing(VariabilityVariable::getName));
+        
+        this.nameToId = new HashMap<>(variables.length * 2);
+        int maxDimacs = 0;
+        for (int id = 0; id < variables.length; id++) {
+            nameToId.put(variables[id].getName(), id);
+            maxDimacs = Math.max(maxDimacs, variables[id].getDimacsNumber());
+        }
+        
+        // variables (e.g. tristates) may be represented by more than one DIMACS number
+        Map<Integer, String> dimacsMapping = new HashMap<>();
+        for (VariabilityVariable var : variables) {
+            var.getDimacsMapping(dimacsMapping);
+        }
+        for (Integer number : dimacsMapping.keySet()) {
+            maxDimacs = Math.max(maxDimacs, number);
+        }
+        this.dimacsToId = new int[maxDimacs + 1];
+        Arrays.fill(dimacsToId, -1);
+        for (Map.Entry<Integer, String> entry : dimacsMapping.entrySet()) {
+            Integer id = nameToId.get(entry.getValue());
+            if (entry.getKey() > 0 && id != null) {
+                dimacsToId[entry.getKey()] = id;
+            }
+        }
+        
+        if (model.getDescriptor().hasAttribute(Attribute.CONSTRAINT_USAGE)) {
+            int[] usesOffsets = new int[variables.length + 1];
+            int[] usedByOffsets = new int[variables.length + 1];
+            this.uses = createRows(usesOffsets, true);
+            this.usedBy = createRows(usedByOffsets, false);
+            this.usesOffsets = usesOffsets;
+            this.usedByOffsets = usedByOffsets;
+        }
+    }
+    
+    /**
+     * Creates the compressed sparse rows for one direction of the constraint usage relation.
+     * 
+     * @param offsets The array to write the row offsets to. Must have the length <code>variables.length + 1</code>.
+     * @param uses <code>true</code> for {@link VariabilityVariable#getVariablesUsedInConstraints()},
+     *      <code>false</code> for {@link VariabilityVariable#getUsedInConstraintsOfOtherVariables()}.
+     * 
+     * @return The concatenated (sorted) rows.
+     */
+    private int @NonNull [] createRows(int @NonNull [] offsets, boolean uses) {
+        int[] result = new int[16];
+        int size = 0;
+        
+        for (int id = 0; id < variables.length; id++) {
+            offsets[id] = size;
+            
+            Set<@NonNull VariabilityVariable> related = uses ? variables[id].getVariablesUsedInConstraints()
+                    : variables[id].getUsedInConstraintsOfOtherVariables();
+            if (related != null) {
+                if (size + related.size() > result.length) {
+                    result = Arrays.copyOf(result, Math.max(result.length * 2, size + related.size()));
+                }
+                
+                int rowStart = size;
+                for (VariabilityVariable var : related) {
+                    Integer relatedId = nameToId.get(var.getName());
+                    if (relatedId != null) {
+                        result[size++] = relatedId;
+                    }
+                }
+                Arrays.sort(result, rowStart, size);
+            }
+        }
+        offsets[variables.length] = size;
+        
+        return notNull(Arrays.copyOf(result, size));
+    }
+    
+    /**
+     * Returns the number of variables in this index.
+     * 
+     * @return The number of variables; all IDs are smaller than this.
+     */
+    public int getSize() {
+        return variables.length;
+    }
+    
+    /**
+     * Returns the variable with the given ID.
+     * 
+     * @param id The ID of the variable.
+     * 
+     * @return The variable with the given ID.
+     * 
+     * @throws IndexOutOfBoundsException If the ID is invalid.
+     */
+    public @NonNull VariabilityVariable getVariable(int id) throws IndexOutOfBoundsException {
+        return variables[id];
+    }
+    
+    /**
+     * Returns the ID of the variable with the given name.
+     * 
+     * @param name The name of the variable.
+     * 
+     * @return The ID of the variable, or -1 if no such variable exists.
+     */
+    public int getId(@NonNull String name) {
+        Integer id = nameToId.get(name);
+        return id != null ? id : -1;
+    }
+    
+    /**
+     * Returns the ID of the given variable.
+     * 
+     * @param variable The variable.
+     * 
+     * @return The ID of the variable, or -1 if the variable is not part of the model.
+     */
+    public int getId(@NonNull VariabilityVariable variable) {
+        return getId(variable.getName());
+    }
+    
+    /**
+     * Returns the ID of the variable that is represented by the given DIMACS number.
+     * 
+     * @param dimacsNumber The DIMACS number (positive).
+     * 
+     * @return The ID of the variable, or -1 if no variable has the given DIMACS number.
+     */
+    public int getIdForDimacsNumber(int dimacsNumber) {
+        int result = -1;
+        if (dimacsNumber > 0 && dimacsNumber < dimacsToId.length) {
+            result = dimacsToId[dimacsNumber];
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the fingerprint of the model when this index was created. Used to detect that the index is outdated.
+     * 
+     * @return The fingerprint of the model; see {@link VariabilityModel#calculateFingerprint()}.
+     */
+    long getFingerprint() {
+        return fingerprint;
+    }
+    
+    /**
+     * Returns whether this index contains the constraint usage relations. This is the case if the
+     * {@link VariabilityModel} has the {@link Attribute#CONSTRAINT_USAGE} attribute.
+     * 
+     * @return Whether the constraint usage relations are available.
+     */
+    public boolean hasConstraintUsage() {
+        return usesOffsets != null;
+    }
+    
+    /**
+     * Returns the number of variables that are used in the constraints of the given variable.
+     * 
+     * @param id The ID of the variable.
+     * 
+     * @return The number of variables used in its constraints.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     * 
+     * @see VariabilityVariable#getVariablesUsedInConstraints()
+     */
+    public int getVariablesUsedInConstraintsCount(int id) throws IllegalStateException {
+        int[] offsets = getOffsets(true);
+        return offsets[id + 1] - offsets[id];
+    }
+    
+    /**
+     * Returns the ID of a variable that is used in the constraints of the given variable. The IDs are sorted
+     * ascending.
+     * 
+     * @param id The ID of the variable.
+     * @param index The index in the list of used variables, in the range
+     *      <code>[0, {@link #getVariablesUsedInConstraintsCount(int)})</code>.
+     * 
+     * @return The ID of the used variable.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     * 
+     * @see VariabilityVariable#getVariablesUsedInConstraints()
+     */
+    public int getVariableUsedInConstraints(int id, int index) throws IllegalStateException {
+        return notNull(uses)[getOffsets(true)[id] + index];
+    }
+    
+    /**
+     * Returns the number of variables that use the given variable in their constraints.
+     * 
+     * @param id The ID of the variable.
+     * 
+     * @return The number of variables that use the given variable.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     * 
+     * @see VariabilityVariable#getUsedInConstraintsOfOtherVariables()
+     */
+    public int getUsedInConstraintsOfOtherVariablesCount(int id) throws IllegalStateException {
+        int[] offsets = getOffsets(false);
+        return offsets[id + 1] - offsets[id];
+    }
+    
+    /**
+     * Returns the ID of a variable that uses the given variable in its constraints. The IDs are sorted ascending.
+     * 
+     * @param id The ID of the variable.
+     * @param index The index in the list of using variables, in the range
+     *      <code>[0, {@link #getUsedInConstraintsOfOtherVariablesCount(int)})</code>.
+     * 
+     * @return The ID of the using variable.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     * 
+     * @see VariabilityVariable#getUsedInConstraintsOfOtherVariables()
+     */
+    public int getUsedInConstraintsOfOtherVariables(int id, int index) throws IllegalStateException {
+        return notNull(usedBy)[getOffsets(false)[id] + index];
+    }
+    
+    /**
+     * Returns the variables that are used in the constraints of the given variable.
+     * 
+     * @param id The ID of the variable.
+     * 
+     * @return The IDs of the used variables.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     */
+    public @NonNull BitSet getVariablesUsedInConstraints(int id) throws IllegalStateException {
+        BitSet result = new BitSet(variables.length);
+        addRow(result, id, true);
+        return result;
+    }
+    
+    /**
+     * Returns the variables that use the given variable in their constraints.
+     * 
+     * @param id The ID of the variable.
+     * 
+     * @return The IDs of the using variables.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     */
+    public @NonNull BitSet getUsedInConstraintsOfOtherVariables(int id) throws IllegalStateException {
+        BitSet result = new BitSet(variables.length);
+        addRow(result, id, false);
+        return result;
+    }
+    
+    /**
+     * Returns the direct neighbors of the given variables in the constraint usage graph, i.e. all variables that are
+     * used in the constraints of the given variables, or that use the given variables in their constraints.
+     * 
+     * @param ids The IDs of the variables to get the neighbors for.
+     * 
+     * @return The IDs of the neighbors. May contain IDs from the given set, if these are neighbors of each other.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     */
+    public @NonNull BitSet getNeighbors(@NonNull BitSet ids) throws IllegalStateException {
+        BitSet result = new BitSet(variables.length);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            addRow(result, id, true);
+            addRow(result, id, false);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns all variables that are transitively connected to the given variables in the constraint usage graph (in
+     * any direction).
+     * 
+     * @param ids The IDs of the variables to start from.
+     * 
+     * @return The IDs of all connected variables, including the given ones.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     */
+    public @NonNull BitSet getConnectedVariables(@NonNull BitSet ids) throws IllegalStateException {
+        BitSet result = (BitSet) ids.clone();
+        BitSet frontier = (BitSet) ids.clone();
+        
+        while (!frontier.isEmpty()) {
+            BitSet next = getNeighbors(frontier);
+            next.andNot(result);
+            result.or(next);
+            frontier = next;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Converts the given variables to a {@link BitSet} of IDs. Variables that are not part of the model are ignored.
+     * 
+     * @param variables The variables to convert.
+     * 
+     * @return The IDs of the given variables.
+     */
+    public @NonNull BitSet toIds(@NonNull Collection<? extends VariabilityVariable> variables) {
+        BitSet result = new BitSet(this.variables.length);
+        for (VariabilityVariable var : variables) {
+            int id = getId(var);
+            if (id != -1) {
+                result.set(id);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Converts the given {@link BitSet} of IDs to the variables.
+     * 
+     * @param ids The IDs to convert.
+     * 
+     * @return The variables with the given IDs, ordered by ID.
+     * 
+     * @throws IndexOutOfBoundsException If the given set contains invalid IDs.
+     */
+    public @NonNull List<@NonNull VariabilityVariable> toVariables(@NonNull BitSet ids)
+            throws IndexOutOfBoundsException {
+        
+        List<@NonNull VariabilityVariable> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(getVariable(id));
+        }
+        return result;
+    }
+    
+    /**
+     * Creates a {@link VariableSupportCache} that uses the IDs of this index as its dictionary. The supports of
+     * formulas can then be combined directly with the {@link BitSet}s of this index; variables that are not part of
+     * the model get IDs <code>&gt;= {@link #getSize()}</code>. This allows checking whether a formula only uses
+     * variables of the model with {@link VariableSupportCache#usesOnlyDictionaryVariables(Formula)}.
+     * 
+     * @return A new support cache for this index.
+     */
+    public @NonNull VariableSupportCache createSupportCache() {
+        String[] names = new String[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            names[i] = variables[i].getName();
+        }
+        return new VariableSupportCache(names);
+    }
+    
+    /**
+     * Adds the row of the given variable in one of the constraint usage relations to the given set.
+     * 
+     * @param result The set to add the IDs to.
+     * @param id The ID of the variable.
+     * @param uses <code>true</code> for {@link VariabilityVariable#getVariablesUsedInConstraints()},
+     *      <code>false</code> for {@link VariabilityVariable#getUsedInConstraintsOfOtherVariables()}.
+     */
+    private void addRow(@NonNull BitSet result, int id, boolean uses) {
+        int[] offsets = getOffsets(uses);
+        int[] row = notNull(uses ? this.uses : this.usedBy);
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            result.set(row[i]);
+        }
+    }
+    
+    /**
+     * Returns the offsets for one direction of the constraint usage relations.
+     * 
+     * @param uses <code>true</code> for {@link VariabilityVariable#getVariablesUsedInConstraints()},
+     *      <code>false</code> for {@link VariabilityVariable#getUsedInConstraintsOfOtherVariables()}.
+     * 
+     * @return The row offsets.
+     * 
+     * @throws IllegalStateException If the constraint usage relations are not available.
+     */
+    private int @NonNull [] getOffsets(boolean uses) throws IllegalStateException {
+        int[] result = uses ? usesOffsets : usedByOffsets;
+        if (result == null) {
+            throw new IllegalStateException("Variability model has no constraint usage information");
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.IFormulaVisitor;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.logic.sat.SatSolver;
+import net.ssehub.kernel_haven.util.logic.sat.TseitinConverter;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.ConstraintFileType;
+
+/**
+ * Checks the satisfiability of formulas (e.g. presence conditions) under the constraints of a DIMACS
+ * {@link VariabilityModel}, without starting an external solver process. The clauses of the model are loaded into an
+ * in-process {@link SatSolver} once; each formula is converted via a {@link TseitinConverter} and checked by
+ * assuming its literal (or the literals of its operands, if it is a conjunction). Conditions that hold for many
+ * checks (e.g. the presence condition of a file) can be pushed as assumptions with {@link #push(Formula)} and removed
+ * again with {@link #pop()}.
+ * <p>
+ * The most recently found solutions are kept. A formula that is true in one of them is satisfiable without calling
+ * the solver (and without adding its definitions to the solver); in practice, this answers most checks of
+ * satisfiable presence conditions.
+ * </p>
+ * <p>
+ * Variables of the formulas are mapped to the DIMACS numbers of the {@link VariabilityVariable}s; variables that are
+ * not part of the model are unconstrained. This class is not thread-safe.
+ * </p>
+ * 
+ * @author Adam
+ */
+public class VariabilityModelSatChecker {
+    
+    private static final int MAX_MODELS = 16;
+    
+    private @NonNull SatSolver solver;
+    
+    private @NonNull TseitinConverter converter;
+    
+    /**
+     * Recently found solutions that satisfy the currently pushed conditions; most recent first. Indexed by solver
+     * variable.
+     */
+    private @NonNull Deque<boolean @NonNull []> models;
+    
+    private @NonNull ModelEvaluator evaluator;
+    
+    /**
+     * The number of assumption literals for each pushed condition.
+     */
+    private @NonNull Deque<@NonNull Integer> pushedCounts;
+    
+    /**
+     * Creates a checker for the given variability model.
+     * 
+     * @param vm The variability model. Must either have clauses (see {@link VariabilityModel#getClauses()}) or a
+     *      DIMACS constraint model file.
+     * 
+     * @throws FormatException If the model has no clauses and the DIMACS file cannot be read.
+     */
+    public VariabilityModelSatChecker(@NonNull VariabilityModel vm) throws FormatException {
+        ClauseStore clauses = vm.getClauses();
+        if (clauses == null) {
+            clauses = readClauses(vm);
+        }
+        
+        this.solver = new SatSolver();
+        solver.ensureVariables(clauses.getNumVariables());
+        int[] arena = clauses.getLiteralArena();
+        int[] offsets = clauses.getClauseOffsets();
+        for (int i = 0; i < clauses.getNumClauses(); i++) {
+            int[] clause = new int[offsets[i + 1] - offsets[i]];
+            System.arraycopy(arena, offsets[i], clause, 0, clause.length);
+            solver.addClause(clause);
+        }
+        
+        Map<@NonNull String, Integer> variables = new HashMap<>();
+        for (VariabilityVariable variable : vm.getVariableMap().values()) {
+            if (variable.getDimacsNumber() > 0) {
+                variables.put(variable.getName(), variable.getDimacsNumber());
+            }
+        }
+        this.converter = new TseitinConverter(solver, variables);
+        this.models = new ArrayDeque<>(MAX_MODELS);
+        this.evaluator = new ModelEvaluator();
+        this.pushedCounts = new ArrayDeque<>();
+    }
+    
+    /**
+     * Reads the clauses from the DIMACS constraint model file of the given model.
+     * 
+     * @param vm The variability model.
+     * 
+     * @return The clauses of the model.
+     * 
+     * @throws FormatException If the constraint model is not a DIMACS file or cannot be read.
+     */
+    private static @NonNull ClauseStore readClauses(@NonNull VariabilityModel vm) throws FormatException {
+        if (vm.getDescriptor().getConstraintFileType() != ConstraintFileType.DIMACS) {
+            throw new FormatException("Variability model has no DIMACS clauses");
+        }
+        
+        try (InputStream in = new FileInputStream(vm.getConstraintModel())) {
+            return new DimacsParser(in).parse((line) -> { });
+        } catch (IOException e) {
+            throw new FormatException("Could not read " + vm.getConstraintModel(), e);
+        }
+    }
+    
+    /**
+     * Checks whether the given formula is satisfiable under the constraints of the variability model and the
+     * currently pushed conditions.
+     * 
+     * @param formula The formula to check.
+     * 
+     * @return Whether there is a valid configuration for which the formula is true.
+     */
+    public boolean isSatisfiable(@NonNull Formula formula) {
+        boolean result = false;
+        for (Iterator<boolean[]> it = models.iterator(); !result && it.hasNext();) {
+            boolean[] model = notNull(it.next());
+            result = evaluator.evaluate(formula, model);
+            if (result && model != models.peekFirst()) {
+                // keep the most useful solutions at the front
+                it.remove();
+                models.addFirst(model);
+            }
+        }
+        
+        if (!result) {
+            result = solver.isSatisfiable(toAssumptions(formula));
+            if (result) {
+                storeModel();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the constraints of the variability model are satisfiable under the currently pushed conditions.
+     * 
+     * @return Whether there is a valid configuration.
+     */
+    public boolean isSatisfiable() {
+        boolean result = !models.isEmpty();
+        if (!result) {
+            result = solver.isSatisfiable();
+            if (result) {
+                storeModel();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Adds a condition that has to hold for all subsequent checks, until it is removed via {@link #pop()}.
+     * 
+     * @param condition The condition to assume.
+     */
+    public void push(@NonNull Formula condition) {
+        int[] assumptions = toAssumptions(condition);
+        for (int assumption : assumptions) {
+            solver.pushAssumption(assumption);
+        }
+        pushedCounts.push(assumptions.length);
+        models.removeIf((model) -> !evaluator.evaluate(condition, model));
+    }
+    
+    /**
+     * Removes the most recently pushed condition.
+     * 
+     * @throws IllegalStateException If no condition is pushed.
+     */
+    public void pop() throws IllegalStateException {
+        if (pushedCounts.isEmpty()) {
+            throw new IllegalStateException("No condition to pop");
+        }
+        // the kept solutions also satisfy the remaining conditions, so they stay valid
+        int count = pushedCounts.pop();
+        for (int i = 0; i < count; i++) {
+            solver.popAssumption();
+        }
+    }
+    
+    /**
+     * Converts a formula to assumption literals. The operands of top-level conjunctions are assumed separately, so
+     * that the conjunctions themselves need no definitions in the solver.
+     * 
+     * @param formula The formula to convert.
+     * 
+     * @return The literals that have to be assumed.
+     */
+    private int @NonNull [] toAssumptions(@NonNull Formula formula) {
+        List<@NonNull Integer> literals = new ArrayList<>();
+        Deque<@NonNull Formula> todo = new ArrayDeque<>();
+        todo.push(formula);
+        while (!todo.isEmpty()) {
+            Formula current = todo.pop();
+            if (current instanceof Conjunction) {
+                todo.push(((Conjunction) current).getRight());
+                todo.push(((Conjunction) current).getLeft());
+            } else {
+                literals.add(converter.convert(current));
+            }
+        }
+        
+        int[] result = new int[literals.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = literals.get(i);
+        }
+        return result;
+    }
+    
+    /**
+     * Stores the solution that the solver just found.
+     */
+    private void storeModel() {
+        boolean[] model = new boolean[solver.getNumVariables() + 1];
+        for (int var = 1; var < model.length; var++) {
+            model[var] = solver.getModelValue(var);
+        }
+        if (models.size() == MAX_MODELS) {
+            models.removeLast();
+        }
+        models.addFirst(model);
+    }
+    
+    /**
+     * Returns the underlying solver.
+     * 
+     * @return The solver that contains the clauses of the variability model.
+     */
+    public @NonNull SatSolver getSolver() {
+        return solver;
+    }
+    
+    /**
+     * Evaluates formulas in a stored solution. Variables that were created after the solution was found are not
+     * constrained by the model or the pushed conditions, so they are considered <code>false</code>.
+     */
+    private class ModelEvaluator implements IFormulaVisitor<@NonNull Boolean> {
+        
+        private boolean @NonNull [] model = new boolean[0];
+        
+        /**
+         * Evaluates the given formula in the given solution.
+         * 
+         * @param formula The formula to evaluate.
+         * @param model The solution, indexed by solver variable.
+         * 
+         * @return Whether the formula is true in the solution.
+         */
+        private boolean evaluate(@NonNull Formula formula, boolean @NonNull [] model) {
+            this.model = model;
+            return formula.accept(this);
+        }
+        
+        @Override
+        public @NonNull Boolean visitFalse(@NonNull False falseConstant) {
+            return false;
+        }
+        
+        @Override
+        public @NonNull Boolean visitTrue(@NonNull True trueConstant) {
+            return true;
+        }
+        
+        @Override
+        public @NonNull Boolean visitVariable(@NonNull Variable variable) {
+            int var = converter.getVariable(variable.getName());
+            return var < model.length && model[var];
+        }
+        
+        @Override
+        public @NonNull Boolean visitNegation(@NonNull Negation formula) {
+            return !formula.getFormula().accept(this);
+        }
+        
+        @Override
+        public @NonNull Boolean visitDisjunction(@NonNull Disjunction formula) {
+            return formula.getLeft().accept(this) || formula.getRight().accept(this);
+        }
+        
+        @Override
+        public @NonNull Boolean visitConjunction(@NonNull Conjunction formula) {
+            return formula.getLeft().accept(this) && formula.getRight().accept(this);
+        }
+        
+    }
+
+}
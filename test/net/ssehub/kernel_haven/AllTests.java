@@ -25,6 +25,7 @@ import net.ssehub.kernel_haven.analysis.AllAnalysisTests;
 import net.ssehub.kernel_haven.build_model.AllBuildModelTests;
 import net.ssehub.kernel_haven.code_model.AllCodeModelTests;
 import net.ssehub.kernel_haven.config.AllConfigurationTests;
+import net.ssehub.kernel_haven.provider.MemoryResultCacheTest;
 import net.ssehub.kernel_haven.util.AllUtilTests;
 import net.ssehub.kernel_haven.variability_model.AllVariabilityModelTests;
 
@@ -40,6 +41,8 @@ import net.ssehub.kernel_haven.variability_model.AllVariabilityModelTests;
     AllUtilTests.class,
     AllVariabilityModelTests.class,
     
+    DaemonTest.class,
+    MemoryResultCacheTest.class,
     PipelineConfiguratiorTest.class,
     RunTest.class,
     })
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.analysis.AbstractAnalysis;
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.test_utils.FileContentsAssertion;
+import net.ssehub.kernel_haven.test_utils.TestConfiguration;
+import net.ssehub.kernel_haven.util.ExtractorException;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.variability_model.AbstractVariabilityModelExtractor;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+import net.ssehub.kernel_haven.variability_model.VariabilityVariable;
+
+/**
+ * Tests the {@link Daemon}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class DaemonTest {
+    
+    private static final File TMP_DIR = new File("testdata/daemon_tmp");
+    
+    private static final File SOURCE_TREE = new File(TMP_DIR, "source_tree");
+    
+    private static final File TOKEN_FILE = new File(TMP_DIR, "daemon.token");
+
+    private Daemon daemon;
+    
+    private Thread serveThread;
+    
+    /**
+     * Creates the temporary directory and starts a daemon on a free port.
+     * 
+     * @throws IOException unwanted.
+     * @throws SetUpException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException, SetUpException {
+        if (TMP_DIR.exists()) {
+            Util.deleteFolder(TMP_DIR);
+        }
+        TMP_DIR.mkdir();
+        SOURCE_TREE.mkdir();
+        CountingVmExtractor.RUNS.set(0);
+        
+        Properties props = new Properties();
+        props.setProperty("plugins_dir", TMP_DIR.getPath());
+        props.setProperty("daemon.port", "0");
+        props.setProperty("daemon.token_file", TOKEN_FILE.getPath());
+        props.setProperty("daemon.request_timeout", "500");
+        daemon = new Daemon(new TestConfiguration(props));
+        
+        serveThread = new Thread(daemon::serve, "DaemonTest-Serve");
+        serveThread.setDaemon(true);
+        serveThread.start();
+    }
+    
+    /**
+     * Stops the daemon and deletes the temporary directory.
+     * 
+     * @throws IOException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        daemon.close();
+        serveThread.join(10000);
+        Util.deleteFolder(TMP_DIR);
+    }
+    
+    /**
+     * Sends a command to the daemon.
+     * 
+     * @param command The command to send.
+     * @param expectedSuccess Whether the daemon should report success.
+     * 
+     * @return The response of the daemon.
+     * 
+     * @throws IOException unwanted.
+     */
+    private String send(String command, boolean expectedSuccess) throws IOException {
+        return send(daemon.getTokenFile(), command, expectedSuccess);
+    }
+    
+    /**
+     * Sends a command to the daemon, with the token from the given file.
+     * 
+     * @param tokenFile The file to read the token from.
+     * @param command The command to send.
+     * @param expectedSuccess Whether the daemon should report success.
+     * 
+     * @return The response of the daemon.
+     * 
+     * @throws IOException unwanted.
+     */
+    private String send(File tokenFile, String command, boolean expectedSuccess) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        boolean success = Daemon.sendCommand(daemon.getPort(), tokenFile, command,
+                new PrintStream(response, true, "UTF-8"));
+        String result = response.toString("UTF-8");
+        assertThat(result, success, is(expectedSuccess));
+        return result;
+    }
+    
+    /**
+     * Writes a properties file for an execution of the {@link VariableCountAnalysis}.
+     * 
+     * @param name The name of the properties file.
+     * @param extra An additional line to add to the file.
+     * 
+     * @return The properties file.
+     * 
+     * @throws IOException unwanted.
+     */
+    private File writeProperties(String name, String extra) throws IOException {
+        File file = new File(TMP_DIR, name);
+        try (Writer out = new FileWriter(file)) {
+            String dir = TMP_DIR.getAbsolutePath().replace('\\', '/');
+            out.write("resource_dir = " + dir + "\n");
+            out.write("output_dir = " + dir + "\n");
+            out.write("plugins_dir = " + dir + "\n");
+            out.write("cache_dir = " + dir + "\n");
+            out.write("source_tree = " + SOURCE_TREE.getAbsolutePath().replace('\\', '/') + "\n");
+            out.write("log.console = false\n");
+            out.write("variability.extractor.class = " + CountingVmExtractor.class.getName() + "\n");
+            out.write("variability.provider.cache.read = true\n");
+            out.write("analysis.class = " + VariableCountAnalysis.class.getName() + "\n");
+            out.write(extra + "\n");
+        }
+        return file;
+    }
+    
+    /**
+     * Tests the status command.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testStatus() throws IOException {
+        String response = send("status", true);
+        assertThat(response, startsWith("Executions: 0"));
+    }
+    
+    /**
+     * Tests that an unknown command is rejected.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testUnknownCommand() throws IOException {
+        String response = send("invalid", false);
+        assertThat(response, startsWith("ERROR Unknown command: invalid"));
+    }
+    
+    /**
+     * Tests that requests with a wrong token are rejected.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testInvalidToken() throws IOException {
+        File wrongToken = new File(TMP_DIR, "wrong.token");
+        try (Writer out = new FileWriter(wrongToken)) {
+            out.write("0123456789abcdef\n");
+        }
+        
+        String response = send(wrongToken, "status", false);
+        assertThat(response, startsWith("ERROR Invalid token"));
+    }
+    
+    /**
+     * Tests that the token file is only accessible by the owner and deleted when the daemon stops.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testTokenFile() throws IOException {
+        assertThat(TOKEN_FILE.isFile(), is(true));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(TOKEN_FILE.toPath())),
+                    is("rw-------"));
+        }
+        
+        daemon.close();
+        assertThat(TOKEN_FILE.exists(), is(false));
+    }
+    
+    /**
+     * Tests that a non existing properties file is reported.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testInvalidPropertiesFile() throws IOException {
+        String response = send("run doesnt_exist.properties", false);
+        assertThat(response, startsWith("ERROR Invalid configuration"));
+    }
+    
+    /**
+     * Tests that multiple executions use the variability model that is kept in memory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testModelKeptInMemory() throws IOException {
+        File first = writeProperties("first.properties", "analysis.output.name = first");
+        File second = writeProperties("second.properties", "analysis.output.name = second");
+        
+        String response = send("run " + first.getPath(), true);
+        assertThat(response, containsString("RESULT " + new File(TMP_DIR, "count.txt").getAbsolutePath()));
+        assertThat(response, containsString("Analysis has finished")); // the log is streamed to the client
+        response = send("run " + second.getPath(), true);
+        
+        assertThat(CountingVmExtractor.RUNS.get(), is(1));
+        FileContentsAssertion.assertContents(new File(TMP_DIR, "count.txt"), "2\n");
+        
+        response = send("status", true);
+        assertThat(response, containsString("Executions: 2"));
+        assertThat(response, containsString("Variability model: 1 in memory, 1 hits, 1 misses"));
+    }
+    
+    /**
+     * Tests that the models are discarded, if the extractor configuration changes.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testExtractorConfigurationChanged() throws IOException {
+        File first = writeProperties("first.properties", "");
+        File second = writeProperties("second.properties", "variability.extractor.some_setting = true");
+        
+        send("run " + first.getPath(), true);
+        send("run " + second.getPath(), true);
+        send("run " + second.getPath(), true);
+        
+        assertThat(CountingVmExtractor.RUNS.get(), is(2));
+    }
+    
+    /**
+     * Tests the stop command.
+     * 
+     * @throws IOException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testStop() throws IOException, InterruptedException {
+        send("stop", true);
+        serveThread.join(10000);
+        assertThat(serveThread.isAlive(), is(false));
+    }
+    
+    /**
+     * Tests that a client that does not send anything does not block the daemon.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSilentClient() throws IOException {
+        try (Socket silent = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            String response = send("status", true);
+            assertThat(response, startsWith("Executions: 0"));
+        }
+    }
+    
+    /**
+     * Tests that a {@link RuntimeException} in an analysis is reported to the client and does not stop the daemon.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testRuntimeException() throws IOException {
+        File properties = writeProperties("failing.properties",
+                "analysis.class = " + FailingAnalysis.class.getName());
+        
+        String response = send("run " + properties.getPath(), false);
+        assertThat(response, containsString("ERROR"));
+        
+        response = send("status", true);
+        assertThat(response, startsWith("Executions: 0"));
+    }
+    
+    /**
+     * A variability model extractor that counts how often it is run.
+     */
+    public static class CountingVmExtractor extends AbstractVariabilityModelExtractor {
+        
+        private static final AtomicInteger RUNS = new AtomicInteger();
+        
+        @Override
+        protected void init(@NonNull Configuration config) throws SetUpException {
+        }
+        
+        @Override
+        protected @NonNull VariabilityModel runOnFile(@NonNull File target) throws ExtractorException {
+            RUNS.incrementAndGet();
+            Set<@NonNull VariabilityVariable> variables = new HashSet<>();
+            variables.add(new VariabilityVariable("A", "bool"));
+            variables.add(new VariabilityVariable("B", "bool"));
+            return new VariabilityModel(new File("dimacs"), variables);
+        }
+        
+        @Override
+        protected @NonNull String getName() {
+            return "CountingVmExtractor";
+        }
+        
+    }
+    
+    /**
+     * An analysis that fails with a {@link RuntimeException}.
+     */
+    public static class FailingAnalysis extends AbstractAnalysis {
+        
+        /**
+         * Creates this analysis.
+         * 
+         * @param config The configuration.
+         */
+        public FailingAnalysis(@NonNull Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        public void run() {
+            throw new IllegalStateException("Analysis failed");
+        }
+        
+    }
+    
+    /**
+     * An analysis that writes the number of variables to count.txt.
+     */
+    public static class VariableCountAnalysis extends AbstractAnalysis {
+        
+        /**
+         * Creates this analysis.
+         * 
+         * @param config The configuration.
+         */
+        public VariableCountAnalysis(@NonNull Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        public void run() {
+            VariabilityModel vm = vmProvider.getResult();
+            try (PrintStream out = createResultStream("count.txt")) {
+                out.println(vm != null ? vm.getVariables().size() : -1);
+            }
+        }
+        
+    }
+
+}
@@ -25,8 +25,13 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     AnalysisTest.class,
+    BatchPipelineAnalysisTest.class,
     ConfiguredPipelineAnalysisTest.class,
+    GroupByComponentTest.class,
+    HashJoinComponentTest.class,
+    KeyExtractorTest.class,
     PipelineAnalysisTest.class,
+    SortComponentTest.class,
     ObservableAnalysisTest.class,
     })
 public class AllAnalysisTests {
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.build_model.AbstractBuildModelExtractor;
+import net.ssehub.kernel_haven.build_model.BuildModel;
+import net.ssehub.kernel_haven.build_model.BuildModelProvider;
+import net.ssehub.kernel_haven.code_model.CodeModelProvider;
+import net.ssehub.kernel_haven.code_model.EmptyCodeModelExtractor;
+import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.test_utils.FileContentsAssertion;
+import net.ssehub.kernel_haven.test_utils.PseudoVariabilityExtractor;
+import net.ssehub.kernel_haven.test_utils.TestConfiguration;
+import net.ssehub.kernel_haven.util.ExtractorException;
+import net.ssehub.kernel_haven.util.Util;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelProvider;
+import net.ssehub.kernel_haven.variability_model.VariabilityVariable;
+
+/**
+ * Tests the {@link BatchPipelineAnalysis}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class BatchPipelineAnalysisTest {
+    
+    private File tempOutputDir = new File("testdata/analysis_tmp");
+    
+    /**
+     * Creates the empty {@link #tempOutputDir}.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException {
+        if (tempOutputDir.exists()) {
+            Util.deleteFolder(tempOutputDir);
+        }
+        tempOutputDir.mkdir();
+        
+        assertThat(tempOutputDir.isDirectory(), is(true));
+        CountingBuildModelExtractor.RUNS.set(0);
+    }
+    
+    /**
+     * Deletes the {@link #tempOutputDir}.
+     * 
+     * @throws IOException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        if (tempOutputDir.exists()) {
+            Util.deleteFolder(tempOutputDir);
+        }
+    }
+    
+    /**
+     * Creates a {@link BatchPipelineAnalysis} with test extractors.
+     * 
+     * @param analysisClasses The value for the analysis.batch.classes setting.
+     * @param logIntermediate Whether the intermediate results of {@link VariableNames} should be written.
+     * 
+     * @return The {@link BatchPipelineAnalysis}.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private BatchPipelineAnalysis createAnalysis(String analysisClasses, boolean logIntermediate) throws SetUpException {
+        Properties props = new Properties();
+        props.put("output_dir", tempOutputDir.getPath());
+        props.put("source_tree", tempOutputDir.getPath());
+        props.put("analysis.batch.classes", analysisClasses);
+        if (logIntermediate) {
+            props.put("analysis.output.intermediate_results", "VariableNames");
+        }
+        TestConfiguration config = new TestConfiguration(props);
+        
+        BatchPipelineAnalysis analysis = new BatchPipelineAnalysis(config);
+        analysis.setOutputDir(tempOutputDir);
+        
+        VariabilityModelProvider varProvider = new VariabilityModelProvider();
+        PseudoVariabilityExtractor.configure(new File(""), new VariabilityVariable("A", "bool"),
+                new VariabilityVariable("B", "bool"));
+        varProvider.setExtractor(new PseudoVariabilityExtractor());
+        varProvider.setConfig(config);
+        analysis.setVariabilityModelProvider(varProvider);
+        
+        BuildModelProvider buildProvider = new BuildModelProvider();
+        buildProvider.setExtractor(new CountingBuildModelExtractor());
+        buildProvider.setConfig(config);
+        analysis.setBuildModelProvider(buildProvider);
+        
+        CodeModelProvider codeProvider = new CodeModelProvider();
+        codeProvider.setExtractor(new EmptyCodeModelExtractor());
+        codeProvider.setConfig(config);
+        analysis.setCodeModelProvider(codeProvider);
+        
+        return analysis;
+    }
+    
+    /**
+     * Returns the names of the files in the {@link #tempOutputDir}, without the timestamp.
+     * 
+     * @return The names of the output files.
+     */
+    private Set<String> getOutputNames() {
+        Set<String> result = new TreeSet<>();
+        for (File file : tempOutputDir.listFiles()) {
+            result.add(file.getName().replaceAll("_\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}", ""));
+        }
+        return result;
+    }
+    
+    /**
+     * Tests that two analyses run on the same extraction and write their own output.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testTwoAnalyses() throws SetUpException {
+        BatchPipelineAnalysis analysis = createAnalysis(VariableNamesAnalysis.class.getName() + ","
+                + VariableCountAnalysis.class.getName(), false);
+        
+        analysis.run();
+        
+        assertThat(getOutputNames(), is(new TreeSet<>(Arrays.asList(
+                "Analysis_VariableNamesAnalysis_VariableNames.csv",
+                "Analysis_VariableCountAnalysis_VariableCount.csv"))));
+        assertThat(CountingBuildModelExtractor.RUNS.get(), is(1));
+        
+        for (File file : tempOutputDir.listFiles()) {
+            if (file.getName().endsWith("_VariableNames.csv")) {
+                FileContentsAssertion.assertContents(file, "A\nB\n");
+            } else {
+                FileContentsAssertion.assertContents(file, "2\n");
+            }
+        }
+        
+        assertThat(analysis.getOutputFiles(), is(new HashSet<>(Arrays.asList(tempOutputDir.listFiles()))));
+    }
+    
+    /**
+     * Tests that the intermediate results of a component are written to the output of the analysis that created the
+     * component.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testIntermediateResults() throws SetUpException {
+        BatchPipelineAnalysis analysis = createAnalysis(VariableCountAnalysis.class.getName() + ","
+                + VariableNamesAnalysis.class.getName(), true);
+        
+        analysis.run();
+        
+        assertThat(getOutputNames(), is(new TreeSet<>(Arrays.asList(
+                "Analysis_VariableCountAnalysis_VariableCount.csv",
+                "Analysis_VariableCountAnalysis_VariableNames.csv",
+                "Analysis_VariableNamesAnalysis_VariableNames.csv"))));
+    }
+    
+    /**
+     * Tests that an analysis that is listed twice gets two separate outputs.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testSameAnalysisTwice() throws SetUpException {
+        BatchPipelineAnalysis analysis = createAnalysis(VariableNamesAnalysis.class.getName() + ","
+                + VariableNamesAnalysis.class.getName(), false);
+        
+        analysis.run();
+        
+        assertThat(getOutputNames(), is(new TreeSet<>(Arrays.asList(
+                "Analysis_VariableNamesAnalysis_VariableNames.csv",
+                "Analysis_VariableNamesAnalysis2_VariableNames.csv"))));
+        assertThat(CountingBuildModelExtractor.RUNS.get(), is(1));
+    }
+    
+    /**
+     * Tests that an invalid analysis class produces no output.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testInvalidAnalysisClass() throws SetUpException {
+        BatchPipelineAnalysis analysis = createAnalysis(VariableNamesAnalysis.class.getName() + ","
+                + String.class.getName(), false);
+        
+        analysis.run();
+        
+        assertThat(tempOutputDir.listFiles().length, is(0));
+        assertThat(analysis.getOutputFiles().size(), is(0));
+    }
+    
+    /**
+     * A component that outputs the names of all variables in the variability model.
+     */
+    private static class VariableNames extends AnalysisComponent<String> {
+        
+        private @NonNull AnalysisComponent<VariabilityModel> vmComponent;
+        
+        private @NonNull AnalysisComponent<BuildModel> bmComponent;
+        
+        /**
+         * Creates this component.
+         * 
+         * @param config The configuration.
+         * @param vmComponent The component providing the variability model.
+         * @param bmComponent The component providing the build model.
+         */
+        public VariableNames(@NonNull Configuration config, @NonNull AnalysisComponent<VariabilityModel> vmComponent,
+                @NonNull AnalysisComponent<BuildModel> bmComponent) {
+            super(config);
+            this.vmComponent = vmComponent;
+            this.bmComponent = bmComponent;
+        }
+        
+        @Override
+        protected void execute() {
+            bmComponent.getNextResult();
+            Set<String> names = new TreeSet<>();
+            for (VariabilityVariable variable : vmComponent.getNextResult().getVariables()) {
+                names.add(variable.getName());
+            }
+            for (String name : names) {
+                addResult(name);
+            }
+        }
+        
+        @Override
+        public @NonNull String getResultName() {
+            return "VariableNames";
+        }
+        
+    }
+    
+    /**
+     * A component that counts the results of its input component.
+     */
+    private static class VariableCount extends AnalysisComponent<Integer> {
+        
+        private @NonNull AnalysisComponent<String> input;
+        
+        /**
+         * Creates this component.
+         * 
+         * @param config The configuration.
+         * @param input The component to count the results of.
+         */
+        public VariableCount(@NonNull Configuration config, @NonNull AnalysisComponent<String> input) {
+            super(config);
+            this.input = input;
+        }
+        
+        @Override
+        protected void execute() {
+            int count = 0;
+            while (input.getNextResult() != null) {
+                count++;
+            }
+            addResult(count);
+        }
+        
+        @Override
+        public @NonNull String getResultName() {
+            return "VariableCount";
+        }
+        
+    }
+    
+    /**
+     * An analysis that outputs the names of all variables.
+     */
+    public static class VariableNamesAnalysis extends PipelineAnalysis {
+        
+        /**
+         * Creates this analysis.
+         * 
+         * @param config The configuration.
+         */
+        public VariableNamesAnalysis(@NonNull Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        protected @NonNull AnalysisComponent<?> createPipeline() throws SetUpException {
+            VariableNames result = new VariableNames(config, getVmComponent(), getBmComponent());
+            // the main component writes to the result anyway
+            result.setLogResults(false);
+            return result;
+        }
+        
+    }
+    
+    /**
+     * An analysis that outputs the number of variables.
+     */
+    public static class VariableCountAnalysis extends PipelineAnalysis {
+        
+        /**
+         * Creates this analysis.
+         * 
+         * @param config The configuration.
+         */
+        public VariableCountAnalysis(@NonNull Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        protected @NonNull AnalysisComponent<?> createPipeline() throws SetUpException {
+            return new VariableCount(config, new VariableNames(config, getVmComponent(), getBmComponent()));
+        }
+        
+    }
+    
+    /**
+     * A build model extractor that counts how often it is run.
+     */
+    private static class CountingBuildModelExtractor extends AbstractBuildModelExtractor {
+        
+        private static final AtomicInteger RUNS = new AtomicInteger();
+        
+        @Override
+        protected void init(@NonNull Configuration config) throws SetUpException {
+        }
+        
+        @Override
+        protected @Nullable BuildModel runOnFile(@NonNull File target) throws ExtractorException {
+            RUNS.incrementAndGet();
+            return new BuildModel();
+        }
+        
+        @Override
+        protected @NonNull String getName() {
+            return "CountingBuildModelExtractor";
+        }
+        
+    }
+
+}
@@ -19,17 +19,34 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.build_model.AbstractBuildModelExtractor;
 import net.ssehub.kernel_haven.build_model.BuildModel;
+import net.ssehub.kernel_haven.build_model.BuildModelProvider;
+import net.ssehub.kernel_haven.code_model.CodeModelProvider;
+import net.ssehub.kernel_haven.code_model.EmptyCodeModelExtractor;
 import net.ssehub.kernel_haven.code_model.SourceFile;
 import net.ssehub.kernel_haven.config.Configuration;
 import net.ssehub.kernel_haven.test_utils.TestConfiguration;
+import net.ssehub.kernel_haven.util.ExtractorException;
+import net.ssehub.kernel_haven.util.Util;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+import net.ssehub.kernel_haven.variability_model.EmptyVariabilityModelExtractor;
 import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelProvider;
 
 /**
  * Tests the {@link ConfiguredPipelineAnalysis} class.
@@ -39,6 +56,8 @@ import net.ssehub.kernel_haven.variability_model.VariabilityModel;
 @SuppressWarnings("null")
 public class ConfiguredPipelineAnalysisTest {
     
+    private static final File MEMO_DIR = new File("testdata/memo_tmp");
+    
     /**
      * A dummy analysis component for test cases.
      */
@@ -361,4 +380,492 @@ public class ConfiguredPipelineAnalysisTest {
         assertThat(((DummyExtractorComponent<?>) comp3.component2).which, is("variability"));
     }
     
+    /**
+     * A component that creates three strings and counts how often it is executed.
+     */
+    public static class CountingSourceComponent extends AnalysisComponent<String> {
+        
+        private static final AtomicInteger RUNS = new AtomicInteger();
+        
+        /**
+         * Creates this component.
+         * 
+         * @param config The configuration.
+         */
+        public CountingSourceComponent(Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        protected void execute() {
+            RUNS.incrementAndGet();
+            addResult("a");
+            addResult("b");
+            addResult("c");
+        }
+        
+        @Override
+        public String getResultName() {
+            return "Source";
+        }
+        
+    }
+    
+    /**
+     * A component that converts the strings of its input component to upper case and counts how often it is executed.
+     */
+    public static class UpperCaseComponent extends AnalysisComponent<String> {
+        
+        private static final AtomicInteger RUNS = new AtomicInteger();
+        
+        private AnalysisComponent<String> input;
+        
+        /**
+         * Creates this component.
+         * 
+         * @param config The configuration.
+         * @param input The input component.
+         */
+        public UpperCaseComponent(Configuration config, AnalysisComponent<String> input) {
+            super(config);
+            this.input = input;
+        }
+        
+        @Override
+        protected void execute() {
+            RUNS.incrementAndGet();
+            String str;
+            while ((str = input.getNextResult()) != null) {
+                addResult(str.toUpperCase());
+            }
+        }
+        
+        @Override
+        public String getResultName() {
+            return "UpperCase";
+        }
+        
+    }
+    
+    /**
+     * Tests that a {@link HashJoinComponent} and a {@link GroupByComponent} can be created from a pipeline string,
+     * with the keys configured by the settings.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testJoinAndGroupByFromPipelineString() throws SetUpException {
+        String test = getClass().getName();
+        Properties props = new Properties();
+        props.put("analysis.pipeline", GroupByComponent.class.getName() + "(" + HashJoinComponent.class.getName()
+                + "(" + test + "$CountingSourceComponent(), "
+                + test + "$UpperCaseComponent(" + test + "$CountingSourceComponent())))");
+        props.put("analysis.join.left_key", "toUpperCase");
+        props.put("analysis.join.right_key", "");
+        props.put("analysis.group_by.key", "left.length");
+        TestConfiguration config = new TestConfiguration(props);
+        
+        AnalysisComponent<?> mainComponent = new ConfiguredPipelineAnalysis(config).createPipeline();
+        assertThat(mainComponent, instanceOf(GroupByComponent.class));
+        
+        GroupByComponent.Group<?> group = (GroupByComponent.Group<?>) mainComponent.getNextResult();
+        assertThat(mainComponent.getNextResult(), is((Object) null));
+        
+        assertThat(group.getKey(), is(1));
+        List<String> joined = new ArrayList<>();
+        for (Object element : group.getElements()) {
+            HashJoinComponent.JoinResult<?, ?> result = (HashJoinComponent.JoinResult<?, ?>) element;
+            joined.add(result.getKey() + ":" + result.getLeft() + ":" + result.getRight());
+        }
+        assertThat(joined, is(Arrays.asList("A:a:A", "B:b:B", "C:c:C")));
+    }
+    
+    /**
+     * A component with a result that can't be serialized.
+     */
+    public static class NotSerializableComponent extends AnalysisComponent<Object> {
+        
+        /**
+         * Creates this component.
+         * 
+         * @param config The configuration.
+         */
+        public NotSerializableComponent(Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        protected void execute() {
+            addResult(new Object());
+        }
+        
+        @Override
+        public String getResultName() {
+            return "NotSerializable";
+        }
+        
+    }
+    
+    /**
+     * Creates and runs a pipeline with memoization enabled.
+     * 
+     * @param pipeline The pipeline string (without package names).
+     * @param memoized The (simple) class names of the components to memoize.
+     * @param extraSetting An additional setting that is set to "true"; <code>null</code> for none.
+     * 
+     * @return The results of the main component.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private List<Object> runMemoized(String pipeline, String memoized, String extraSetting) throws SetUpException {
+        Properties props = new Properties();
+        props.put("analysis.pipeline", pipeline.replaceAll("(\\w+Component)\\(", getClass().getName() + "\\$$1("));
+        props.put("analysis.memoize.dir", MEMO_DIR.getPath());
+        props.put("analysis.memoize.components", memoized);
+        if (extraSetting != null) {
+            props.put(extraSetting, "true");
+        }
+        TestConfiguration config = new TestConfiguration(props);
+        
+        AnalysisComponent<?> mainComponent = new ConfiguredPipelineAnalysis(config).createPipeline();
+        
+        List<Object> result = new ArrayList<>();
+        Object element;
+        while ((element = mainComponent.getNextResult()) != null) {
+            result.add(element);
+        }
+        return result;
+    }
+    
+    /**
+     * Tests that the results of a memoized component are replayed in the second execution, without executing it
+     * or its input components again.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMemoization() throws SetUpException, IOException {
+        resetMemoization();
+        try {
+            List<Object> expected = Arrays.asList("A", "B", "C");
+            assertThat(runMemoized("UpperCaseComponent(CountingSourceComponent())", "UpperCaseComponent", null),
+                    is(expected));
+            assertThat(CountingSourceComponent.RUNS.get(), is(1));
+            assertThat(UpperCaseComponent.RUNS.get(), is(1));
+            assertThat(MEMO_DIR.listFiles().length, is(1));
+            
+            assertThat(runMemoized("UpperCaseComponent(CountingSourceComponent())", "UpperCaseComponent", null),
+                    is(expected));
+            assertThat(CountingSourceComponent.RUNS.get(), is(1));
+            assertThat(UpperCaseComponent.RUNS.get(), is(1));
+            
+            // a changed setting invalidates the results
+            assertThat(runMemoized("UpperCaseComponent(CountingSourceComponent())", "UpperCaseComponent",
+                    "some.setting"), is(expected));
+            assertThat(CountingSourceComponent.RUNS.get(), is(2));
+            assertThat(UpperCaseComponent.RUNS.get(), is(2));
+            assertThat(MEMO_DIR.listFiles().length, is(2));
+            
+            // changed output settings don't invalidate the results
+            assertThat(runMemoized("UpperCaseComponent(CountingSourceComponent())", "UpperCaseComponent",
+                    "analysis.output.some_setting"), is(expected));
+            assertThat(UpperCaseComponent.RUNS.get(), is(2));
+            
+        } finally {
+            Util.deleteFolder(MEMO_DIR);
+        }
+    }
+    
+    /**
+     * Tests that only the memoized component in a pipeline is replayed; the components after it still run.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMemoizationOfInnerComponent() throws SetUpException, IOException {
+        resetMemoization();
+        try {
+            List<Object> expected = Arrays.asList("A", "B", "C");
+            runMemoized("UpperCaseComponent(CountingSourceComponent())", "CountingSourceComponent", null);
+            assertThat(runMemoized("UpperCaseComponent(CountingSourceComponent())", "CountingSourceComponent", null),
+                    is(expected));
+            
+            assertThat(CountingSourceComponent.RUNS.get(), is(1));
+            assertThat(UpperCaseComponent.RUNS.get(), is(2));
+            
+        } finally {
+            Util.deleteFolder(MEMO_DIR);
+        }
+    }
+    
+    /**
+     * Tests that a component with a different input component is not replayed.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMemoizationDifferentInput() throws SetUpException, IOException {
+        resetMemoization();
+        try {
+            runMemoized("UpperCaseComponent(CountingSourceComponent())", "UpperCaseComponent", null);
+            assertThat(runMemoized("UpperCaseComponent(UpperCaseComponent(CountingSourceComponent()))",
+                    "UpperCaseComponent", null), is(Arrays.asList("A", "B", "C")));
+            
+            // the inner component has the same key as in the first execution, so only the outer one is executed
+            assertThat(CountingSourceComponent.RUNS.get(), is(1));
+            assertThat(UpperCaseComponent.RUNS.get(), is(2));
+            assertThat(MEMO_DIR.listFiles().length, is(2));
+            
+        } finally {
+            Util.deleteFolder(MEMO_DIR);
+        }
+    }
+    
+    /**
+     * Tests that results that are not serializable are not memoized.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMemoizationNotSerializable() throws SetUpException, IOException {
+        resetMemoization();
+        try {
+            assertThat(runMemoized("NotSerializableComponent()", "NotSerializableComponent", null).size(), is(1));
+            assertThat(MEMO_DIR.listFiles().length, is(0));
+            
+        } finally {
+            Util.deleteFolder(MEMO_DIR);
+        }
+    }
+    
+    /**
+     * Tests that a corrupt memoization file is discarded and the component is executed again, instead of replaying
+     * an incomplete list of results.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMemoizationCorruptFile() throws SetUpException, IOException {
+        resetMemoization();
+        try {
+            List<Object> expected = Arrays.asList("A", "B", "C");
+            runMemoized("UpperCaseComponent(CountingSourceComponent())", "UpperCaseComponent", null);
+            
+            // cut off the end of the file
+            File memoFile = MEMO_DIR.listFiles()[0];
+            byte[] content = Files.readAllBytes(memoFile.toPath());
+            Files.write(memoFile.toPath(), Arrays.copyOf(content, content.length - 5));
+            
+            assertThat(runMemoized("UpperCaseComponent(CountingSourceComponent())", "UpperCaseComponent", null),
+                    is(expected));
+            assertThat(CountingSourceComponent.RUNS.get(), is(2));
+            assertThat(UpperCaseComponent.RUNS.get(), is(2));
+            
+            // the file is written again
+            assertThat(Files.readAllBytes(memoFile.toPath()), is(content));
+            
+        } finally {
+            Util.deleteFolder(MEMO_DIR);
+        }
+    }
+    
+    /**
+     * A component that creates one string and then fails.
+     */
+    public static class FailingSourceComponent extends AnalysisComponent<String> {
+        
+        /**
+         * Creates this component.
+         * 
+         * @param config The configuration.
+         */
+        public FailingSourceComponent(Configuration config) {
+            super(config);
+        }
+        
+        @Override
+        protected void execute() {
+            addResult("a");
+            fail("test failure", new IOException("test"));
+        }
+        
+        @Override
+        public String getResultName() {
+            return "FailingSource";
+        }
+        
+    }
+    
+    /**
+     * Tests that the results of a component are not memoized if its input component failed, since they are based on
+     * incomplete input.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMemoizationFailedInput() throws SetUpException, IOException {
+        resetMemoization();
+        try {
+            assertThat(runMemoized("UpperCaseComponent(FailingSourceComponent())", "UpperCaseComponent", null),
+                    is(Arrays.asList("A")));
+            assertThat(UpperCaseComponent.RUNS.get(), is(1));
+            
+            File[] memoFiles = MEMO_DIR.listFiles();
+            assertThat(memoFiles == null ? 0 : memoFiles.length, is(0));
+            
+            // the component is executed again
+            runMemoized("UpperCaseComponent(FailingSourceComponent())", "UpperCaseComponent", null);
+            assertThat(UpperCaseComponent.RUNS.get(), is(2));
+            
+        } finally {
+            Util.deleteFolder(MEMO_DIR);
+        }
+    }
+    
+    /**
+     * A component that creates a string for each build model of its input.
+     */
+    public static class BuildModelComponent extends AnalysisComponent<String> {
+        
+        private AnalysisComponent<BuildModel> input;
+        
+        /**
+         * Creates this component.
+         * 
+         * @param config The configuration.
+         * @param input The input component.
+         */
+        public BuildModelComponent(Configuration config, AnalysisComponent<BuildModel> input) {
+            super(config);
+            this.input = input;
+        }
+        
+        @Override
+        protected void execute() {
+            while (input.getNextResult() != null) {
+                addResult("bm");
+            }
+        }
+        
+        @Override
+        public String getResultName() {
+            return "BuildModel";
+        }
+        
+    }
+    
+    /**
+     * A build model extractor that counts how often it is run.
+     */
+    private static class CountingBmExtractor extends AbstractBuildModelExtractor {
+        
+        private static final AtomicInteger RUNS = new AtomicInteger();
+        
+        @Override
+        protected void init(@NonNull Configuration config) throws SetUpException {
+        }
+        
+        @Override
+        protected @Nullable BuildModel runOnFile(@NonNull File target) throws ExtractorException {
+            RUNS.incrementAndGet();
+            return new BuildModel();
+        }
+        
+        @Override
+        protected @NonNull String getName() {
+            return "CountingBmExtractor";
+        }
+        
+    }
+    
+    /**
+     * Runs a full {@link ConfiguredPipelineAnalysis} with memoization and the extractors started preemptively.
+     * 
+     * @param outputDir The output directory.
+     * 
+     * @return The content of the output file of the analysis.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    private String runMemoizedWithExtractors(File outputDir) throws SetUpException, IOException {
+        outputDir.mkdir();
+        Properties props = new Properties();
+        props.put("output_dir", outputDir.getPath());
+        props.put("source_tree", MEMO_DIR.getPath());
+        props.put("analysis.pipeline", BuildModelComponent.class.getName() + "(bmComponent())");
+        props.put("analysis.memoize.dir", MEMO_DIR.getPath());
+        props.put("analysis.memoize.components", "BuildModelComponent");
+        props.put("analysis.pipeline.preemptively_start_extractors", "true");
+        TestConfiguration config = new TestConfiguration(props);
+        
+        ConfiguredPipelineAnalysis analysis = new ConfiguredPipelineAnalysis(config);
+        analysis.setOutputDir(outputDir);
+        
+        VariabilityModelProvider vmProvider = new VariabilityModelProvider();
+        vmProvider.setExtractor(new EmptyVariabilityModelExtractor());
+        vmProvider.setConfig(config);
+        analysis.setVariabilityModelProvider(vmProvider);
+        
+        BuildModelProvider bmProvider = new BuildModelProvider();
+        bmProvider.setExtractor(new CountingBmExtractor());
+        bmProvider.setConfig(config);
+        analysis.setBuildModelProvider(bmProvider);
+        
+        CodeModelProvider cmProvider = new CodeModelProvider();
+        cmProvider.setExtractor(new EmptyCodeModelExtractor());
+        cmProvider.setConfig(config);
+        analysis.setCodeModelProvider(cmProvider);
+        
+        analysis.run();
+        
+        assertThat(analysis.getOutputFiles().size(), is(1));
+        return new String(Files.readAllBytes(analysis.getOutputFiles().iterator().next().toPath()),
+                StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Tests that an extractor is not started (even if the extractors are started preemptively), if its results are
+     * only used by components that replay memoized results.
+     * 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMemoizationDoesNotStartExtractors() throws SetUpException, IOException {
+        resetMemoization();
+        CountingBmExtractor.RUNS.set(0);
+        try {
+            assertThat(runMemoizedWithExtractors(new File(MEMO_DIR, "out1")), is("bm\n"));
+            assertThat(CountingBmExtractor.RUNS.get(), is(1));
+            
+            assertThat(runMemoizedWithExtractors(new File(MEMO_DIR, "out2")), is("bm\n"));
+            // the only user of the build model replays its results
+            assertThat(CountingBmExtractor.RUNS.get(), is(1));
+            
+        } finally {
+            Util.deleteFolder(MEMO_DIR);
+        }
+    }
+    
+    /**
+     * Creates an empty {@link #MEMO_DIR} and resets the execution counters.
+     * 
+     * @throws IOException unwanted.
+     */
+    private void resetMemoization() throws IOException {
+        if (MEMO_DIR.exists()) {
+            Util.deleteFolder(MEMO_DIR);
+        }
+        MEMO_DIR.mkdir();
+        CountingSourceComponent.RUNS.set(0);
+        UpperCaseComponent.RUNS.set(0);
+    }
+    
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.analysis.GroupByComponent.Group;
+import net.ssehub.kernel_haven.test_utils.AnalysisComponentExecuter;
+import net.ssehub.kernel_haven.test_utils.TestConfiguration;
+import net.ssehub.kernel_haven.util.Util;
+
+/**
+ * Tests the {@link GroupByComponent}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class GroupByComponentTest {
+    
+    private static final File TMP_DIR = new File("testdata/group_by_tmp");
+    
+    /**
+     * Creates the empty temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException {
+        if (TMP_DIR.exists()) {
+            Util.deleteFolder(TMP_DIR);
+        }
+        TMP_DIR.mkdir();
+    }
+    
+    /**
+     * Deletes the temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Util.deleteFolder(TMP_DIR);
+    }
+    
+    /**
+     * Creates a configuration with the given key setting.
+     * 
+     * @param key The value for analysis.group_by.key.
+     * @param heapUsage The value for analysis.spill.heap_usage.
+     * 
+     * @return The configuration.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private static TestConfiguration createConfig(String key, int heapUsage) throws SetUpException {
+        Properties props = new Properties();
+        props.setProperty("analysis.group_by.key", key);
+        props.setProperty("analysis.spill.heap_usage", String.valueOf(heapUsage));
+        props.setProperty("analysis.spill.dir", TMP_DIR.getPath());
+        return new TestConfiguration(props);
+    }
+    
+    /**
+     * Tests grouping by a configured property. Groups are in the order of the first occurrence of their key.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testGroupBy() throws SetUpException {
+        List<Group<File>> result = AnalysisComponentExecuter.executeComponent(GroupByComponent.class,
+                createConfig("parent", 100),
+                new Object[] {new File("b/1.c"), new File("a/2.c"), new File("3.c"), new File("b/4.c")});
+        
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0).getKey(), is("b"));
+        assertThat(result.get(0).getElements(), is(Arrays.asList(new File("b/1.c"), new File("b/4.c"))));
+        assertThat(result.get(1).getKey(), is("a"));
+        assertThat(result.get(1).getElements(), is(Arrays.asList(new File("a/2.c"))));
+        // null keys form their own group
+        assertThat(result.get(2).getKey(), nullValue());
+        assertThat(result.get(2).getElements(), is(Arrays.asList(new File("3.c"))));
+    }
+    
+    /**
+     * Tests that grouping gives the same groups if the input is partitioned on disk.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testSpilledGroupBy() throws SetUpException {
+        Object[] input = new Object[3000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = "element" + (i % 100);
+        }
+        
+        List<Group<String>> result = AnalysisComponentExecuter.executeComponent(GroupByComponent.class,
+                createConfig("", 0), input);
+        
+        assertThat(result.size(), is(100));
+        Map<Object, Integer> sizes = new HashMap<>();
+        for (Group<String> group : result) {
+            for (String element : group.getElements()) {
+                assertThat(element, is(group.getKey()));
+            }
+            sizes.put(group.getKey(), group.getElements().size());
+        }
+        for (int i = 0; i < 100; i++) {
+            assertThat(sizes.get("element" + i), is(30));
+        }
+        // partitions are deleted after grouping
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * Tests that the {@link SpillingGroupMap} writes its elements to disk if the heap usage is exceeded.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSpillingGroupMapSpills() throws IOException {
+        try (SpillingGroupMap<Integer> groups = new SpillingGroupMap<>((i) -> i % 10, TMP_DIR, 0.0)) {
+            for (int i = 0; i < 2000; i++) {
+                groups.add(i);
+            }
+            assertThat(groups.isSpilled(), is(true));
+            assertThat(TMP_DIR.listFiles().length, is(SpilledPartitions.DEFAULT_NUM_PARTITIONS));
+            
+            int numElements = 0;
+            for (int i = 0; i < groups.getNumPartitions(); i++) {
+                for (Map.Entry<Object, List<Integer>> entry : groups.getPartition(i).entrySet()) {
+                    assertThat(groups.getPartitionIndex(entry.getKey()), is(i));
+                    assertThat(entry.getValue().size(), is(200));
+                    numElements += entry.getValue().size();
+                }
+            }
+            assertThat(numElements, is(2000));
+        }
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * Tests that the {@link SpillingGroupMap} keeps elements in memory if they are not serializable.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSpillingGroupMapNotSerializable() throws IOException {
+        try (SpillingGroupMap<Object> groups = new SpillingGroupMap<>((o) -> "key", TMP_DIR, 0.0)) {
+            for (int i = 0; i < 2000; i++) {
+                groups.add(new Object());
+            }
+            assertThat(groups.isSpilled(), is(false));
+            assertThat(groups.getPartition(0).get("key").size(), is(2000));
+        }
+    }
+    
+    /**
+     * Tests that the {@link SpillingGroupMap} reads spilled elements back into memory if a later element is not
+     * serializable.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSpillingGroupMapReadBack() throws IOException {
+        try (SpillingGroupMap<Object> groups = new SpillingGroupMap<>((o) -> o.hashCode() % 10, TMP_DIR, 0.0)) {
+            for (int i = 0; i < 2000; i++) {
+                groups.add(i);
+            }
+            assertThat(groups.isSpilled(), is(true));
+            
+            groups.add(new Object() {
+                @Override
+                public int hashCode() {
+                    return 3;
+                }
+            });
+            assertThat(groups.isSpilled(), is(false));
+            assertThat(TMP_DIR.listFiles().length, is(0));
+            
+            Map<Object, List<Object>> partition = groups.getPartition(0);
+            assertThat(partition.size(), is(10));
+            assertThat(partition.get(3).size(), is(201));
+        }
+    }
+    
+    /**
+     * Tests that reading a partition that was deleted throws an {@link IOException}.
+     * 
+     * @throws IOException wanted.
+     */
+    @Test(expected = IOException.class)
+    public void testSpillingGroupMapReadError() throws IOException {
+        try (SpillingGroupMap<Integer> groups = new SpillingGroupMap<>((i) -> i % 10, TMP_DIR, 0.0)) {
+            for (int i = 0; i < 2000; i++) {
+                groups.add(i);
+            }
+            assertThat(groups.isSpilled(), is(true));
+            for (File file : TMP_DIR.listFiles()) {
+                file.delete();
+            }
+            
+            groups.getPartition(0);
+        }
+    }
+    
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.analysis.HashJoinComponent.JoinResult;
+import net.ssehub.kernel_haven.test_utils.AnalysisComponentExecuter;
+import net.ssehub.kernel_haven.test_utils.TestConfiguration;
+import net.ssehub.kernel_haven.util.Util;
+
+/**
+ * Tests the {@link HashJoinComponent}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class HashJoinComponentTest {
+    
+    private static final File TMP_DIR = new File("testdata/join_tmp");
+    
+    /**
+     * Creates the empty temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException {
+        if (TMP_DIR.exists()) {
+            Util.deleteFolder(TMP_DIR);
+        }
+        TMP_DIR.mkdir();
+    }
+    
+    /**
+     * Deletes the temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Util.deleteFolder(TMP_DIR);
+    }
+    
+    /**
+     * Creates a configuration with the given key settings.
+     * 
+     * @param leftKey The value for analysis.join.left_key.
+     * @param rightKey The value for analysis.join.right_key.
+     * @param heapUsage The value for analysis.spill.heap_usage.
+     * 
+     * @return The configuration.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private static TestConfiguration createConfig(String leftKey, String rightKey, int heapUsage)
+            throws SetUpException {
+        
+        Properties props = new Properties();
+        props.setProperty("analysis.join.left_key", leftKey);
+        props.setProperty("analysis.join.right_key", rightKey);
+        props.setProperty("analysis.spill.heap_usage", String.valueOf(heapUsage));
+        props.setProperty("analysis.spill.dir", TMP_DIR.getPath());
+        return new TestConfiguration(props);
+    }
+    
+    /**
+     * Tests joining two inputs by the results themselves.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testJoin() throws SetUpException {
+        List<JoinResult<String, String>> result = AnalysisComponentExecuter.executeComponent(HashJoinComponent.class,
+                createConfig("", "", 100),
+                new Object[] {"a", "b", "c", "b"},
+                new Object[] {"b", "c", "d", "c"});
+        
+        assertThat(result.size(), is(4));
+        assertJoinResult(result.get(0), "b", "b", "b");
+        assertJoinResult(result.get(1), "c", "c", "c");
+        assertJoinResult(result.get(2), "c", "c", "c");
+        assertJoinResult(result.get(3), "b", "b", "b");
+    }
+    
+    /**
+     * Tests joining two inputs of different types by configured properties.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testJoinByProperties() throws SetUpException {
+        List<JoinResult<String, File>> result = AnalysisComponentExecuter.executeComponent(HashJoinComponent.class,
+                createConfig("", "name", 100),
+                new Object[] {"a.c", "b.c", "c.c"},
+                new Object[] {new File("dir/c.c"), new File("dir/a.c"), new File("other/a.c")});
+        
+        assertThat(result.size(), is(3));
+        assertJoinResult(result.get(0), "a.c", "a.c", new File("dir/a.c"));
+        assertJoinResult(result.get(1), "a.c", "a.c", new File("other/a.c"));
+        assertJoinResult(result.get(2), "c.c", "c.c", new File("dir/c.c"));
+    }
+    
+    /**
+     * Tests that results with a <code>null</code> key are not joined.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testNullKeysNotJoined() throws SetUpException {
+        List<JoinResult<File, File>> result = AnalysisComponentExecuter.executeComponent(HashJoinComponent.class,
+                createConfig("parent", "parent", 100),
+                new Object[] {new File("a.c"), new File("dir/b.c")},
+                new Object[] {new File("c.c"), new File("dir/d.c")});
+        
+        assertThat(result.size(), is(1));
+        assertJoinResult(result.get(0), "dir", new File("dir/b.c"), new File("dir/d.c"));
+    }
+    
+    /**
+     * Tests that joining gives the same results if the inputs are partitioned on disk.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testSpilledJoin() throws SetUpException {
+        Object[] left = new Object[3000];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = i;
+        }
+        Object[] right = new Object[2000];
+        for (int i = 0; i < right.length; i++) {
+            right[i] = i * 2;
+        }
+        
+        List<JoinResult<Integer, Integer>> result = AnalysisComponentExecuter.executeComponent(
+                HashJoinComponent.class, createConfig("", "", 0), left, right);
+        
+        List<Integer> keys = new ArrayList<>();
+        for (JoinResult<Integer, Integer> joined : result) {
+            assertThat(joined.getLeft(), is(joined.getKey()));
+            assertThat(joined.getRight(), is(joined.getKey()));
+            keys.add((Integer) joined.getKey());
+        }
+        Collections.sort(keys);
+        
+        assertThat(keys.size(), is(1500));
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(keys.get(i), is(i * 2));
+        }
+        // partitions are deleted after the join
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * A left input for {@link #testSpilledJoinNotSerializable()}.
+     */
+    private static class Id {
+        
+        private int id;
+        
+        /**
+         * Creates an id.
+         * 
+         * @param id The key of this object.
+         */
+        Id(int id) {
+            this.id = id;
+        }
+        
+        /**
+         * Returns the key of this object.
+         * 
+         * @return The key.
+         */
+        public Integer getId() {
+            return id;
+        }
+        
+    }
+    
+    /**
+     * A serializable left input for {@link #testSpilledJoinNotSerializable()}.
+     */
+    private static class SerializableId implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int id;
+        
+        /**
+         * Creates an id.
+         * 
+         * @param id The key of this object.
+         */
+        SerializableId(int id) {
+            this.id = id;
+        }
+        
+        /**
+         * Returns the key of this object.
+         * 
+         * @return The key.
+         */
+        public Integer getId() {
+            return id;
+        }
+        
+    }
+    
+    /**
+     * Tests that the join falls back to memory if a left result can't be written to its partition.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testSpilledJoinNotSerializable() throws SetUpException {
+        Object[] left = new Object[3000];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = i == 1500 ? new Id(i) : new SerializableId(i);
+        }
+        Object[] right = new Object[2000];
+        for (int i = 0; i < right.length; i++) {
+            right[i] = i * 2;
+        }
+        
+        List<JoinResult<Object, Integer>> result = AnalysisComponentExecuter.executeComponent(
+                HashJoinComponent.class, createConfig("id", "", 0), left, right);
+        
+        List<Integer> keys = new ArrayList<>();
+        for (JoinResult<Object, Integer> joined : result) {
+            assertThat(joined.getRight(), is(joined.getKey()));
+            keys.add((Integer) joined.getKey());
+        }
+        Collections.sort(keys);
+        
+        assertThat(keys.size(), is(1500));
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(keys.get(i), is(i * 2));
+        }
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * Asserts the contents of a {@link JoinResult}.
+     * 
+     * @param result The result to check.
+     * @param key The expected key.
+     * @param left The expected left result.
+     * @param right The expected right result.
+     */
+    private static void assertJoinResult(JoinResult<?, ?> result, Object key, Object left, Object right) {
+        assertThat(result.getKey(), is(key));
+        assertThat(result.getLeft(), is(left));
+        assertThat(result.getRight(), is(right));
+    }
+    
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.io.TableElement;
+import net.ssehub.kernel_haven.util.io.TableRow;
+
+/**
+ * Tests the {@link KeyExtractor}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class KeyExtractorTest {
+    
+    /**
+     * A table row with a column name that differs from its getter.
+     */
+    @TableRow
+    public static class Row {
+        
+        public final String field = "fieldValue";
+        
+        /**
+         * A column.
+         * 
+         * @return A file.
+         */
+        @TableElement(index = 0, name = "Source File")
+        public File getFile() {
+            return new File("dir/file.c");
+        }
+        
+    }
+    
+    /**
+     * Tests that an empty path returns the object itself.
+     */
+    @Test
+    public void testEmptyPath() {
+        Object object = new Object();
+        assertThat(new KeyExtractor("").apply(object), sameInstance(object));
+    }
+    
+    /**
+     * Tests reading properties via getters, table elements and fields.
+     */
+    @Test
+    public void testProperties() {
+        assertThat(new KeyExtractor("file").apply(new Row()), is(new File("dir/file.c")));
+        assertThat(new KeyExtractor("source file").apply(new Row()), is(new File("dir/file.c")));
+        assertThat(new KeyExtractor("field").apply(new Row()), is("fieldValue"));
+        assertThat(new KeyExtractor("absolute").apply(new File("a")), is(false));
+    }
+    
+    /**
+     * Tests following a path of properties.
+     */
+    @Test
+    public void testPath() {
+        KeyExtractor extractor = new KeyExtractor("file.parentFile.name");
+        assertThat(extractor.apply(new Row()), is("dir"));
+        // cached accessors work for subsequent calls
+        assertThat(extractor.apply(new Row()), is("dir"));
+    }
+    
+    /**
+     * Tests that the accessors of a property are cached per class, so that one extractor works for objects of different
+     * classes.
+     */
+    @Test
+    public void testDifferentClasses() {
+        KeyExtractor extractor = new KeyExtractor("name");
+        assertThat(extractor.apply(new File("dir/a.c")), is("a.c"));
+        assertThat(extractor.apply(String.class), is("java.lang.String"));
+        assertThat(extractor.apply(new File("dir/b.c")), is("b.c"));
+        assertThat(extractor.apply(Integer.class), is("java.lang.Integer"));
+    }
+    
+    /**
+     * Tests that a <code>null</code> value on the path results in a <code>null</code> key.
+     */
+    @Test
+    public void testNullOnPath() {
+        assertThat(new KeyExtractor("parentFile.name").apply(new File("a.c")), nullValue());
+    }
+    
+    /**
+     * Tests that an unknown property throws an exception.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProperty() {
+        new KeyExtractor("doesNotExist").apply(new Row());
+    }
+    
+    /**
+     * Tests that a path with an empty property name is rejected when the extractor is created.
+     */
+    @Test
+    public void testEmptyPropertyName() {
+        for (String path : new String[] {"file..name", "file.", ".file", "file. .name"}) {
+            try {
+                new KeyExtractor(path);
+                fail("Path " + path + " should be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+    
+    /**
+     * Tests that whitespace around the property names is ignored.
+     */
+    @Test
+    public void testWhitespaceInPath() {
+        assertThat(new KeyExtractor(" file . parentFile.name ").apply(new Row()), is("dir"));
+    }
+    
+}
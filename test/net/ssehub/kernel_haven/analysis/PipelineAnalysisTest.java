@@ -772,6 +772,81 @@ public class PipelineAnalysisTest {
         assertThat(analysis.getOutputFiles(), is(files));
     }
     
+    /**
+     * A component that reports the number of temporary files in the spill directory of the pipeline for each list
+     * that it receives.
+     */
+    private static class SpillDirCheckingComponent extends AnalysisComponent<String> {
+        
+        private AnalysisComponent<? extends List<?>> previous;
+        
+        private File spillDir;
+        
+        /**
+         * Creates this {@link SpillDirCheckingComponent}.
+         * 
+         * @param config The configuration.
+         * @param previous The component to read the lists from.
+         * @param spillDir The configured spill directory, which contains the spill directory of the pipeline.
+         */
+        public SpillDirCheckingComponent(Configuration config, AnalysisComponent<? extends List<?>> previous,
+                File spillDir) {
+            super(config);
+            this.previous = previous;
+            this.spillDir = spillDir;
+        }
+        
+        @Override
+        protected void execute() {
+            List<?> list;
+            while ((list = previous.getNextResult()) != null) {
+                File[] pipelineSpillDirs = spillDir.listFiles();
+                addResult(pipelineSpillDirs.length + ":" + pipelineSpillDirs[0].listFiles().length + "/" + list.size());
+            }
+        }
+        
+        @Override
+        public String getResultName() {
+            return "SpillDir";
+        }
+        
+    }
+    
+    /**
+     * Tests that the temporary files of a {@link ListCollectorComponent} are written to the spill directory of the
+     * pipeline, which is deleted once the pipeline is done.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testListCollectorComponentDeletesSpilledFiles() throws SetUpException {
+        File spillDir = new File(tempOutputDir, "spill");
+        spillDir.mkdir();
+        
+        Properties props = new Properties();
+        props.put("output_dir", tempOutputDir.getPath());
+        props.put("source_tree", tempOutputDir.getPath());
+        props.put(DefaultSettings.ANALYSIS_SPILL_HEAP_USAGE.getKey(), "0");
+        props.put(DefaultSettings.ANALYSIS_SPILL_DIR.getKey(), spillDir.getPath());
+        TestConfiguration config = new TestConfiguration(props);
+        
+        String[] results = new String[2048];
+        Arrays.fill(results, "Result");
+        
+        PipelineAnalysis analysis = createAnalysis(config, (pipeline) ->
+            new SpillDirCheckingComponent(config,
+                new ListCollectorComponent<>(config, new SimpleAnalysisComponent(config, results)), spillDir)
+        );
+        
+        analysis.run();
+        
+        File[] outputFiles = tempOutputDir.listFiles((file) -> file.isFile());
+        assertThat(outputFiles.length, is(1));
+        // both chunks were written to the spill directory of the pipeline while the next component used the list
+        FileContentsAssertion.assertContents(outputFiles[0], "1:2/2048\n");
+        assertThat(spillDir.listFiles().length, is(0));
+    }
+    
     /**
      * Creates and runs a simple pipeline with a single analysis component. Tests whether the output file starts with
      * the specified analysis output name prefix.
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.analysis;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.test_utils.AnalysisComponentExecuter;
+import net.ssehub.kernel_haven.test_utils.TestConfiguration;
+import net.ssehub.kernel_haven.util.Util;
+
+/**
+ * Tests the {@link SortComponent}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class SortComponentTest {
+    
+    private static final File TMP_DIR = new File("testdata/sort_tmp");
+    
+    /**
+     * Creates the empty temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException {
+        if (TMP_DIR.exists()) {
+            Util.deleteFolder(TMP_DIR);
+        }
+        TMP_DIR.mkdir();
+    }
+    
+    /**
+     * Deletes the temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Util.deleteFolder(TMP_DIR);
+    }
+    
+    /**
+     * Creates a configuration with the given sort settings.
+     * 
+     * @param keys The value for analysis.sort.keys; <code>null</code> if not set.
+     * @param chunkSize The value for analysis.sort.chunk_size.
+     * 
+     * @return The configuration.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    private static TestConfiguration createConfig(String keys, int chunkSize) throws SetUpException {
+        Properties props = new Properties();
+        if (keys != null) {
+            props.setProperty("analysis.sort.keys", keys);
+        }
+        props.setProperty("analysis.sort.chunk_size", String.valueOf(chunkSize));
+        props.setProperty("analysis.spill.dir", TMP_DIR.getPath());
+        return new TestConfiguration(props);
+    }
+    
+    /**
+     * Tests sorting results that fit into a single chunk by their natural order.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testSortInMemory() throws SetUpException {
+        List<String> result = AnalysisComponentExecuter.executeComponent(SortComponent.class,
+                createConfig(null, 100),
+                new Object[] {"c", "a", "d", "b"});
+        
+        assertThat(result, is(Arrays.asList("a", "b", "c", "d")));
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * Tests sorting by configured keys. Results with equal keys keep their order.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testSortByKeys() throws SetUpException {
+        List<File> result = AnalysisComponentExecuter.executeComponent(SortComponent.class,
+                createConfig("parent", 100),
+                new Object[] {new File("b/2.c"), new File("a/1.c"), new File("3.c"), new File("b/1.c")});
+        
+        assertThat(result, is(Arrays.asList(new File("3.c"), new File("a/1.c"), new File("b/2.c"),
+                new File("b/1.c"))));
+        
+        result = AnalysisComponentExecuter.executeComponent(SortComponent.class,
+                createConfig("parent, name", 100),
+                new Object[] {new File("b/2.c"), new File("a/1.c"), new File("3.c"), new File("b/1.c")});
+        
+        assertThat(result, is(Arrays.asList(new File("3.c"), new File("a/1.c"), new File("b/1.c"),
+                new File("b/2.c"))));
+    }
+    
+    /**
+     * Tests sorting results that are split into many chunks which are merged from disk. 
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testExternalSort() throws SetUpException {
+        Object[] input = new Object[1000];
+        for (int i = 0; i < input.length; i++) {
+            // key is i % 10, value is i; sorting by key must keep the values ascending within a key
+            input[i] = new File(String.valueOf(i % 10), String.valueOf(i));
+        }
+        
+        List<File> result = AnalysisComponentExecuter.executeComponent(SortComponent.class,
+                createConfig("parent", 7), input);
+        
+        List<File> expected = new ArrayList<>();
+        for (int key = 0; key < 10; key++) {
+            for (int i = key; i < input.length; i += 10) {
+                expected.add(new File(String.valueOf(key), String.valueOf(i)));
+            }
+        }
+        assertThat(result, is(expected));
+        // the sorted runs are deleted after merging
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * A result that is not serializable.
+     */
+    public static class NotSerializable {
+        
+        private int value;
+        
+        /**
+         * Creates a result.
+         * 
+         * @param value The value to sort by.
+         */
+        public NotSerializable(int value) {
+            this.value = value;
+        }
+        
+        /**
+         * Returns the value to sort by.
+         * 
+         * @return The value.
+         */
+        public int getValue() {
+            return value;
+        }
+        
+    }
+    
+    /**
+     * Tests that non-serializable results are sorted in memory if they don't fit into a single chunk.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testNotSerializable() throws SetUpException {
+        Object[] input = new Object[50];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = new NotSerializable((i * 7) % 50);
+        }
+        
+        List<NotSerializable> result = AnalysisComponentExecuter.executeComponent(SortComponent.class,
+                createConfig("value", 8), input);
+        
+        assertThat(result.size(), is(50));
+        for (int i = 0; i < 50; i++) {
+            assertThat(result.get(i).getValue(), is(i));
+        }
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * A serializable result with the same key property as {@link NotSerializable}.
+     */
+    public static class SerializableValue implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int value;
+        
+        /**
+         * Creates a result.
+         * 
+         * @param value The value to sort by.
+         */
+        public SerializableValue(int value) {
+            this.value = value;
+        }
+        
+        /**
+         * Returns the value to sort by.
+         * 
+         * @return The value.
+         */
+        public int getValue() {
+            return value;
+        }
+        
+    }
+    
+    /**
+     * Tests that runs that are already written to disk are read back into memory, if a later run is not
+     * serializable.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testNotSerializableAfterWrittenRuns() throws SetUpException {
+        Object[] input = new Object[100];
+        for (int i = 0; i < input.length; i++) {
+            int value = (i * 7) % 100;
+            input[i] = i < 40 ? new SerializableValue(value) : new NotSerializable(value);
+        }
+        
+        List<Object> result = AnalysisComponentExecuter.executeComponent(SortComponent.class,
+                createConfig("value", 8), input);
+        
+        assertThat(result.size(), is(100));
+        for (int i = 0; i < 100; i++) {
+            Object element = result.get(i);
+            int value = element instanceof SerializableValue ? ((SerializableValue) element).getValue()
+                    : ((NotSerializable) element).getValue();
+            assertThat(value, is(i));
+        }
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * Tests that more runs than {@link SortComponent#MAX_MERGE_FAN_IN} are merged in multiple passes, keeping the
+     * sort stable.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testMultiPassMerge() throws SetUpException {
+        // more than MAX_MERGE_FAN_IN^2 runs need three passes
+        int numRuns = SortComponent.MAX_MERGE_FAN_IN * SortComponent.MAX_MERGE_FAN_IN + 10;
+        Object[] input = new Object[numRuns * 2];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = new File(String.valueOf(i % 3), String.valueOf(i));
+        }
+        
+        List<File> result = AnalysisComponentExecuter.executeComponent(SortComponent.class,
+                createConfig("parent", 2), input);
+        
+        List<File> expected = new ArrayList<>();
+        for (int key = 0; key < 3; key++) {
+            for (int i = key; i < input.length; i += 3) {
+                expected.add(new File(String.valueOf(key), String.valueOf(i)));
+            }
+        }
+        assertThat(result, is(expected));
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * Tests the comparison of key values by {@link SortComponent#createComparator(List)}.
+     */
+    @Test
+    public void testCreateComparator() {
+        Comparator<Object> comparator = SortComponent.createComparator(Arrays.asList());
+        assertThat(comparator.compare(1, 2) < 0, is(true));
+        assertThat(comparator.compare(10, 9) > 0, is(true));
+        // different classes are ordered by their class name
+        assertThat(comparator.compare(10, "9") < 0, is(true));
+        assertThat(comparator.compare("9", 10) > 0, is(true));
+        // this is transitive (comparing by string representation would give 2 < 10 < "15" < 2)
+        assertThat(comparator.compare(2, 10) < 0, is(true));
+        assertThat(comparator.compare(10, "15") < 0, is(true));
+        assertThat(comparator.compare(2, "15") < 0, is(true));
+        assertThat(comparator.compare(10, 2L) < 0, is(true));
+        
+        comparator = SortComponent.createComparator(Arrays.asList("parent"));
+        // null is sorted first
+        assertThat(comparator.compare(new File("a.c"), new File("a/a.c")) < 0, is(true));
+        assertThat(comparator.compare(new File("a/a.c"), new File("a.c")) > 0, is(true));
+        assertThat(comparator.compare(new File("a.c"), new File("b.c")), is(0));
+    }
+    
+}
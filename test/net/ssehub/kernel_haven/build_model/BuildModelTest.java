@@ -22,6 +22,8 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -266,6 +268,53 @@ public class BuildModelTest {
         assertThat(bm.getPc(f3), is(pc2));
     }
     
+    /**
+     * Tests that changing the case-sensitivity after adding files is considered in look-ups.
+     */
+    @Test
+    public void testCaseSensitivityChangedAfterAdd() {
+        BuildModel bm = new BuildModel();
+        
+        Formula pc1 = or("A", "B");
+        
+        bm.add(new File("dir/test.c"), pc1);
+        
+        assertThat(bm.getPc(new File("dir/test.c")), is(pc1));
+        assertThat(bm.getPc(new File("Dir/test.c")), nullValue());
+        
+        bm.getDescriptor().setCaseSensitive(false);
+        
+        assertThat(bm.getPc(new File("dir/test.c")), is(pc1));
+        assertThat(bm.getPc(new File("Dir/test.c")), is(pc1));
+        
+        bm.delete(new File("DIR/TEST.C"));
+        
+        assertThat(bm.getPc(new File("dir/test.c")), nullValue());
+        assertThat(bm.getSize(), is(0));
+    }
+    
+    /**
+     * Tests {@link BuildModel#getPcs(List)}.
+     */
+    @Test
+    public void testGetPcs() {
+        BuildModel bm = new BuildModel();
+        bm.getDescriptor().setKeyType(KeyType.FILE_AND_DIRECTORY);
+        
+        Formula pc1 = or("A", "B");
+        Formula pc2 = and("A", "C");
+        
+        bm.add(new File("dir"), pc1);
+        bm.add(new File("dir/sub/test.c"), pc2);
+        bm.add(new File("/abs"), pc2);
+        
+        List<Formula> result = bm.getPcs(Arrays.asList(
+                new File("dir/sub/test.c"), new File("dir/sub/other.c"), new File("other/test.c"),
+                new File("/abs/test.c"), new File("abs/test.c")));
+        
+        assertThat(result, is(Arrays.asList(pc2, pc1, null, pc2, null)));
+    }
+    
     /**
      * Tests {@link BuildModel#filesEqual(File, File)}.
      */
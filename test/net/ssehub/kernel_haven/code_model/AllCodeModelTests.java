@@ -30,8 +30,11 @@ import net.ssehub.kernel_haven.code_model.simple_ast.SyntaxElementTest;
     AllAstTests.class,
     
     CodeBlockTest.class,
+    CompactSourceFileTest.class,
     JsonCodeModelCacheTest.class,
     CodeModelProviderTest.class,
+    SubtreeDeduplicatorTest.class,
+    VariableLocationIndexTest.class,
     SyntaxElementTest.class,
     })
 public class AllCodeModelTests {
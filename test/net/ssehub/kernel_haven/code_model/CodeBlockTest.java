@@ -16,6 +16,7 @@
 package net.ssehub.kernel_haven.code_model;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
@@ -25,6 +26,8 @@ import java.util.Iterator;
 import org.junit.Test;
 
 import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
 
 /**
  * Tests the {@link CodeBlock} class.
@@ -57,4 +60,170 @@ public class CodeBlockTest {
         assertThat(iter.hasNext(), is(false));
     }
     
+    /**
+     * Tests that the cached structural hash is updated when the element or one of its nested elements is modified.
+     */
+    @Test
+    public void testStructuralHashInvalidation() {
+        CodeBlock main1 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        CodeBlock nested1 = new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A"));
+        main1.addNestedElement(nested1);
+        
+        CodeBlock main2 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        CodeBlock nested2 = new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A"));
+        main2.addNestedElement(nested2);
+        
+        assertThat(main1.getStructuralHash(), is(main2.getStructuralHash()));
+        assertThat(main1, is(main2));
+        
+        // modify a nested element
+        int oldHash = main2.getStructuralHash();
+        nested2.setLineEnd(4);
+        
+        assertThat(main2.getStructuralHash(), not(oldHash));
+        assertThat(main1, not(main2));
+        
+        // revert the modification
+        nested2.setLineEnd(3);
+        
+        assertThat(main2.getStructuralHash(), is(oldHash));
+        assertThat(main1, is(main2));
+        
+        // add a nested element
+        main2.addNestedElement(new CodeBlock(True.INSTANCE));
+        
+        assertThat(main1, not(main2));
+        assertThat(main1.hashCode(), not(main2.hashCode()));
+    }
+    
+    /**
+     * Tests that modifying an element only invalidates the cached structural hashes of its own tree.
+     */
+    @Test
+    public void testStructuralHashInvalidationPerTree() {
+        CountingCodeBlock main1 = new CountingCodeBlock();
+        main1.addNestedElement(new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A")));
+        
+        CountingCodeBlock main2 = new CountingCodeBlock();
+        CodeBlock nested2 = new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A"));
+        main2.addNestedElement(nested2);
+        
+        int hash1 = main1.getStructuralHash();
+        main2.getStructuralHash();
+        assertThat(main1.numCalculations, is(1));
+        assertThat(main2.numCalculations, is(1));
+        
+        // modifying the other tree does not invalidate the cached hash
+        nested2.setLineEnd(4);
+        assertThat(main1.getStructuralHash(), is(hash1));
+        assertThat(main1.numCalculations, is(1));
+        
+        // but it invalidates the hash of the parent of the modified element
+        assertThat(main2.getStructuralHash(), not(hash1));
+        assertThat(main2.numCalculations, is(2));
+    }
+    
+    /**
+     * Tests that modifying an element that is shared by two trees invalidates the cached hashes of both.
+     */
+    @Test
+    public void testStructuralHashInvalidationShared() {
+        CodeBlock shared = new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A"));
+        
+        CodeBlock main1 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        main1.addNestedElement(shared);
+        CodeBlock main2 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        main2.addNestedElement(shared);
+        
+        int oldHash = main1.getStructuralHash();
+        assertThat(main2.getStructuralHash(), is(oldHash));
+        
+        shared.setLineEnd(4);
+        
+        assertThat(main1.getStructuralHash(), not(oldHash));
+        assertThat(main2.getStructuralHash(), not(oldHash));
+    }
+    
+    /**
+     * Tests that hashing elements that nest each other does not recurse endlessly.
+     */
+    @Test
+    public void testStructuralHashCycle() {
+        CodeBlock block1 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        CodeBlock block2 = new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A"));
+        block1.addNestedElement(block2);
+        block2.addNestedElement(block1);
+        
+        int hash = block1.getStructuralHash();
+        assertThat(block1.getStructuralHash(), is(hash));
+        assertThat(block1.hashCode(), is(hash));
+    }
+    
+    /**
+     * Tests that equals() does not rely on the cached structural hash, even if a sub-class does not invalidate it.
+     */
+    @Test
+    public void testEqualsWithStaleHash() {
+        StaleCodeBlock block1 = new StaleCodeBlock(1);
+        StaleCodeBlock block2 = new StaleCodeBlock(2);
+        assertThat(block1.getStructuralHash(), not(block2.getStructuralHash()));
+        assertThat(block1, not(block2));
+        
+        block2.value = 1;
+        
+        assertThat(block1, is(block2));
+    }
+    
+    /**
+     * A {@link CodeBlock} with an attribute that does not invalidate the cached structural hash when it is modified.
+     */
+    private static class StaleCodeBlock extends CodeBlock {
+        
+        private int value;
+        
+        /**
+         * Creates a block.
+         * 
+         * @param value The initial value of the attribute.
+         */
+        StaleCodeBlock(int value) {
+            super(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+            this.value = value;
+        }
+        
+        @Override
+        protected int hashCode(@NonNull CodeElementHasher hasher) {
+            return super.hashCode(hasher) + value;
+        }
+        
+        @Override
+        protected boolean equals(@NonNull AbstractCodeElement<?> other, @NonNull CodeElementEqualityChecker checker) {
+            return super.equals(other, checker) && other instanceof StaleCodeBlock
+                    && ((StaleCodeBlock) other).value == this.value;
+        }
+        
+    }
+    
+    /**
+     * A {@link CodeBlock} that counts the calculations of its structural hash.
+     */
+    private static class CountingCodeBlock extends CodeBlock {
+        
+        private int numCalculations;
+        
+        /**
+         * Creates a block.
+         */
+        CountingCodeBlock() {
+            super(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        }
+        
+        @Override
+        protected int hashCode(@NonNull CodeElementHasher hasher) {
+            numCalculations++;
+            return super.hashCode(hasher);
+        }
+        
+    }
+    
 }
@@ -32,6 +32,7 @@ import org.junit.Test;
 import net.ssehub.kernel_haven.SetUpException;
 import net.ssehub.kernel_haven.config.Configuration;
 import net.ssehub.kernel_haven.test_utils.TestConfiguration;
+import net.ssehub.kernel_haven.util.BlockingQueue;
 import net.ssehub.kernel_haven.util.CodeExtractorException;
 import net.ssehub.kernel_haven.util.ExtractorException;
 import net.ssehub.kernel_haven.util.Util;
@@ -460,6 +461,43 @@ public class CodeModelProviderTest {
         assertThat(extractor.filesToParse, is(expected));
     }
     
+    /**
+     * Tests that the synchronous {@link CodeModelProvider#getTargets()} finds the same files as the asynchronous
+     * target discovery.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testGetTargetsMatchesDiscovery() throws SetUpException {
+        Properties config = new Properties();
+        config.setProperty("resource_dir", "testdata");
+        config.setProperty("source_tree", SOURCE_TREE.getAbsolutePath());
+        config.setProperty("code.extractor.files", "test.c, dir");
+        config.setProperty("code.extractor.threads", "1");
+        
+        CodeModelProvider provider = new CodeModelProvider();
+        provider.setExtractor(new PseudoExtractor(false));
+        provider.setConfig(new TestConfiguration(config));
+        
+        Set<File> expected = new HashSet<>();
+        expected.add(new File("test.c"));
+        expected.add(new File("dir/test.c"));
+        expected.add(new File("dir/test2.c"));
+        expected.add(new File("dir/dir2/test2.c"));
+        
+        assertThat(new HashSet<>(provider.getTargets()), is(expected));
+        
+        BlockingQueue<File> queue = new BlockingQueue<>();
+        provider.discoverTargets(queue);
+        
+        Set<File> discovered = new HashSet<>();
+        File target;
+        while ((target = queue.get()) != null) {
+            discovered.add(target);
+        }
+        assertThat(discovered, is(expected));
+    }
+    
     /**
      * Tests the method that finds the files to parse from a properties file.
      * 
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+
+/**
+ * Tests the {@link CompactSourceFile} and {@link CompactCodeElement}.
+ *
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class CompactSourceFileTest {
+    
+    private static final File FILE = new File("test.c");
+    
+    /**
+     * Creates a small {@link SourceFile} for testing.
+     * 
+     * <pre>
+     * block1 (A)
+     *     block2 (!A)
+     *         block3 (null)
+     *     block4 (null)
+     * block5 (1)
+     * </pre>
+     * 
+     * @return The {@link SourceFile}.
+     */
+    private static SourceFile<CodeBlock> createSourceFile() {
+        Formula varA = new Variable("A");
+        
+        CodeBlock block1 = new CodeBlock(1, 10, FILE, varA, varA);
+        CodeBlock block2 = new CodeBlock(2, 5, FILE, new Negation(varA), new Negation(varA));
+        CodeBlock block3 = new CodeBlock(3, 4, FILE, null, new Negation(varA));
+        CodeBlock block4 = new CodeBlock(6, 9, FILE, null, varA);
+        CodeBlock block5 = new CodeBlock(12, 15, new File("test.h"), True.INSTANCE, True.INSTANCE);
+        
+        block1.addNestedElement(block2);
+        block2.addNestedElement(block3);
+        block1.addNestedElement(block4);
+        
+        SourceFile<CodeBlock> file = new SourceFile<>(FILE);
+        file.addElement(block1);
+        file.addElement(block5);
+        return file;
+    }
+    
+    /**
+     * Tests that the structure of the original {@link SourceFile} is preserved.
+     */
+    @Test
+    public void testStructure() {
+        CompactSourceFile compact = new CompactSourceFile(createSourceFile(), new ConditionTable());
+        
+        assertThat(compact.getPath(), is(FILE));
+        assertThat(compact.getTopElementCount(), is(2));
+        assertThat(compact.getElementCount(), is(5));
+        
+        CompactCodeElement block1 = compact.getElement(0);
+        assertThat(block1.getNestedElementCount(), is(2));
+        assertThat(block1.getParent(), nullValue());
+        
+        CompactCodeElement block2 = block1.getNestedElement(0);
+        assertThat(block2.getLineStart(), is(2));
+        assertThat(block2.getParent(), is(block1));
+        assertThat(block2.getNestedElementCount(), is(1));
+        
+        CompactCodeElement block3 = block2.getNestedElement(0);
+        assertThat(block3.getLineStart(), is(3));
+        assertThat(block3.getNestedElementCount(), is(0));
+        assertThat(block3.getParent().getParent(), is(block1));
+        
+        CompactCodeElement block4 = block1.getNestedElement(1);
+        assertThat(block4.getLineStart(), is(6));
+        assertThat(block4.getLineEnd(), is(9));
+        
+        Iterator<CompactCodeElement> it = compact.iterator();
+        assertThat(it.next(), is(block1));
+        CompactCodeElement block5 = it.next();
+        assertThat(it.hasNext(), is(false));
+        assertThat(block5.getSourceFile(), is(new File("test.h")));
+        assertThat(block5.getType() == CodeBlock.class, is(true));
+    }
+    
+    /**
+     * Tests that the conditions are stored in the shared {@link ConditionTable}.
+     */
+    @Test
+    public void testConditions() {
+        ConditionTable table = new ConditionTable();
+        CompactSourceFile compact1 = new CompactSourceFile(createSourceFile(), table);
+        CompactSourceFile compact2 = new CompactSourceFile(createSourceFile(), table);
+        
+        // A, !A, True
+        assertThat(table.getSize(), is(3));
+        
+        CompactCodeElement block1 = compact1.getElement(0);
+        assertThat(block1.getCondition(), is(new Variable("A")));
+        assertThat(block1.getPresenceCondition(), is(new Variable("A")));
+        assertThat(block1.getNestedElement(1).getCondition(), nullValue());
+        assertThat(block1.getNestedElement(1).getConditionId(), is(ConditionTable.NO_CONDITION));
+        
+        assertThat(compact2.getElement(0).getPresenceConditionId(), is(block1.getPresenceConditionId()));
+    }
+    
+    /**
+     * Tests that the nested elements can't be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        CompactSourceFile compact = new CompactSourceFile(createSourceFile(), new ConditionTable());
+        compact.getElement(0).setLineStart(3);
+    }
+    
+    /**
+     * Tests that accessing an out-of-bounds nested element throws an exception.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNestedOutOfBounds() {
+        CompactSourceFile compact = new CompactSourceFile(createSourceFile(), new ConditionTable());
+        compact.getElement(0).getNestedElement(2);
+    }
+    
+}
@@ -16,11 +16,16 @@
 package net.ssehub.kernel_haven.code_model;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Iterator;
 
 import org.junit.After;
@@ -29,7 +34,11 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import net.ssehub.kernel_haven.code_model.ast.AllAstTests;
+import net.ssehub.kernel_haven.code_model.ast.Code;
+import net.ssehub.kernel_haven.code_model.ast.CompoundStatement;
 import net.ssehub.kernel_haven.code_model.ast.ISyntaxElement;
+import net.ssehub.kernel_haven.code_model.ast.ReferenceElement;
+import net.ssehub.kernel_haven.code_model.ast.SingleStatement;
 import net.ssehub.kernel_haven.code_model.simple_ast.SyntaxElement;
 import net.ssehub.kernel_haven.code_model.simple_ast.SyntaxElementTypes;
 import net.ssehub.kernel_haven.util.FormatException;
@@ -343,4 +352,216 @@ public class JsonCodeModelCacheTest {
         assertThat(readIt.hasNext(), is(false));
     }
 
+    
+    /**
+     * Writes a code model consisting of {@link ISyntaxElement}s to the cache, reads it lazily, and asserts that
+     * contents are equal.
+     * 
+     * @throws IOException unwanted.
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testAstCachingLazy() throws IOException, FormatException {
+        File location = new File("test.c");
+        SourceFile<ISyntaxElement> originalSourceFile = new SourceFile<>(location);
+        originalSourceFile.addElement(AllAstTests.createFullAst());
+        originalSourceFile.addElement(AllAstTests.createFullAst());
+
+        JsonCodeModelCache cache = new JsonCodeModelCache(cacheDir, false, true);
+
+        // write
+        cache.write(originalSourceFile);
+        
+        // read
+        SourceFile<ISyntaxElement> readSourceFile = cache.read(location).castTo(ISyntaxElement.class);
+
+        // check if equal
+        assertThat(readSourceFile.getPath(), is(originalSourceFile.getPath()));
+        assertThat(readSourceFile.getTopElementCount(), is(originalSourceFile.getTopElementCount()));
+        
+        // access the second element first, to check that the elements are loaded independently
+        assertThat(readSourceFile.getElement(1), is(originalSourceFile.getElement(1)));
+        assertThat(readSourceFile.getElement(0), is(originalSourceFile.getElement(0)));
+        
+        // not cached files are still reported as null
+        assertThat(cache.read(new File("other.c")), nullValue());
+    }
+
+    /**
+     * Tests that a lazily read cache file with a corrupt nested element throws a {@link LazyLoadingException} on
+     * access of this element.
+     *
+     * @throws IOException unwanted.
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testAstCachingLazyCorruptNested() throws IOException, FormatException {
+        File location = new File("test.c");
+        SourceFile<ISyntaxElement> originalSourceFile = new SourceFile<>(location);
+        originalSourceFile.addElement(AllAstTests.createFullAst());
+
+        JsonCodeModelCache cache = new JsonCodeModelCache(cacheDir, false, true);
+        cache.write(originalSourceFile);
+
+        File cacheFile = new File(cacheDir, "test.c.json");
+        String content = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+        content = content.replace("\"net.ssehub.kernel_haven.code_model.ast.CppStatement\"", "\"DoesNotExist\"");
+        Files.write(cacheFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        SourceFile<ISyntaxElement> readSourceFile = cache.read(location).castTo(ISyntaxElement.class);
+        ISyntaxElement top = readSourceFile.getElement(0);
+
+        try {
+            top.getNestedElement(0);
+            fail("Expected LazyLoadingException");
+        } catch (LazyLoadingException e) {
+            assertThat(e.getCause() instanceof FormatException, is(true));
+        }
+    }
+
+    /**
+     * Tests that a lazily read cache file with a corrupt top element structure already fails when it is read.
+     *
+     * @throws IOException unwanted.
+     * @throws FormatException wanted.
+     */
+    @Test(expected = FormatException.class)
+    public void testAstCachingLazyCorruptTopElement() throws IOException, FormatException {
+        File location = new File("test.c");
+        SourceFile<ISyntaxElement> originalSourceFile = new SourceFile<>(location);
+        originalSourceFile.addElement(AllAstTests.createFullAst());
+
+        JsonCodeModelCache cache = new JsonCodeModelCache(cacheDir, false, true);
+        cache.write(originalSourceFile);
+
+        File cacheFile = new File(cacheDir, "test.c.json");
+        String content = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+        // the first id is the one of the top element
+        content = content.replaceFirst("\"id\": 1,", "");
+        Files.write(cacheFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        cache.read(location);
+    }
+
+    /**
+     * Sets the source file and condition of the given element.
+     * 
+     * @param <T> The type of element.
+     * @param element The element to initialize.
+     * @param sourceFile The source file to set.
+     * 
+     * @return The given element.
+     */
+    private static <T extends ISyntaxElement> T init(T element, File sourceFile) {
+        element.setSourceFile(sourceFile);
+        element.setCondition(True.INSTANCE);
+        return element;
+    }
+
+    /**
+     * Creates an AST with shared elements: a {@link ReferenceElement} to an element in the AST, a
+     * {@link ReferenceElement} to an element outside of the AST, and a {@link Code} element that is used by two
+     * statements.
+     * 
+     * @param location The path of the source file.
+     * 
+     * @return The source file with the AST.
+     */
+    private static SourceFile<ISyntaxElement> createSharingAst(File location) {
+        CompoundStatement root = init(new CompoundStatement(True.INSTANCE), location);
+
+        SingleStatement inTree = init(new SingleStatement(True.INSTANCE,
+                init(new Code(True.INSTANCE, "a();"), location), SingleStatement.Type.INSTRUCTION), location);
+        SingleStatement outOfTree = init(new SingleStatement(True.INSTANCE,
+                init(new Code(True.INSTANCE, "b();"), location), SingleStatement.Type.INSTRUCTION), location);
+
+        Code sharedCode = init(new Code(True.INSTANCE, "c();"), location);
+        SingleStatement sharing1 = init(new SingleStatement(True.INSTANCE, sharedCode,
+                SingleStatement.Type.INSTRUCTION), location);
+        SingleStatement sharing2 = init(new SingleStatement(True.INSTANCE, sharedCode,
+                SingleStatement.Type.INSTRUCTION), location);
+
+        // reference before the referenced element, to check that it is still written in the tree
+        root.addNestedElement(init(new ReferenceElement(True.INSTANCE, inTree), location));
+        root.addNestedElement(inTree);
+        root.addNestedElement(init(new ReferenceElement(True.INSTANCE, outOfTree), location));
+        root.addNestedElement(sharing1);
+        root.addNestedElement(sharing2);
+
+        SourceFile<ISyntaxElement> result = new SourceFile<>(location);
+        result.addElement(root);
+        return result;
+    }
+
+    /**
+     * Checks that the given AST read from the cache has the sharing of {@link #createSharingAst(File)}.
+     * 
+     * @param original The original source file.
+     * @param read The source file read from the cache.
+     */
+    private static void assertSharing(SourceFile<ISyntaxElement> original, SourceFile<ISyntaxElement> read) {
+        assertThat(read.getTopElementCount(), is(1));
+        ISyntaxElement root = read.getElement(0);
+        ISyntaxElement originalRoot = original.getElement(0);
+        assertThat(root.getNestedElementCount(), is(5));
+
+        // in-tree reference points to the same instance as in the tree
+        ReferenceElement ref1 = (ReferenceElement) root.getNestedElement(0);
+        assertThat(ref1.getReferenced(), sameInstance(root.getNestedElement(1)));
+        assertThat(root.getNestedElement(1), is(originalRoot.getNestedElement(1)));
+
+        // out-of-tree reference is restored, but not added to the tree
+        ReferenceElement ref2 = (ReferenceElement) root.getNestedElement(2);
+        ISyntaxElement outOfTree = ((ReferenceElement) originalRoot.getNestedElement(2)).getReferenced();
+        assertThat(ref2.getReferenced(), is(outOfTree));
+        assertThat(ref2.getReferenced(), not(sameInstance(outOfTree)));
+
+        // shared secondary element
+        SingleStatement sharing1 = (SingleStatement) root.getNestedElement(3);
+        SingleStatement sharing2 = (SingleStatement) root.getNestedElement(4);
+        assertThat(sharing1.getCode(), is(((SingleStatement) originalRoot.getNestedElement(3)).getCode()));
+        assertThat(sharing2.getCode(), sameInstance(sharing1.getCode()));
+    }
+
+    /**
+     * Tests that shared elements are written once and that their sharing is restored when reading.
+     * 
+     * @throws IOException unwanted.
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testSharedElements() throws IOException, FormatException {
+        File location = new File("test.c");
+        SourceFile<ISyntaxElement> original = createSharingAst(location);
+
+        JsonCodeModelCache cache = new JsonCodeModelCache(cacheDir);
+        cache.write(original);
+
+        // each element is written exactly once
+        String content = new String(Files.readAllBytes(new File(cacheDir, "test.c.json").toPath()),
+                StandardCharsets.UTF_8);
+        assertThat(content.indexOf("\"a();\""), is(content.lastIndexOf("\"a();\"")));
+        assertThat(content.indexOf("\"c();\""), is(content.lastIndexOf("\"c();\"")));
+        assertThat(content.contains("\"b();\""), is(true));
+
+        assertSharing(original, cache.read(location).castTo(ISyntaxElement.class));
+    }
+
+    /**
+     * Tests that the sharing of elements is restored when reading lazily.
+     * 
+     * @throws IOException unwanted.
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testSharedElementsLazy() throws IOException, FormatException {
+        File location = new File("test.c");
+        SourceFile<ISyntaxElement> original = createSharingAst(location);
+
+        JsonCodeModelCache cache = new JsonCodeModelCache(cacheDir, false, true);
+        cache.write(original);
+
+        assertSharing(original, cache.read(location).castTo(ISyntaxElement.class));
+    }
+
 }
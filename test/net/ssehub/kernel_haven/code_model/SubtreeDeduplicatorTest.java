@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.code_model.ast.AllAstTests;
+import net.ssehub.kernel_haven.code_model.ast.ISyntaxElement;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+
+/**
+ * Tests the {@link SubtreeDeduplicator}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class SubtreeDeduplicatorTest {
+    
+    /**
+     * Tests that equal elements are de-duplicated to the first instance.
+     */
+    @Test
+    public void testDeduplicate() {
+        CodeBlock block1 = new CodeBlock(1, 2, new File("test.c"), new Variable("A"), new Variable("A"));
+        CodeBlock block2 = new CodeBlock(1, 2, new File("test.c"), new Variable("A"), new Variable("A"));
+        CodeBlock block3 = new CodeBlock(1, 3, new File("test.c"), new Variable("A"), new Variable("A"));
+        
+        SubtreeDeduplicator deduplicator = new SubtreeDeduplicator();
+        
+        assertThat(deduplicator.contains(block2), is(false));
+        
+        assertThat(deduplicator.deduplicate(block1), sameInstance(block1));
+        assertThat(deduplicator.deduplicate(block2), sameInstance(block1));
+        assertThat(deduplicator.deduplicate(block3), sameInstance(block3));
+        
+        assertThat(deduplicator.contains(block2), is(true));
+        assertThat(deduplicator.getUniqueCount(), is(2));
+        assertThat(deduplicator.getDuplicateCount(), is(1));
+    }
+    
+    /**
+     * Tests that nested elements of duplicates are not visited.
+     */
+    @Test
+    public void testDeduplicateAll() {
+        CodeBlock main1 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        main1.addNestedElement(new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A")));
+        main1.addNestedElement(new CodeBlock(4, 5, new File("test.c"), new Variable("B"), new Variable("B")));
+        
+        CodeBlock main2 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        main2.addNestedElement(new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A")));
+        main2.addNestedElement(new CodeBlock(4, 5, new File("test.c"), new Variable("B"), new Variable("B")));
+        
+        SourceFile<CodeBlock> file = new SourceFile<>(new File("test.c"));
+        file.addElement(main1);
+        file.addElement(main2);
+        
+        SubtreeDeduplicator deduplicator = new SubtreeDeduplicator();
+        deduplicator.deduplicateAll(file);
+        
+        assertThat(deduplicator.getUniqueCount(), is(3));
+        assertThat(deduplicator.getDuplicateCount(), is(1));
+        assertThat(deduplicator.deduplicate(main2.getNestedElement(1)), sameInstance(main1.getNestedElement(1)));
+    }
+    
+    /**
+     * Tests that nested duplicates are replaced by their canonical instance.
+     */
+    @Test
+    public void testDeduplicateAllReplacesNested() {
+        CodeBlock main1 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        main1.addNestedElement(new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A")));
+        main1.addNestedElement(new CodeBlock(4, 5, new File("test.c"), new Variable("B"), new Variable("B")));
+        
+        CodeBlock main2 = new CodeBlock(1, 100, new File("test.c"), True.INSTANCE, True.INSTANCE);
+        main2.addNestedElement(new CodeBlock(2, 3, new File("test.c"), new Variable("A"), new Variable("A")));
+        main2.addNestedElement(new CodeBlock(6, 7, new File("test.c"), new Variable("C"), new Variable("C")));
+        int oldHash = main2.getStructuralHash();
+        
+        SourceFile<CodeBlock> file = new SourceFile<>(new File("test.c"));
+        file.addElement(main1);
+        file.addElement(main2);
+        
+        SubtreeDeduplicator deduplicator = new SubtreeDeduplicator();
+        deduplicator.deduplicateAll(file);
+        
+        assertThat(deduplicator.getUniqueCount(), is(5));
+        assertThat(deduplicator.getDuplicateCount(), is(1));
+        assertThat(main2.getNestedElement(0), sameInstance(main1.getNestedElement(0)));
+        assertThat(main2.getNestedElement(1).getLineStart(), is(6));
+        assertThat(main2.getStructuralHash(), is(oldHash));
+    }
+    
+    /**
+     * Tests that two separately created full ASTs (with cross-references between siblings) are de-duplicated.
+     */
+    @Test
+    public void testDeduplicateAst() {
+        ISyntaxElement ast1 = AllAstTests.createFullAst();
+        ISyntaxElement ast2 = AllAstTests.createFullAst();
+        
+        assertThat(ast1.hashCode(), is(ast2.hashCode()));
+        
+        SubtreeDeduplicator deduplicator = new SubtreeDeduplicator();
+        deduplicator.deduplicate((AbstractCodeElement<?>) ast1);
+        
+        assertThat(deduplicator.deduplicate((AbstractCodeElement<?>) ast2), sameInstance(ast1));
+    }
+
+}
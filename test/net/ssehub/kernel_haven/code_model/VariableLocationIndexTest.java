@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.code_model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.test_utils.AnalysisComponentExecuter;
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.variability_model.SourceLocation;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+import net.ssehub.kernel_haven.variability_model.VariabilityVariable;
+
+/**
+ * Tests the {@link VariableLocationIndex} and the {@link VariableLocationIndexBuilder}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class VariableLocationIndexTest {
+    
+    /**
+     * Creates the first test file. Elements (in pre-order): 0: A (line 1), 1: A && B (line 2), 2: C (line 10).
+     * 
+     * @return The test file.
+     */
+    private static SourceFile<CodeBlock> createFile1() {
+        File path = new File("file1.c");
+        SourceFile<CodeBlock> file = new SourceFile<>(path);
+        CodeBlock outer = new CodeBlock(1, 5, path, new Variable("A"), new Variable("A"));
+        outer.addNestedElement(new CodeBlock(2, 3, path, new Variable("B"),
+                new Conjunction(new Variable("A"), new Variable("B"))));
+        file.addElement(outer);
+        file.addElement(new CodeBlock(10, 12, path, new Variable("C"), new Variable("C")));
+        return file;
+    }
+    
+    /**
+     * Creates the second test file. Elements (in pre-order): 0: true (line 1), 1: B (line 4).
+     * 
+     * @return The test file.
+     */
+    private static SourceFile<CodeBlock> createFile2() {
+        File path = new File("dir/file2.c");
+        SourceFile<CodeBlock> file = new SourceFile<>(path);
+        CodeBlock outer = new CodeBlock(1, 20, path, null, True.INSTANCE);
+        outer.addNestedElement(new CodeBlock(4, 6, path, new Variable("B"), new Variable("B")));
+        file.addElement(outer);
+        return file;
+    }
+    
+    /**
+     * Runs the {@link VariableLocationIndexBuilder} on the two test files.
+     * 
+     * @return The created index.
+     */
+    private static VariableLocationIndex createIndex() {
+        List<VariableLocationIndex> result = AnalysisComponentExecuter.executeComponent(
+                VariableLocationIndexBuilder.class, null, new Object[] {createFile1(), createFile2()});
+        assertThat(result.size(), is(1));
+        return result.get(0);
+    }
+    
+    /**
+     * Tests the postings that are created for the code model.
+     */
+    @Test
+    public void testCodeModelPostings() {
+        VariableLocationIndex index = createIndex();
+        
+        assertThat(index.getVariables(), is(Arrays.asList("A", "B", "C")));
+        assertThat(index.getFileCount(), is(2));
+        assertThat(index.getVariableId("D"), is(-1));
+        
+        int a = index.getVariableId("A");
+        assertThat(index.getPostingCount(a), is(2));
+        assertThat(index.getFile(index.getPostingFile(a, 0)), is(new File("file1.c")));
+        assertThat(index.getPostingLine(a, 0), is(1));
+        assertThat(index.getPostingElement(a, 0), is(0));
+        assertThat(index.getPostingLine(a, 1), is(2));
+        assertThat(index.getPostingElement(a, 1), is(1));
+        
+        int b = index.getVariableId("B");
+        assertThat(index.getPostingCount(b), is(2));
+        assertThat(index.getPostingElement(b, 0), is(1));
+        assertThat(index.getFile(index.getPostingFile(b, 1)), is(new File("dir/file2.c")));
+        assertThat(index.getPostingLine(b, 1), is(4));
+        assertThat(index.getPostingElement(b, 1), is(1));
+        
+        assertThat(index.getFiles("B"), is(new LinkedHashSet<>(Arrays.asList(
+                new File("file1.c"), new File("dir/file2.c")))));
+        assertThat(index.getFiles("C"), is(new HashSet<>(Arrays.asList(new File("file1.c")))));
+        assertThat(index.getFiles("D").isEmpty(), is(true));
+        
+        assertThat(index.getLocations("C"), is(Arrays.asList(new SourceLocation(new File("file1.c"), 10))));
+    }
+    
+    /**
+     * Tests that the element numbers of the postings point to the right elements.
+     */
+    @Test
+    public void testGetElement() {
+        SourceFile<CodeBlock> file = createFile1();
+        
+        assertThat(VariableLocationIndex.getElement(file, 0), sameInstance(file.getElement(0)));
+        assertThat(VariableLocationIndex.getElement(file, 1), sameInstance(file.getElement(0).getNestedElement(0)));
+        assertThat(VariableLocationIndex.getElement(file, 2), sameInstance(file.getElement(1)));
+        assertThat(VariableLocationIndex.getElement(file, 3), nullValue());
+        assertThat(VariableLocationIndex.getElement(file, -1), nullValue());
+    }
+    
+    /**
+     * Tests that the source locations of the variability model are added to the index.
+     */
+    @Test
+    public void testVariabilityModelLocations() {
+        VariabilityVariable varA = new VariabilityVariable("A", "bool");
+        varA.addLocation(new SourceLocation(new File("Kconfig"), 5));
+        VariabilityVariable varD = new VariabilityVariable("D", "bool");
+        varD.addLocation(new SourceLocation(new File("file1.c"), 42));
+        Set<VariabilityVariable> variables = new HashSet<>(Arrays.asList(varA, varD));
+        VariabilityModel vm = new VariabilityModel(new File("constraints.dimacs"), variables);
+        
+        List<VariableLocationIndex> result = AnalysisComponentExecuter.executeComponent(
+                VariableLocationIndexBuilder.class, null, new Object[] {createFile1(), createFile2()},
+                new Object[] {vm});
+        VariableLocationIndex index = result.get(0);
+        
+        assertThat(index.getVariables(), is(Arrays.asList("A", "B", "C", "D")));
+        assertThat(index.getFileCount(), is(3));
+        
+        int a = index.getVariableId("A");
+        assertThat(index.getPostingCount(a), is(3));
+        assertThat(index.getFile(index.getPostingFile(a, 2)), is(new File("Kconfig")));
+        assertThat(index.getPostingLine(a, 2), is(5));
+        assertThat(index.getPostingElement(a, 2), is(VariableLocationIndex.NO_ELEMENT));
+        
+        // variable only in the variability model shares the file IDs of the code model
+        int d = index.getVariableId("D");
+        assertThat(index.getPostingCount(d), is(1));
+        assertThat(index.getPostingFile(d, 0), is(index.getPostingFile(a, 0)));
+        assertThat(index.getLocations("D"), is(Arrays.asList(new SourceLocation(new File("file1.c"), 42))));
+    }
+    
+    /**
+     * Tests writing an index to a file and reading it again.
+     * 
+     * @throws IOException unwanted.
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testWriteAndRead() throws IOException, FormatException {
+        VariableLocationIndex index = createIndex();
+        
+        File file = File.createTempFile("variable_index", ".bin");
+        file.deleteOnExit();
+        index.write(file);
+        
+        VariableLocationIndex read = VariableLocationIndex.read(file);
+        assertThat(read.getVariables(), is(index.getVariables()));
+        assertThat(read.getFileCount(), is(index.getFileCount()));
+        for (int var = 0; var < index.getVariableCount(); var++) {
+            assertThat(read.getPostingCount(var), is(index.getPostingCount(var)));
+            for (int i = 0; i < index.getPostingCount(var); i++) {
+                assertThat(read.getFile(read.getPostingFile(var, i)), is(index.getFile(index.getPostingFile(var, i))));
+                assertThat(read.getPostingLine(var, i), is(index.getPostingLine(var, i)));
+                assertThat(read.getPostingElement(var, i), is(index.getPostingElement(var, i)));
+            }
+        }
+    }
+    
+    /**
+     * Tests that reading a file that does not contain an index throws a {@link FormatException}.
+     * 
+     * @throws IOException unwanted.
+     * @throws FormatException wanted.
+     */
+    @Test(expected = FormatException.class)
+    public void testReadInvalid() throws IOException, FormatException {
+        File file = File.createTempFile("variable_index", ".bin");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "not an index".getBytes());
+        
+        VariableLocationIndex.read(file);
+    }
+
+}
@@ -97,6 +97,38 @@ public class SyntaxElementTest {
         assertThat(main.getNestedElement("relation2"), sameInstance(nested2));
     }
     
+    /**
+     * Tests that {@link SyntaxElement#trimToSize()} keeps the nested elements and their relations, and that the
+     * relations are interned.
+     */
+    @Test
+    public void testTrimToSize() {
+        SyntaxElement main = new SyntaxElement(SyntaxElementTypes.COMPOUND_STATEMENT, True.INSTANCE, True.INSTANCE);
+        SyntaxElement nested1 = new SyntaxElement(SyntaxElementTypes.EXPR_STATEMENT, True.INSTANCE, True.INSTANCE);
+        SyntaxElement nested2 = new SyntaxElement(SyntaxElementTypes.EXPR_STATEMENT, True.INSTANCE, True.INSTANCE);
+        SyntaxElement nested3 = new SyntaxElement(SyntaxElementTypes.EXPR_STATEMENT, True.INSTANCE, True.INSTANCE);
+        
+        main.addNestedElement(nested1, new String("relation"));
+        main.addNestedElement(nested2, new String("relation"));
+        nested2.addNestedElement(nested3);
+        
+        main.trimToSize();
+        
+        assertThat(main.getNestedElementCount(), is(2));
+        assertThat(main.getNestedElement(0), sameInstance(nested1));
+        assertThat(main.getNestedElement(1), sameInstance(nested2));
+        assertThat(nested2.getNestedElementCount(), is(1));
+        assertThat(nested2.getNestedElement(0), sameInstance(nested3));
+        assertThat(nested2.getRelation(0), is(""));
+        
+        assertThat(main.getRelation(0), sameInstance(main.getRelation(1)));
+        
+        // adding after trimming still works
+        main.addNestedElement(nested3, "other");
+        assertThat(main.getNestedElementCount(), is(3));
+        assertThat(main.getNestedElement("other"), sameInstance(nested3));
+    }
+    
     /**
      * Tests the toString() method. This is a rather complicated method, thus this gets its own test case.
      */
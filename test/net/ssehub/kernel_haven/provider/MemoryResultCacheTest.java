@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.provider;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.Util;
+
+/**
+ * Tests the {@link MemoryResultCache}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class MemoryResultCacheTest {
+    
+    private static final File TMP_DIR = new File("testdata/memoryCache");
+    
+    /**
+     * Creates the temporary directory with some target files.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException {
+        if (TMP_DIR.exists()) {
+            Util.deleteFolder(TMP_DIR);
+        }
+        TMP_DIR.mkdir();
+        for (String name : new String[] {"a.c", "b.c", "c.c"}) {
+            new File(TMP_DIR, name).createNewFile();
+            new File(TMP_DIR, name).setLastModified(1000000);
+        }
+    }
+    
+    /**
+     * Deletes the temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Util.deleteFolder(TMP_DIR);
+    }
+    
+    /**
+     * Tests storing and retrieving results.
+     */
+    @Test
+    public void testGetAndPut() {
+        MemoryResultCache<String> cache = new MemoryResultCache<>(TMP_DIR, 10);
+        
+        assertThat(cache.get(new File("a.c")), nullValue());
+        cache.put(new File("a.c"), "A");
+        cache.put(new File("b.c"), "B");
+        
+        assertThat(cache.get(new File("a.c")), is("A"));
+        assertThat(cache.get(new File("b.c")), is("B"));
+        assertThat(cache.get(new File("c.c")), nullValue());
+        
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getHits(), is(2L));
+        assertThat(cache.getMisses(), is(2L));
+    }
+    
+    /**
+     * Tests that the least recently used result is evicted.
+     */
+    @Test
+    public void testEviction() {
+        MemoryResultCache<String> cache = new MemoryResultCache<>(TMP_DIR, 2);
+        
+        cache.put(new File("a.c"), "A");
+        cache.put(new File("b.c"), "B");
+        cache.get(new File("a.c")); // b.c is now least recently used
+        cache.put(new File("c.c"), "C");
+        
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get(new File("a.c")), is("A"));
+        assertThat(cache.get(new File("b.c")), nullValue());
+        assertThat(cache.get(new File("c.c")), is("C"));
+    }
+    
+    /**
+     * Tests that a result is not returned anymore, if its target was modified.
+     */
+    @Test
+    public void testModifiedTarget() {
+        MemoryResultCache<String> cache = new MemoryResultCache<>(TMP_DIR, 10);
+        
+        cache.put(new File("a.c"), "A");
+        cache.put(new File("b.c"), "B");
+        
+        new File(TMP_DIR, "a.c").setLastModified(2000000);
+        
+        assertThat(cache.get(new File("a.c")), nullValue());
+        assertThat(cache.get(new File("b.c")), is("B"));
+        assertThat(cache.size(), is(1));
+    }
+    
+    /**
+     * Tests that absolute targets (such as the source tree for the variability model) are not resolved against the
+     * base directory.
+     */
+    @Test
+    public void testAbsoluteTarget() {
+        MemoryResultCache<String> cache = new MemoryResultCache<>(new File("doesnt_exist"), 10);
+        
+        File target = new File(TMP_DIR, "a.c").getAbsoluteFile();
+        cache.put(target, "A");
+        assertThat(cache.get(target), is("A"));
+        
+        target.setLastModified(2000000);
+        assertThat(cache.get(target), nullValue());
+    }
+    
+    /**
+     * Tests that for directory targets, changes of nested input files are detected.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testDirectoryTargetInputFiles() throws IOException {
+        File nested = new File(TMP_DIR, "sub");
+        nested.mkdir();
+        File kconfig = new File(nested, "Kconfig");
+        kconfig.createNewFile();
+        kconfig.setLastModified(1000000);
+        
+        File target = TMP_DIR.getAbsoluteFile();
+        MemoryResultCache<String> cache = new MemoryResultCache<>(TMP_DIR, 1, Pattern.compile(".*Kconfig"));
+        cache.put(target, "VM");
+        
+        // files that are not input files are not considered
+        new File(TMP_DIR, "a.c").setLastModified(2000000);
+        assertThat(cache.get(target), is("VM"));
+        
+        // the directory itself is not modified, but the nested input file is
+        kconfig.setLastModified(2000000);
+        assertThat(cache.get(target), nullValue());
+    }
+    
+    /**
+     * Tests that an invalid capacity is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new MemoryResultCache<>(TMP_DIR, 0);
+    }
+
+}
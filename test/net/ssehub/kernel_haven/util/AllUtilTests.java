@@ -31,7 +31,10 @@ import net.ssehub.kernel_haven.util.logic.AllLogicTests;
     AllLogicTests.class,
     
     BlockingQueueTest.class,
+    DiskSpillingListTest.class,
+    ExternalWorkerPoolTest.class,
     FormulaCacheTest.class,
+    LoadClassesIndexTest.class,
     LoggerTest.class,
     OrderPreservingParallelizerTest.class,
     PerformanceProbeTest.class,
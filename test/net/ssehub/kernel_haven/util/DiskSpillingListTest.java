@@ -0,0 +1,292 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link DiskSpillingList}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class DiskSpillingListTest {
+    
+    private static final File TMP_DIR = new File("testdata/spill_tmp");
+    
+    /**
+     * Creates the empty temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException {
+        if (TMP_DIR.exists()) {
+            Util.deleteFolder(TMP_DIR);
+        }
+        TMP_DIR.mkdir();
+    }
+    
+    /**
+     * Deletes the temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Util.deleteFolder(TMP_DIR);
+    }
+    
+    /**
+     * Creates a list with the numbers 0 to <code>num - 1</code>.
+     * 
+     * @param list The list to add the numbers to.
+     * @param num The number of elements to add.
+     * 
+     * @return The same numbers in an {@link ArrayList}.
+     */
+    private static List<Integer> fill(List<Integer> list, int num) {
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            list.add(i);
+            expected.add(i);
+        }
+        return expected;
+    }
+    
+    /**
+     * Tests that elements are written to disk and read back correctly.
+     */
+    @Test
+    public void testSpilled() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        List<Integer> expected = fill(list, 10);
+        
+        assertThat(list.getNumSpilledChunks(), is(3));
+        assertThat(TMP_DIR.listFiles().length, is(3));
+        
+        assertThat(list.size(), is(10));
+        assertThat(list, is(expected));
+        assertThat(list.get(4), is(4));
+        assertThat(list.get(0), is(0));
+        assertThat(list.get(9), is(9));
+        
+        Iterator<Integer> iterator = list.iterator();
+        for (int i = 0; i < 10; i++) {
+            assertThat(iterator.next(), is(i));
+        }
+        assertThat(iterator.hasNext(), is(false));
+    }
+    
+    /**
+     * Tests that elements are kept in memory if the heap limit is not exceeded.
+     */
+    @Test
+    public void testInMemory() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 1.0);
+        List<Integer> expected = fill(list, 10);
+        
+        assertThat(list.getNumSpilledChunks(), is(0));
+        assertThat(TMP_DIR.listFiles().length, is(0));
+        assertThat(list, is(expected));
+    }
+    
+    /**
+     * Tests that elements that can't be serialized are kept in memory.
+     */
+    @Test
+    public void testNotSerializable() {
+        DiskSpillingList<Object> list = new DiskSpillingList<>(TMP_DIR, 2, 0.0);
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Object element = new Object();
+            list.add(element);
+            expected.add(element);
+        }
+        
+        assertThat(list.getNumSpilledChunks(), is(0));
+        assertThat(TMP_DIR.listFiles().length, is(0));
+        assertThat(list, is(expected));
+    }
+    
+    /**
+     * Tests that {@link DiskSpillingList#clear()} deletes the temporary files.
+     */
+    @Test
+    public void testClear() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        fill(list, 10);
+        list.clear();
+        
+        assertThat(list.size(), is(0));
+        assertThat(TMP_DIR.listFiles().length, is(0));
+        
+        List<Integer> expected = fill(list, 4);
+        assertThat(list, is(expected));
+    }
+    
+    /**
+     * Tests that {@link DiskSpillingList#set(int, Object)} changes spilled and in-memory elements.
+     */
+    @Test
+    public void testSet() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        List<Integer> expected = fill(list, 10);
+        
+        for (int index : new int[] {1, 7, 9, 4}) {
+            assertThat(list.set(index, -index), is(index));
+            expected.set(index, -index);
+        }
+        
+        assertThat(list.getNumSpilledChunks(), is(3));
+        assertThat(list, is(expected));
+    }
+    
+    /**
+     * Tests that elements can be inserted and removed in the middle of a spilled list.
+     */
+    @Test
+    public void testInsertAndRemove() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        List<Integer> expected = fill(list, 10);
+        
+        list.add(4, 100);
+        expected.add(4, 100);
+        list.add(0, 101);
+        expected.add(0, 101);
+        list.add(12, 102);
+        expected.add(12, 102);
+        assertThat(list, is(expected));
+        
+        assertThat(list.remove(5), is(expected.remove(5)));
+        assertThat(list.remove(0), is(expected.remove(0)));
+        assertThat(list.remove(10), is(expected.remove(10)));
+        assertThat(list.size(), is(expected.size()));
+        assertThat(list, is(expected));
+        
+        // appending after the changes
+        list.add(103);
+        expected.add(103);
+        assertThat(list, is(expected));
+    }
+    
+    /**
+     * Tests that removing elements with the iterator works for a spilled list.
+     */
+    @Test
+    public void testIteratorRemove() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        List<Integer> expected = fill(list, 10);
+        
+        ListIterator<Integer> iterator = list.listIterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        expected.removeIf((element) -> element % 2 == 0);
+        
+        assertThat(list, is(expected));
+        assertThat(list.get(0), is(1));
+        assertThat(list.get(4), is(9));
+    }
+    
+    /**
+     * Tests that a spilled list can be sorted.
+     */
+    @Test
+    public void testSort() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        List<Integer> expected = fill(list, 10);
+        
+        list.sort(Collections.reverseOrder());
+        Collections.reverse(expected);
+        
+        assertThat(list.getNumSpilledChunks(), is(3));
+        assertThat(list, is(expected));
+    }
+    
+    /**
+     * Tests that {@link DiskSpillingList#close()} deletes the temporary files.
+     */
+    @Test
+    public void testClose() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        fill(list, 10);
+        assertThat(TMP_DIR.listFiles().length, is(3));
+        
+        list.close();
+        
+        assertThat(list.size(), is(0));
+        assertThat(TMP_DIR.listFiles().length, is(0));
+    }
+    
+    /**
+     * Tests that serializing the list writes all elements.
+     * 
+     * @throws IOException unwanted.
+     * @throws ClassNotFoundException unwanted.
+     */
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        List<Integer> expected = fill(list, 10);
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(list);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat(in.readObject(), is(expected));
+        }
+    }
+    
+    /**
+     * Tests that an invalid index is rejected.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidIndex() {
+        DiskSpillingList<Integer> list = new DiskSpillingList<>(TMP_DIR, 3, 0.0);
+        fill(list, 3);
+        list.get(3);
+    }
+    
+    /**
+     * Tests that an invalid chunk size is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+        new DiskSpillingList<>(TMP_DIR, 0, 0.0);
+    }
+
+}
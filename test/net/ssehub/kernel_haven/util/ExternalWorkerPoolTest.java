@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link ExternalWorkerPool}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class ExternalWorkerPoolTest {
+    
+    /**
+     * Creates a process builder that starts the {@link ExternalWorkerPoolTestWorker} in a new JVM.
+     * 
+     * @return The process builder for the worker.
+     */
+    private static ProcessBuilder createWorkerBuilder() {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ExternalWorkerPoolTestWorker.class.getName());
+    }
+    
+    /**
+     * Tests that sequential requests are all handled by a single worker process.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSequentialRequests() throws IOException {
+        try (ExternalWorkerPool pool = new ExternalWorkerPool(createWorkerBuilder(), "TestWorker", 2, 0)) {
+            for (int i = 0; i < 10; i++) {
+                assertThat(pool.execute("request" + i), is("REQUEST" + i));
+            }
+            assertThat(pool.execute(""), is(""));
+            assertThat(pool.getNumStarted(), is(1));
+        }
+    }
+    
+    /**
+     * Tests that parallel requests are distributed over the workers, without starting more than the maximum number of
+     * workers.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testParallelRequests() throws InterruptedException {
+        AtomicInteger numCorrect = new AtomicInteger();
+        try (ExternalWorkerPool pool = new ExternalWorkerPool(createWorkerBuilder(), "TestWorker", 2, 0)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String prefix = "thread" + t + "_";
+                Thread th = new Thread(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        try {
+                            if (pool.execute(prefix + i).equals((prefix + i).toUpperCase())) {
+                                numCorrect.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+                th.start();
+                threads.add(th);
+            }
+            for (Thread th : threads) {
+                th.join();
+            }
+            
+            assertThat(numCorrect.get(), is(20));
+            assertThat(pool.getNumStarted() <= 2, is(true));
+        }
+    }
+    
+    /**
+     * Tests that a crashed worker is restarted for the next request.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testCrashedWorker() throws IOException {
+        try (ExternalWorkerPool pool = new ExternalWorkerPool(createWorkerBuilder(), "TestWorker", 1, 0)) {
+            assertThat(pool.execute("a"), is("A"));
+            try {
+                pool.execute("exit");
+                fail("Expected IOException");
+            } catch (IOException e) {
+                // expected
+            }
+            assertThat(pool.execute("b"), is("B"));
+            assertThat(pool.getNumStarted(), is(2));
+        }
+    }
+    
+    /**
+     * Tests that a worker that does not respond within the timeout is killed and restarted.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testTimeout() throws IOException {
+        try (ExternalWorkerPool pool = new ExternalWorkerPool(createWorkerBuilder(), "TestWorker", 1, 2000)) {
+            assertThat(pool.execute("a"), is("A"));
+            
+            long start = System.currentTimeMillis();
+            try {
+                pool.execute("sleep");
+                fail("Expected IOException");
+            } catch (IOException e) {
+                // expected
+            }
+            assertThat(System.currentTimeMillis() - start < 30000, is(true));
+            
+            assertThat(pool.execute("b"), is("B"));
+            assertThat(pool.getNumStarted(), is(2));
+        }
+    }
+    
+    /**
+     * Tests that a closed pool does not accept requests.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws IOException {
+        ExternalWorkerPool pool = new ExternalWorkerPool(createWorkerBuilder(), "TestWorker", 1, 0);
+        assertThat(pool.execute("a"), is("A"));
+        pool.close();
+        pool.execute("b");
+    }
+
+    /**
+     * Tests that closing the pool wakes up threads that wait for a free worker.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testCloseWakesWaiting() throws InterruptedException {
+        ExternalWorkerPool pool = new ExternalWorkerPool(createWorkerBuilder(), "TestWorker", 1, 0);
+        Thread busy = startRequest(pool, "sleep", new AtomicReference<>());
+        
+        AtomicReference<Throwable> exception = new AtomicReference<>();
+        Thread waiting = startRequest(pool, "a", exception);
+        Thread.sleep(500);
+        
+        pool.close();
+        waiting.join(10000);
+        busy.join(10000);
+        
+        assertThat(waiting.isAlive(), is(false));
+        assertThat(exception.get() instanceof IllegalStateException, is(true));
+    }
+    
+    /**
+     * Tests that interrupting a thread that waits for a free worker makes the request fail, and keeps the interrupted
+     * flag of the thread.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testInterruptedWaiting() throws InterruptedException {
+        try (ExternalWorkerPool pool = new ExternalWorkerPool(createWorkerBuilder(), "TestWorker", 1, 0)) {
+            startRequest(pool, "sleep", new AtomicReference<>());
+            
+            AtomicReference<Throwable> exception = new AtomicReference<>();
+            AtomicReference<Boolean> interrupted = new AtomicReference<>();
+            Thread waiting = new Thread(() -> {
+                try {
+                    pool.execute("a");
+                } catch (IOException | IllegalStateException e) {
+                    exception.set(e);
+                }
+                interrupted.set(Thread.currentThread().isInterrupted());
+            });
+            waiting.start();
+            Thread.sleep(500);
+            
+            waiting.interrupt();
+            waiting.join(10000);
+            
+            assertThat(waiting.isAlive(), is(false));
+            assertThat(exception.get() instanceof InterruptedIOException, is(true));
+            assertThat(interrupted.get(), is(true));
+        }
+    }
+    
+    /**
+     * Starts a thread that sends the given request to the pool.
+     * 
+     * @param pool The pool to send the request to.
+     * @param request The request to send.
+     * @param exception Is set to the exception that the request fails with.
+     * 
+     * @return The started thread.
+     */
+    private static Thread startRequest(ExternalWorkerPool pool, String request,
+            AtomicReference<Throwable> exception) {
+        
+        Thread thread = new Thread(() -> {
+            try {
+                pool.execute(request);
+            } catch (IOException | IllegalStateException e) {
+                exception.set(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+}
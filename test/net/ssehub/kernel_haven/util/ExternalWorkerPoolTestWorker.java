@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A worker process for the {@link ExternalWorkerPoolTest}. Answers each request with the upper-case request. The
+ * request <code>exit</code> crashes the worker, and <code>sleep</code> never returns.
+ * 
+ * @author Adam
+ */
+public class ExternalWorkerPoolTestWorker {
+    
+    /**
+     * Runs the worker until stdin is closed.
+     * 
+     * @param args Ignored.
+     * 
+     * @throws IOException If writing to stdout fails.
+     * @throws InterruptedException unwanted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        
+        while (true) {
+            byte[] request;
+            try {
+                request = new byte[in.readInt()];
+            } catch (EOFException e) {
+                break;
+            }
+            in.readFully(request);
+            String text = new String(request, StandardCharsets.UTF_8);
+            
+            if (text.equals("exit")) {
+                System.exit(1);
+            } else if (text.equals("sleep")) {
+                Thread.sleep(60000);
+            }
+            
+            System.err.println("handling " + text);
+            byte[] response = text.toUpperCase().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(response.length);
+            out.write(response);
+            out.flush();
+        }
+    }
+
+}
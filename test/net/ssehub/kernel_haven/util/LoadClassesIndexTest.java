@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link LoadClassesIndex}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class LoadClassesIndexTest {
+    
+    private static final File TMP_DIR = new File("testdata/loadClassesIndex");
+    
+    private static final File INDEX_FILE = new File(TMP_DIR, "index.txt");
+    
+    private File jar1;
+    
+    private File jar2;
+    
+    /**
+     * Creates the temporary directory with two (fake) jars.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void setUp() throws IOException {
+        if (TMP_DIR.exists()) {
+            Util.deleteFolder(TMP_DIR);
+        }
+        TMP_DIR.mkdir();
+        
+        jar1 = new File(TMP_DIR, "plugin1.jar");
+        jar2 = new File(TMP_DIR, "plugin2.jar");
+        for (File jar : new File[] {jar1, jar2}) {
+            try (Writer out = new FileWriter(jar)) {
+                out.write(jar.getName());
+            }
+            jar.setLastModified(1000000);
+        }
+    }
+    
+    /**
+     * Deletes the temporary directory.
+     * 
+     * @throws IOException unwanted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Util.deleteFolder(TMP_DIR);
+    }
+    
+    /**
+     * Tests that stored class names are read again by a new index.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testWriteAndRead() throws IOException {
+        LoadClassesIndex index = new LoadClassesIndex(INDEX_FILE);
+        assertThat(index.get(jar1), nullValue());
+        index.put(jar1, Arrays.asList("a.A", "a.B"));
+        index.put(jar2, Arrays.asList());
+        index.write();
+        
+        index = new LoadClassesIndex(INDEX_FILE);
+        assertThat(index.get(jar1), is(Arrays.asList("a.A", "a.B")));
+        assertThat(index.get(jar2), is(Arrays.asList()));
+    }
+    
+    /**
+     * Tests that entries of modified jars are not returned.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testModifiedJar() throws IOException {
+        LoadClassesIndex index = new LoadClassesIndex(INDEX_FILE);
+        index.put(jar1, Arrays.asList("a.A"));
+        index.put(jar2, Arrays.asList("b.B"));
+        index.write();
+        
+        jar1.setLastModified(2000000);
+        try (Writer out = new FileWriter(jar2, true)) {
+            out.write("more content");
+        }
+        jar2.setLastModified(1000000);
+        
+        index = new LoadClassesIndex(INDEX_FILE);
+        assertThat(index.get(jar1), nullValue());
+        assertThat(index.get(jar2), nullValue());
+    }
+    
+    /**
+     * Tests that entries of jars that were not requested are removed from the index file.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testUnusedEntriesRemoved() throws IOException {
+        LoadClassesIndex index = new LoadClassesIndex(INDEX_FILE);
+        index.put(jar1, Arrays.asList("a.A"));
+        index.put(jar2, Arrays.asList("b.B"));
+        index.write();
+        
+        index = new LoadClassesIndex(INDEX_FILE);
+        assertThat(index.get(jar1), is(Arrays.asList("a.A")));
+        index.write();
+        
+        index = new LoadClassesIndex(INDEX_FILE);
+        assertThat(index.get(jar1), is(Arrays.asList("a.A")));
+        assertThat(index.get(jar2), nullValue());
+    }
+    
+    /**
+     * Tests that invalid lines in the index file are ignored.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testInvalidLines() throws IOException {
+        try (Writer out = new FileWriter(INDEX_FILE)) {
+            out.write("invalid line\n");
+            out.write(jar1.getAbsolutePath() + "\tnot_a_number\t1000000\ta.A\n");
+            out.write(jar2.getAbsolutePath() + "\t" + jar2.length() + "\t" + jar2.lastModified() + "\tb.B b.C\n");
+        }
+        
+        LoadClassesIndex index = new LoadClassesIndex(INDEX_FILE);
+        assertThat(index.get(jar1), nullValue());
+        assertThat(index.get(jar2), is(Arrays.asList("b.B", "b.C")));
+    }
+
+}
@@ -15,14 +15,18 @@
  */
 package net.ssehub.kernel_haven.util;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
@@ -73,6 +77,26 @@ public class StaticClassLoaderTest {
         assertThat(testClassesLoaded.contains("net.ssehub.kernel_haven.util.StaticallyLoadedClass1"), is(true));
     }
     
+    /**
+     * Tests that {@link StaticClassLoader#initializeLoadedClasses(net.ssehub.kernel_haven.config.Configuration)}
+     * initializes the previously loaded classes again.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testInitializeLoadedClasses() throws SetUpException {
+        StaticClassLoader.loadClasses(new TestConfiguration(new Properties()));
+        
+        // precondition: clear any previously registered classes
+        testClassesLoaded.clear();
+        
+        // execute
+        StaticClassLoader.initializeLoadedClasses(new TestConfiguration(new Properties()));
+        
+        // verify
+        assertThat(testClassesLoaded.contains("net.ssehub.kernel_haven.util.StaticallyLoadedClass1"), is(true));
+    }
+    
     /**
      * Tests that net.ssehub.kernel_haven.util.StaticallyLoadedClass2 is loaded by the loadClasses.txt in a jar located
      * in the testdata folder.
@@ -150,6 +174,52 @@ public class StaticClassLoaderTest {
         assertThat(testClassesLoaded.contains("net.ssehub.kernel_haven.util.DoesntExist"), is(false)); // still false
     }
     
+    /**
+     * Tests that the classes specified in jars are stored in the index file, if one is configured.
+     * 
+     * @throws MalformedURLException unwanted. 
+     * @throws SecurityException unwanted.
+     * @throws ReflectiveOperationException unwanted. 
+     * @throws SetUpException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testIndexFile()
+            throws MalformedURLException, ReflectiveOperationException, SecurityException, SetUpException,
+            IOException {
+        
+        File indexFile = new File("testdata/staticLoadingTest/index.txt");
+        indexFile.delete();
+        loadJar(new File("testdata/staticLoadingTest/class3.jar"));
+        Properties props = new Properties();
+        props.setProperty("plugins.index_file", indexFile.getPath());
+        
+        try {
+            // execute
+            testClassesLoaded.clear();
+            StaticClassLoader.loadClasses(new TestConfiguration(props));
+            
+            // verify
+            assertThat(indexFile.isFile(), is(true));
+            String index = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8);
+            assertThat(index, containsString(new File("testdata/staticLoadingTest/class3.jar").getAbsolutePath()
+                    + "\t"));
+            assertThat(index, containsString("net.ssehub.kernel_haven.util.StaticallyLoadedClass3"));
+            assertThat(testClassesLoaded.contains("net.ssehub.kernel_haven.util.StaticallyLoadedClass1"), is(true));
+            
+            // execute again; classes are initialized using the index
+            testClassesLoaded.clear();
+            StaticClassLoader.loadClasses(new TestConfiguration(props));
+            
+            // verify
+            assertThat(testClassesLoaded.contains("net.ssehub.kernel_haven.util.StaticallyLoadedClass1"), is(true));
+            assertThat(new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8), is(index));
+            
+        } finally {
+            indexFile.delete();
+        }
+    }
+    
     /**
      * Loads the given jar into the current class loader.
      * 
@@ -15,6 +15,7 @@
  */
 package net.ssehub.kernel_haven.util;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.either;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
@@ -30,11 +31,13 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
@@ -221,6 +224,125 @@ public class UtilTest {
         assertThat(err.length(), either(is(34)).or(is(35))); // 33 chars + (1 for \n, 2 for \r\n)
     }
     
+    /**
+     * Tests that an error output stream that throws an exception does not affect the execution of later processes.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test(timeout = 30000)
+    public void testExecuteProcessThrowingStream() throws IOException {
+        OutputStream throwing = new OutputStream() {
+
+            @Override
+            public void write(int value) {
+                throw new IllegalStateException("Test exception");
+            }
+        };
+
+        boolean success = Util.executeProcess(setUpTestProcess("print", 0), "testprocess",
+                new ByteArrayOutputStream(), throwing, 0);
+        assertThat(success, is(true));
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        success = Util.executeProcess(setUpTestProcess("print", 0), "testprocess",
+                new ByteArrayOutputStream(), stderr, 0);
+        assertThat(success, is(true));
+        assertThat(stderr.toString(), startsWith("This is the standard error stream"));
+    }
+
+    /**
+     * Tests that an error output stream that blocks does not stall other processes.
+     *
+     * @throws IOException unwanted.
+     * @throws InterruptedException unwanted.
+     */
+    @Test(timeout = 30000)
+    public void testExecuteProcessBlockingStream() throws IOException, InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocking = new OutputStream() {
+
+            @Override
+            public void write(int value) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+
+        Thread blocked = new Thread(() -> {
+            try {
+                Util.executeProcess(setUpTestProcess("print", 0), "blocked", new ByteArrayOutputStream(), blocking, 0);
+            } catch (IOException e) {
+                // checked by the main thread via the liveness of this thread
+            }
+        });
+        blocked.start();
+
+        try {
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            boolean success = Util.executeProcess(setUpTestProcess("print", 0), "testprocess",
+                    new ByteArrayOutputStream(), stderr, 0);
+            assertThat(success, is(true));
+            assertThat(stderr.toString(), startsWith("This is the standard error stream"));
+
+            // the blocked process is still waiting for its stream
+            assertThat(blocked.isAlive(), is(true));
+
+        } finally {
+            release.countDown();
+            blocked.join();
+        }
+    }
+
+    /**
+     * Tests that the standard output of a streaming process can be read incrementally, and that its error output is
+     * sampled.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testExecuteProcessStreaming() throws IOException {
+        ProcessBuilder builder = setUpTestProcess("printmany", 0);
+        
+        try (StreamingProcess process = Util.executeProcessStreaming(builder, "testprocess", 0)) {
+            BufferedReader out = process.getStdoutReader();
+            int numLines = 0;
+            String line;
+            while ((line = out.readLine()) != null) {
+                assertThat(line, is("Output line " + numLines));
+                numLines++;
+            }
+            assertThat(numLines, is(100000));
+            
+            assertThat(process.waitFor(), is(0));
+            assertThat(process.isTimedOut(), is(false));
+            
+            String err = process.getStderr();
+            assertThat(err, startsWith("Error line 0"));
+            assertThat(err, containsString("bytes omitted"));
+            assertThat(err.trim().endsWith("Error line 19999"), is(true));
+            assertThat(err.length() < 3 * StreamingProcess.STDERR_SAMPLE_SIZE, is(true));
+        }
+    }
+    
+    /**
+     * Tests that a streaming process is killed when it exceeds the timeout.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testExecuteProcessStreamingTimeout() throws IOException {
+        ProcessBuilder builder = setUpTestProcess("sleep", 0);
+        
+        try (StreamingProcess process = Util.executeProcessStreaming(builder, "testprocess", 1)) {
+            assertThat(Util.readStream(process.getStdout()), is(""));
+            assertThat(process.waitFor(), nullValue());
+            assertThat(process.isTimedOut(), is(true));
+        }
+    }
+    
     /**
      * Creates a process builder for a process that either sleeps or prints output.
      * 
@@ -254,6 +376,13 @@ public class UtilTest {
         } else if (args[0].equals("print")) {
             System.out.println("This is the standard output stream");
             System.err.println("This is the standard error stream");
+        } else if (args[0].equals("printmany")) {
+            for (int i = 0; i < 100000; i++) {
+                System.out.println("Output line " + i);
+                if (i < 20000) {
+                    System.err.println("Error line " + i);
+                }
+            }
         }
         
         System.exit(Integer.parseInt(args[1]));
@@ -705,6 +834,16 @@ public class UtilTest {
         Util.clearFolder(toCreate);
     }
     
+    /**
+     * Tests the boundaries of {@link Util#isHeapUsageExceeded(double)}.
+     */
+    @Test
+    public void testIsHeapUsageExceeded() {
+        assertThat(Util.isHeapUsageExceeded(0.0), is(true));
+        assertThat(Util.isHeapUsageExceeded(1.0), is(false));
+        assertThat(Util.isHeapUsageExceeded(2.0), is(false));
+    }
+    
     /**
      * Tests that {@link Util#clearFolder(File)} correctly clears a folder with previous content.
      * 
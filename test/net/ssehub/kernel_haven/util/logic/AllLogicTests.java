@@ -19,6 +19,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import net.ssehub.kernel_haven.util.logic.bdd.BddManagerTest;
+import net.ssehub.kernel_haven.util.logic.sat.SatSolverTest;
+import net.ssehub.kernel_haven.util.logic.sat.TseitinConverterTest;
+
 /**
  * Tests for util.logic package.
  */
@@ -35,6 +39,11 @@ import org.junit.runners.Suite.SuiteClasses;
     DepthCalculatorTest.class,
     FormulaLiteralCounterTest.class,
     VariableValueReplacerTest.class,
+    VariableSupportCacheTest.class,
+    PartialEvaluatorTest.class,
+    BddManagerTest.class,
+    SatSolverTest.class,
+    TseitinConverterTest.class,
     })
 public class AllLogicTests {
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link PartialEvaluator} class.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class PartialEvaluatorTest {
+    
+    /**
+     * Tests that multiple variables are replaced in one pass and constants are folded.
+     */
+    @Test
+    public void testMultipleVariables() {
+        Map<String, Boolean> values = new HashMap<>();
+        values.put("A", true);
+        values.put("B", false);
+        PartialEvaluator evaluator = new PartialEvaluator(values);
+        
+        assertThat(evaluator.evaluate(and("A", "C")), is(new Variable("C")));
+        assertThat(evaluator.evaluate(and("B", "C")), is(False.INSTANCE));
+        assertThat(evaluator.evaluate(or("A", "C")), is(True.INSTANCE));
+        assertThat(evaluator.evaluate(or(not("A"), "C")), is(new Variable("C")));
+        assertThat(evaluator.evaluate(or(and("A", not("B")), "C")), is(True.INSTANCE));
+        assertThat(evaluator.evaluate(and(or("C", "B"), or("D", not("A")))), is(and("C", "D")));
+    }
+    
+    /**
+     * Tests that unaffected sub-formulas are shared with the result.
+     */
+    @Test
+    public void testStructuralSharing() {
+        PartialEvaluator evaluator = new PartialEvaluator();
+        evaluator.setValue("A", true);
+        
+        Formula unaffected = or("C", not("D"));
+        assertThat(evaluator.evaluate(unaffected), sameInstance(unaffected));
+        
+        Formula result = evaluator.evaluate(and(unaffected, or("A", "B")));
+        assertThat(result, sameInstance(unaffected));
+        
+        Conjunction partly = and(unaffected, not(and("A", "E")));
+        Formula partlyResult = evaluator.evaluate(partly);
+        assertThat(partlyResult, is(and(or("C", not("D")), not("E"))));
+        assertThat(((Conjunction) partlyResult).getLeft(), sameInstance(unaffected));
+    }
+    
+    /**
+     * Tests that results are cached per formula instance and that assigning new values discards the cache.
+     */
+    @Test
+    public void testCaching() {
+        PartialEvaluator evaluator = new PartialEvaluator();
+        evaluator.setValue("A", false);
+        
+        Formula parent = and("B", not("A"));
+        Formula result = evaluator.evaluate(parent);
+        assertThat(result, is(new Variable("B")));
+        assertThat(evaluator.evaluate(parent), sameInstance(result));
+        
+        evaluator.setValue("B", true);
+        assertThat(evaluator.evaluate(parent), is(True.INSTANCE));
+    }
+    
+    /**
+     * Tests that the cache is discarded once it exceeds its maximum size.
+     */
+    @Test
+    public void testCacheBounded() {
+        PartialEvaluator evaluator = new PartialEvaluator();
+        evaluator.setMaxCacheSize(2);
+        evaluator.setValue("A", false);
+        
+        // caches the results of the disjunction and the conjunction
+        Formula parent = or("B", and("C", not("A")));
+        Formula result = evaluator.evaluate(parent);
+        assertThat(result, is(or("B", "C")));
+        assertThat(evaluator.evaluate(parent), sameInstance(result));
+        
+        evaluator.evaluate(and("D", not("A")));
+        
+        // the cache now holds three results, so it is discarded and the result is calculated again
+        Formula newResult = evaluator.evaluate(parent);
+        assertThat(newResult, is(result));
+        assertThat(newResult, org.hamcrest.CoreMatchers.not(sameInstance(result)));
+    }
+    
+    /**
+     * Tests prefix assignments; the longest matching prefix wins and exact names take precedence.
+     */
+    @Test
+    public void testPrefixes() {
+        PartialEvaluator evaluator = new PartialEvaluator();
+        evaluator.setPrefixValue("CONFIG_", true);
+        evaluator.setPrefixValue("CONFIG_X86", false);
+        evaluator.setValue("CONFIG_X86_64", true);
+        
+        assertThat(evaluator.evaluate(new Variable("CONFIG_A")), is(True.INSTANCE));
+        assertThat(evaluator.evaluate(new Variable("CONFIG_")), is(True.INSTANCE));
+        assertThat(evaluator.evaluate(new Variable("CONFIG_X86")), is(False.INSTANCE));
+        assertThat(evaluator.evaluate(new Variable("CONFIG_X86_32")), is(False.INSTANCE));
+        assertThat(evaluator.evaluate(new Variable("CONFIG_X86_64")), is(True.INSTANCE));
+        assertThat(evaluator.evaluate(new Variable("CONFIG")), is(new Variable("CONFIG")));
+        assertThat(evaluator.evaluate(and("CONFIG_A", "OTHER")), is(new Variable("OTHER")));
+    }
+    
+    /**
+     * Tests an assignment given as {@link BitSet}s over the IDs of a {@link VariableSupportCache}.
+     */
+    @Test
+    public void testBitSetAssignment() {
+        VariableSupportCache supportCache = new VariableSupportCache(new String[] {"A", "B", "C", "D"});
+        BitSet assigned = new BitSet();
+        assigned.set(0);
+        assigned.set(1);
+        BitSet values = new BitSet();
+        values.set(0);
+        PartialEvaluator evaluator = new PartialEvaluator(supportCache, assigned, values);
+        
+        assertThat(evaluator.evaluate(and("A", "C")), is(new Variable("C")));
+        assertThat(evaluator.evaluate(or("B", "D")), is(new Variable("D")));
+        assertThat(evaluator.evaluate(and("A", not("B"))), is(True.INSTANCE));
+        
+        Formula unaffected = and("C", or("D", "UNKNOWN"));
+        assertThat(evaluator.evaluate(unaffected), sameInstance(unaffected));
+    }
+
+}
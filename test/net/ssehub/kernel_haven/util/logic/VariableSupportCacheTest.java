@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link VariableSupportCache} class.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class VariableSupportCacheTest {
+    
+    /**
+     * Creates a {@link BitSet} with the given bits set.
+     * 
+     * @param bits The bits to set.
+     * 
+     * @return The {@link BitSet}.
+     */
+    private static BitSet bits(int... bits) {
+        BitSet result = new BitSet();
+        for (int bit : bits) {
+            result.set(bit);
+        }
+        return result;
+    }
+    
+    /**
+     * Tests the support of a complex formula with an initial dictionary.
+     */
+    @Test
+    public void testSupport() {
+        VariableSupportCache cache = new VariableSupportCache(new String[] {"A", "B", "C"});
+        
+        Formula f = and(or("C", not(and("A", False.INSTANCE))), not(True.INSTANCE));
+        assertThat(cache.getSupport(f), is(bits(0, 2)));
+        assertThat(cache.getVariableNames(cache.getSupport(f)), is(Arrays.asList("A", "C")));
+        
+        assertThat(cache.getSupport(True.INSTANCE).isEmpty(), is(true));
+        assertThat(cache.getSupport(not("B")), is(bits(1)));
+    }
+    
+    /**
+     * Tests that unknown variables get IDs after the initial dictionary.
+     */
+    @Test
+    public void testUnknownVariables() {
+        VariableSupportCache cache = new VariableSupportCache(new String[] {"A", "B"});
+        assertThat(cache.getDictionarySize(), is(2));
+        assertThat(cache.getVariableId("X"), is(-1));
+        
+        assertThat(cache.getSupport(and("X", or("A", "Y"))), is(bits(0, 2, 3)));
+        assertThat(cache.getVariableId("X"), is(2));
+        assertThat(cache.getVariableName(3), is("Y"));
+        assertThat(cache.getVariableCount(), is(4));
+        assertThat(cache.getDictionarySize(), is(2));
+        
+        assertThat(cache.usesOnlyDictionaryVariables(and("A", not("B"))), is(true));
+        assertThat(cache.usesOnlyDictionaryVariables(and("A", "X")), is(false));
+    }
+    
+    /**
+     * Tests that supports are cached per formula instance and shared with sub-formulas where possible.
+     */
+    @Test
+    public void testCaching() {
+        VariableSupportCache cache = new VariableSupportCache();
+        
+        Formula parent = and("A", "B");
+        Formula child1 = and(parent, "C");
+        Formula child2 = and(parent, "A");
+        
+        BitSet parentSupport = cache.getSupport(parent);
+        assertThat(cache.getSupport(parent), sameInstance(parentSupport));
+        assertThat(cache.getSupport(child1), is(bits(0, 1, 2)));
+        // child2 does not add a variable, so it shares the support of the parent
+        assertThat(cache.getSupport(child2), sameInstance(parentSupport));
+        
+        cache.clear();
+        assertThat(cache.getSupport(parent), is(parentSupport));
+        assertThat(cache.getVariableId("C"), is(2));
+    }
+    
+    /**
+     * Tests the union, intersection and subset operations.
+     */
+    @Test
+    public void testSetOperations() {
+        VariableSupportCache cache = new VariableSupportCache(new String[] {"A", "B", "C", "D"});
+        
+        Formula f1 = and("A", or("B", "C"));
+        Formula f2 = or(not("C"), "D");
+        Formula f3 = not("D");
+        
+        assertThat(cache.getSupportUnion(Arrays.asList(f1, f2)), is(bits(0, 1, 2, 3)));
+        assertThat(cache.getSupportIntersection(f1, f2), is(bits(2)));
+        assertThat(cache.sharesVariables(f1, f2), is(true));
+        assertThat(cache.sharesVariables(f1, f3), is(false));
+        
+        assertThat(cache.usesOnly(f1, bits(0, 1, 2)), is(true));
+        assertThat(cache.usesOnly(f2, bits(0, 1, 2)), is(false));
+        
+        // the cached supports are not modified by the operations
+        assertThat(cache.getSupport(f1), is(bits(0, 1, 2)));
+    }
+    
+    /**
+     * Tests that a dictionary with duplicates is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateDictionary() {
+        new VariableSupportCache(new String[] {"A", "B", "A"});
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic.bdd;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.FormulaEvaluator;
+import net.ssehub.kernel_haven.util.logic.True;
+
+/**
+ * Tests the {@link BddManager}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class BddManagerTest {
+    
+    /**
+     * Tests that equivalent formulas result in the same BDD.
+     * 
+     * @throws BddNodeLimitException unwanted.
+     */
+    @Test
+    public void testCanonicity() throws BddNodeLimitException {
+        BddManager manager = new BddManager(1000);
+        
+        // distributivity and De Morgan
+        assertThat(manager.isEquivalent(and("A", or("B", "C")), or(and("A", "B"), and("A", "C"))), is(true));
+        assertThat(manager.isEquivalent(not(and("A", "B")), or(not("A"), not("B"))), is(true));
+        assertThat(manager.isEquivalent(and("A", "B"), or("A", "B")), is(false));
+        
+        assertThat(manager.fromFormula(or("A", not("A"))), is(BddManager.TRUE));
+        assertThat(manager.fromFormula(and("A", not("A"))), is(BddManager.FALSE));
+        assertThat(manager.isSatisfiable(and(and("A", "B"), not(or("A", "C")))), is(false));
+        assertThat(manager.fromFormula(True.INSTANCE), is(BddManager.TRUE));
+        assertThat(manager.fromFormula(False.INSTANCE), is(BddManager.FALSE));
+    }
+    
+    /**
+     * Tests the basic operations on BDDs.
+     * 
+     * @throws BddNodeLimitException unwanted.
+     */
+    @Test
+    public void testOperations() throws BddNodeLimitException {
+        BddManager manager = new BddManager(Arrays.asList("A", "B"), 1000);
+        int a = manager.variable("A");
+        int b = manager.variable("B");
+        
+        assertThat(manager.getTopVariable(a), is("A"));
+        assertThat(manager.getLow(a), is(BddManager.FALSE));
+        assertThat(manager.getHigh(a), is(BddManager.TRUE));
+        
+        assertThat(manager.xor(a, a), is(BddManager.FALSE));
+        assertThat(manager.not(manager.not(a)), is(a));
+        assertThat(manager.and(a, manager.or(a, b)), is(a));
+        assertThat(manager.isImplied(manager.and(a, b), a), is(true));
+        assertThat(manager.isImplied(a, manager.and(a, b)), is(false));
+        assertThat(manager.implies(a, a), is(BddManager.TRUE));
+    }
+    
+    /**
+     * Tests model counting over all known variables.
+     * 
+     * @throws BddNodeLimitException unwanted.
+     */
+    @Test
+    public void testCountModels() throws BddNodeLimitException {
+        BddManager manager = new BddManager(Arrays.asList("A", "B", "C", "D"), 1000);
+        
+        assertThat(manager.countModels(BddManager.TRUE), is(BigInteger.valueOf(16)));
+        assertThat(manager.countModels(BddManager.FALSE), is(BigInteger.ZERO));
+        assertThat(manager.countModels(manager.fromFormula(and("A", "C"))), is(BigInteger.valueOf(4)));
+        assertThat(manager.countModels(manager.fromFormula(or("B", "D"))), is(BigInteger.valueOf(12)));
+        assertThat(manager.countModels(manager.fromFormula(and(or("A", "B"), not("D")))),
+                is(BigInteger.valueOf(6)));
+    }
+    
+    /**
+     * Tests the conversion of BDDs back to formulas and satisfying assignments.
+     * 
+     * @throws BddNodeLimitException unwanted.
+     */
+    @Test
+    public void testToFormula() throws BddNodeLimitException {
+        BddManager manager = new BddManager(1000);
+        Formula formula = or(and("A", not("B")), and("C", or("A", "B")));
+        int bdd = manager.fromFormula(formula);
+        
+        assertThat(manager.fromFormula(manager.toFormula(bdd)), is(bdd));
+        
+        Map<String, Boolean> assignment = manager.getSatisfyingAssignment(bdd);
+        assertThat(assignment, notNullValue());
+        assertThat(formula.accept(new FormulaEvaluator(assignment)), is(true));
+        
+        assertThat(manager.getSatisfyingAssignment(BddManager.FALSE), nullValue());
+    }
+    
+    /**
+     * Tests that the variable order is respected and unknown variables are appended.
+     * 
+     * @throws BddNodeLimitException unwanted.
+     */
+    @Test
+    public void testVariableOrder() throws BddNodeLimitException {
+        BddManager manager = new BddManager(Arrays.asList("B", "A"), 1000);
+        
+        int bdd = manager.fromFormula(and("A", and("B", "C")));
+        assertThat(manager.getTopVariable(bdd), is("B"));
+        assertThat(manager.getVariableOrder(), is(Arrays.asList("B", "A", "C")));
+        assertThat(manager.getVariableCount(), is(3));
+    }
+    
+    /**
+     * Tests that reaching the node limit throws an exception and that the manager can be used after clearing it.
+     * 
+     * @throws BddNodeLimitException unwanted.
+     */
+    @Test
+    public void testNodeLimit() throws BddNodeLimitException {
+        BddManager manager = new BddManager(10);
+        
+        // x1 <-> y1 AND ... with a bad order needs exponentially many nodes
+        Formula formula = True.INSTANCE;
+        for (int i = 0; i < 6; i++) {
+            formula = and(formula, or(and("X" + i, "Y" + i), and(not("X" + i), not("Y" + i))));
+        }
+        for (int i = 0; i < 6; i++) {
+            manager.variable("X" + i);
+        }
+        
+        boolean thrown = false;
+        try {
+            manager.fromFormula(formula);
+        } catch (BddNodeLimitException e) {
+            thrown = true;
+        }
+        assertThat(thrown, is(true));
+        assertThat(manager.getNodeCount() <= manager.getMaxNodes(), is(true));
+        
+        manager.clear();
+        assertThat(manager.getNodeCount(), is(2));
+        assertThat(manager.isEquivalent(and("X0", "Y0"), and("Y0", "X0")), is(true));
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic.sat;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link SatSolver}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class SatSolverTest {
+    
+    /**
+     * Tests a simple satisfiable CNF, and that it becomes unsatisfiable with an additional clause.
+     */
+    @Test
+    public void testSimple() {
+        SatSolver solver = new SatSolver();
+        solver.addClause(1, 2);
+        solver.addClause(-1, 2);
+        solver.addClause(1, -2);
+        
+        assertThat(solver.isSatisfiable(), is(true));
+        assertThat(solver.getModelValue(1), is(true));
+        assertThat(solver.getModelValue(2), is(true));
+        assertThat(solver.getNumVariables(), is(2));
+        assertThat(solver.getNumClauses(), is(3));
+        
+        solver.addClause(-1, -2);
+        assertThat(solver.isSatisfiable(), is(false));
+    }
+    
+    /**
+     * Tests pushing and popping assumptions.
+     */
+    @Test
+    public void testAssumptions() {
+        SatSolver solver = new SatSolver();
+        solver.addClause(-1, 2);
+        solver.addClause(-2, 3);
+        
+        assertThat(solver.isSatisfiable(1, -3), is(false));
+        assertThat(solver.isSatisfiable(1), is(true));
+        assertThat(solver.getModelValue(3), is(true));
+        assertThat(solver.getNumAssumptions(), is(0));
+        
+        solver.pushAssumption(-3);
+        assertThat(solver.isSatisfiable(), is(true));
+        assertThat(solver.getModelValue(1), is(false));
+        assertThat(solver.isSatisfiable(1), is(false));
+        solver.popAssumption();
+        
+        // the failed checks under assumptions do not make the clauses unsatisfiable
+        assertThat(solver.isSatisfiable(1), is(true));
+    }
+    
+    /**
+     * Tests unit clauses, tautologies and the empty clause.
+     */
+    @Test
+    public void testSpecialClauses() {
+        SatSolver solver = new SatSolver();
+        assertThat(solver.addClause(1, -1), is(true));
+        assertThat(solver.addClause(2, 2), is(true));
+        assertThat(solver.getNumClauses(), is(0));
+        assertThat(solver.isSatisfiable(-2), is(false));
+        
+        // already satisfied by the unit clause
+        assertThat(solver.addClause(2, 3), is(true));
+        assertThat(solver.getNumClauses(), is(0));
+        
+        assertThat(solver.addClause(-2), is(false));
+        assertThat(solver.isSatisfiable(), is(false));
+        
+        SatSolver empty = new SatSolver();
+        assertThat(empty.addClause(), is(false));
+        assertThat(empty.isSatisfiable(), is(false));
+    }
+    
+    /**
+     * Tests the pigeonhole problem with 6 pigeons and 5 holes, which needs many learned clauses to be refuted.
+     */
+    @Test
+    public void testPigeonhole() {
+        int pigeons = 6;
+        int holes = 5;
+        SatSolver solver = new SatSolver();
+        for (int p = 0; p < pigeons; p++) {
+            int[] clause = new int[holes];
+            for (int h = 0; h < holes; h++) {
+                clause[h] = p * holes + h + 1;
+            }
+            solver.addClause(clause);
+        }
+        for (int h = 0; h < holes; h++) {
+            for (int p1 = 0; p1 < pigeons; p1++) {
+                for (int p2 = p1 + 1; p2 < pigeons; p2++) {
+                    solver.addClause(-(p1 * holes + h + 1), -(p2 * holes + h + 1));
+                }
+            }
+        }
+        
+        assertThat(solver.isSatisfiable(), is(false));
+    }
+    
+    /**
+     * Tests that 0 is rejected as a literal.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLiteral() {
+        new SatSolver().addClause(1, 0);
+    }
+    
+    /**
+     * Tests that popping without assumptions fails.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testPopWithoutAssumption() {
+        new SatSolver().popAssumption();
+    }
+    
+    /**
+     * Tests that the model is not available after an unsatisfiable check.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNoModel() {
+        SatSolver solver = new SatSolver();
+        solver.addClause(1);
+        solver.isSatisfiable(-1);
+        solver.getModelValue(1);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.util.logic.sat;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+
+/**
+ * Tests the {@link TseitinConverter}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class TseitinConverterTest {
+    
+    /**
+     * Tests that the literals of converted formulas have the right semantics.
+     */
+    @Test
+    public void testSemantics() {
+        SatSolver solver = new SatSolver();
+        TseitinConverter converter = new TseitinConverter(solver);
+        int a = converter.getVariable("A");
+        int b = converter.getVariable("B");
+        
+        int and = converter.convert(and("A", "B"));
+        assertThat(solver.isSatisfiable(and), is(true));
+        assertThat(solver.getModelValue(a), is(true));
+        assertThat(solver.getModelValue(b), is(true));
+        assertThat(solver.isSatisfiable(and, -a), is(false));
+        
+        int or = converter.convert(or(not("A"), "B"));
+        assertThat(solver.isSatisfiable(or, a, -b), is(false));
+        assertThat(solver.isSatisfiable(-or, a, -b), is(true));
+        
+        assertThat(solver.isSatisfiable(converter.convert(and(or("A", "B"), and(not("A"), not("B"))))), is(false));
+    }
+    
+    /**
+     * Tests constants and folding of trivial operations.
+     */
+    @Test
+    public void testConstants() {
+        SatSolver solver = new SatSolver();
+        TseitinConverter converter = new TseitinConverter(solver);
+        
+        int trueLit = converter.convert(True.INSTANCE);
+        assertThat(converter.convert(False.INSTANCE), is(-trueLit));
+        assertThat(solver.isSatisfiable(-trueLit), is(false));
+        
+        assertThat(converter.convert(and("A", not("A"))), is(-trueLit));
+        assertThat(converter.convert(or("A", not("A"))), is(trueLit));
+        assertThat(converter.convert(and("A", True.INSTANCE)), is(converter.getVariable("A")));
+        assertThat(converter.convert(or("A", "A")), is(converter.getVariable("A")));
+    }
+    
+    /**
+     * Tests that converted sub-formulas are cached per instance.
+     */
+    @Test
+    public void testCaching() {
+        SatSolver solver = new SatSolver();
+        TseitinConverter converter = new TseitinConverter(solver);
+        
+        Formula parent = and("A", "B");
+        int lit = converter.convert(parent);
+        int numClauses = solver.getNumClauses();
+        
+        assertThat(converter.convert(parent), is(lit));
+        assertThat(converter.convert(not(parent)), is(-lit));
+        assertThat(solver.getNumClauses(), is(numClauses));
+        assertThat(converter.getCacheSize(), is(1));
+        
+        converter.convert(and(parent, "C"));
+        assertThat(converter.getCacheSize(), is(2));
+    }
+    
+    /**
+     * Tests that given variable mappings are used and unknown variables get new solver variables.
+     */
+    @Test
+    public void testVariableMapping() {
+        SatSolver solver = new SatSolver();
+        solver.ensureVariables(5);
+        Map<String, Integer> variables = new HashMap<>();
+        variables.put("A", 3);
+        TseitinConverter converter = new TseitinConverter(solver, variables);
+        
+        assertThat(converter.convert(new Variable("A")), is(3));
+        assertThat(converter.convert(new Variable("UNKNOWN")), is(6));
+        assertThat(converter.getVariable("UNKNOWN"), is(6));
+    }
+
+}
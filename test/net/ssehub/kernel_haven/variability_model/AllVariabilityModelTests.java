@@ -26,7 +26,10 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     VariabilityModelCacheTest.class,
     VariabilityModelProviderTest.class,
-    DIMACSVariabilityModelExtractorTest.class
+    DIMACSVariabilityModelExtractorTest.class,
+    VariabilityModelIndexTest.class,
+    HierarchyIndexTest.class,
+    VariabilityModelSatCheckerTest.class
     })
 public class AllVariabilityModelTests {
 
@@ -18,6 +18,9 @@ package net.ssehub.kernel_haven.variability_model;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -29,7 +32,9 @@ import net.ssehub.kernel_haven.SetUpException;
 import net.ssehub.kernel_haven.config.DefaultSettings;
 import net.ssehub.kernel_haven.test_utils.TestConfiguration;
 import net.ssehub.kernel_haven.util.ExtractorException;
+import net.ssehub.kernel_haven.util.FormatException;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Attribute;
 
 /**
  * Tests the {@link DIMACSVariabilityModelExtractor}.
@@ -170,6 +175,82 @@ public class DIMACSVariabilityModelExtractorTest {
         Assert.assertEquals("SomethingSpecial", var.getType());
     }
 
+    /**
+     * Tests that the clauses are parsed into the {@link ClauseStore} of the model. The test file contains clauses
+     * spanning multiple lines, comments between clauses and a last clause without terminating 0.
+     */
+    @Test
+    public void testClauses() {
+        VariabilityModel varModel = parseDimacsFile(new File(TESTDATA, "clauses.dimacs"));
+        
+        ClauseStore clauses = varModel.getClauses();
+        Assert.assertNotNull(clauses);
+        Assert.assertEquals(5, clauses.getNumVariables());
+        Assert.assertEquals(4, clauses.getNumClauses());
+        Assert.assertEquals(8, clauses.getNumLiterals());
+        Assert.assertArrayEquals(new int[] {1, -2}, clauses.getClause(0));
+        Assert.assertArrayEquals(new int[] {2, 3, -1}, clauses.getClause(1));
+        Assert.assertArrayEquals(new int[] {4}, clauses.getClause(2));
+        Assert.assertArrayEquals(new int[] {-5, 1}, clauses.getClause(3));
+        Assert.assertEquals(3, clauses.getClauseLength(1));
+        Assert.assertEquals(-1, clauses.getLiteral(1, 2));
+        
+        Assert.assertEquals(4, varModel.getVariables().size());
+        Assert.assertEquals("bool", varModel.getVariableMap().get("B").getType());
+    }
+    
+    /**
+     * Tests that the constraint usage is derived from the clauses.
+     */
+    @Test
+    public void testConstraintUsage() {
+        VariabilityModel varModel = parseDimacsFile(new File(TESTDATA, "clauses.dimacs"));
+        Assert.assertTrue(varModel.getDescriptor().hasAttribute(Attribute.CONSTRAINT_USAGE));
+        
+        Map<String, VariabilityVariable> vars = varModel.getVariableMap();
+        VariabilityVariable a = vars.get("A");
+        VariabilityVariable b = vars.get("B");
+        VariabilityVariable c = vars.get("C");
+        VariabilityVariable d = vars.get("D");
+        
+        // variable 5 has no name, so it is not considered
+        Assert.assertEquals(new HashSet<>(Arrays.asList(b, c)), a.getVariablesUsedInConstraints());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, c)), b.getVariablesUsedInConstraints());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), c.getUsedInConstraintsOfOtherVariables());
+        Assert.assertEquals(new HashSet<>(), d.getVariablesUsedInConstraints());
+        Assert.assertEquals(new HashSet<>(), d.getUsedInConstraintsOfOtherVariables());
+        
+        // both directions share the same compact set; check its contains() lookup
+        Assert.assertSame(a.getVariablesUsedInConstraints(), a.getUsedInConstraintsOfOtherVariables());
+        Assert.assertTrue(a.getVariablesUsedInConstraints().contains(b));
+        Assert.assertTrue(a.getVariablesUsedInConstraints().contains(c));
+        Assert.assertFalse(a.getVariablesUsedInConstraints().contains(a));
+        Assert.assertFalse(a.getVariablesUsedInConstraints().contains(d));
+        Assert.assertFalse(a.getVariablesUsedInConstraints().contains("B"));
+        Assert.assertFalse(d.getVariablesUsedInConstraints().contains(a));
+    }
+    
+    /**
+     * Tests that a malformed clause section results in an exception.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testMalformedClause() throws SetUpException {
+        DIMACSVariabilityModelExtractor extractor = new DIMACSVariabilityModelExtractor();
+        Properties prop = new Properties();
+        prop.setProperty(DefaultSettings.VARIABILITY_INPUT_FILE.getKey(),
+                new File(TESTDATA, "malformedClause.dimacs").getAbsolutePath());
+        extractor.init(new TestConfiguration(prop));
+        
+        try {
+            extractor.runOnFile(null);
+            Assert.fail("Expected exception");
+        } catch (ExtractorException e) {
+            Assert.assertTrue(e.getCause() instanceof FormatException);
+        }
+    }
+
     /**
      * Helper function to parse a DIMACS file to a {@link VariabilityModel} and to facilitate testing in a test method.
      * @param dimcasFile The file (absolute path) to test.
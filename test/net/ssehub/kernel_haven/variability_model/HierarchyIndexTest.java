@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Attribute;
+
+/**
+ * Tests the {@link HierarchyIndex}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class HierarchyIndexTest {
+    
+    private HierarchicalVariable a;
+    
+    private HierarchicalVariable b;
+    
+    private HierarchicalVariable c;
+    
+    private HierarchicalVariable d;
+    
+    private HierarchicalVariable e;
+    
+    private VariabilityVariable plain;
+    
+    private VariabilityModel vm;
+    
+    /**
+     * Creates a model with the hierarchy A -> (B -> C, D) and E, and a non-hierarchical variable.
+     */
+    @Before
+    public void setUp() {
+        a = new HierarchicalVariable("A", "bool");
+        b = new HierarchicalVariable("B", "bool");
+        c = new HierarchicalVariable("C", "bool");
+        d = new HierarchicalVariable("D", "bool");
+        e = new HierarchicalVariable("E", "bool");
+        plain = new VariabilityVariable("PLAIN", "bool");
+        
+        b.setParent(a);
+        c.setParent(b);
+        d.setParent(a);
+        
+        vm = new VariabilityModel(new File("constraints.dimacs"), new HashSet<>(Arrays.asList(a, b, c, d, e, plain)));
+        vm.getDescriptor().addAttribute(Attribute.HIERARCHICAL);
+    }
+    
+    /**
+     * Tests that the index is only available for {@link Attribute#HIERARCHICAL} models, and that it is cached.
+     */
+    @Test
+    public void testAvailability() {
+        HierarchyIndex index = vm.getHierarchyIndex();
+        assertThat(index, notNullValue());
+        assertThat(vm.getHierarchyIndex(), sameInstance(index));
+        
+        vm.getDescriptor().removeAttribute(Attribute.HIERARCHICAL);
+        assertThat(vm.getHierarchyIndex(), nullValue());
+    }
+    
+    /**
+     * Tests the pre-order and post-order numbering.
+     */
+    @Test
+    public void testNumbering() {
+        HierarchyIndex index = vm.getHierarchyIndex();
+        
+        assertThat(index.getSize(), is(5));
+        assertThat(index.getPreOrder(), is(Arrays.asList(a, b, c, d, e)));
+        assertThat(index.getVariable(2), sameInstance(c));
+        
+        assertThat(index.getPreOrderNumber(a), is(0));
+        assertThat(index.getPreOrderNumber(d), is(3));
+        assertThat(index.getPreOrderNumber(plain), is(-1));
+        
+        assertThat(index.getPostOrderNumber(c), is(0));
+        assertThat(index.getPostOrderNumber(b), is(1));
+        assertThat(index.getPostOrderNumber(d), is(2));
+        assertThat(index.getPostOrderNumber(a), is(3));
+        assertThat(index.getPostOrderNumber(e), is(4));
+        assertThat(index.getPostOrderNumber(plain), is(-1));
+        
+        assertThat(index.getDepth(c), is(2));
+        assertThat(index.getDepth(e), is(0));
+        assertThat(index.getRoots(), is(Arrays.asList(a, e)));
+    }
+    
+    /**
+     * Tests the ancestor checks.
+     */
+    @Test
+    public void testIsAncestor() {
+        HierarchyIndex index = vm.getHierarchyIndex();
+        
+        assertThat(index.isAncestor(a, c), is(true));
+        assertThat(index.isAncestor(b, c), is(true));
+        assertThat(index.isAncestor(a, d), is(true));
+        
+        assertThat(index.isAncestor(c, a), is(false));
+        assertThat(index.isAncestor(b, d), is(false));
+        assertThat(index.isAncestor(a, a), is(false));
+        assertThat(index.isAncestor(a, e), is(false));
+        assertThat(index.isAncestor(a, plain), is(false));
+        
+        assertThat(index.getAncestors(c), is(Arrays.asList(b, a)));
+        assertThat(index.getAncestors(e), is(Arrays.asList()));
+    }
+    
+    /**
+     * Tests that sub-trees are returned as contiguous ranges.
+     */
+    @Test
+    public void testDescendants() {
+        HierarchyIndex index = vm.getHierarchyIndex();
+        
+        assertThat(index.getDescendants(a), is(Arrays.asList(b, c, d)));
+        assertThat(index.getDescendants(b), is(Arrays.asList(c)));
+        assertThat(index.getDescendants(e), is(Arrays.asList()));
+        assertThat(index.getDescendants(plain), is(Arrays.asList()));
+        
+        assertThat(index.getSubtreeEnd(a), is(4));
+        assertThat(index.getSubtreeEnd(c), is(3));
+    }
+    
+    /**
+     * Tests that the index is re-created if a variable is added to the model.
+     */
+    @Test
+    public void testAddVariable() {
+        HierarchyIndex index = vm.getHierarchyIndex();
+        
+        HierarchicalVariable f = new HierarchicalVariable("F", "bool");
+        f.setParent(d);
+        vm.getVariableMap().put("F", f);
+        
+        HierarchyIndex newIndex = vm.getHierarchyIndex();
+        assertThat(newIndex == index, is(false));
+        assertThat(newIndex.isAncestor(a, f), is(true));
+        assertThat(newIndex.getDescendants(a), is(Arrays.asList(b, c, d, f)));
+    }
+    
+    /**
+     * Tests that the variable order of the model starts with the hierarchy in pre-order.
+     */
+    @Test
+    public void testVariableOrder() {
+        assertThat(vm.getVariableOrder(), is(Arrays.asList("A", "B", "C", "D", "E", "PLAIN")));
+        
+        vm.getDescriptor().removeAttribute(Attribute.HIERARCHICAL);
+        assertThat(vm.getVariableOrder().size(), is(6));
+    }
+
+}
@@ -26,6 +26,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -509,6 +510,91 @@ public class VariabilityModelCacheTest {
         assertThat(readD.getUsedInConstraintsOfOtherVariables(), is(set(readC)));
     }
 
+    /**
+     * Tests that the constraint model and the clauses are stored as sidecar files, and that the constraint model
+     * sidecar file is used directly when reading.
+     * 
+     * @throws FormatException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSidecarFiles() throws FormatException, IOException {
+        File dimacsFile = new File("testdata/vmCaching/testmodel.dimacs");
+        
+        VariabilityModel originalVm = new VariabilityModel(dimacsFile, set(new VariabilityVariable("A", "bool", 1)));
+        ClauseStore clauses = new ClauseStore(2, new int[] {1, -2, 2}, new int[] {0, 2, 3});
+        originalVm.setClauses(clauses);
+        
+        JsonVariabilityModelCache cache = new JsonVariabilityModelCache(cacheDir);
+        
+        // write
+        cache.write(originalVm);
+        assertThat(new File(cacheDir, "vmCache.constraints").isFile(), is(true));
+        assertThat(new File(cacheDir, "vmCache.clauses").isFile(), is(true));
+        
+        // read
+        VariabilityModel readVm = cache.read(new File(""));
+        
+        assertThat(readVm.getConstraintModel(), is(new File(cacheDir, "vmCache.constraints")));
+        assertThat(Files.readAllBytes(readVm.getConstraintModel().toPath()),
+                is(Files.readAllBytes(dimacsFile.toPath())));
+        assertThat(readVm.getClauses(), is(clauses));
+        
+        // writing the read model again must work, even though its constraint model is the sidecar file
+        cache.write(readVm);
+        readVm = cache.read(new File(""));
+        assertThat(Files.readAllBytes(readVm.getConstraintModel().toPath()),
+                is(Files.readAllBytes(dimacsFile.toPath())));
+        assertThat(readVm.getClauses(), is(clauses));
+    }
+    
+    /**
+     * Tests that the constraint model sidecar file is replaced when the cache is written again with a different model.
+     * 
+     * @throws FormatException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testConstraintSidecarReplaced() throws FormatException, IOException {
+        File dimacsFile = new File("testdata/vmCaching/testmodel.dimacs");
+        File otherDimacsFile = new File(cacheDir, "other.dimacs");
+        Files.write(otherDimacsFile.toPath(), "p cnf 1 1\n1 0\n".getBytes());
+        
+        JsonVariabilityModelCache cache = new JsonVariabilityModelCache(cacheDir);
+        cache.write(new VariabilityModel(dimacsFile, set(new VariabilityVariable("A", "bool", 1))));
+        assertThat(Files.readAllBytes(cache.read(new File("")).getConstraintModel().toPath()),
+                is(Files.readAllBytes(dimacsFile.toPath())));
+        
+        cache.write(new VariabilityModel(otherDimacsFile, set(new VariabilityVariable("B", "bool", 1))));
+        
+        assertThat(cacheDir.listFiles((dir, name) -> name.endsWith(".tmp")).length, is(0));
+        assertThat(Files.readAllBytes(cache.read(new File("")).getConstraintModel().toPath()),
+                is(Files.readAllBytes(otherDimacsFile.toPath())));
+    }
+    
+    /**
+     * Tests that a modified constraint model sidecar file is detected.
+     * 
+     * @throws FormatException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = FormatException.class)
+    public void testModifiedConstraintSidecar() throws FormatException, IOException {
+        VariabilityModel originalVm = new VariabilityModel(new File("testdata/vmCaching/testmodel.dimacs"),
+                set(new VariabilityVariable("A", "bool", 1)));
+        
+        JsonVariabilityModelCache cache = new JsonVariabilityModelCache(cacheDir);
+        cache.write(originalVm);
+        
+        File sidecar = new File(cacheDir, "vmCache.constraints");
+        byte[] content = Files.readAllBytes(sidecar.toPath());
+        content[0]++;
+        sidecar.setWritable(true);
+        Files.write(sidecar.toPath(), content);
+        
+        cache.read(new File(""));
+    }
+    
     /**
      * Creates a set from varargs.
      * 
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.VariableSupportCache;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.Attribute;
+
+/**
+ * Tests the {@link VariabilityModelIndex}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class VariabilityModelIndexTest {
+    
+    private VariabilityVariable a;
+    
+    private VariabilityVariable b;
+    
+    private VariabilityVariable c;
+    
+    private VariabilityVariable d;
+    
+    private VariabilityVariable noNumber;
+    
+    private VariabilityModel vm;
+    
+    /**
+     * Creates a model with the constraint usage graph a -> b -> c, and d, noNumber unconnected.
+     */
+    @Before
+    public void setUp() {
+        a = new VariabilityVariable("A", "bool", 3);
+        b = new VariabilityVariable("B", "bool", 1);
+        c = new VariabilityVariable("C", "bool", 4);
+        d = new VariabilityVariable("D", "bool", 2);
+        noNumber = new VariabilityVariable("NO_NUMBER", "bool");
+        
+        a.setVariablesUsedInConstraints(new HashSet<>(Arrays.asList(b)));
+        b.setVariablesUsedInConstraints(new HashSet<>(Arrays.asList(c)));
+        b.setUsedInConstraintsOfOtherVariables(new HashSet<>(Arrays.asList(a)));
+        c.setUsedInConstraintsOfOtherVariables(new HashSet<>(Arrays.asList(b)));
+        
+        vm = new VariabilityModel(new File("constraints.dimacs"),
+                new HashSet<>(Arrays.asList(a, b, c, d, noNumber)));
+        vm.getDescriptor().addAttribute(Attribute.CONSTRAINT_USAGE);
+    }
+    
+    /**
+     * Tests that IDs are ordered by DIMACS number, followed by variables without a DIMACS number.
+     */
+    @Test
+    public void testIds() {
+        VariabilityModelIndex index = vm.getIndex();
+        
+        assertThat(index.getSize(), is(5));
+        assertThat(index.getVariable(0), sameInstance(b));
+        assertThat(index.getVariable(1), sameInstance(d));
+        assertThat(index.getVariable(2), sameInstance(a));
+        assertThat(index.getVariable(3), sameInstance(c));
+        assertThat(index.getVariable(4), sameInstance(noNumber));
+        
+        assertThat(index.getId("A"), is(2));
+        assertThat(index.getId(noNumber), is(4));
+        assertThat(index.getId("UNKNOWN"), is(-1));
+        
+        assertThat(index.getIdForDimacsNumber(3), is(2));
+        assertThat(index.getIdForDimacsNumber(0), is(-1));
+        assertThat(index.getIdForDimacsNumber(5), is(-1));
+    }
+    
+    /**
+     * Tests the compressed rows of the constraint usage relations.
+     */
+    @Test
+    public void testConstraintUsageRows() {
+        VariabilityModelIndex index = vm.getIndex();
+        assertThat(index.hasConstraintUsage(), is(true));
+        
+        assertThat(index.getVariablesUsedInConstraintsCount(index.getId(a)), is(1));
+        assertThat(index.getVariableUsedInConstraints(index.getId(a), 0), is(index.getId(b)));
+        assertThat(index.getVariablesUsedInConstraintsCount(index.getId(c)), is(0));
+        assertThat(index.getVariablesUsedInConstraintsCount(index.getId(d)), is(0));
+        
+        assertThat(index.getUsedInConstraintsOfOtherVariablesCount(index.getId(c)), is(1));
+        assertThat(index.getUsedInConstraintsOfOtherVariables(index.getId(c), 0), is(index.getId(b)));
+        
+        assertThat(index.toVariables(index.getVariablesUsedInConstraints(index.getId(b))), is(Arrays.asList(c)));
+        assertThat(index.toVariables(index.getUsedInConstraintsOfOtherVariables(index.getId(b))),
+                is(Arrays.asList(a)));
+    }
+    
+    /**
+     * Tests the {@link BitSet} based neighborhood queries.
+     */
+    @Test
+    public void testNeighbors() {
+        VariabilityModelIndex index = vm.getIndex();
+        
+        BitSet start = index.toIds(Arrays.asList(a));
+        assertThat(index.toVariables(index.getNeighbors(start)), is(Arrays.asList(b)));
+        assertThat(index.toVariables(index.getConnectedVariables(start)), is(Arrays.asList(b, a, c)));
+        
+        start = index.toIds(Arrays.asList(d));
+        assertThat(index.getNeighbors(start).isEmpty(), is(true));
+        assertThat(index.getConnectedVariables(start), is(start));
+    }
+    
+    /**
+     * Tests that the constraint usage relations are not available, if the model does not have the
+     * {@link Attribute#CONSTRAINT_USAGE} attribute.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNoConstraintUsage() {
+        vm.getDescriptor().removeAttribute(Attribute.CONSTRAINT_USAGE);
+        VariabilityModelIndex index = vm.getIndex();
+        
+        assertThat(index.hasConstraintUsage(), is(false));
+        index.getVariablesUsedInConstraints(0);
+    }
+    
+    /**
+     * Tests that the index is cached, and re-created if variables are added.
+     */
+    @Test
+    public void testIndexCaching() {
+        VariabilityModelIndex index = vm.getIndex();
+        assertThat(vm.getIndex(), sameInstance(index));
+        
+        vm.getVariableMap().put("E", new VariabilityVariable("E", "bool", 5));
+        VariabilityModelIndex newIndex = vm.getIndex();
+        assertThat(newIndex.getSize(), is(6));
+        assertThat(newIndex.getId("E"), is(4));
+    }
+    
+    /**
+     * Tests that the support cache created by the index uses the IDs of the index.
+     */
+    @Test
+    public void testSupportCache() {
+        VariabilityModelIndex index = vm.getIndex();
+        VariableSupportCache cache = index.createSupportCache();
+        
+        assertThat(cache.getDictionarySize(), is(5));
+        assertThat(cache.getSupport(and("A", not("NO_NUMBER"))), is(index.toIds(Arrays.asList(a, noNumber))));
+        
+        assertThat(cache.usesOnlyDictionaryVariables(or("B", "C")), is(true));
+        assertThat(cache.usesOnlyDictionaryVariables(or("B", "UNKNOWN")), is(false));
+        assertThat(cache.getVariableId("UNKNOWN"), is(5));
+    }
+    
+    /**
+     * Tests that the index is re-created if a variable is replaced or its DIMACS number changes, even though the
+     * number of variables stays the same.
+     */
+    @Test
+    public void testIndexCachingFingerprint() {
+        VariabilityModelIndex index = vm.getIndex();
+        
+        VariabilityVariable newA = new VariabilityVariable("A", "bool", 3);
+        vm.getVariableMap().put("A", newA);
+        VariabilityModelIndex newIndex = vm.getIndex();
+        assertThat(newIndex == index, is(false));
+        assertThat(newIndex.getVariable(newIndex.getId("A")), sameInstance(newA));
+        
+        newA.setDimacsNumber(10);
+        VariabilityModelIndex renumberedIndex = vm.getIndex();
+        assertThat(renumberedIndex == newIndex, is(false));
+        assertThat(renumberedIndex.getIdForDimacsNumber(10), is(renumberedIndex.getId("A")));
+        
+        assertThat(vm.getIndex(), sameInstance(renumberedIndex));
+    }
+    
+    /**
+     * Tests that {@link VariabilityModel#getVariables()} returns a copy of the variables.
+     */
+    @Test
+    public void testVariablesCopy() {
+        Set<VariabilityVariable> variables = vm.getVariables();
+        
+        assertThat(variables, is(new HashSet<>(Arrays.asList(a, b, c, d, noNumber))));
+        
+        variables.remove(a);
+        assertThat(vm.getVariableMap().containsKey("A"), is(true));
+        
+        vm.getVariableMap().remove("B");
+        assertThat(variables.contains(b), is(true));
+        assertThat(vm.getVariables().contains(b), is(false));
+    }
+
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
@@ -30,6 +31,8 @@ import org.junit.Test;
 
 import net.ssehub.kernel_haven.SetUpException;
 import net.ssehub.kernel_haven.config.Configuration;
+import net.ssehub.kernel_haven.config.DefaultSettings;
+import net.ssehub.kernel_haven.provider.MemoryResultCache;
 import net.ssehub.kernel_haven.test_utils.TestConfiguration;
 import net.ssehub.kernel_haven.util.ExtractorException;
 import net.ssehub.kernel_haven.util.Util;
@@ -210,6 +213,37 @@ public class VariabilityModelProviderTest {
         assertThat(provider.getException(), nullValue());
     }
     
+    /**
+     * Tests that the in-memory cache is only used if reading the cache is enabled.
+     * 
+     * @throws SetUpException unwanted.
+     */
+    @Test
+    public void testMemoryCacheRead() throws SetUpException {
+        VariabilityModel inMemory = new VariabilityModel(new File("testdata/vmCaching/testmodel.dimacs"),
+                new HashSet<>());
+        
+        for (boolean read : new boolean[] {false, true}) {
+            Properties config = new Properties();
+            config.setProperty("source_tree", "source/tree");
+            config.setProperty("cache_dir", new File("testdata/vmCaching/cache_valid").getAbsolutePath());
+            config.setProperty("variability.provider.cache.read", String.valueOf(read));
+            TestConfiguration testConfig = new TestConfiguration(config);
+            
+            MemoryResultCache<VariabilityModel> memoryCache = new MemoryResultCache<>(new File("."), 1);
+            memoryCache.put(testConfig.getValue(DefaultSettings.SOURCE_TREE), inMemory);
+            
+            VariabilityModelProvider provider = new VariabilityModelProvider();
+            provider.setExtractor(new PseudoExtractor(false));
+            provider.setConfig(testConfig);
+            provider.setMemoryCache(memoryCache);
+            provider.start();
+            
+            VariabilityModel result = provider.getResult();
+            assertThat(result == inMemory, is(read));
+        }
+    }
+    
     /**
      * Tests if the variability model is read from the cache.
      * 
@@ -243,8 +277,13 @@ public class VariabilityModelProviderTest {
         } catch (InterruptedException e) {
         }
         
-        // test if cache is now not empty
-        assertThat(cacheDir.listFiles().length, is(1));
+        // test if cache is now not empty: the JSON file and the constraint model sidecar file
+        assertThat(cacheDir.listFiles().length, is(2));
+        assertThat(new File(cacheDir, "vmCache.json").isFile(), is(true));
+        File sidecar = new File(cacheDir, "vmCache.constraints");
+        assertThat(sidecar.isFile(), is(true));
+        assertThat(Files.readAllBytes(sidecar.toPath()),
+                is(Files.readAllBytes(new File("testdata/vmCaching/testmodel.dimacs").toPath())));
         
         // cleanup
         Util.deleteFolder(cacheDir);
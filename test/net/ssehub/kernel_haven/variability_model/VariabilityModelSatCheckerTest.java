@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.variability_model;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.AllTests;
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.ConstraintFileType;
+
+/**
+ * Tests the {@link VariabilityModelSatChecker}.
+ * 
+ * @author Adam
+ */
+@SuppressWarnings("null")
+public class VariabilityModelSatCheckerTest {
+    
+    private VariabilityModel vm;
+    
+    /**
+     * Creates a model for testmodel.dimacs; the clauses are read from the file.
+     */
+    @Before
+    public void setUp() {
+        File dimacsFile = new File(AllTests.TESTDATA, "vmCaching/testmodel.dimacs");
+        vm = new VariabilityModel(dimacsFile, new HashSet<>(Arrays.asList(
+                new VariabilityVariable("ALPHA", "bool", 1),
+                new VariabilityVariable("ALPHA_MODULE", "bool", 2),
+                new VariabilityVariable("GAMMA", "bool", 3),
+                new VariabilityVariable("BETA_MODULE", "bool", 4),
+                new VariabilityVariable("BETA", "bool", 5))));
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.DIMACS);
+    }
+    
+    /**
+     * Tests satisfiability checks of single formulas.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testSatisfiability() throws FormatException {
+        VariabilityModelSatChecker checker = new VariabilityModelSatChecker(vm);
+        
+        assertThat(checker.isSatisfiable(), is(true));
+        // GAMMA implies both ALPHA and NOT ALPHA
+        assertThat(checker.isSatisfiable(new Variable("GAMMA")), is(false));
+        assertThat(checker.isSatisfiable(not("GAMMA")), is(true));
+        assertThat(checker.isSatisfiable(new Variable("ALPHA")), is(true));
+        assertThat(checker.isSatisfiable(and("ALPHA", not("ALPHA_MODULE"))), is(false));
+        assertThat(checker.isSatisfiable(or("GAMMA", "BETA_MODULE")), is(true));
+        
+        // variables that are not part of the model are unconstrained
+        assertThat(checker.isSatisfiable(and("UNKNOWN", not("GAMMA"))), is(true));
+        assertThat(checker.isSatisfiable(and("UNKNOWN", "GAMMA")), is(false));
+        assertThat(checker.isSatisfiable(and("UNKNOWN", not("UNKNOWN"))), is(false));
+    }
+    
+    /**
+     * Tests pushing and popping conditions.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testPushPop() throws FormatException {
+        VariabilityModelSatChecker checker = new VariabilityModelSatChecker(vm);
+        assertThat(checker.isSatisfiable(new Variable("BETA_MODULE")), is(true));
+        
+        // BETA_MODULE AND ALPHA violates the clause -4 -5 -2 -1
+        checker.push(new Variable("ALPHA"));
+        assertThat(checker.isSatisfiable(), is(true));
+        assertThat(checker.isSatisfiable(new Variable("BETA_MODULE")), is(false));
+        assertThat(checker.isSatisfiable(new Variable("BETA")), is(true));
+        
+        checker.push(and("BETA", "ALPHA_MODULE"));
+        assertThat(checker.isSatisfiable(), is(true));
+        checker.push(not("BETA"));
+        assertThat(checker.isSatisfiable(), is(false));
+        checker.pop();
+        checker.pop();
+        checker.pop();
+        
+        assertThat(checker.isSatisfiable(new Variable("BETA_MODULE")), is(true));
+    }
+    
+    /**
+     * Tests that the clauses of the model are used instead of the file, if available.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @Test
+    public void testClausesOfModel() throws FormatException {
+        // only ALPHA -> BETA
+        vm.setClauses(new ClauseStore(5, new int[] {-1, 5}, new int[] {0, 2}));
+        VariabilityModelSatChecker checker = new VariabilityModelSatChecker(vm);
+        
+        assertThat(checker.isSatisfiable(new Variable("GAMMA")), is(true));
+        assertThat(checker.isSatisfiable(and("ALPHA", not("BETA"))), is(false));
+    }
+    
+    /**
+     * Tests that a model without clauses and without a DIMACS file is rejected.
+     * 
+     * @throws FormatException wanted.
+     */
+    @Test(expected = FormatException.class)
+    public void testNoClauses() throws FormatException {
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.UNSPECIFIED);
+        new VariabilityModelSatChecker(vm);
+    }
+    
+    /**
+     * Tests that popping without a pushed condition fails.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testPopWithoutPush() throws FormatException {
+        new VariabilityModelSatChecker(vm).pop();
+    }
+
+}